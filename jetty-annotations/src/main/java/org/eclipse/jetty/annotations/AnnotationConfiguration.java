@@ -18,6 +18,7 @@
 
 package org.eclipse.jetty.annotations;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -72,6 +73,7 @@ public class AnnotationConfiguration extends AbstractConfiguration
     public static final String CONTAINER_INITIALIZER_STARTER = "org.eclipse.jetty.containerInitializerStarter";
     public static final String MULTI_THREADED = "org.eclipse.jetty.annotations.multiThreaded";
     public static final String MAX_SCAN_WAIT = "org.eclipse.jetty.annotations.maxWait";
+    public static final String SCAN_CACHE_DIR = "org.eclipse.jetty.annotations.scanCacheDir";
     
     public static final int DEFAULT_MAX_SCAN_WAIT = 60; /* time in sec */  
     public static final boolean DEFAULT_MULTI_THREADED = true;
@@ -505,6 +507,13 @@ public class AnnotationConfiguration extends AbstractConfiguration
     throws Exception
     {
         AnnotationParser parser = createAnnotationParser();
+        File cacheDir = getScanCacheDir(context);
+        if (cacheDir != null)
+        {
+            AnnotationScanCache cache = new AnnotationScanCache(cacheDir);
+            cache.prune(AnnotationScanCache.DEFAULT_MAX_AGE);
+            parser.setScanCache(cache);
+        }
         _parserTasks = new ArrayList<ParserTask>();
 
         long start = 0; 
@@ -573,6 +582,11 @@ public class AnnotationConfiguration extends AbstractConfiguration
                     context);
         }
 
+        AnnotationScanCache cache = parser.getScanCache();
+        if (cache != null)
+            LOG.info("Annotation index {}: {} jars replayed in {}ms, {} jars scanned in {}ms for context {}",
+                    cache.getDirectory(), cache.getHits(), cache.getHitTime(), cache.getMisses(), cache.getMissTime(), context);
+
         if (timeout)
             me.add(new Exception("Timeout scanning annotations"));
         me.ifExceptionThrow();   
@@ -640,6 +654,18 @@ public class AnnotationConfiguration extends AbstractConfiguration
         return Integer.getInteger(MAX_SCAN_WAIT, DEFAULT_MAX_SCAN_WAIT).intValue();
     }
     
+    /**
+     * Work out where scanned jars should be indexed.
+     * 
+     * @param context the context of the scan cache setting
+     * @return the directory set on the context, or server, or via a System property, or null if jars are not to be indexed.
+     * @see #SCAN_CACHE_DIR
+     */
+    protected File getScanCacheDir (WebAppContext context)
+    {
+        return getScanCacheDir(context,SCAN_CACHE_DIR);
+    }
+    
     /** 
      * @see org.eclipse.jetty.webapp.AbstractConfiguration#cloneConfigure(org.eclipse.jetty.webapp.WebAppContext, org.eclipse.jetty.webapp.WebAppContext)
      */
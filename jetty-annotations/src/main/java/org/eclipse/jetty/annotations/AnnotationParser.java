@@ -24,6 +24,7 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
@@ -31,6 +32,9 @@ import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 
+import org.eclipse.jetty.annotations.AnnotationScanCache.ClassRecord;
+import org.eclipse.jetty.annotations.AnnotationScanCache.JarIndex;
+import org.eclipse.jetty.annotations.AnnotationScanCache.MemberRecord;
 import org.eclipse.jetty.util.ConcurrentHashSet;
 import org.eclipse.jetty.util.Loader;
 import org.eclipse.jetty.util.MultiException;
@@ -63,6 +67,9 @@ import org.objectweb.asm.Opcodes;
  * For the servlet spec, we are only interested in annotations on classes, methods and fields,
  * so the callbacks for handling finding a class, a method a field are themselves
  * not fully implemented.
+ * <p>
+ * If an {@link AnnotationScanCache} is set, the results of scanning a jar are indexed and
+ * the index is replayed to the handlers instead of scanning the jar again while it is unchanged.
  */
 public class AnnotationParser
 {
@@ -71,6 +78,8 @@ public class AnnotationParser
     protected Set<String> _parsedClassNames = new ConcurrentHashSet<String>();
     
     protected static int ASM_OPCODE_VERSION = Opcodes.ASM5; //compatibility of api
+    
+    protected AnnotationScanCache _scanCache;
    
 
     /**
@@ -527,6 +536,22 @@ public class AnnotationParser
 
  
 
+    /**
+     * @return the cache of jar scans, or null if jars are always scanned
+     */
+    public AnnotationScanCache getScanCache()
+    {
+        return _scanCache;
+    }
+
+    /**
+     * @param cache the cache of jar scans, or null to always scan jars
+     */
+    public void setScanCache(AnnotationScanCache cache)
+    {
+        _scanCache = cache;
+    }
+
     /**
      * True if the class has already been processed, false otherwise
      * @param className the classname
@@ -883,6 +908,13 @@ public class AnnotationParser
        
         if (jarResource.toString().endsWith(".jar"))
         {
+            File file = _scanCache == null ? null : jarResource.getFile();
+            if (file != null && file.isFile())
+            {
+                parseIndexedJar(handlers, jarResource, file, resolver);
+                return;
+            }
+
             if (LOG.isDebugEnabled()) {LOG.debug("Scanning jar {}", jarResource);};
 
             //treat it as a jar that we need to open and scan all entries from  
@@ -947,6 +979,112 @@ public class AnnotationParser
         }        
     }
 
+    /**
+     * Parse a jar file using the {@link AnnotationScanCache}. If a jar with the same content 
+     * has been indexed, its index is replayed, otherwise the jar is scanned and indexed.
+     * 
+     * @param handlers the handlers to look for classes in  
+     * @param jarResource the jar resource to parse
+     * @param jarFile the jar file
+     * @param resolver the class name resolver
+     * @throws Exception if unable to parse
+     */
+    protected void parseIndexedJar (Set<? extends Handler> handlers, Resource jarResource, File jarFile, final ClassNameResolver resolver)
+    throws Exception
+    {
+        AnnotationScanCache cache = _scanCache;
+        long start = System.nanoTime();
+        String key = cache.getKey(jarFile);
+        JarIndex index = key == null ? null : cache.get(key);
+        if (index != null)
+        {
+            if (LOG.isDebugEnabled()) {LOG.debug("Replaying index of jar {}", jarResource);};
+            for (ClassRecord record : index.getClasses())
+                replay(handlers, jarResource, record, resolver);
+            cache.hit(System.nanoTime()-start);
+            return;
+        }
+
+        if (LOG.isDebugEnabled()) {LOG.debug("Scanning and indexing jar {}", jarResource);};
+        
+        //every class is indexed, as the resolver may exclude different classes next time
+        List<ClassRecord> records = new ArrayList<>();
+        MultiException me = new MultiException();
+        try (InputStream in = jarResource.getInputStream(); JarInputStream jar_in = new JarInputStream(in))
+        {
+            JarEntry entry = jar_in.getNextJarEntry();
+            while (entry!=null)
+            {
+                String name = entry.getName();
+                if (!entry.isDirectory() && isValidClassFileName(name) && isValidClassFilePath(name))
+                {
+                    try
+                    {
+                        ClassRecord record = AnnotationScanCache.record(jar_in);
+                        records.add(record);
+                        replay(handlers, jarResource, record, resolver);
+                    }
+                    catch (Exception e)
+                    {
+                        me.add(new RuntimeException("Error scanning entry "+name+" from jar "+jarResource, e));
+                    }
+                }
+                entry = jar_in.getNextJarEntry();
+            }
+        }
+
+        //do not index a jar that could not be fully scanned
+        if (me.size() == 0 && key != null)
+            cache.put(new JarIndex(key, records));
+        cache.miss(System.nanoTime()-start);
+        me.ifExceptionThrow();
+    }
+
+    /**
+     * Replay the record of a class to the handlers, as if the class had been scanned.
+     * 
+     * @param handlers the handlers to call
+     * @param containingResource the jar that contains the class
+     * @param record the record of the class
+     * @param resolver the class name resolver
+     */
+    protected void replay (Set<? extends Handler> handlers, Resource containingResource, ClassRecord record, ClassNameResolver resolver)
+    {
+        String className = record.getClassName();
+        if (resolver != null && (resolver.isExcluded(className) || (isParsed(className) && !resolver.shouldOverride(className))))
+            return;
+
+        ClassInfo ci = new ClassInfo(containingResource, className, record._version, record._access, record._signature, record._superName, record._interfaces);
+        _parsedClassNames.add(className);
+        for (Handler h : handlers)
+            h.handle(ci);
+        for (String annotation : record._annotations)
+        {
+            for (Handler h : handlers)
+                h.handle(ci, annotation);
+        }
+
+        for (MemberRecord field : record._fields)
+        {
+            FieldInfo fi = new FieldInfo(ci, field._name, field._access, field._desc, field._signature, field._value);
+            for (String annotation : field._annotations)
+            {
+                for (Handler h : handlers)
+                    h.handle(fi, annotation);
+            }
+        }
+
+        for (MemberRecord method : record._methods)
+        {
+            MethodInfo mi = new MethodInfo(ci, method._name, method._access, method._desc, method._signature, method._exceptions);
+            for (String annotation : method._annotations)
+            {
+                for (Handler h : handlers)
+                    h.handle(mi, annotation);
+            }
+        }
+    }
+
     /**
      * Parse a single entry in a jar file
      * 
@@ -0,0 +1,581 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.annotations;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.webapp.MetaInfScanCache;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * AnnotationScanCache
+ * <p>
+ * A persistent index of the results of scanning jars with the {@link AnnotationParser}.
+ * <p>
+ * For every class in a jar, the index holds the class header and the annotations found
+ * on the class and on its methods and fields: everything needed to replay the callbacks 
+ * a {@link AnnotationParser.Handler} would receive from a scan, without reading the jar.
+ * Each index is stored in its own file in the cache directory and is keyed by the 
+ * content of the jar, as computed by {@link MetaInfScanCache#getKey(File)}: the same jar 
+ * extracted to a new temporary directory replays its index, while a changed jar is simply
+ * scanned again. Index files that have not been used for a while are removed by {@link #prune(long)}.
+ */
+public class AnnotationScanCache
+{
+    private static final Logger LOG = Log.getLogger(AnnotationScanCache.class);
+
+    private static final int MAGIC = 0x4a534332; // JSC2
+
+    /**
+     * The default age in ms after which an unused index file is pruned: 30 days.
+     */
+    public static final long DEFAULT_MAX_AGE = TimeUnit.DAYS.toMillis(30);
+
+    private final File _dir;
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _hitNanos = new AtomicLong();
+    private final AtomicLong _missNanos = new AtomicLong();
+
+
+    /**
+     * MemberRecord
+     * 
+     * The annotations found on a method or field.
+     */
+    public static class MemberRecord
+    {
+        final String _name;
+        final int _access;
+        final String _desc;
+        final String _signature;
+        final String[] _exceptions;
+        final Object _value;
+        final List<String> _annotations = new ArrayList<>();
+
+        MemberRecord(String name, int access, String desc, String signature, String[] exceptions, Object value)
+        {
+            _name = name;
+            _access = access;
+            _desc = desc;
+            _signature = signature;
+            _exceptions = exceptions;
+            _value = value;
+        }
+    }
+
+
+    /**
+     * ClassRecord
+     * 
+     * The header of a class and the annotations found on it and its members.
+     */
+    public static class ClassRecord
+    {
+        String _className;
+        int _version;
+        int _access;
+        String _signature;
+        String _superName;
+        String[] _interfaces;
+        final List<String> _annotations = new ArrayList<>();
+        final List<MemberRecord> _fields = new ArrayList<>();
+        final List<MemberRecord> _methods = new ArrayList<>();
+
+        public String getClassName()
+        {
+            return _className;
+        }
+    }
+
+
+    /**
+     * JarIndex
+     * 
+     * The records of all the classes in a jar, in the order they appear in the jar.
+     */
+    public static class JarIndex
+    {
+        final String _key;
+        final List<ClassRecord> _classes;
+
+        JarIndex(String key, List<ClassRecord> classes)
+        {
+            _key = key;
+            _classes = classes;
+        }
+
+        public String getKey()
+        {
+            return _key;
+        }
+
+        public List<ClassRecord> getClasses()
+        {
+            return Collections.unmodifiableList(_classes);
+        }
+    }
+
+
+    /**
+     * RecordingClassVisitor
+     * 
+     * ASM visitor that records a class into a {@link ClassRecord}.
+     */
+    private static class RecordingClassVisitor extends ClassVisitor
+    {
+        final ClassRecord _record = new ClassRecord();
+
+        RecordingClassVisitor()
+        {
+            super(AnnotationParser.ASM_OPCODE_VERSION);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces)
+        {
+            _record._className = AnnotationParser.normalize(name);
+            _record._version = version;
+            _record._access = access;
+            _record._signature = signature;
+            _record._superName = AnnotationParser.normalize(superName);
+            _record._interfaces = AnnotationParser.normalize(interfaces);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible)
+        {
+            _record._annotations.add(AnnotationParser.normalize(desc));
+            return null;
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value)
+        {
+            final MemberRecord field = new MemberRecord(name,access,desc,signature,null,value);
+            return new FieldVisitor(AnnotationParser.ASM_OPCODE_VERSION)
+            {
+                @Override
+                public AnnotationVisitor visitAnnotation(String desc, boolean visible)
+                {
+                    if (field._annotations.isEmpty())
+                        _record._fields.add(field);
+                    field._annotations.add(AnnotationParser.normalize(desc));
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions)
+        {
+            final MemberRecord method = new MemberRecord(name,access,desc,signature,exceptions,null);
+            return new MethodVisitor(AnnotationParser.ASM_OPCODE_VERSION)
+            {
+                @Override
+                public AnnotationVisitor visitAnnotation(String desc, boolean visible)
+                {
+                    if (method._annotations.isEmpty())
+                        _record._methods.add(method);
+                    method._annotations.add(AnnotationParser.normalize(desc));
+                    return null;
+                }
+            };
+        }
+    }
+
+
+    /**
+     * @param dir the directory in which to keep the jar indexes
+     */
+    public AnnotationScanCache(File dir)
+    {
+        _dir = dir;
+    }
+
+    public File getDirectory()
+    {
+        return _dir;
+    }
+
+    /**
+     * Read a class into a record.
+     * 
+     * @param in the class bytes
+     * @return the record of the class
+     * @throws IOException if the class cannot be read
+     */
+    public static ClassRecord record(InputStream in) throws IOException
+    {
+        RecordingClassVisitor visitor = new RecordingClassVisitor();
+        new ClassReader(in).accept(visitor,ClassReader.SKIP_CODE|ClassReader.SKIP_DEBUG|ClassReader.SKIP_FRAMES);
+        return visitor._record;
+    }
+
+    /**
+     * Compute the content key of a jar.
+     * 
+     * @param jar the jar file
+     * @return the key, or null if the jar cannot be indexed
+     * @see MetaInfScanCache#getKey(File)
+     */
+    public String getKey(File jar)
+    {
+        try
+        {
+            return MetaInfScanCache.getKey(jar);
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Cannot compute annotation index key of {}: {}",jar,e.toString());
+            LOG.ignore(e);
+            return null;
+        }
+    }
+
+    /**
+     * Get the index of a jar, if a jar with the same content has been indexed.
+     * 
+     * @param key the content key of the jar
+     * @return the index or null
+     * @see #getKey(File)
+     */
+    public JarIndex get(String key)
+    {
+        File file = getIndexFile(key);
+        if (!file.exists())
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (in.readInt() != MAGIC || !key.equals(in.readUTF()))
+                return null;
+
+            int count = in.readInt();
+            List<ClassRecord> classes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                classes.add(readClass(in));
+
+            // mark the index as used, so that it is not pruned
+            long now = System.currentTimeMillis();
+            if (now - file.lastModified() > TimeUnit.DAYS.toMillis(1))
+                file.setLastModified(now);
+            return new JarIndex(key,classes);
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Bad annotation index {}: {}",file,e.toString());
+            LOG.ignore(e);
+            return null;
+        }
+    }
+
+    /**
+     * Store the index of a jar.
+     * 
+     * @param index the index to store
+     */
+    public void put(JarIndex index)
+    {
+        if (!_dir.exists() && !_dir.mkdirs())
+        {
+            LOG.warn("Cannot create annotation index dir {}",_dir);
+            return;
+        }
+
+        File file = getIndexFile(index._key);
+        File tmp = new File(file.getPath() + ".tmp" + Thread.currentThread().getId());
+        try
+        {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+            {
+                out.writeInt(MAGIC);
+                out.writeUTF(index._key);
+                out.writeInt(index._classes.size());
+                for (ClassRecord record : index._classes)
+                    writeClass(out,record);
+            }
+            if (file.exists() && !file.delete() || !tmp.renameTo(file))
+                throw new IOException("Cannot rename " + tmp + " to " + file);
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Cannot write annotation index {}: {}",file,e.toString());
+            LOG.ignore(e);
+            IO.delete(tmp);
+        }
+    }
+
+    /**
+     * Delete the index files, and any leftover temporary files, that have not been 
+     * written or used for longer than the given age.
+     * 
+     * @param maxAge the age in ms
+     * @return the number of files deleted
+     */
+    public int prune(long maxAge)
+    {
+        File[] files = _dir.listFiles();
+        if (files == null)
+            return 0;
+
+        int pruned = 0;
+        long oldest = System.currentTimeMillis() - maxAge;
+        for (File file : files)
+        {
+            String name = file.getName();
+            if (!file.isFile() || !(name.endsWith(".idx") || name.contains(".idx.tmp")))
+                continue;
+            if (file.lastModified() < oldest && file.delete())
+                pruned++;
+        }
+        if (pruned > 0 && LOG.isDebugEnabled())
+            LOG.debug("Pruned {} annotation indexes from {}",pruned,_dir);
+        return pruned;
+    }
+
+    /**
+     * Record the time taken to replay an index.
+     * @param nanos the elapsed time
+     */
+    public void hit(long nanos)
+    {
+        _hits.incrementAndGet();
+        _hitNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Record the time taken to scan and index a jar.
+     * @param nanos the elapsed time
+     */
+    public void miss(long nanos)
+    {
+        _misses.incrementAndGet();
+        _missNanos.addAndGet(nanos);
+    }
+
+    public long getHits()
+    {
+        return _hits.get();
+    }
+
+    public long getMisses()
+    {
+        return _misses.get();
+    }
+
+    /**
+     * @return the total time in ms spent replaying indexes
+     */
+    public long getHitTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(_hitNanos.get());
+    }
+
+    /**
+     * @return the total time in ms spent scanning and indexing jars
+     */
+    public long getMissTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(_missNanos.get());
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,hits=%d/%dms,misses=%d/%dms}",getClass().getSimpleName(),hashCode(),_dir,getHits(),getHitTime(),getMisses(),getMissTime());
+    }
+
+    private File getIndexFile(String key)
+    {
+        return new File(_dir,key + ".idx");
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException
+    {
+        out.writeBoolean(s != null);
+        if (s != null)
+            out.writeUTF(s);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] strings) throws IOException
+    {
+        out.writeInt(strings == null ? -1 : strings.length);
+        if (strings != null)
+        {
+            for (String s : strings)
+                writeString(out,s);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        String[] strings = new String[length];
+        for (int i = 0; i < length; i++)
+            strings[i] = readString(in);
+        return strings;
+    }
+
+    private static void writeAnnotations(DataOutputStream out, List<String> annotations) throws IOException
+    {
+        out.writeInt(annotations.size());
+        for (String a : annotations)
+            out.writeUTF(a);
+    }
+
+    private static void readAnnotations(DataInputStream in, List<String> annotations) throws IOException
+    {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++)
+            annotations.add(in.readUTF());
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException
+    {
+        if (value instanceof Integer)
+        {
+            out.writeByte('I');
+            out.writeInt((Integer)value);
+        }
+        else if (value instanceof Long)
+        {
+            out.writeByte('J');
+            out.writeLong((Long)value);
+        }
+        else if (value instanceof Float)
+        {
+            out.writeByte('F');
+            out.writeFloat((Float)value);
+        }
+        else if (value instanceof Double)
+        {
+            out.writeByte('D');
+            out.writeDouble((Double)value);
+        }
+        else if (value instanceof String)
+        {
+            out.writeByte('S');
+            out.writeUTF((String)value);
+        }
+        else
+            out.writeByte(0);
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException
+    {
+        switch (in.readByte())
+        {
+            case 'I':
+                return in.readInt();
+            case 'J':
+                return in.readLong();
+            case 'F':
+                return in.readFloat();
+            case 'D':
+                return in.readDouble();
+            case 'S':
+                return in.readUTF();
+            default:
+                return null;
+        }
+    }
+
+    private static void writeMembers(DataOutputStream out, List<MemberRecord> members) throws IOException
+    {
+        out.writeInt(members.size());
+        for (MemberRecord m : members)
+        {
+            out.writeUTF(m._name);
+            out.writeInt(m._access);
+            writeString(out,m._desc);
+            writeString(out,m._signature);
+            writeStrings(out,m._exceptions);
+            writeValue(out,m._value);
+            writeAnnotations(out,m._annotations);
+        }
+    }
+
+    private static void readMembers(DataInputStream in, List<MemberRecord> members) throws IOException
+    {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++)
+        {
+            MemberRecord m = new MemberRecord(in.readUTF(),in.readInt(),readString(in),readString(in),readStrings(in),readValue(in));
+            readAnnotations(in,m._annotations);
+            members.add(m);
+        }
+    }
+
+    private static void writeClass(DataOutputStream out, ClassRecord record) throws IOException
+    {
+        out.writeUTF(record._className);
+        out.writeInt(record._version);
+        out.writeInt(record._access);
+        writeString(out,record._signature);
+        writeString(out,record._superName);
+        writeStrings(out,record._interfaces);
+        writeAnnotations(out,record._annotations);
+        writeMembers(out,record._fields);
+        writeMembers(out,record._methods);
+    }
+
+    private static ClassRecord readClass(DataInputStream in) throws IOException
+    {
+        ClassRecord record = new ClassRecord();
+        record._className = in.readUTF();
+        record._version = in.readInt();
+        record._access = in.readInt();
+        record._signature = readString(in);
+        record._superName = readString(in);
+        record._interfaces = readStrings(in);
+        readAnnotations(in,record._annotations);
+        readMembers(in,record._fields);
+        readMembers(in,record._methods);
+        return record;
+    }
+}
@@ -19,8 +19,10 @@
 package org.eclipse.jetty.annotations;
 
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -35,6 +37,8 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 import org.eclipse.jetty.annotations.AnnotationParser.ClassInfo;
 import org.eclipse.jetty.annotations.AnnotationParser.FieldInfo;
@@ -202,6 +206,88 @@ public class TestAnnotationParser
         Assert.assertThat("Found Class", tracker.foundClasses, contains(ClassA.class.getName()));
     }
 
+    @Test
+    public void testScanCache() throws Exception
+    {
+        File jar = testdir.getFile("classes.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar)))
+        {
+            for (Class<?> clazz : new Class<?>[]{ClassA.class, ClassB.class})
+            {
+                String classname = clazz.getName().replace('.','/') + ".class";
+                out.putNextEntry(new JarEntry(classname));
+                try (InputStream in = this.getClass().getResourceAsStream('/'+classname))
+                {
+                    IO.copy(in,out);
+                }
+                out.closeEntry();
+            }
+        }
+        File cacheDir = testdir.getFile("cache");
+        FS.ensureEmpty(cacheDir);
+        AnnotationScanCache cache = new AnnotationScanCache(cacheDir);
+
+        for (int i = 0; i < 2; i++)
+        {
+            TrackingAnnotationHandler tracker = new TrackingAnnotationHandler(Sample.class.getName());
+            final Set<String> methods = new HashSet<>();
+            AnnotationParser.AbstractHandler methodTracker = new AnnotationParser.AbstractHandler()
+            {
+                @Override
+                public void handle(MethodInfo info, String annotation)
+                {
+                    if (Multi.class.getName().equals(annotation))
+                        methods.add(info.getClassInfo().getClassName()+"."+info.getMethodName());
+                }
+            };
+
+            AnnotationParser parser = new AnnotationParser();
+            parser.setScanCache(cache);
+            parser.parse(new HashSet<>(Arrays.asList(tracker, methodTracker)), jar.toURI(),null);
+
+            Assert.assertThat("Found Class", tracker.foundClasses, containsInAnyOrder(ClassA.class.getName(), ClassB.class.getName()));
+            Assert.assertThat("Found Method", methods, contains(ClassB.class.getName()+".a"));
+            assertTrue(parser.isParsed(ClassB.class.getName()));
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+
+        // the same jar extracted elsewhere replays the index
+        File copy = testdir.getFile("extracted/classes.jar");
+        FS.ensureDirExists(copy.getParentFile());
+        IO.copy(jar,copy);
+        AnnotationParser parser = new AnnotationParser();
+        parser.setScanCache(cache);
+        parser.parse(Collections.<Handler>emptySet(), copy.toURI(),null);
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+
+        // a changed jar is scanned again
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar)))
+        {
+            String classname = ClassA.class.getName().replace('.','/') + ".class";
+            out.putNextEntry(new JarEntry(classname));
+            try (InputStream in = this.getClass().getResourceAsStream('/'+classname))
+            {
+                IO.copy(in,out);
+            }
+            out.closeEntry();
+        }
+        parser = new AnnotationParser();
+        parser.setScanCache(cache);
+        parser.parse(Collections.<Handler>emptySet(), jar.toURI(),null);
+        assertEquals(2, cache.getMisses());
+
+        // unused indexes are pruned
+        File[] indexes = cacheDir.listFiles();
+        assertEquals(2, indexes.length);
+        assertEquals(0, cache.prune(AnnotationScanCache.DEFAULT_MAX_AGE));
+        assertTrue(indexes[0].setLastModified(System.currentTimeMillis() - AnnotationScanCache.DEFAULT_MAX_AGE - 60000));
+        assertEquals(1, cache.prune(AnnotationScanCache.DEFAULT_MAX_AGE));
+        assertFalse(indexes[0].exists());
+        assertTrue(indexes[1].exists());
+    }
+
     private void copyClass(Class<?> clazz, File basedir) throws IOException
     {
         String classname = clazz.getName().replace('.',File.separatorChar) + ".class";
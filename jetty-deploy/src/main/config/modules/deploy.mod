@@ -20,5 +20,11 @@ etc/jetty-deploy.xml
 # Monitored directory scan period (seconds)
 # jetty.deploy.scanInterval=1
 
+# Whether to detect changes from filesystem events, falling back to scanning
+# jetty.deploy.useWatcher=true
+
 # Whether to extract *.war files
 # jetty.deploy.extractWars=true
+
+# Number of webapps deployed concurrently at startup
+# jetty.deploy.parallelism=1
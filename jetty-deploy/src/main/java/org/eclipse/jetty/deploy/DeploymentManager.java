@@ -18,15 +18,27 @@
 
 package org.eclipse.jetty.deploy;
 
+import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.deploy.bindings.StandardDeployer;
 import org.eclipse.jetty.deploy.bindings.StandardStarter;
@@ -59,6 +71,15 @@ import org.eclipse.jetty.util.log.Logger;
  * </ol>
  * <p>
  * <img alt="deployment manager graph" src="doc-files/DeploymentManager.png">
+ * <p>
+ * By default apps are moved through the lifecycle one at a time. If the
+ * {@link #setDeployParallelism(int) deploy parallelism} is greater than 1, then the apps
+ * discovered by the {@link AppProvider}s while the DeploymentManager is starting are
+ * collected and moved to the default lifecycle goal concurrently, using at most that
+ * many threads from the {@link #setExecutor(Executor) executor} (by default the server thread pool).
+ * Ordering constraints between apps may be declared with {@link #addAppDependency(String, String)}.
+ * Apps added once the DeploymentManager is started (eg hot deployment) are always processed
+ * in the calling thread.
  */
 @ManagedObject("Deployment Manager")
 public class DeploymentManager extends ContainerLifeCycle
@@ -85,12 +106,17 @@ public class DeploymentManager extends ContainerLifeCycle
         /**
          * The lifecycle node location of this App
          */
-        private Node lifecyleNode;
+        private volatile Node lifecyleNode;
 
         /**
          * Tracking the various AppState timestamps (in system milliseconds)
          */
-        private Map<Node, Long> stateTimestamps = new HashMap<Node, Long>();
+        private Map<Node, Long> stateTimestamps = new ConcurrentHashMap<Node, Long>();
+
+        /**
+         * Tracking the time taken by the bindings of the various AppStates (in milliseconds)
+         */
+        private Map<Node, Long> stateDurations = new ConcurrentHashMap<Node, Long>();
 
         public App getApp()
         {
@@ -107,6 +133,11 @@ public class DeploymentManager extends ContainerLifeCycle
             return stateTimestamps;
         }
 
+        public Map<Node, Long> getStateDurations()
+        {
+            return stateDurations;
+        }
+
         public int getVersion()
         {
             return version;
@@ -117,6 +148,18 @@ public class DeploymentManager extends ContainerLifeCycle
             this.lifecyleNode = node;
             this.stateTimestamps.put(node,Long.valueOf(System.currentTimeMillis()));
         }
+
+        void setLifeCycleNode(Node node, long duration)
+        {
+            setLifeCycleNode(node);
+            this.stateDurations.put(node,Long.valueOf(duration));
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%s",app.getOriginId(),lifecyleNode == null ? null : lifecyleNode.getName());
+        }
     }
 
     private final List<AppProvider> _providers = new ArrayList<AppProvider>();
@@ -126,6 +169,12 @@ public class DeploymentManager extends ContainerLifeCycle
     private ContextHandlerCollection _contexts;
     private boolean _useStandardBindings = true;
     private String _defaultLifeCycleGoal = AppLifeCycle.STARTED;
+    private final ConcurrentMap<String, Set<String>> _dependencies = new ConcurrentHashMap<String, Set<String>>();
+    private final List<AppEntry> _deferred = new ArrayList<AppEntry>();
+    private volatile boolean _deferring;
+    private int _deployParallelism = 1;
+    private Executor _executor;
+    private long _lastDeployTime = -1;
 
     /**
      * Receive an app for processing.
@@ -143,6 +192,16 @@ public class DeploymentManager extends ContainerLifeCycle
 
         if (isRunning() && _defaultLifeCycleGoal != null)
         {
+            if (_deferring)
+            {
+                // Starting with parallel deployment, so deploy together with the other apps
+                synchronized (_deferred)
+                {
+                    _deferred.add(entry);
+                }
+                return;
+            }
+
             // Immediately attempt to go to default lifecycle state
             this.requestAppGoal(entry,_defaultLifeCycleGoal);
         }
@@ -231,16 +290,39 @@ public class DeploymentManager extends ContainerLifeCycle
         }
 
         // Start all of the AppProviders
-        for (AppProvider provider : _providers)
+        _deferring = _deployParallelism > 1;
+        try
+        {
+            for (AppProvider provider : _providers)
+            {
+                startAppProvider(provider);
+            }
+        }
+        finally
+        {
+            _deferring = false;
+        }
+
+        List<AppEntry> deferred;
+        synchronized (_deferred)
         {
-            startAppProvider(provider);
+            deferred = new ArrayList<AppEntry>(_deferred);
+            _deferred.clear();
         }
+        if (!deferred.isEmpty())
+            requestAppGoal(deferred,_defaultLifeCycleGoal);
+
         super.doStart();
     }
 
     @Override
     protected void doStop() throws Exception
     {
+        synchronized (_deferred)
+        {
+            _deferred.clear();
+        }
+
         // Stop all of the AppProviders
         for (AppProvider provider : _providers)
         {
@@ -475,6 +557,15 @@ public class DeploymentManager extends ContainerLifeCycle
         {
             throw new IllegalStateException("Node not present in Deployment Manager: " + nodeName);
         }
+
+        synchronized (appentry)
+        {
+            requestAppGoal(appentry,destinationNode,nodeName);
+        }
+    }
+
+    private void requestAppGoal(AppEntry appentry, Node destinationNode, String nodeName)
+    {
         // Compute lifecycle steps
         Path path = _lifecycle.getPath(appentry.lifecyleNode,destinationNode);
         if (path.isEmpty())
@@ -496,8 +587,9 @@ public class DeploymentManager extends ContainerLifeCycle
                 {
                     Node node = it.next();
                     LOG.debug("Executing Node {}",node);
+                    long start = System.nanoTime();
                     _lifecycle.runBindings(node,appentry.app,this);
-                    appentry.setLifeCycleNode(node);
+                    appentry.setLifeCycleNode(node,TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
                 }
             }
         }
@@ -507,6 +599,39 @@ public class DeploymentManager extends ContainerLifeCycle
         }
     }
 
+    /**
+     * Move several {@link App}s through the {@link AppLifeCycle} to the desired {@link Node}.
+     * <p>
+     * If the {@link #getDeployParallelism() deploy parallelism} is greater than 1 and an
+     * executor is available, then the apps are processed concurrently, with an app only
+     * being processed once all the apps of the batch that it {@link #addAppDependency(String, String) depends}
+     * on have been processed. Otherwise the apps are processed in order by the calling thread.
+     * This method returns once all the apps have been processed.
+     * 
+     * @param entries
+     *            the internal appentries to move through the process
+     * @param nodeName
+     *            the name of the node to attain
+     * @throws InterruptedException if interrupted while waiting for the apps to be processed
+     */
+    private void requestAppGoal(List<AppEntry> entries, String nodeName) throws InterruptedException
+    {
+        long start = System.nanoTime();
+        Executor executor = getExecutor();
+        if (_deployParallelism > 1 && executor != null && entries.size() > 1)
+        {
+            new ParallelDeployment(entries,nodeName,executor,_deployParallelism).run();
+        }
+        else
+        {
+            for (AppEntry entry : orderByDependencies(entries))
+                requestAppGoal(entry,nodeName);
+        }
+        _lastDeployTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} apps reached {} in {}ms",entries.size(),nodeName,_lastDeployTime);
+    }
+
     /**
      * Move an {@link App} through the {@link AppLifeCycle} to the desired {@link Node}, executing each lifecycle step
      * in the process to reach the desired state.
@@ -595,4 +720,323 @@ public class DeploymentManager extends ContainerLifeCycle
     {
         return getApps(_lifecycle.getNodeByName(nodeName));
     }
+
+    /**
+     * @return the maximum number of apps that are moved through the lifecycle concurrently when starting
+     */
+    @ManagedAttribute("Maximum number of apps deployed concurrently when starting")
+    public int getDeployParallelism()
+    {
+        return _deployParallelism;
+    }
+
+    /**
+     * Set the maximum number of apps that are moved through the lifecycle concurrently when
+     * the DeploymentManager is starting.  A value of 1 (the default) deploys the apps one
+     * at a time in the order in which they are provided.
+     * 
+     * @param deployParallelism the maximum number of apps deployed concurrently
+     */
+    public void setDeployParallelism(int deployParallelism)
+    {
+        if (isRunning())
+            throw new IllegalStateException();
+        if (deployParallelism < 1)
+            throw new IllegalArgumentException("deployParallelism must be at least 1");
+        _deployParallelism = deployParallelism;
+    }
+
+    /**
+     * @return the executor used for parallel deployment. If not set, the server thread pool.
+     */
+    public Executor getExecutor()
+    {
+        if (_executor != null)
+            return _executor;
+        Server server = getServer();
+        return server == null ? null : server.getThreadPool();
+    }
+
+    /**
+     * @param executor the executor used for parallel deployment, or null to use the server thread pool
+     */
+    public void setExecutor(Executor executor)
+    {
+        if (isRunning())
+            throw new IllegalStateException();
+        _executor = executor;
+    }
+
+    /**
+     * Declare that an app must not be moved through the lifecycle before another app, when
+     * they are deployed together.  Apps are identified by their origin ID, by the file name of
+     * their origin ID (eg "foo.war" or "foo.xml") or by their context path.
+     * 
+     * @param app the name of the dependent app
+     * @param dependsOn the name of the app that must be processed first
+     */
+    @ManagedOperation(value="declare that an app must be deployed after another app", impact="ACTION")
+    public void addAppDependency(@Name("app") String app, @Name("dependsOn") String dependsOn)
+    {
+        Set<String> dependencies = _dependencies.get(app);
+        if (dependencies == null)
+        {
+            dependencies = new CopyOnWriteArraySet<String>();
+            Set<String> existing = _dependencies.putIfAbsent(app,dependencies);
+            if (existing != null)
+                dependencies = existing;
+        }
+        dependencies.add(dependsOn);
+    }
+
+    /**
+     * @param app the name of the dependent app
+     * @param dependsOn the name of the app to no longer depend on
+     * @return true if the dependency was removed
+     */
+    public boolean removeAppDependency(String app, String dependsOn)
+    {
+        Set<String> dependencies = _dependencies.get(app);
+        return dependencies != null && dependencies.remove(dependsOn);
+    }
+
+    /**
+     * @return the declared app dependencies, keyed by the name of the dependent app
+     */
+    @ManagedAttribute("App deployment ordering dependencies")
+    public Map<String, Set<String>> getAppDependencies()
+    {
+        Map<String, Set<String>> dependencies = new HashMap<String, Set<String>>();
+        for (Map.Entry<String, Set<String>> entry : _dependencies.entrySet())
+            if (!entry.getValue().isEmpty())
+                dependencies.put(entry.getKey(),new HashSet<String>(entry.getValue()));
+        return dependencies;
+    }
+
+    /**
+     * @return the time in ms taken by the last deployment of the apps provided while starting, or -1
+     */
+    @ManagedAttribute("Time in ms of the last deployment of the apps provided while starting")
+    public long getLastDeployTime()
+    {
+        return _lastDeployTime;
+    }
+
+    /**
+     * @param appId the id of the app
+     * @return the time in ms taken by the bindings of each lifecycle node the app has passed through
+     */
+    @ManagedOperation(value="lifecycle node timings in ms of an app", impact="INFO")
+    public Map<String, Long> getAppTimings(@Name("appId") String appId)
+    {
+        AppEntry entry = findAppByOriginId(appId);
+        if (entry == null)
+            return null;
+        return getTimings(entry);
+    }
+
+    /**
+     * @return the lifecycle node timings of all tracked apps, one line per app
+     */
+    @ManagedAttribute("Lifecycle node timings in ms of the tracked apps")
+    public List<String> getAppTimings()
+    {
+        List<String> timings = new ArrayList<String>();
+        for (AppEntry entry : _apps)
+            timings.add(entry.app.getOriginId() + " " + getTimings(entry));
+        return timings;
+    }
+
+    private Map<String, Long> getTimings(AppEntry entry)
+    {
+        Map<String, Long> timings = new LinkedHashMap<String, Long>();
+        for (Node node : _lifecycle.getNodes())
+        {
+            Long duration = entry.stateDurations.get(node);
+            if (duration != null)
+                timings.put(node.getName(),duration);
+        }
+        return timings;
+    }
+
+    private boolean isNamed(App app, String name)
+    {
+        String originId = app.getOriginId();
+        if (name.equals(originId))
+            return true;
+        if (originId != null)
+        {
+            String file = originId;
+            while (file.length() > 1 && (file.endsWith("/") || file.endsWith(File.separator)))
+                file = file.substring(0,file.length() - 1);
+            int slash = Math.max(file.lastIndexOf('/'),file.lastIndexOf(File.separatorChar));
+            if (name.equals(file.substring(slash + 1)))
+                return true;
+        }
+        return name.equals(app.getContextPath());
+    }
+
+    /**
+     * @param entries a batch of app entries
+     * @return for each entry of the batch, the entries of the batch that it depends on
+     */
+    private Map<AppEntry, Set<AppEntry>> getDependencies(List<AppEntry> entries)
+    {
+        Map<AppEntry, Set<AppEntry>> dependencies = new LinkedHashMap<AppEntry, Set<AppEntry>>();
+        for (AppEntry entry : entries)
+        {
+            Set<AppEntry> dependsOn = new HashSet<AppEntry>();
+            for (Map.Entry<String, Set<String>> declared : _dependencies.entrySet())
+            {
+                if (!isNamed(entry.app,declared.getKey()))
+                    continue;
+                for (String name : declared.getValue())
+                {
+                    for (AppEntry other : entries)
+                    {
+                        if (other != entry && isNamed(other.app,name))
+                            dependsOn.add(other);
+                    }
+                }
+            }
+            dependencies.put(entry,dependsOn);
+        }
+        return dependencies;
+    }
+
+    private List<AppEntry> orderByDependencies(List<AppEntry> entries)
+    {
+        if (_dependencies.isEmpty())
+            return entries;
+
+        Map<AppEntry, Set<AppEntry>> dependencies = getDependencies(entries);
+        List<AppEntry> ordered = new ArrayList<AppEntry>(entries.size());
+        while (!dependencies.isEmpty())
+        {
+            AppEntry next = null;
+            for (Map.Entry<AppEntry, Set<AppEntry>> entry : dependencies.entrySet())
+            {
+                if (ordered.containsAll(entry.getValue()))
+                {
+                    next = entry.getKey();
+                    break;
+                }
+            }
+            if (next == null)
+            {
+                LOG.warn("Circular app dependencies between {}",dependencies.keySet());
+                next = dependencies.keySet().iterator().next();
+            }
+            dependencies.remove(next);
+            ordered.add(next);
+        }
+        return ordered;
+    }
+
+    /**
+     * Moves a batch of apps through the lifecycle using a bounded number of executor threads,
+     * respecting the declared dependencies between the apps of the batch.
+     */
+    private class ParallelDeployment
+    {
+        private final String _nodeName;
+        private final Executor _executor;
+        private final int _maxActive;
+        private final Map<AppEntry, Set<AppEntry>> _waiting;
+        private final Deque<AppEntry> _ready = new ArrayDeque<AppEntry>();
+        private int _active;
+        private int _remaining;
+
+        private ParallelDeployment(List<AppEntry> entries, String nodeName, Executor executor, int maxActive)
+        {
+            _nodeName = nodeName;
+            _executor = executor;
+            _maxActive = maxActive;
+            _waiting = getDependencies(entries);
+            _remaining = entries.size();
+            release();
+        }
+
+        private void release()
+        {
+            Iterator<Map.Entry<AppEntry, Set<AppEntry>>> iterator = _waiting.entrySet().iterator();
+            while (iterator.hasNext())
+            {
+                Map.Entry<AppEntry, Set<AppEntry>> entry = iterator.next();
+                if (entry.getValue().isEmpty())
+                {
+                    _ready.add(entry.getKey());
+                    iterator.remove();
+                }
+            }
+        }
+
+        private void run() throws InterruptedException
+        {
+            while (true)
+            {
+                final AppEntry next;
+                synchronized (this)
+                {
+                    while (true)
+                    {
+                        if (_remaining == 0)
+                            return;
+                        if (_active < _maxActive && !_ready.isEmpty())
+                            break;
+                        if (_active == 0 && _ready.isEmpty())
+                        {
+                            LOG.warn("Circular app dependencies between {}",_waiting.keySet());
+                            _ready.addAll(_waiting.keySet());
+                            _waiting.clear();
+                            continue;
+                        }
+                        wait();
+                    }
+                    next = _ready.poll();
+                    _active++;
+                }
+
+                Runnable task = new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            requestAppGoal(next,_nodeName);
+                        }
+                        catch (Throwable t)
+                        {
+                            LOG.warn("Unable to reach node goal: " + _nodeName,t);
+                        }
+                        finally
+                        {
+                            completed(next);
+                        }
+                    }
+                };
+
+                try
+                {
+                    _executor.execute(task);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    LOG.debug(e);
+                    task.run();
+                }
+            }
+        }
+
+        private synchronized void completed(AppEntry entry)
+        {
+            _active--;
+            _remaining--;
+            for (Set<AppEntry> dependsOn : _waiting.values())
+                dependsOn.remove(entry);
+            release();
+            notifyAll();
+        }
+    }
 }
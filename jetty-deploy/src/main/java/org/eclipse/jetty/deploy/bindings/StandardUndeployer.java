@@ -45,7 +45,11 @@ public class StandardUndeployer implements AppLifeCycle.Binding
         ContextHandler handler = app.getContextHandler();
         ContextHandlerCollection chcoll = app.getDeploymentManager().getContexts();
 
-        recursiveRemoveContext(chcoll,handler);
+        // apps may be undeployed concurrently
+        synchronized (chcoll)
+        {
+            recursiveRemoveContext(chcoll,handler);
+        }
     }
 
     private void recursiveRemoveContext(HandlerCollection coll, ContextHandler context)
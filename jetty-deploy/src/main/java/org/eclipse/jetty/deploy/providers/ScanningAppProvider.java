@@ -20,17 +20,24 @@ package org.eclipse.jetty.deploy.providers;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.jetty.deploy.App;
 import org.eclipse.jetty.deploy.AppProvider;
 import org.eclipse.jetty.deploy.DeploymentManager;
+import org.eclipse.jetty.util.PathWatcher;
+import org.eclipse.jetty.util.PathWatcher.PathWatchEvent;
 import org.eclipse.jetty.util.Scanner;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
@@ -40,6 +47,13 @@ import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.resource.Resource;
 
 /**
+ * Abstract Provider that deploys apps found in monitored directories.
+ * <p>
+ * Changes to the monitored directories are detected with a {@link PathWatcher}, so that
+ * only the directories that the filesystem reports as changed are listed again, after
+ * the watcher's quiet time has expired. If no native WatchService is available, if
+ * {@link #setUseWatcher(boolean)} is false or if the scan interval is not positive,
+ * the directories are polled with a {@link Scanner} every {@link #getScanInterval()} seconds.
  */
 @ManagedObject("Abstract Provider for loading webapps")
 public abstract class ScanningAppProvider extends AbstractLifeCycle implements AppProvider
@@ -53,7 +67,13 @@ public abstract class ScanningAppProvider extends AbstractLifeCycle implements A
     private final List<Resource> _monitored= new CopyOnWriteArrayList<>();
     private boolean _recursive = false;
     private int _scanInterval = 10;
+    private boolean _useWatcher = true;
     private Scanner _scanner;
+    private PathWatcher _watcher;
+    private final List<Scanner.Listener> _scannerListeners = new CopyOnWriteArrayList<>();
+    private final List<File> _scanDirs = new CopyOnWriteArrayList<>();
+    private final Map<String, Stamp> _watched = new HashMap<>();
+    private int _watchCycle;
 
     /* ------------------------------------------------------------ */
     private final Scanner.DiscreteListener _scannerListener = new Scanner.DiscreteListener()
@@ -77,6 +97,16 @@ public abstract class ScanningAppProvider extends AbstractLifeCycle implements A
         }
     };
 
+    /* ------------------------------------------------------------ */
+    private final PathWatcher.EventListListener _watcherListener = new PathWatcher.EventListListener()
+    {
+        @Override
+        public void onPathWatchEvents(List<PathWatchEvent> events)
+        {
+            ScanningAppProvider.this.pathsChanged(events);
+        }
+    };
+
     /* ------------------------------------------------------------ */
     protected ScanningAppProvider()
     {
@@ -130,16 +160,24 @@ public abstract class ScanningAppProvider extends AbstractLifeCycle implements A
         if (_monitored.size()==0)
             throw new IllegalStateException("No configuration dir specified");
 
-        LOG.info("Deployment monitor " + _monitored + " at interval " + _scanInterval);
         List<File> files = new ArrayList<>();
         for (Resource resource:_monitored)
         {
             if (resource.exists() && resource.getFile().canRead())
-                files.add(resource.getFile());
+                files.add(resource.getFile().getCanonicalFile());
             else
                 LOG.warn("Does not exist: "+resource);
         }
-        
+        _scanDirs.clear();
+        _scanDirs.addAll(files);
+
+        if (_useWatcher && _scanInterval>0 && startWatcher(files))
+        {
+            LOG.info("Deployment monitor " + _monitored + " watching for changes");
+            return;
+        }
+
+        LOG.info("Deployment monitor " + _monitored + " at interval " + _scanInterval);
         _scanner = new Scanner();
         _scanner.setScanDirs(files);
         _scanner.setScanInterval(_scanInterval);
@@ -147,9 +185,72 @@ public abstract class ScanningAppProvider extends AbstractLifeCycle implements A
         _scanner.setFilenameFilter(_filenameFilter);
         _scanner.setReportDirs(true);
         _scanner.addListener(_scannerListener);
+        for (Scanner.Listener listener : _scannerListeners)
+            _scanner.addListener(listener);
         _scanner.start();
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Start a PathWatcher on the monitored directories and deploy the
+     * apps already present in them.
+     *
+     * @param dirs the canonical monitored directories
+     * @return true if the watcher was started, false if the directories must be polled instead
+     */
+    private boolean startWatcher(List<File> dirs)
+    {
+        PathWatcher watcher = new PathWatcher();
+        watcher.setNotifyExistingOnStart(false);
+        for (File dir : dirs)
+        {
+            PathWatcher.Config config = new PathWatcher.Config(dir.toPath());
+            // The Scanner reports a monitored subdirectory (eg an exploded webapp) as
+            // changed when its lastModified changes, that is when one of its direct
+            // entries is added or removed, so subdirectories are watched too.
+            config.setRecurseDepth(_recursive?PathWatcher.Config.UNLIMITED_DEPTH:1);
+            watcher.watch(config);
+        }
+        watcher.addListener(_watcherListener);
+
+        try
+        {
+            watcher.start();
+            if (!watcher.isNativeWatchService())
+            {
+                LOG.info("No native WatchService, polling {} instead",_monitored);
+                watcher.stop();
+                return false;
+            }
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Unable to watch "+_monitored+", polling instead",e);
+            try
+            {
+                watcher.stop();
+            }
+            catch (Exception x)
+            {
+                LOG.ignore(x);
+            }
+            return false;
+        }
+
+        // The watcher is registered before the directories are listed, so that
+        // no change can be missed; a change already seen by the listing is
+        // ignored when its event is delivered as the file stamp is unchanged.
+        synchronized (_watched)
+        {
+            _watcher = watcher;
+            Map<String, Stamp> current = new TreeMap<>();
+            for (File dir : dirs)
+                scanFile(dir,current,0,_recursive?-1:1);
+            reportDifferences(current,Collections.<String, Stamp>emptyMap());
+        }
+        return true;
+    }
+
     /* ------------------------------------------------------------ */
     @Override
     protected void doStop() throws Exception
@@ -158,14 +259,250 @@ public abstract class ScanningAppProvider extends AbstractLifeCycle implements A
         {
             _scanner.stop();
             _scanner.removeListener(_scannerListener);
+            for (Scanner.Listener listener : _scannerListeners)
+                _scanner.removeListener(listener);
             _scanner = null;
         }
+        if (_watcher!=null)
+        {
+            _watcher.stop();
+            synchronized (_watched)
+            {
+                _watcher = null;
+                _watched.clear();
+            }
+        }
     }
-    
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Handle the coalesced events of a PathWatcher quiet period.
+     * <p>
+     * Rather than trusting the individual events, each directory containing
+     * a changed path is listed again and compared with the previously seen
+     * stamps, which gives the same added/changed/removed semantics as the
+     * {@link Scanner}, including for filters that depend on sibling files.
+     * When not recursive, an event within a monitored subdirectory causes its
+     * parent to be listed again, so that the subdirectory is reported as changed
+     * if its lastModified has changed.
+     *
+     * @param events the events reported by the watcher
+     */
+    protected void pathsChanged(List<PathWatchEvent> events)
+    {
+        Set<File> dirs = new TreeSet<>();
+        for (PathWatchEvent event : events)
+        {
+            File dir = event.getPath().toFile().getParentFile();
+            if (dir==null)
+                continue;
+            if (isScanned(dir))
+                dirs.add(dir);
+            else if (!_recursive && dir.getParentFile()!=null && isScanned(dir.getParentFile()))
+                dirs.add(dir.getParentFile());
+        }
+        if (dirs.isEmpty())
+            return;
+
+        synchronized (_watched)
+        {
+            if (_watcher==null)
+                return;
+
+            Map<String, Stamp> current = new TreeMap<>();
+            Map<String, Stamp> previous = new TreeMap<>();
+            for (File dir : dirs)
+            {
+                scanFile(dir,current,0,1);
+                String prefix = dir.getPath()+File.separator;
+                for (Map.Entry<String, Stamp> entry : _watched.entrySet())
+                {
+                    String name = entry.getKey();
+                    if (name.startsWith(prefix) && name.indexOf(File.separatorChar,prefix.length())<0)
+                        previous.put(name,entry.getValue());
+                }
+            }
+            reportDifferences(current,previous);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private boolean isScanned(File dir)
+    {
+        for (File scanDir : _scanDirs)
+        {
+            if (scanDir.equals(dir))
+                return true;
+            if (_recursive && dir.getPath().startsWith(scanDir.getPath()+File.separator))
+                return true;
+        }
+        return false;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Record the stamps of the accepted files in a directory, in the same way as
+     * the {@link Scanner} does with reported directories.
+     */
+    private void scanFile(File f, Map<String, Stamp> stamps, int depth, int maxDepth)
+    {
+        try
+        {
+            if (!f.exists())
+                return;
+
+            if (depth>0 && (f.isFile() || f.isDirectory()))
+            {
+                if (_filenameFilter==null || _filenameFilter.accept(f.getParentFile(),f.getName()))
+                    stamps.put(f.getCanonicalPath(),new Stamp(f.lastModified(),f.isDirectory()?0:f.length()));
+            }
+
+            if (f.isDirectory() && (maxDepth<0 || depth<maxDepth))
+            {
+                File[] files = f.listFiles();
+                if (files!=null)
+                {
+                    for (File file : files)
+                        scanFile(file,stamps,depth+1,maxDepth);
+                }
+                else
+                    LOG.warn("Error listing files in directory {}",f);
+            }
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Error scanning watched files",e);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Compare the current stamps with the previous ones, update the watched
+     * stamps and call the add, change and remove handlers accordingly.
+     */
+    private void reportDifferences(Map<String, Stamp> current, Map<String, Stamp> previous)
+    {
+        List<String> removed = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        List<String> added = new ArrayList<>();
+
+        for (String name : previous.keySet())
+        {
+            if (!current.containsKey(name))
+            {
+                // a removed directory takes everything below it with it
+                String prefix = name+File.separator;
+                for (Iterator<String> i = _watched.keySet().iterator(); i.hasNext();)
+                {
+                    String watched = i.next();
+                    if (watched.startsWith(prefix) && !previous.containsKey(watched))
+                    {
+                        i.remove();
+                        removed.add(watched);
+                    }
+                }
+                _watched.remove(name);
+                removed.add(name);
+            }
+        }
+        for (Map.Entry<String, Stamp> entry : current.entrySet())
+        {
+            Stamp old = _watched.put(entry.getKey(),entry.getValue());
+            if (old==null)
+                added.add(entry.getKey());
+            else if (!old.equals(entry.getValue()))
+                changed.add(entry.getKey());
+        }
+
+        if (removed.isEmpty() && changed.isEmpty() && added.isEmpty())
+            return;
+
+        int cycle = ++_watchCycle;
+        for (Scanner.Listener listener : _scannerListeners)
+        {
+            try
+            {
+                if (listener instanceof Scanner.ScanCycleListener)
+                    ((Scanner.ScanCycleListener)listener).scanStarted(cycle);
+            }
+            catch (Exception e)
+            {
+                LOG.warn(e);
+            }
+        }
+
+        for (String name : removed)
+        {
+            try
+            {
+                fileRemoved(name);
+            }
+            catch (Exception e)
+            {
+                LOG.warn("Unable to remove "+name,e);
+            }
+        }
+        for (String name : changed)
+        {
+            try
+            {
+                fileChanged(name);
+            }
+            catch (Exception e)
+            {
+                LOG.warn("Unable to change "+name,e);
+            }
+        }
+        for (String name : added)
+        {
+            try
+            {
+                fileAdded(name);
+            }
+            catch (Exception e)
+            {
+                LOG.warn("Unable to add "+name,e);
+            }
+        }
+
+        List<String> all = new ArrayList<>(removed);
+        all.addAll(changed);
+        all.addAll(added);
+        for (Scanner.Listener listener : _scannerListeners)
+        {
+            try
+            {
+                if (listener instanceof Scanner.DiscreteListener)
+                {
+                    Scanner.DiscreteListener discrete = (Scanner.DiscreteListener)listener;
+                    for (String name : removed)
+                        discrete.fileRemoved(name);
+                    for (String name : changed)
+                        discrete.fileChanged(name);
+                    for (String name : added)
+                        discrete.fileAdded(name);
+                }
+                if (listener instanceof Scanner.BulkListener)
+                    ((Scanner.BulkListener)listener).filesChanged(all);
+                if (listener instanceof Scanner.ScanCycleListener)
+                    ((Scanner.ScanCycleListener)listener).scanEnded(cycle);
+                if (listener instanceof Scanner.ScanListener)
+                    ((Scanner.ScanListener)listener).scan();
+            }
+            catch (Exception e)
+            {
+                LOG.warn(e);
+            }
+        }
+    }
+
     /* ------------------------------------------------------------ */
     protected boolean exists(String path)
     {
-        return _scanner.exists(path);
+        for (File dir : _scanDirs)
+            if (new File(dir,path).exists())
+                return true;
+        return false;
     }
 
     /* ------------------------------------------------------------ */
@@ -245,6 +582,24 @@ public abstract class ScanningAppProvider extends AbstractLifeCycle implements A
         return _scanInterval;
     }
 
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("filesystem events are watched rather than scanning at an interval")
+    public boolean isUseWatcher()
+    {
+        return _useWatcher;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return true if changes are currently detected with a PathWatcher,
+     * false if the monitored directories are polled
+     */
+    @ManagedAttribute("changes are detected from filesystem events")
+    public boolean isWatching()
+    {
+        return _watcher!=null;
+    }
+
     /* ------------------------------------------------------------ */
     @ManagedAttribute("recursive scanning supported")
     public boolean isRecursive()
@@ -279,9 +634,20 @@ public abstract class ScanningAppProvider extends AbstractLifeCycle implements A
     }
 
     /* ------------------------------------------------------------ */
+    /**
+     * Add a listener for the changes detected in the monitored directories.
+     * <p>
+     * When changes are watched rather than scanned, the listener is notified
+     * once for each batch of changes instead of once per scan interval.
+     *
+     * @param listener the listener to add
+     */
     public void addScannerListener(Scanner.Listener listener)
     {
-        _scanner.addListener(listener);
+        _scannerListeners.add(listener);
+        Scanner scanner = _scanner;
+        if (scanner!=null)
+            scanner.addListener(listener);
     }
     
     /* ------------------------------------------------------------ */
@@ -321,4 +687,46 @@ public abstract class ScanningAppProvider extends AbstractLifeCycle implements A
     {
         _scanInterval = scanInterval;
     }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param useWatcher true if filesystem events should be used to detect changes
+     * when a native WatchService is available, false to always scan at the scan interval.
+     */
+    public void setUseWatcher(boolean useWatcher)
+    {
+        if (isRunning())
+            throw new IllegalStateException();
+        _useWatcher = useWatcher;
+    }
+
+    /* ------------------------------------------------------------ */
+    private static class Stamp
+    {
+        final long _lastModified;
+        final long _size;
+
+        Stamp(long lastModified, long size)
+        {
+            _lastModified = lastModified;
+            _size = size;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (int)_lastModified^(int)_size;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (o instanceof Stamp)
+            {
+                Stamp stamp = (Stamp)o;
+                return stamp._lastModified==_lastModified && stamp._size==_size;
+            }
+            return false;
+        }
+    }
 }
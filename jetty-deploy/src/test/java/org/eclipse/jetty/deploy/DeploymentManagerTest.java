@@ -18,12 +18,21 @@
 
 package org.eclipse.jetty.deploy;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.jetty.deploy.graph.Node;
 import org.eclipse.jetty.deploy.test.XmlConfiguredJetty;
+import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
 import org.eclipse.jetty.toolchain.test.TestingDir;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -78,6 +87,118 @@ public class DeploymentManagerTest
         Assert.assertEquals("'deploying' Bindings.size",1,deploybindings.size());
     }
 
+    @Test
+    public void testParallelDeployment() throws Exception
+    {
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+
+        DeploymentManager depman = new DeploymentManager();
+        depman.setContexts(new ContextHandlerCollection());
+        depman.setUseStandardBindings(false);
+        depman.setDeployParallelism(3);
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        threadPool.start();
+        depman.setExecutor(threadPool);
+        depman.addLifeCycleBinding(new AppLifeCycle.Binding()
+        {
+            @Override
+            public String[] getBindingTargets()
+            {
+                return new String[] { "starting" };
+            }
+
+            @Override
+            public void processBinding(Node node, App app) throws Exception
+            {
+                int a = active.incrementAndGet();
+                while (true)
+                {
+                    int m = maxActive.get();
+                    if (a <= m || maxActive.compareAndSet(m,a))
+                        break;
+                }
+                Thread.sleep(50);
+                started.add(app.getOriginId());
+                active.decrementAndGet();
+            }
+        });
+
+        // app-0 waits for app-5, which waits for app-4
+        depman.addAppDependency("app-0","app-5");
+        depman.addAppDependency("app-5","app-4");
+
+        final String[] ids = { "app-0", "app-1", "app-2", "app-3", "app-4", "app-5" };
+        depman.addAppProvider(new StartingAppProvider(ids));
+
+        try
+        {
+            depman.start();
+
+            Assert.assertEquals(ids.length,started.size());
+            Assert.assertEquals(ids.length,depman.getApps(AppLifeCycle.STARTED).size());
+            Assert.assertTrue("Concurrent deployments " + maxActive.get(),maxActive.get() > 1);
+            Assert.assertTrue("Bounded deployments " + maxActive.get(),maxActive.get() <= 3);
+            Assert.assertTrue(started.indexOf("app-4") < started.indexOf("app-5"));
+            Assert.assertTrue(started.indexOf("app-5") < started.indexOf("app-0"));
+
+            Map<String, Long> timings = depman.getAppTimings("app-0");
+            Assert.assertTrue(timings.toString(),timings.get(AppLifeCycle.STARTING) >= 40);
+            Assert.assertEquals(ids.length,depman.getAppTimings().size());
+            Assert.assertTrue(depman.getLastDeployTime() >= 0);
+        }
+        finally
+        {
+            depman.stop();
+            threadPool.stop();
+        }
+    }
+
+    @Test
+    public void testCircularDependencies() throws Exception
+    {
+        final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+
+        DeploymentManager depman = new DeploymentManager();
+        depman.setContexts(new ContextHandlerCollection());
+        depman.setUseStandardBindings(false);
+        depman.setDeployParallelism(2);
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        threadPool.start();
+        depman.setExecutor(threadPool);
+        depman.addLifeCycleBinding(new AppLifeCycle.Binding()
+        {
+            @Override
+            public String[] getBindingTargets()
+            {
+                return new String[] { "starting" };
+            }
+
+            @Override
+            public void processBinding(Node node, App app) throws Exception
+            {
+                started.add(app.getOriginId());
+            }
+        });
+
+        depman.addAppDependency("a","b");
+        depman.addAppDependency("b","a");
+        depman.addAppProvider(new StartingAppProvider(new String[] { "a", "b", "c" }));
+
+        try
+        {
+            // Should not hang
+            depman.start();
+            Assert.assertEquals(3,started.size());
+        }
+        finally
+        {
+            depman.stop();
+            threadPool.stop();
+        }
+    }
+
     @Test
     public void testXmlConfigured() throws Exception
     {
@@ -110,4 +231,39 @@ public class DeploymentManagerTest
             }
         }
     }
+
+    /**
+     * Provides its apps while it is starting.
+     */
+    private static class StartingAppProvider extends AbstractLifeCycle implements AppProvider
+    {
+        private final String[] _ids;
+        private DeploymentManager _deploymentManager;
+
+        private StartingAppProvider(String[] ids)
+        {
+            _ids = ids;
+        }
+
+        @Override
+        public void setDeploymentManager(DeploymentManager deploymentManager)
+        {
+            _deploymentManager = deploymentManager;
+        }
+
+        @Override
+        protected void doStart() throws Exception
+        {
+            for (String id : _ids)
+                _deploymentManager.addApp(new App(_deploymentManager,this,id));
+        }
+
+        @Override
+        public ContextHandler createContextHandler(App app) throws Exception
+        {
+            ContextHandler context = new ContextHandler();
+            context.setContextPath("/" + app.getOriginId());
+            return context;
+        }
+    }
 }
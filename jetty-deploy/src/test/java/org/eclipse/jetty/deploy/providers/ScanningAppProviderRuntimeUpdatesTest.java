@@ -68,6 +68,13 @@ public class ScanningAppProviderRuntimeUpdatesTest
         // Should not throw an Exception
         jetty.load();
 
+        // These tests count scan cycles, so poll rather than watch
+        for (AppProvider provider : jetty.getServer().getBean(DeploymentManager.class).getAppProviders())
+        {
+            if (provider instanceof ScanningAppProvider)
+                ((ScanningAppProvider)provider).setUseWatcher(false);
+        }
+
         // Start it
         jetty.start();
 
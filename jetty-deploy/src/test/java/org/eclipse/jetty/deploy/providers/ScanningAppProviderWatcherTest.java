@@ -0,0 +1,148 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.deploy.providers;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.deploy.AppProvider;
+import org.eclipse.jetty.deploy.DeploymentManager;
+import org.eclipse.jetty.deploy.test.XmlConfiguredJetty;
+import org.eclipse.jetty.toolchain.test.TestTracker;
+import org.eclipse.jetty.toolchain.test.TestingDir;
+import org.eclipse.jetty.util.Scanner;
+import org.eclipse.jetty.util.resource.Resource;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Runtime updates of a {@link ScanningAppProvider} that detects changes from filesystem events.
+ */
+public class ScanningAppProviderWatcherTest
+{
+    @Rule
+    public TestTracker tracker = new TestTracker();
+
+    @Rule
+    public TestingDir testdir = new TestingDir();
+    private static XmlConfiguredJetty jetty;
+    private final AtomicInteger _changes = new AtomicInteger();
+
+    @Before
+    public void setupEnvironment() throws Exception
+    {
+        testdir.ensureEmpty();
+        Resource.setDefaultUseCaches(false);
+
+        jetty = new XmlConfiguredJetty(testdir);
+        jetty.addConfiguration("jetty.xml");
+        jetty.addConfiguration("jetty-http.xml");
+        jetty.addConfiguration("jetty-deploymgr-contexts.xml");
+        jetty.load();
+        jetty.start();
+
+        DeploymentManager dm = jetty.getServer().getBean(DeploymentManager.class);
+        for (AppProvider provider : dm.getAppProviders())
+        {
+            if (provider instanceof ScanningAppProvider)
+            {
+                ScanningAppProvider scanning = (ScanningAppProvider)provider;
+                Assume.assumeTrue(scanning.isWatching());
+                scanning.addScannerListener(new Scanner.ScanListener()
+                {
+                    public void scan()
+                    {
+                        _changes.incrementAndGet();
+                    }
+                });
+            }
+        }
+    }
+
+    @After
+    public void teardownEnvironment() throws Exception
+    {
+        jetty.stop();
+    }
+
+    private void waitForChanges(int changes) throws InterruptedException
+    {
+        long end = System.nanoTime()+TimeUnit.SECONDS.toNanos(10);
+        while (_changes.get()<changes && System.nanoTime()<end)
+            Thread.sleep(50);
+        assertTrue("Changes detected",_changes.get()>=changes);
+    }
+
+    @Test
+    public void testAddThenRemoveContext() throws Exception
+    {
+        jetty.copyWebapp("foo-webapp-1.war","foo.war");
+        jetty.copyWebapp("foo.xml","foo.xml");
+        waitForChanges(1);
+        jetty.assertWebAppContextsExists("/foo");
+
+        int changes = _changes.get();
+        jetty.removeWebapp("foo.war");
+        jetty.removeWebapp("foo.xml");
+        waitForChanges(changes+1);
+        jetty.assertNoWebAppContexts();
+    }
+
+    @Test
+    public void testUpdateExplodedWebapp() throws Exception
+    {
+        File webapps = new File(jetty.getJettyHome(),"webapps");
+        File bar = new File(webapps,"bar");
+        assertTrue(bar.mkdirs());
+        waitForChanges(1);
+        jetty.assertWebAppContextsExists("/bar");
+
+        // make sure the directory gets a different stamp
+        Thread.sleep(1100);
+        int changes = _changes.get();
+        assertTrue(new File(bar,"index.html").createNewFile());
+        waitForChanges(changes+1);
+        jetty.assertWebAppContextsExists("/bar");
+    }
+
+    @Test
+    public void testUpdateContext() throws Exception
+    {
+        jetty.copyWebapp("foo-webapp-1.war","foo.war");
+        jetty.copyWebapp("foo.xml","foo.xml");
+        waitForChanges(1);
+        jetty.assertWebAppContextsExists("/foo");
+        jetty.assertResponseContains("/foo/info","FooServlet-1");
+
+        // make sure the replaced war has a different stamp
+        Thread.sleep(1100);
+        int changes = _changes.get();
+        jetty.copyWebapp("foo.xml","foo.xml");
+        jetty.copyWebapp("foo-webapp-2.war","foo.war");
+        waitForChanges(changes+1);
+        jetty.assertWebAppContextsExists("/foo");
+        jetty.assertResponseContains("/foo/info","FooServlet-2");
+    }
+}
@@ -133,4 +133,15 @@ public class FCGI
         {
         }
     }
+
+    public static class Values
+    {
+        public static final String MAX_CONNS = "FCGI_MAX_CONNS";
+        public static final String MAX_REQS = "FCGI_MAX_REQS";
+        public static final String MPXS_CONNS = "FCGI_MPXS_CONNS";
+
+        private Values()
+        {
+        }
+    }
 }
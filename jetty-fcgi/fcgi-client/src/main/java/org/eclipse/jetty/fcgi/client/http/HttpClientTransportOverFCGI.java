@@ -27,6 +27,8 @@ import org.eclipse.jetty.client.Origin;
 import org.eclipse.jetty.client.api.Connection;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.fcgi.FCGI;
+import org.eclipse.jetty.fcgi.generator.PreEncodedParam;
+import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.util.Promise;
@@ -38,6 +40,8 @@ public class HttpClientTransportOverFCGI extends AbstractHttpClientTransport
 {
     private final boolean multiplexed;
     private final String scriptRoot;
+    private final HttpField documentRoot;
+    private int maxRequestsPerConnection = 1024;
 
     public HttpClientTransportOverFCGI(String scriptRoot)
     {
@@ -49,13 +53,38 @@ public class HttpClientTransportOverFCGI extends AbstractHttpClientTransport
         super(selectors);
         this.multiplexed = multiplexed;
         this.scriptRoot = scriptRoot;
+        this.documentRoot = scriptRoot == null ? null : new PreEncodedParam(FCGI.Headers.DOCUMENT_ROOT, scriptRoot);
     }
 
+    @ManagedAttribute(value = "Whether requests may be multiplexed on the same connection", readonly = true)
     public boolean isMultiplexed()
     {
         return multiplexed;
     }
 
+    /**
+     * @return the max number of requests multiplexed on a connection
+     * @see #setMaxRequestsPerConnection(int)
+     */
+    @ManagedAttribute("The max number of requests multiplexed on a connection")
+    public int getMaxRequestsPerConnection()
+    {
+        return maxRequestsPerConnection;
+    }
+
+    /**
+     * <p>Sets the max number of requests multiplexed on a connection, in multiplexed mode.</p>
+     * <p>Requests are only multiplexed when the FastCGI application replies to
+     * {@code FCGI_GET_VALUES} with {@code FCGI_MPXS_CONNS=1}, and never more
+     * than the {@code FCGI_MAX_REQS} advertised by the application.</p>
+     *
+     * @param maxRequestsPerConnection the max number of requests multiplexed on a connection
+     */
+    public void setMaxRequestsPerConnection(int maxRequestsPerConnection)
+    {
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+    }
+
     @ManagedAttribute(value = "The scripts root directory", readonly = true)
     public String getScriptRoot()
     {
@@ -88,6 +117,7 @@ public class HttpClientTransportOverFCGI extends AbstractHttpClientTransport
 
     protected void customize(Request request, HttpFields fastCGIHeaders)
     {
-        fastCGIHeaders.put(FCGI.Headers.DOCUMENT_ROOT, getScriptRoot());
+        if (documentRoot != null)
+            fastCGIHeaders.put(documentRoot);
     }
 }
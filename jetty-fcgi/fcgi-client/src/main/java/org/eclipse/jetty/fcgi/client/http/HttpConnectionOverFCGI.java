@@ -21,6 +21,7 @@ package org.eclipse.jetty.fcgi.client.http;
 import java.io.EOFException;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousCloseException;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -36,6 +37,7 @@ import org.eclipse.jetty.client.api.Connection;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
 import org.eclipse.jetty.fcgi.FCGI;
+import org.eclipse.jetty.fcgi.generator.ClientGenerator;
 import org.eclipse.jetty.fcgi.generator.Flusher;
 import org.eclipse.jetty.fcgi.parser.ClientParser;
 import org.eclipse.jetty.http.HttpField;
@@ -46,6 +48,7 @@ import org.eclipse.jetty.io.AbstractConnection;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.CompletableCallback;
 import org.eclipse.jetty.util.Promise;
 import org.eclipse.jetty.util.log.Log;
@@ -104,9 +107,33 @@ public class HttpConnectionOverFCGI extends AbstractConnection implements Connec
     {
         super.onOpen();
         fillInterested();
+        if (multiplexed)
+            getValues();
         promise.succeeded(this);
     }
 
+    /**
+     * <p>Queries the FastCGI application for its multiplexing capabilities.</p>
+     * <p>The reply is notified to {@link #onValues(Map)}.</p>
+     */
+    protected void getValues()
+    {
+        ClientGenerator generator = new ClientGenerator(destination.getHttpClient().getByteBufferPool());
+        flusher.flush(generator.generateGetValues(Arrays.asList(FCGI.Values.MAX_CONNS, FCGI.Values.MAX_REQS, FCGI.Values.MPXS_CONNS), Callback.NOOP));
+    }
+
+    /**
+     * @param values the values received from the FastCGI application
+     * @see #getValues()
+     */
+    protected void onValues(Map<String, String> values)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Received values {} on {}", values, this);
+        if (destination instanceof MultiplexHttpDestinationOverFCGI)
+            ((MultiplexHttpDestinationOverFCGI)destination).onValues(values);
+    }
+
     @Override
     public void onFillable()
     {
@@ -361,6 +388,12 @@ public class HttpConnectionOverFCGI extends AbstractConnection implements Connec
                 noChannel(request);
         }
 
+        @Override
+        public void onValues(Map<String, String> values)
+        {
+            HttpConnectionOverFCGI.this.onValues(values);
+        }
+
         @Override
         public void onHeaders(int request)
         {
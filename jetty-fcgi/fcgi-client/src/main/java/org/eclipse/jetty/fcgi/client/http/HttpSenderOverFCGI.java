@@ -29,6 +29,7 @@ import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.fcgi.FCGI;
 import org.eclipse.jetty.fcgi.generator.ClientGenerator;
 import org.eclipse.jetty.fcgi.generator.Generator;
+import org.eclipse.jetty.fcgi.generator.PreEncodedParam;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
@@ -38,6 +39,9 @@ import org.eclipse.jetty.util.Jetty;
 
 public class HttpSenderOverFCGI extends HttpSender
 {
+    private static final HttpField GATEWAY_INTERFACE = new PreEncodedParam(FCGI.Headers.GATEWAY_INTERFACE, "CGI/1.1");
+    private static final HttpField SERVER_SOFTWARE = new PreEncodedParam(FCGI.Headers.SERVER_SOFTWARE, "Jetty/" + Jetty.VERSION);
+
     private final ClientGenerator generator;
 
     public HttpSenderOverFCGI(HttpChannel channel)
@@ -81,8 +85,8 @@ public class HttpSenderOverFCGI extends HttpSender
         // FastCGI headers that are not based on HTTP headers nor URI
         fcgiHeaders.put(FCGI.Headers.REQUEST_METHOD, request.getMethod());
         fcgiHeaders.put(FCGI.Headers.SERVER_PROTOCOL, request.getVersion().asString());
-        fcgiHeaders.put(FCGI.Headers.GATEWAY_INTERFACE, "CGI/1.1");
-        fcgiHeaders.put(FCGI.Headers.SERVER_SOFTWARE, "Jetty/" + Jetty.VERSION);
+        fcgiHeaders.put(GATEWAY_INTERFACE);
+        fcgiHeaders.put(SERVER_SOFTWARE);
 
         // Translate remaining HTTP header into the HTTP_* format
         for (HttpField field : headers)
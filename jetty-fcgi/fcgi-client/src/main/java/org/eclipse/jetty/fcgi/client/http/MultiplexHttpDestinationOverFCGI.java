@@ -18,20 +18,74 @@
 
 package org.eclipse.jetty.fcgi.client.http;
 
+import java.util.Map;
+
+import org.eclipse.jetty.client.ConnectionPool;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.HttpExchange;
+import org.eclipse.jetty.client.MultiplexConnectionPool;
 import org.eclipse.jetty.client.MultiplexHttpDestination;
 import org.eclipse.jetty.client.Origin;
 import org.eclipse.jetty.client.SendFailure;
 import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.fcgi.FCGI;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
 
+/**
+ * <p>A destination that multiplexes requests over FastCGI connections.</p>
+ * <p>Many FastCGI applications (for example, php-fpm) do not support
+ * multiplexing, so connections start with one request at a time and
+ * multiplexing is enabled only if the application advertises
+ * {@code FCGI_MPXS_CONNS=1} in reply to {@code FCGI_GET_VALUES}.</p>
+ */
 public class MultiplexHttpDestinationOverFCGI extends MultiplexHttpDestination
 {
+    private static final Logger LOG = Log.getLogger(MultiplexHttpDestinationOverFCGI.class);
+
     public MultiplexHttpDestinationOverFCGI(HttpClient client, Origin origin)
     {
         super(client, origin);
     }
 
+    @Override
+    protected ConnectionPool newConnectionPool(HttpClient client)
+    {
+        return new MultiplexConnectionPool(this, client.getMaxConnectionsPerDestination(), this, 1);
+    }
+
+    /**
+     * <p>Updates the max number of requests per connection from the
+     * values advertised by the FastCGI application.</p>
+     *
+     * @param values the values received in a {@code FCGI_GET_VALUES_RESULT} frame
+     */
+    protected void onValues(Map<String, String> values)
+    {
+        int maxRequests = 1;
+        if ("1".equals(values.get(FCGI.Values.MPXS_CONNS)))
+        {
+            maxRequests = ((HttpClientTransportOverFCGI)getHttpClient().getTransport()).getMaxRequestsPerConnection();
+            String maxReqs = values.get(FCGI.Values.MAX_REQS);
+            if (maxReqs != null)
+            {
+                try
+                {
+                    maxRequests = Math.min(maxRequests, Integer.parseInt(maxReqs.trim()));
+                }
+                catch (NumberFormatException x)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Invalid " + FCGI.Values.MAX_REQS + " " + maxReqs, x);
+                }
+            }
+        }
+        maxRequests = Math.max(1, maxRequests);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Max requests per connection {} for {} from {}", maxRequests, this, values);
+        setMaxRequestsPerConnection(maxRequests);
+    }
+
     @Override
     protected SendFailure send(Connection connection, HttpExchange exchange)
     {
@@ -22,7 +22,9 @@ import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jetty.fcgi.FCGI;
 import org.eclipse.jetty.http.HttpField;
@@ -52,8 +54,18 @@ public class ClientGenerator extends Generator
         int fieldsLength = 0;
         for (HttpField field : fields)
         {
+            if (field instanceof PreEncodedParam)
+            {
+                // The whole name/value pair is already encoded; a null value marks it.
+                byte[] paramBytes = ((PreEncodedParam)field).getEncoded();
+                bytes.add(paramBytes);
+                bytes.add(null);
+                fieldsLength += paramBytes.length;
+                continue;
+            }
+
             String name = field.getName();
-            byte[] nameBytes = name.getBytes(utf8);
+            byte[] nameBytes = encodeName(name);
             if (nameBytes.length > MAX_PARAM_LENGTH)
                 throw new IllegalArgumentException("Field name " + name + " exceeds max length " + MAX_PARAM_LENGTH);
             bytes.add(nameBytes);
@@ -111,16 +123,27 @@ public class ClientGenerator extends Generator
                 byte[] nameBytes = bytes.get(index);
                 int nameLength = nameBytes.length;
                 byte[] valueBytes = bytes.get(index + 1);
-                int valueLength = valueBytes.length;
 
-                int required = bytesForLength(nameLength) + bytesForLength(valueLength) + nameLength + valueLength;
-                if (required > capacity)
-                    break;
-
-                putParamLength(buffer, nameLength);
-                putParamLength(buffer, valueLength);
-                buffer.put(nameBytes);
-                buffer.put(valueBytes);
+                int required;
+                if (valueBytes == null)
+                {
+                    required = nameLength;
+                    if (required > capacity)
+                        break;
+                    buffer.put(nameBytes);
+                }
+                else
+                {
+                    int valueLength = valueBytes.length;
+                    required = bytesForLength(nameLength) + bytesForLength(valueLength) + nameLength + valueLength;
+                    if (required > capacity)
+                        break;
+
+                    putParamLength(buffer, nameLength);
+                    putParamLength(buffer, valueLength);
+                    buffer.put(nameBytes);
+                    buffer.put(valueBytes);
+                }
 
                 length += required;
                 fieldsLength -= required;
@@ -145,23 +168,24 @@ public class ClientGenerator extends Generator
         return result;
     }
 
-    private int putParamLength(ByteBuffer buffer, int length)
-    {
-        int result = bytesForLength(length);
-        if (result == 4)
-            buffer.putInt(length | 0x80_00_00_00);
-        else
-            buffer.put((byte)length);
-        return result;
-    }
-
-    private int bytesForLength(int length)
+    public Result generateRequestContent(int request, ByteBuffer content, boolean lastContent, Callback callback)
     {
-        return length > 127 ? 4 : 1;
+        return generateContent(request, content, false, lastContent, callback, FCGI.FrameType.STDIN);
     }
 
-    public Result generateRequestContent(int request, ByteBuffer content, boolean lastContent, Callback callback)
+    /**
+     * <p>Generates a {@code FCGI_GET_VALUES} frame to query the given variables,
+     * typically those defined in {@link FCGI.Values}.</p>
+     *
+     * @param names the names of the variables to query
+     * @param callback the callback to invoke when the frame has been written
+     * @return the generation result
+     */
+    public Result generateGetValues(List<String> names, Callback callback)
     {
-        return generateContent(request, content, false, lastContent, callback, FCGI.FrameType.STDIN);
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String name : names)
+            values.put(name, "");
+        return generateValues(FCGI.FrameType.GET_VALUES, values, callback);
     }
 }
@@ -19,10 +19,16 @@
 package org.eclipse.jetty.fcgi.generator;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 import org.eclipse.jetty.fcgi.FCGI;
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
@@ -31,6 +37,30 @@ public class Generator
 {
     public static final int MAX_CONTENT_LENGTH = 0xFF_FF;
 
+    // Param and header names are repeated on every request, so the UTF-8
+    // encodings of the well-known FCGI and HTTP names are computed once;
+    // other names may come from untrusted HTTP headers and are not cached.
+    private static final Map<String, byte[]> NAMES;
+    static
+    {
+        Map<String, byte[]> names = new HashMap<>();
+        for (String name : new String[]{FCGI.Headers.AUTH_TYPE, FCGI.Headers.CONTENT_LENGTH, FCGI.Headers.CONTENT_TYPE,
+                FCGI.Headers.DOCUMENT_ROOT, FCGI.Headers.DOCUMENT_URI, FCGI.Headers.GATEWAY_INTERFACE, FCGI.Headers.HTTPS,
+                FCGI.Headers.PATH_INFO, FCGI.Headers.QUERY_STRING, FCGI.Headers.REMOTE_ADDR, FCGI.Headers.REMOTE_PORT,
+                FCGI.Headers.REQUEST_METHOD, FCGI.Headers.REQUEST_URI, FCGI.Headers.SCRIPT_FILENAME, FCGI.Headers.SCRIPT_NAME,
+                FCGI.Headers.SERVER_ADDR, FCGI.Headers.SERVER_NAME, FCGI.Headers.SERVER_PORT, FCGI.Headers.SERVER_PROTOCOL,
+                FCGI.Headers.SERVER_SOFTWARE, FCGI.Values.MAX_CONNS, FCGI.Values.MAX_REQS, FCGI.Values.MPXS_CONNS})
+            names.put(name, name.getBytes(StandardCharsets.UTF_8));
+        for (HttpHeader header : HttpHeader.values())
+        {
+            String name = header.asString();
+            names.put(name, name.getBytes(StandardCharsets.UTF_8));
+            String param = "HTTP_" + name.replace('-', '_').toUpperCase(Locale.ENGLISH);
+            names.put(param, param.getBytes(StandardCharsets.UTF_8));
+        }
+        NAMES = Collections.unmodifiableMap(names);
+    }
+
     protected final ByteBufferPool byteBufferPool;
 
     public Generator(ByteBufferPool byteBufferPool)
@@ -38,6 +68,81 @@ public class Generator
         this.byteBufferPool = byteBufferPool;
     }
 
+    /**
+     * @param name the param or header name to encode
+     * @return the UTF-8 bytes of the name, shared if it is a well-known name; must not be modified
+     */
+    protected byte[] encodeName(String name)
+    {
+        byte[] bytes = NAMES.get(name);
+        if (bytes == null)
+            bytes = name.getBytes(StandardCharsets.UTF_8);
+        return bytes;
+    }
+
+    protected int putParamLength(ByteBuffer buffer, int length)
+    {
+        int result = bytesForLength(length);
+        if (result == 4)
+            buffer.putInt(length | 0x80_00_00_00);
+        else
+            buffer.put((byte)length);
+        return result;
+    }
+
+    protected int bytesForLength(int length)
+    {
+        return length > 127 ? 4 : 1;
+    }
+
+    /**
+     * <p>Generates a management frame (with request id 0) of the given type,
+     * whose content is the given name/value pairs.</p>
+     *
+     * @param frameType either {@link FCGI.FrameType#GET_VALUES} or {@link FCGI.FrameType#GET_VALUES_RESULT}
+     * @param values the name/value pairs
+     * @param callback the callback to invoke when the frame has been written
+     * @return the generation result
+     */
+    protected Result generateValues(FCGI.FrameType frameType, Map<String, String> values, Callback callback)
+    {
+        List<byte[]> bytes = new ArrayList<>(values.size() * 2);
+        int length = 0;
+        for (Map.Entry<String, String> entry : values.entrySet())
+        {
+            byte[] nameBytes = encodeName(entry.getKey());
+            byte[] valueBytes = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            bytes.add(nameBytes);
+            bytes.add(valueBytes);
+            length += bytesForLength(nameBytes.length) + bytesForLength(valueBytes.length) + nameBytes.length + valueBytes.length;
+        }
+        if (length > MAX_CONTENT_LENGTH)
+            throw new IllegalArgumentException("Values exceed max length " + MAX_CONTENT_LENGTH);
+
+        ByteBuffer buffer = byteBufferPool.acquire(8 + length, false);
+        BufferUtil.clearToFill(buffer);
+        Result result = new Result(byteBufferPool, callback);
+        result = result.append(buffer, true);
+
+        buffer.put((byte)0x01);
+        buffer.put((byte)frameType.code);
+        buffer.putShort((short)0);
+        buffer.putShort((short)length);
+        buffer.putShort((short)0);
+        for (int i = 0; i < bytes.size(); i += 2)
+        {
+            byte[] nameBytes = bytes.get(i);
+            byte[] valueBytes = bytes.get(i + 1);
+            putParamLength(buffer, nameBytes.length);
+            putParamLength(buffer, valueBytes.length);
+            buffer.put(nameBytes);
+            buffer.put(valueBytes);
+        }
+        buffer.flip();
+
+        return result;
+    }
+
     protected Result generateContent(int id, ByteBuffer content, boolean recycle, boolean lastContent, Callback callback, FCGI.FrameType frameType)
     {
         id &= 0xFF_FF;
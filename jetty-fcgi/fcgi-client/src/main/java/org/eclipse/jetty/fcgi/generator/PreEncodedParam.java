@@ -0,0 +1,69 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.fcgi.generator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.jetty.http.HttpField;
+
+/**
+ * <p>A FastCGI param whose name/value pair is encoded once, at construction.</p>
+ * <p>Params that are the same for every request, such as {@code DOCUMENT_ROOT}
+ * or {@code SERVER_SOFTWARE}, can be created once as {@link PreEncodedParam}s
+ * and added to the params of each request; {@link ClientGenerator} then copies
+ * the pre-encoded bytes rather than encoding the name and value again.</p>
+ */
+public class PreEncodedParam extends HttpField
+{
+    private final byte[] encoded;
+
+    public PreEncodedParam(String name, String value)
+    {
+        super(name, value);
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > ClientGenerator.MAX_PARAM_LENGTH)
+            throw new IllegalArgumentException("Param name " + name + " exceeds max length " + ClientGenerator.MAX_PARAM_LENGTH);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        if (valueBytes.length > ClientGenerator.MAX_PARAM_LENGTH)
+            throw new IllegalArgumentException("Param value " + value + " exceeds max length " + ClientGenerator.MAX_PARAM_LENGTH);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + nameBytes.length + valueBytes.length);
+        putLength(buffer, nameBytes.length);
+        putLength(buffer, valueBytes.length);
+        buffer.put(nameBytes).put(valueBytes).flip();
+        this.encoded = new byte[buffer.remaining()];
+        buffer.get(encoded);
+    }
+
+    private static void putLength(ByteBuffer buffer, int length)
+    {
+        if (length > 127)
+            buffer.putInt(length | 0x80_00_00_00);
+        else
+            buffer.put((byte)length);
+    }
+
+    /**
+     * @return the encoded name/value pair, lengths included; must not be modified
+     */
+    public byte[] getEncoded()
+    {
+        return encoded;
+    }
+}
@@ -23,6 +23,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jetty.fcgi.FCGI;
 import org.eclipse.jetty.http.HttpField;
@@ -75,7 +76,7 @@ public class ServerGenerator extends Generator
         for (HttpField field : fields)
         {
             String name = field.getName();
-            byte[] nameBytes = name.getBytes(utf8);
+            byte[] nameBytes = encodeName(name);
             bytes.add(nameBytes);
 
             String value = field.getValue();
@@ -120,6 +121,19 @@ public class ServerGenerator extends Generator
         }
     }
 
+    /**
+     * <p>Generates a {@code FCGI_GET_VALUES_RESULT} frame in reply to a
+     * {@code FCGI_GET_VALUES} frame.</p>
+     *
+     * @param values the values of the variables that are known
+     * @param callback the callback to invoke when the frame has been written
+     * @return the generation result
+     */
+    public Result generateGetValuesResult(Map<String, String> values, Callback callback)
+    {
+        return generateValues(FCGI.FrameType.GET_VALUES_RESULT, values, callback);
+    }
+
     private ByteBuffer generateEndRequest(int request, boolean aborted)
     {
         request &= 0xFF_FF;
@@ -20,12 +20,17 @@ package org.eclipse.jetty.fcgi.parser;
 
 import java.nio.ByteBuffer;
 import java.util.EnumMap;
+import java.util.Map;
 
 import org.eclipse.jetty.fcgi.FCGI;
 import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
 
 public class ClientParser extends Parser
 {
+    private static final Logger LOG = Log.getLogger(ClientParser.class);
+
     private final EnumMap<FCGI.FrameType, ContentParser> contentParsers = new EnumMap<>(FCGI.FrameType.class);
 
     public ClientParser(Listener listener)
@@ -35,6 +40,22 @@ public class ClientParser extends Parser
         StreamContentParser stdErrParser = new StreamContentParser(headerParser, FCGI.StreamType.STD_ERR, listener);
         contentParsers.put(FCGI.FrameType.STDERR, stdErrParser);
         contentParsers.put(FCGI.FrameType.END_REQUEST, new EndRequestContentParser(headerParser, new EndRequestListener(listener, stdOutParser, stdErrParser)));
+        contentParsers.put(FCGI.FrameType.GET_VALUES_RESULT, new ValuesContentParser(headerParser)
+        {
+            @Override
+            protected void onValues(Map<String, String> values)
+            {
+                try
+                {
+                    listener.onValues(values);
+                }
+                catch (Throwable x)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Exception while invoking listener " + listener, x);
+                }
+            }
+        });
     }
 
     @Override
@@ -47,6 +68,15 @@ public class ClientParser extends Parser
     {
         public void onBegin(int request, int code, String reason);
 
+        /**
+         * <p>Callback method invoked when a {@code FCGI_GET_VALUES_RESULT} frame is received.</p>
+         *
+         * @param values the values of the variables known by the FastCGI application
+         */
+        public default void onValues(Map<String, String> values)
+        {
+        }
+
         public static class Adapter extends Parser.Listener.Adapter implements Listener
         {
             @Override
@@ -80,7 +80,7 @@ public class ParamsContentParser extends ContentParser
     @Override
     public Result parse(ByteBuffer buffer)
     {
-        while (buffer.hasRemaining() || state == State.PARAM)
+        while (buffer.hasRemaining() || state == State.PARAM || isEmptyValue())
         {
             switch (state)
             {
@@ -263,6 +263,12 @@ public class ParamsContentParser extends ContentParser
         }
     }
 
+    private boolean isEmptyValue()
+    {
+        // An empty value at the end of the frame needs no more bytes to be parsed.
+        return state == State.VALUE && valueLength == 0;
+    }
+
     private boolean isLargeLength(ByteBuffer buffer)
     {
         return (buffer.get(buffer.position()) & 0x80) == 0x80;
@@ -19,11 +19,17 @@
 package org.eclipse.jetty.fcgi.parser;
 
 import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.jetty.fcgi.FCGI;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
 
 public class ServerParser extends Parser
 {
+    private static final Logger LOG = Log.getLogger(ServerParser.class);
+
     private final EnumMap<FCGI.FrameType, ContentParser> contentParsers = new EnumMap<>(FCGI.FrameType.class);
 
     public ServerParser(Listener listener)
@@ -31,6 +37,22 @@ public class ServerParser extends Parser
         contentParsers.put(FCGI.FrameType.BEGIN_REQUEST, new BeginRequestContentParser(headerParser, listener));
         contentParsers.put(FCGI.FrameType.PARAMS, new ParamsContentParser(headerParser, listener));
         contentParsers.put(FCGI.FrameType.STDIN, new StreamContentParser(headerParser, FCGI.StreamType.STD_IN, listener));
+        contentParsers.put(FCGI.FrameType.GET_VALUES, new ValuesContentParser(headerParser)
+        {
+            @Override
+            protected void onValues(Map<String, String> values)
+            {
+                try
+                {
+                    listener.onGetValues(values.keySet());
+                }
+                catch (Throwable x)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Exception while invoking listener " + listener, x);
+                }
+            }
+        });
     }
 
     @Override
@@ -43,6 +65,15 @@ public class ServerParser extends Parser
     {
         public void onStart(int request, FCGI.Role role, int flags);
 
+        /**
+         * <p>Callback method invoked when a {@code FCGI_GET_VALUES} frame is received.</p>
+         *
+         * @param names the names of the variables queried by the FastCGI client
+         */
+        public default void onGetValues(Set<String> names)
+        {
+        }
+
         public static class Adapter extends Parser.Listener.Adapter implements Listener
         {
             @Override
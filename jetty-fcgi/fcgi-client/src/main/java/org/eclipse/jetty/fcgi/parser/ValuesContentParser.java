@@ -0,0 +1,66 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.fcgi.parser;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Parser for the GET_VALUES and GET_VALUES_RESULT frame bodies.</p>
+ * <p>The body has the same format of the PARAMS frame body, but it is
+ * carried by a single frame with request id 0, so that the values are
+ * notified as a whole when the frame has been parsed.</p>
+ *
+ * @see ParamsContentParser
+ */
+public abstract class ValuesContentParser extends ParamsContentParser
+{
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    public ValuesContentParser(HeaderParser headerParser)
+    {
+        super(headerParser, null);
+    }
+
+    @Override
+    public Result parse(ByteBuffer buffer)
+    {
+        Result result = super.parse(buffer);
+        if (result == Result.COMPLETE)
+            onParams();
+        return result;
+    }
+
+    @Override
+    protected void onParam(String name, String value)
+    {
+        values.put(name, value);
+    }
+
+    @Override
+    protected void onParams()
+    {
+        Map<String, String> result = new LinkedHashMap<>(values);
+        values.clear();
+        onValues(result);
+    }
+
+    protected abstract void onValues(Map<String, String> values);
+}
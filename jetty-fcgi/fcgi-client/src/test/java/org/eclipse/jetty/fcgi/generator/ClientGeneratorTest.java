@@ -19,7 +19,11 @@
 package org.eclipse.jetty.fcgi.generator;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jetty.fcgi.FCGI;
@@ -133,6 +137,86 @@ public class ClientGeneratorTest
         Assert.assertEquals(value, params.get());
     }
 
+    @Test
+    public void testGenerateRequestHeadersWithPreEncodedParams() throws Exception
+    {
+        HttpFields fields = new HttpFields();
+        fields.put(new PreEncodedParam(FCGI.Headers.DOCUMENT_ROOT, "/var/www"));
+        fields.put(FCGI.Headers.REQUEST_METHOD, "GET");
+        char[] chars = new char[256];
+        Arrays.fill(chars, 'x');
+        String longValue = new String(chars);
+        fields.put(new PreEncodedParam(FCGI.Headers.SCRIPT_FILENAME, longValue));
+
+        ByteBufferPool byteBufferPool = new MappedByteBufferPool();
+        ClientGenerator generator = new ClientGenerator(byteBufferPool);
+        final int id = 13;
+        Generator.Result result = generator.generateRequestHeaders(id, fields, null);
+
+        final HttpFields received = new HttpFields();
+        ServerParser parser = new ServerParser(new ServerParser.Listener.Adapter()
+        {
+            @Override
+            public void onHeader(int request, HttpField field)
+            {
+                Assert.assertEquals(id, request);
+                received.add(field);
+            }
+        });
+
+        for (ByteBuffer buffer : result.getByteBuffers())
+        {
+            parser.parse(buffer);
+            Assert.assertFalse(buffer.hasRemaining());
+        }
+
+        Assert.assertEquals(3, received.size());
+        Assert.assertEquals("/var/www", received.get(FCGI.Headers.DOCUMENT_ROOT));
+        Assert.assertEquals("GET", received.get(FCGI.Headers.REQUEST_METHOD));
+        Assert.assertEquals(longValue, received.get(FCGI.Headers.SCRIPT_FILENAME));
+    }
+
+    @Test
+    public void testGenerateGetValues() throws Exception
+    {
+        ByteBufferPool byteBufferPool = new MappedByteBufferPool();
+        ClientGenerator generator = new ClientGenerator(byteBufferPool);
+        List<String> names = Arrays.asList(FCGI.Values.MAX_CONNS, FCGI.Values.MAX_REQS, FCGI.Values.MPXS_CONNS);
+        Generator.Result result = generator.generateGetValues(names, null);
+
+        final List<Set<String>> received = new ArrayList<>();
+        ServerParser parser = new ServerParser(new ServerParser.Listener.Adapter()
+        {
+            @Override
+            public void onGetValues(Set<String> names)
+            {
+                received.add(names);
+            }
+        });
+
+        for (ByteBuffer buffer : result.getByteBuffers())
+        {
+            parser.parse(buffer);
+            Assert.assertFalse(buffer.hasRemaining());
+        }
+
+        Assert.assertEquals(1, received.size());
+        Assert.assertEquals(new HashSet<>(names), received.get(0));
+
+        // Parse again byte by byte
+        received.clear();
+        for (ByteBuffer buffer : result.getByteBuffers())
+        {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                parser.parse(ByteBuffer.wrap(new byte[]{buffer.get()}));
+            Assert.assertFalse(buffer.hasRemaining());
+        }
+
+        Assert.assertEquals(1, received.size());
+        Assert.assertEquals(new HashSet<>(names), received.get(0));
+    }
+
     @Test
     public void testGenerateSmallRequestContent() throws Exception
     {
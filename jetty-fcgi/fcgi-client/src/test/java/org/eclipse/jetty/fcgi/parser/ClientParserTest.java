@@ -19,8 +19,11 @@
 package org.eclipse.jetty.fcgi.parser;
 
 import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jetty.fcgi.FCGI;
 import org.eclipse.jetty.fcgi.generator.Generator;
@@ -34,6 +37,36 @@ import org.junit.Test;
 
 public class ClientParserTest
 {
+    @Test
+    public void testParseGetValuesResult() throws Exception
+    {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put(FCGI.Values.MAX_REQS, "50");
+        values.put(FCGI.Values.MPXS_CONNS, "1");
+
+        ByteBufferPool byteBufferPool = new MappedByteBufferPool();
+        ServerGenerator generator = new ServerGenerator(byteBufferPool);
+        Generator.Result result = generator.generateGetValuesResult(values, null);
+
+        final AtomicReference<Map<String, String>> received = new AtomicReference<>();
+        ClientParser parser = new ClientParser(new ClientParser.Listener.Adapter()
+        {
+            @Override
+            public void onValues(Map<String, String> values)
+            {
+                received.set(values);
+            }
+        });
+
+        for (ByteBuffer buffer : result.getByteBuffers())
+        {
+            parser.parse(buffer);
+            Assert.assertFalse(buffer.hasRemaining());
+        }
+
+        Assert.assertEquals(values, received.get());
+    }
+
     @Test
     public void testParseResponseHeaders() throws Exception
     {
@@ -19,11 +19,15 @@
 package org.eclipse.jetty.fcgi.server;
 
 import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.jetty.fcgi.FCGI;
 import org.eclipse.jetty.fcgi.generator.Flusher;
+import org.eclipse.jetty.fcgi.generator.ServerGenerator;
 import org.eclipse.jetty.fcgi.parser.ServerParser;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.io.AbstractConnection;
@@ -32,6 +36,7 @@ import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpInput;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
@@ -42,17 +47,24 @@ public class ServerFCGIConnection extends AbstractConnection
     private final ConcurrentMap<Integer, HttpChannelOverFCGI> channels = new ConcurrentHashMap<>();
     private final Connector connector;
     private final boolean sendStatus200;
+    private final boolean multiplexed;
     private final Flusher flusher;
     private final HttpConfiguration configuration;
     private final ServerParser parser;
 
     public ServerFCGIConnection(Connector connector, EndPoint endPoint, HttpConfiguration configuration, boolean sendStatus200)
+    {
+        this(connector, endPoint, configuration, sendStatus200, true);
+    }
+
+    public ServerFCGIConnection(Connector connector, EndPoint endPoint, HttpConfiguration configuration, boolean sendStatus200, boolean multiplexed)
     {
         super(endPoint, connector.getExecutor());
         this.connector = connector;
         this.flusher = new Flusher(endPoint);
         this.configuration = configuration;
         this.sendStatus200 = sendStatus200;
+        this.multiplexed = multiplexed;
         this.parser = new ServerParser(new ServerListener());
     }
 
@@ -129,6 +141,19 @@ public class ServerFCGIConnection extends AbstractConnection
                 LOG.debug("Request {} start on {}", request, channel);
         }
 
+        @Override
+        public void onGetValues(Set<String> names)
+        {
+            // Only reply with the values that are known, as the specification allows.
+            Map<String, String> values = new LinkedHashMap<>();
+            if (names.contains(FCGI.Values.MPXS_CONNS))
+                values.put(FCGI.Values.MPXS_CONNS, multiplexed ? "1" : "0");
+            if (LOG.isDebugEnabled())
+                LOG.debug("Get values {} reply {}", names, values);
+            ServerGenerator generator = new ServerGenerator(connector.getByteBufferPool());
+            flusher.flush(generator.generateGetValuesResult(values, Callback.NOOP));
+        }
+
         @Override
         public void onHeader(int request, HttpField field)
         {
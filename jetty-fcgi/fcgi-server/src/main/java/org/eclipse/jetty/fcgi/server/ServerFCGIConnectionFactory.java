@@ -28,6 +28,7 @@ public class ServerFCGIConnectionFactory extends AbstractConnectionFactory
 {
     private final HttpConfiguration configuration;
     private final boolean sendStatus200;
+    private boolean multiplexed = true;
 
     public ServerFCGIConnectionFactory(HttpConfiguration configuration)
     {
@@ -41,9 +42,25 @@ public class ServerFCGIConnectionFactory extends AbstractConnectionFactory
         this.sendStatus200 = sendStatus200;
     }
 
+    /**
+     * @return whether connections advertise {@code FCGI_MPXS_CONNS=1} to clients
+     */
+    public boolean isMultiplexed()
+    {
+        return multiplexed;
+    }
+
+    /**
+     * @param multiplexed whether connections advertise {@code FCGI_MPXS_CONNS=1} to clients
+     */
+    public void setMultiplexed(boolean multiplexed)
+    {
+        this.multiplexed = multiplexed;
+    }
+
     @Override
     public Connection newConnection(Connector connector, EndPoint endPoint)
     {
-        return new ServerFCGIConnection(connector, endPoint, configuration, sendStatus200);
+        return new ServerFCGIConnection(connector, endPoint, configuration, sendStatus200, isMultiplexed());
     }
 }
@@ -19,8 +19,11 @@
 package org.eclipse.jetty.fcgi.server.proxy;
 
 import java.net.URI;
+import java.util.Iterator;
 import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -35,6 +38,7 @@ import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.fcgi.FCGI;
 import org.eclipse.jetty.fcgi.client.http.HttpClientTransportOverFCGI;
+import org.eclipse.jetty.fcgi.generator.PreEncodedParam;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
@@ -62,6 +66,8 @@ import org.eclipse.jetty.proxy.AsyncProxyServlet;
  *     </ul></li>
  *     <li><code>fastCGI.HTTPS</code>, optional, defaults to false, that specifies whether
  *     to force the FastCGI <code>HTTPS</code> parameter to the value <code>on</code></li>
+ *     <li><code>maxCachedScripts</code>, optional, defaults to 512, that specifies the max
+ *     number of request paths for which the script parameters are cached</li>
  * </ul>
  *
  * @see TryFilesFilter
@@ -72,6 +78,7 @@ public class FastCGIProxyServlet extends AsyncProxyServlet.Transparent
     public static final String SCRIPT_PATTERN_INIT_PARAM = "scriptPattern";
     public static final String ORIGINAL_URI_ATTRIBUTE_INIT_PARAM = "originalURIAttribute";
     public static final String FASTCGI_HTTPS_INIT_PARAM = "fastCGI.HTTPS";
+    public static final String MAX_CACHED_SCRIPTS_INIT_PARAM = "maxCachedScripts";
 
     private static final String REMOTE_ADDR_ATTRIBUTE = FastCGIProxyServlet.class.getName() + ".remoteAddr";
     private static final String REMOTE_PORT_ATTRIBUTE = FastCGIProxyServlet.class.getName() + ".remotePort";
@@ -80,10 +87,14 @@ public class FastCGIProxyServlet extends AsyncProxyServlet.Transparent
     private static final String SERVER_PORT_ATTRIBUTE = FastCGIProxyServlet.class.getName() + ".serverPort";
     private static final String SCHEME_ATTRIBUTE = FastCGIProxyServlet.class.getName() + ".scheme";
     private static final String REQUEST_URI_ATTRIBUTE = FastCGIProxyServlet.class.getName() + ".requestURI";
+    private static final HttpField HTTPS_ON = new PreEncodedParam(FCGI.Headers.HTTPS, "on");
+
+    private final ConcurrentMap<String, HttpField[]> scripts = new ConcurrentHashMap<>();
 
     private Pattern scriptPattern;
     private String originalURIAttribute;
     private boolean fcgiHTTPS;
+    private int maxCachedScripts;
 
     @Override
     public void init() throws ServletException
@@ -98,6 +109,9 @@ public class FastCGIProxyServlet extends AsyncProxyServlet.Transparent
         originalURIAttribute = getInitParameter(ORIGINAL_URI_ATTRIBUTE_INIT_PARAM);
 
         fcgiHTTPS = Boolean.parseBoolean(getInitParameter(FASTCGI_HTTPS_INIT_PARAM));
+
+        value = getInitParameter(MAX_CACHED_SCRIPTS_INIT_PARAM);
+        maxCachedScripts = value == null ? 512 : Integer.parseInt(value);
     }
 
     @Override
@@ -185,7 +199,7 @@ public class FastCGIProxyServlet extends AsyncProxyServlet.Transparent
         fastCGIHeaders.put(FCGI.Headers.SERVER_PORT, (String)proxyRequest.getAttributes().get(SERVER_PORT_ATTRIBUTE));
 
         if (fcgiHTTPS || HttpScheme.HTTPS.is((String)proxyRequest.getAttributes().get(SCHEME_ATTRIBUTE)))
-            fastCGIHeaders.put(FCGI.Headers.HTTPS, "on");
+            fastCGIHeaders.put(HTTPS_ON);
 
         URI proxyRequestURI = proxyRequest.getURI();
         String rawPath = proxyRequestURI.getRawPath();
@@ -200,7 +214,31 @@ public class FastCGIProxyServlet extends AsyncProxyServlet.Transparent
         }
         fastCGIHeaders.put(FCGI.Headers.REQUEST_URI, requestURI);
 
+        String root = fastCGIHeaders.get(FCGI.Headers.DOCUMENT_ROOT);
+        for (HttpField field : resolveScript(root, rawPath))
+            fastCGIHeaders.put(field);
+    }
+
+    /**
+     * <p>Resolves the {@code SCRIPT_NAME}, {@code SCRIPT_FILENAME} and,
+     * if present, {@code PATH_INFO} params for the given request path.</p>
+     * <p>Applications are typically served by few scripts, so the params
+     * are pre-encoded and cached. Request paths are untrusted, so when the
+     * cache reaches the {@code maxCachedScripts} init-param, half of it is evicted.</p>
+     *
+     * @param root the document root
+     * @param rawPath the raw request path
+     * @return the script params
+     */
+    private HttpField[] resolveScript(String root, String rawPath)
+    {
+        String key = root + '|' + rawPath;
+        HttpField[] result = scripts.get(key);
+        if (result != null)
+            return result;
+
         String scriptName = rawPath;
+        String pathInfo = null;
         Matcher matcher = scriptPattern.matcher(rawPath);
         if (matcher.matches())
         {
@@ -209,12 +247,30 @@ public class FastCGIProxyServlet extends AsyncProxyServlet.Transparent
 
             // If there is a second group, map it to PATH_INFO.
             if (matcher.groupCount() > 1)
-                fastCGIHeaders.put(FCGI.Headers.PATH_INFO, matcher.group(2));
+                pathInfo = matcher.group(2);
         }
-        fastCGIHeaders.put(FCGI.Headers.SCRIPT_NAME, scriptName);
 
-        String root = fastCGIHeaders.get(FCGI.Headers.DOCUMENT_ROOT);
-        fastCGIHeaders.put(FCGI.Headers.SCRIPT_FILENAME, root + scriptName);
+        HttpField name = new PreEncodedParam(FCGI.Headers.SCRIPT_NAME, scriptName);
+        HttpField fileName = new PreEncodedParam(FCGI.Headers.SCRIPT_FILENAME, root + scriptName);
+        if (pathInfo == null)
+            result = new HttpField[]{name, fileName};
+        else
+            result = new HttpField[]{new PreEncodedParam(FCGI.Headers.PATH_INFO, pathInfo), name, fileName};
+
+        if (maxCachedScripts > 0)
+        {
+            if (scripts.size() >= maxCachedScripts)
+            {
+                Iterator<String> keys = scripts.keySet().iterator();
+                while (scripts.size() > maxCachedScripts / 2 && keys.hasNext())
+                {
+                    keys.next();
+                    keys.remove();
+                }
+            }
+            scripts.put(key, result);
+        }
+        return result;
     }
 
     private class ProxyHttpClientTransportOverFCGI extends HttpClientTransportOverFCGI
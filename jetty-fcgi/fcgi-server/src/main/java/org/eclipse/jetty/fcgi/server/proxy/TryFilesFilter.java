@@ -24,6 +24,10 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -62,14 +66,26 @@ import javax.servlet.http.HttpServletResponse;
  * <p>
  * The files are resolved using {@link ServletContext#getResource(String)} to make sure
  * that only files visible to the application are served.
+ * <p>
+ * The optional <code>cacheTimeout</code> init-param specifies, in milliseconds, for
+ * how long the result of the resolution of a file is cached, to avoid accessing the
+ * file system for every request; it defaults to 0, which disables the cache.
+ * The optional <code>maxCacheSize</code> init-param specifies the max number of
+ * cached resolutions, and defaults to 1024; when it is reached, expired resolutions
+ * and then arbitrary ones are evicted until the cache is half full.
  *
  * @see FastCGIProxyServlet
  */
 public class TryFilesFilter implements Filter
 {
     public static final String FILES_INIT_PARAM = "files";
+    public static final String CACHE_TIMEOUT_INIT_PARAM = "cacheTimeout";
+    public static final String MAX_CACHE_SIZE_INIT_PARAM = "maxCacheSize";
 
+    private final ConcurrentMap<String, Resolution> cache = new ConcurrentHashMap<>();
     private String[] files;
+    private long cacheTimeout;
+    private int maxCacheSize;
 
     @Override
     public void init(FilterConfig config) throws ServletException
@@ -78,6 +94,11 @@ public class TryFilesFilter implements Filter
         if (param == null)
             throw new ServletException(String.format("Missing mandatory parameter '%s'", FILES_INIT_PARAM));
         files = param.split(" ");
+
+        param = config.getInitParameter(CACHE_TIMEOUT_INIT_PARAM);
+        cacheTimeout = param == null ? 0 : Long.parseLong(param);
+        param = config.getInitParameter(MAX_CACHE_SIZE_INIT_PARAM);
+        maxCacheSize = param == null ? 1024 : Integer.parseInt(param);
     }
 
     @Override
@@ -91,11 +112,7 @@ public class TryFilesFilter implements Filter
             String file = files[i];
             String resolved = resolve(httpRequest, file);
 
-            URL url = request.getServletContext().getResource(resolved);
-            if (url == null)
-                continue;
-
-            if (Files.isReadable(toPath(url)))
+            if (isReadable(httpRequest.getServletContext(), resolved))
             {
                 chain.doFilter(httpRequest, httpResponse);
                 return;
@@ -106,6 +123,52 @@ public class TryFilesFilter implements Filter
         fallback(httpRequest, httpResponse, chain, files[files.length - 1]);
     }
 
+    private boolean isReadable(ServletContext context, String resolved) throws IOException
+    {
+        if (cacheTimeout <= 0)
+            return isReadable(context.getResource(resolved));
+
+        long now = System.nanoTime();
+        Resolution resolution = cache.get(resolved);
+        if (resolution != null && now - resolution.time < TimeUnit.MILLISECONDS.toNanos(cacheTimeout))
+            return resolution.readable;
+
+        boolean readable = isReadable(context.getResource(resolved));
+        if (maxCacheSize > 0)
+        {
+            if (cache.size() >= maxCacheSize)
+                evict(now);
+            cache.put(resolved, new Resolution(now, readable));
+        }
+        return readable;
+    }
+
+    /**
+     * <p>Removes the expired resolutions and, if that is not enough,
+     * arbitrary ones until the cache is half full.</p>
+     *
+     * @param now the current nano time
+     */
+    private void evict(long now)
+    {
+        long timeout = TimeUnit.MILLISECONDS.toNanos(cacheTimeout);
+        for (Iterator<Resolution> values = cache.values().iterator(); values.hasNext();)
+        {
+            if (now - values.next().time >= timeout)
+                values.remove();
+        }
+        for (Iterator<String> keys = cache.keySet().iterator(); cache.size() > maxCacheSize / 2 && keys.hasNext();)
+        {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private boolean isReadable(URL url) throws IOException
+    {
+        return url != null && Files.isReadable(toPath(url));
+    }
+
     private Path toPath(URL url) throws IOException
     {
         try
@@ -138,5 +201,18 @@ public class TryFilesFilter implements Filter
     @Override
     public void destroy()
     {
+        cache.clear();
+    }
+
+    private static class Resolution
+    {
+        private final long time;
+        private final boolean readable;
+
+        private Resolution(long time, boolean readable)
+        {
+            this.time = time;
+            this.readable = readable;
+        }
     }
 }
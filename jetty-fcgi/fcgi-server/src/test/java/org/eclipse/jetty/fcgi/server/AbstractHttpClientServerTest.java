@@ -54,12 +54,14 @@ public abstract class AbstractHttpClientServerTest
     protected ServerConnector connector;
     protected HttpClient client;
     protected String scheme = HttpScheme.HTTP.asString();
+    protected boolean multiplexed;
+    protected ServerFCGIConnectionFactory fcgiConnectionFactory;
 
     public void start(Handler handler) throws Exception
     {
         server = new Server();
 
-        ServerFCGIConnectionFactory fcgiConnectionFactory = new ServerFCGIConnectionFactory(new HttpConfiguration());
+        fcgiConnectionFactory = new ServerFCGIConnectionFactory(new HttpConfiguration());
         serverBufferPool = new LeakTrackingByteBufferPool(new MappedByteBufferPool.Tagged());
         connector = new ServerConnector(server, null, null, serverBufferPool,
                 1, Math.max(1, Runtime.getRuntime().availableProcessors() / 2), fcgiConnectionFactory);
@@ -72,11 +74,13 @@ public abstract class AbstractHttpClientServerTest
         QueuedThreadPool executor = new QueuedThreadPool();
         executor.setName(executor.getName() + "-client");
 
-        client = new HttpClient(new HttpClientTransportOverFCGI(1, false, "")
+        client = new HttpClient(new HttpClientTransportOverFCGI(1, multiplexed, "")
         {
             @Override
             public HttpDestination newHttpDestination(Origin origin)
             {
+                if (isMultiplexed())
+                    return super.newHttpDestination(origin);
                 return new HttpDestinationOverFCGI(client, origin)
                 {
                     @Override
@@ -45,6 +45,8 @@ import org.eclipse.jetty.client.api.Result;
 import org.eclipse.jetty.client.util.BytesContentProvider;
 import org.eclipse.jetty.client.util.DeferredContentProvider;
 import org.eclipse.jetty.client.util.FutureResponseListener;
+import org.eclipse.jetty.fcgi.client.http.HttpClientTransportOverFCGI;
+import org.eclipse.jetty.fcgi.client.http.MultiplexHttpDestinationOverFCGI;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.eclipse.jetty.toolchain.test.IO;
@@ -55,6 +57,44 @@ import org.junit.Test;
 
 public class HttpClientTest extends AbstractHttpClientServerTest
 {
+    @Test
+    public void testMultiplexedWithMultiplexingServer() throws Exception
+    {
+        multiplexed = true;
+        start(new EmptyServerHandler());
+
+        ContentResponse response = client.GET(scheme + "://localhost:" + connector.getLocalPort());
+        Assert.assertEquals(200, response.getStatus());
+
+        // The reply to FCGI_GET_VALUES enables multiplexing.
+        MultiplexHttpDestinationOverFCGI destination = (MultiplexHttpDestinationOverFCGI)client.getDestination(scheme, "localhost", connector.getLocalPort());
+        long start = System.nanoTime();
+        while (destination.getMaxRequestsPerConnection() == 1 && TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5)
+            Thread.sleep(10);
+        HttpClientTransportOverFCGI transport = (HttpClientTransportOverFCGI)client.getTransport();
+        Assert.assertEquals(transport.getMaxRequestsPerConnection(), destination.getMaxRequestsPerConnection());
+
+        response = client.GET(scheme + "://localhost:" + connector.getLocalPort());
+        Assert.assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    public void testMultiplexedWithNonMultiplexingServer() throws Exception
+    {
+        multiplexed = true;
+        start(new EmptyServerHandler());
+        fcgiConnectionFactory.setMultiplexed(false);
+
+        for (int i = 0; i < 2; ++i)
+        {
+            ContentResponse response = client.GET(scheme + "://localhost:" + connector.getLocalPort());
+            Assert.assertEquals(200, response.getStatus());
+        }
+
+        MultiplexHttpDestinationOverFCGI destination = (MultiplexHttpDestinationOverFCGI)client.getDestination(scheme, "localhost", connector.getLocalPort());
+        Assert.assertEquals(1, destination.getMaxRequestsPerConnection());
+    }
+
     @Test
     public void testGETResponseWithoutContent() throws Exception
     {
@@ -28,15 +28,19 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.ContextHandler.Context;
 import org.eclipse.jetty.server.session.AbstractSession;
 import org.eclipse.jetty.server.session.AbstractSessionManager;
 import org.eclipse.jetty.server.session.MemSession;
+import org.eclipse.jetty.server.session.SerializedAttribute;
+import org.eclipse.jetty.server.session.SessionNearCache;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
@@ -92,6 +96,54 @@ public class InfinispanSessionManager extends AbstractSessionManager
      */
     private long _staleIntervalSec = 0;
     
+    /**
+     * Bookkeeping for the sessions held in memory: lru bounding and hit/miss statistics
+     */
+    protected final SessionNearCache _nearCache = new SessionNearCache(new SessionNearCache.SessionEvictor<Session>()
+    {
+        @Override
+        protected Session getSession(String id)
+        {
+            ConcurrentHashMap<String, Session> sessions = _sessions;
+            return sessions == null ? null : sessions.get(id);
+        }
+
+        @Override
+        protected Lock getLock(Session session)
+        {
+            return session._lock;
+        }
+
+        @Override
+        protected boolean isInUse(Session session)
+        {
+            return session._activeThreads.get() > 0;
+        }
+
+        @Override
+        protected void saveIfDirty(Session session) throws Exception
+        {
+            if (session.isDirty())
+            {
+                save(session);
+                session._dirty = false;
+            }
+        }
+
+        @Override
+        protected boolean removeSession(String id, Session session)
+        {
+            ConcurrentHashMap<String, Session> sessions = _sessions;
+            return sessions != null && sessions.remove(id, session);
+        }
+
+        @Override
+        protected void evicted(Session session)
+        {
+            _sessionsStats.decrement();
+        }
+    });
+    
     protected Scheduler.Task _task; //scavenge task
     protected Scheduler _scheduler;
     protected Scavenger _scavenger;
@@ -183,7 +235,7 @@ public class InfinispanSessionManager extends AbstractSessionManager
       
             out.writeLong(expiry); 
             out.writeLong(maxInactive);
-            out.writeObject(attributes);
+            out.writeObject(SerializedAttribute.wrap(attributes,_loader)); //each attribute serialized separately
         }
         
         private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException
@@ -459,7 +511,12 @@ public class InfinispanSessionManager extends AbstractSessionManager
             //cluster copy assumed to be the same as we were the last
             //node to manage it
             if (fresh.getLastNode().equals(getLastNode()))
+            {
+                _nearCache.confirm(getClusterId(), null);
                 return;
+            }
+
+            _nearCache.load(getClusterId(), null);
 
             setLastNode(getSessionIdManager().getWorkerName());
             
@@ -474,10 +531,11 @@ public class InfinispanSessionManager extends AbstractSessionManager
                 //reconcile attributes
                 for (String key:fresh.getAttributeMap().keySet())
                 {
-                    Object freshvalue = fresh.getAttribute(key);
+                    //keep the serialized form, it is deserialized on first use
+                    Object freshvalue = fresh.getAttributeMap().get(key);
 
                     //session does not already contain this attribute, so bind it
-                    if (getAttribute(key) == null)
+                    if (!getAttributeMap().containsKey(key))
                     { 
                         doPutOrRemove(key,freshvalue);
                         bindValue(key,freshvalue);
@@ -491,10 +549,9 @@ public class InfinispanSessionManager extends AbstractSessionManager
                 // cleanup, remove values from session, that don't exist in data anymore:
                 for (String key : getNames())
                 {
-                    if (fresh.getAttribute(key) == null)
+                    if (!fresh.getAttributeMap().containsKey(key))
                     {
-                        Object oldvalue = getAttribute(key);
-                        doPutOrRemove(key,null);
+                        Object oldvalue = deserializeAttribute(key,doPutOrRemove(key,null));
                         unbindValue(key,oldvalue);
                     }
                 }
@@ -586,6 +643,13 @@ public class InfinispanSessionManager extends AbstractSessionManager
 
 
     
+    public InfinispanSessionManager()
+    {
+        addBean(_nearCache);
+    }
+    
+    
+    
     /**
      * Start the session manager.
      *
@@ -615,6 +679,11 @@ public class InfinispanSessionManager extends AbstractSessionManager
  
         setScavengeInterval(getScavengeInterval());
         
+        //evict least recently used sessions on the server thread pool, where no session lock is held,
+        //or inline if there is none
+        Server server = getSessionHandler().getServer();
+        _nearCache.setExecutor(server == null ? SessionNearCache.INLINE : server.getThreadPool());
+
         super.doStart();
     }
 
@@ -638,6 +707,7 @@ public class InfinispanSessionManager extends AbstractSessionManager
         
         _sessions.clear();
         _sessions = null;
+        _nearCache.clear();
     }
     
     
@@ -691,6 +761,7 @@ public class InfinispanSessionManager extends AbstractSessionManager
                     if (LOG.isDebugEnabled()) LOG.debug("Session({}) not local to this session manager, removing from local memory", candidateId);
                     candidateSession.willPassivate();
                     _sessions.remove(candidateSession.getClusterId());
+                    _nearCache.remove(candidateSession.getClusterId());
                     _sessionsStats.decrement();
                 }
 
@@ -776,6 +847,37 @@ public class InfinispanSessionManager extends AbstractSessionManager
     
     
     
+    /**
+     * @return the near cache tracking the sessions held in memory
+     */
+    public SessionNearCache getNearCache()
+    {
+        return _nearCache;
+    }
+    
+    
+    /**
+     * @return the maximum number of sessions held in memory, or 0 for no limit
+     */
+    public int getMaxNearCacheSize()
+    {
+        return _nearCache.getMaxEntries();
+    }
+
+
+    /**
+     * Bound the number of sessions held in memory. Least recently used
+     * sessions not in use by a request are dropped from memory, and
+     * reloaded from the cluster when next needed.
+     * 
+     * @param size the maximum number of sessions held in memory, or 0 for no limit
+     */
+    public void setMaxNearCacheSize(int size)
+    {
+        _nearCache.setMaxEntries(size);
+    }
+    
+    
     public long getStaleIntervalSec()
     {
         return _staleIntervalSec;
@@ -801,6 +903,7 @@ public class InfinispanSessionManager extends AbstractSessionManager
         
         if (LOG.isDebugEnabled()) LOG.debug("Adding session({}) to session manager for context {} on worker {}",session.getClusterId(), getContextPath(getContext()),getSessionIdManager().getWorkerName() + " with lastnode="+((Session)session).getLastNode());
         _sessions.put(session.getClusterId(), (Session)session);
+        _nearCache.save(session.getClusterId(), null);
         
         try
         {     
@@ -872,6 +975,7 @@ public class InfinispanSessionManager extends AbstractSessionManager
                         //indicate that the session was reinflated
                         session.didActivate();
                         _sessionsStats.increment();
+                        _nearCache.load(idInCluster, null);
                         LOG.debug("getSession({}): loaded session from cluster", idInCluster);
                     }
                     return session;
@@ -887,6 +991,7 @@ public class InfinispanSessionManager extends AbstractSessionManager
             {
                //The session exists in this node's memory
                LOG.debug("getSession({}): returning session from local memory ", memSession.getClusterId());
+               _nearCache.access(idInCluster);
                 return memSession;
             }
         }
@@ -911,6 +1016,7 @@ public class InfinispanSessionManager extends AbstractSessionManager
         for (String key:keys)
         {
             Session session = _sessions.remove(key); //take the session out of the session list
+            _nearCache.remove(key);
             //If the session is dirty, then write it to the cluster.
             //If the session is simply stale do NOT write it to the cluster, as some other node
             //may have started managing that session - this means that the last accessed/expiry time
@@ -948,6 +1054,7 @@ public class InfinispanSessionManager extends AbstractSessionManager
     protected boolean removeSession(String idInCluster)
     {
         Session session = (Session)_sessions.remove(idInCluster);
+        _nearCache.remove(idInCluster);
         try
         {
             if (session != null)
@@ -977,6 +1084,8 @@ public class InfinispanSessionManager extends AbstractSessionManager
                 delete(session); //delete the old session from the cluster  
                 session.swapId(newClusterId, newNodeId); //update the session
                 _sessions.put(newClusterId, session); //put it into managed list under new key
+                _nearCache.remove(oldClusterId);
+                _nearCache.save(newClusterId, null);
                 save(session); //put the session under the new id into the cluster
             }
         }
@@ -38,11 +38,15 @@ import javax.servlet.ServletRequest;
 
 import org.eclipse.jetty.jaas.callback.ObjectCallback;
 import org.eclipse.jetty.jaas.callback.RequestParameterCallback;
+import org.eclipse.jetty.jaas.spi.LdapLoginModule;
 import org.eclipse.jetty.security.DefaultIdentityService;
 import org.eclipse.jetty.security.IdentityService;
 import org.eclipse.jetty.security.LoginService;
 import org.eclipse.jetty.server.UserIdentity;
 import org.eclipse.jetty.util.Loader;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.annotation.Name;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -52,6 +56,7 @@ import org.eclipse.jetty.util.log.Logger;
  * JAASLoginService
  *
  */
+@ManagedObject("JAAS Login Service")
 public class JAASLoginService extends AbstractLifeCycle implements LoginService
 {
     private static final Logger LOG = Log.getLogger(JAASLoginService.class);
@@ -296,6 +301,27 @@ public class JAASLoginService extends AbstractLifeCycle implements LoginService
     }
 
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Remove a user from the user caches of the login modules (see {@link LdapLoginModule}),
+     * so that the next login is checked against the user store.
+     *
+     * @param username the user name
+     */
+    @ManagedOperation(value="remove a user from the login module caches", impact="ACTION")
+    public void invalidateUser(@Name("username") String username)
+    {
+        if (username != null)
+            LdapLoginModule.invalidate(username);
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedOperation(value="remove all users from the login module caches", impact="ACTION")
+    public void invalidateAll()
+    {
+        LdapLoginModule.invalidate(null);
+    }
+
     /* ------------------------------------------------------------ */
     @SuppressWarnings({ "unchecked", "rawtypes" })
     private String[] getGroups (Subject subject)
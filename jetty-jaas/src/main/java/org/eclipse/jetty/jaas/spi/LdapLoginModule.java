@@ -25,6 +25,9 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.naming.Context;
 import javax.naming.NamingEnumeration;
@@ -43,6 +46,7 @@ import javax.security.auth.callback.UnsupportedCallbackException;
 import javax.security.auth.login.LoginException;
 
 import org.eclipse.jetty.jaas.callback.ObjectCallback;
+import org.eclipse.jetty.security.UserCache;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.security.Credential;
@@ -75,14 +79,26 @@ import org.eclipse.jetty.util.security.Credential;
  *    roleBaseDn="ou=groups,dc=example,dc=com"
  *    roleNameAttribute="cn"
  *    roleMemberAttribute="uniqueMember"
- *    roleObjectClass="groupOfUniqueNames";
+ *    roleObjectClass="groupOfUniqueNames"
+ *    cacheTime="0"
+ *    cacheSize="1000";
  *    };
  * </pre>
+ * If <code>cacheTime</code> is greater than 0, the information looked up for users that
+ * successfully authenticate by credential comparison is cached for that many seconds, in a cache
+ * of at most <code>cacheSize</code> users shared by all modules configured for the same
+ * directory. Binding logins are not cached. Cached users can be removed with
+ * {@link #invalidate(String)} (available via jmx on the {@link org.eclipse.jetty.jaas.JAASLoginService}).
  */
 public class LdapLoginModule extends AbstractLoginModule
 {
     private static final Logger LOG = Log.getLogger(LdapLoginModule.class);
 
+    /**
+     * caches of user information, keyed by directory and base dns
+     */
+    private static final ConcurrentMap<String,UserCache<UserInfo>> __caches = new ConcurrentHashMap<String,UserCache<UserInfo>>();
+
     /**
      * hostname of the ldap server
      */
@@ -176,6 +192,11 @@ public class LdapLoginModule extends AbstractLoginModule
 
     private DirContext _rootContext;
 
+    /**
+     * cache of user information, or null if not caching
+     */
+    private UserCache<UserInfo> _userCache;
+
     
     public class LDAPUserInfo extends UserInfo
     {
@@ -420,8 +441,22 @@ public class LdapLoginModule extends AbstractLoginModule
                 return bindingLogin(webUserName, webCredential);
             }
 
+            UserInfo userInfo = _userCache == null ? null : _userCache.get(webUserName);
+            if (userInfo != null)
+            {
+                setCurrentUser(new JAASUserInfo(userInfo));
+                if (webCredential instanceof String ? credentialLogin(Credential.getCredential((String) webCredential)) : credentialLogin(webCredential))
+                {
+                    //the cached roles are already loaded, but commit() needs the JAAS roles
+                    getCurrentUser().fetchRoles();
+                    return true;
+                }
+                //the credentials may have changed in the directory
+                _userCache.remove(webUserName);
+            }
+
             // This sets read and the credential
-            UserInfo userInfo = getUserInfo(webUserName);
+            userInfo = getUserInfo(webUserName);
 
             if (userInfo == null)
             {
@@ -439,7 +474,11 @@ public class LdapLoginModule extends AbstractLoginModule
             
             //only fetch roles if authenticated
             if (authed)
+            {
                 getCurrentUser().fetchRoles();
+                if (_userCache != null)
+                    _userCache.put(webUserName, new UserInfo(webUserName, userInfo.getCredential(), userInfo.getRoleNames()));
+            }
             
             return authed;
         }
@@ -590,6 +629,23 @@ public class LdapLoginModule extends AbstractLoginModule
         _roleNameAttribute = getOption(options, "roleNameAttribute", _roleNameAttribute);
         _debug = Boolean.parseBoolean(String.valueOf(getOption(options, "debug", Boolean.toString(_debug))));
 
+        long cacheTime = Long.parseLong(getOption(options, "cacheTime", "0"));
+        if (cacheTime > 0)
+        {
+            String key = _hostname + ":" + _port + "|" + _userBaseDn + "|" + _roleBaseDn;
+            UserCache<UserInfo> cache = __caches.get(key);
+            if (cache == null)
+            {
+                cache = new UserCache<UserInfo>();
+                UserCache<UserInfo> existing = __caches.putIfAbsent(key, cache);
+                if (existing != null)
+                    cache = existing;
+            }
+            cache.setTimeToLive(TimeUnit.SECONDS.toMillis(cacheTime));
+            cache.setMaxSize(Integer.parseInt(getOption(options, "cacheSize", Integer.toString(cache.getMaxSize()))));
+            _userCache = cache;
+        }
+
         try
         {
             _rootContext = new InitialDirContext(getEnvironment());
@@ -628,6 +684,23 @@ public class LdapLoginModule extends AbstractLoginModule
         return super.abort();
     }
 
+    /**
+     * Remove a user from the caches of all ldap login modules, so that the
+     * next login is checked against the directory.
+     *
+     * @param username the user name, or null to remove all users
+     */
+    public static void invalidate(String username)
+    {
+        for (UserCache<UserInfo> cache : __caches.values())
+        {
+            if (username == null)
+                cache.clear();
+            else
+                cache.remove(username);
+        }
+    }
+
     private String getOption(Map<String,?> options, String key, String defaultValue)
     {
         Object value = options.get(key);
@@ -0,0 +1,130 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.jaas.spi;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.Context;
+import javax.naming.directory.DirContext;
+import javax.naming.spi.InitialContextFactory;
+import javax.security.auth.Subject;
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.NameCallback;
+
+import org.eclipse.jetty.jaas.JAASRole;
+import org.eclipse.jetty.jaas.callback.ObjectCallback;
+import org.eclipse.jetty.util.security.Credential;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LdapLoginModuleTest
+{
+    public static class StubContextFactory implements InitialContextFactory
+    {
+        @Override
+        public Context getInitialContext(Hashtable<?, ?> environment)
+        {
+            return (Context)Proxy.newProxyInstance(DirContext.class.getClassLoader(),new Class<?>[]{DirContext.class},new InvocationHandler()
+            {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    return null;
+                }
+            });
+        }
+    }
+
+    public static class CountingLdapLoginModule extends LdapLoginModule
+    {
+        static final AtomicInteger __lookups = new AtomicInteger();
+
+        @Override
+        public UserInfo getUserInfo(String username) throws Exception
+        {
+            __lookups.incrementAndGet();
+            return new UserInfo(username,Credential.getCredential("secret"))
+            {
+                @Override
+                public List<String> doFetchRoles() throws Exception
+                {
+                    return Arrays.asList("admin");
+                }
+            };
+        }
+    }
+
+    @After
+    public void after()
+    {
+        LdapLoginModule.invalidate(null);
+    }
+
+    private Subject login(String username, String password) throws Exception
+    {
+        Map<String,String> options = new HashMap<>();
+        options.put("hostname","cachetest");
+        options.put("port","389");
+        options.put("contextFactory",StubContextFactory.class.getName());
+        options.put("cacheTime","60");
+
+        Subject subject = new Subject();
+        CallbackHandler handler = new CallbackHandler()
+        {
+            @Override
+            public void handle(Callback[] callbacks)
+            {
+                ((NameCallback)callbacks[0]).setName(username);
+                ((ObjectCallback)callbacks[1]).setObject(password);
+            }
+        };
+
+        LdapLoginModule module = new CountingLdapLoginModule();
+        module.initialize(subject,handler,new HashMap<String,Object>(),options);
+        Assert.assertTrue(module.login());
+        Assert.assertTrue(module.commit());
+        return subject;
+    }
+
+    @Test
+    public void testCachedLogin() throws Exception
+    {
+        CountingLdapLoginModule.__lookups.set(0);
+
+        Subject first = login("fred","secret");
+        Assert.assertEquals(1,CountingLdapLoginModule.__lookups.get());
+        Assert.assertTrue(first.getPrincipals().contains(new JAASRole("admin")));
+
+        //served from the cache, and committed with the same roles
+        Subject second = login("fred","secret");
+        Assert.assertEquals(1,CountingLdapLoginModule.__lookups.get());
+        Assert.assertTrue(second.getPrincipals().contains(new JAASRole("admin")));
+    }
+}
@@ -19,6 +19,9 @@
 package org.eclipse.jetty.jmx;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.WeakHashMap;
@@ -26,7 +29,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.management.AttributeList;
 import javax.management.InstanceNotFoundException;
+import javax.management.MBeanAttributeInfo;
 import javax.management.MBeanRegistrationException;
 import javax.management.MBeanServer;
 import javax.management.ObjectInstance;
@@ -84,6 +89,50 @@ public class MBeanContainer implements Container.InheritedListener, Dumpable
         return null;
     }
 
+    /**
+     * Read all the readable attributes of all the MBeans registered by this container.
+     * <p>
+     * The set of registered names is copied while holding the container lock, but the
+     * attributes are read with a single {@link MBeanServer#getAttributes(ObjectName, String[])}
+     * call per MBean outside of the lock.  MBeans that are unregistered during the
+     * snapshot, or that cannot be read, are omitted.
+     *
+     * @return map of object name to attribute values
+     */
+    public Map<ObjectName, AttributeList> snapshot()
+    {
+        List<ObjectName> names;
+        synchronized (this)
+        {
+            names = new ArrayList<>(_beans.values());
+        }
+
+        Map<ObjectName, AttributeList> snapshot = new LinkedHashMap<>();
+        for (ObjectName oname : names)
+        {
+            if (oname == null)
+                continue;
+            try
+            {
+                MBeanAttributeInfo[] infos = _mbeanServer.getMBeanInfo(oname).getAttributes();
+                List<String> readable = new ArrayList<>(infos.length);
+                for (MBeanAttributeInfo info : infos)
+                    if (info.isReadable())
+                        readable.add(info.getName());
+                snapshot.put(oname, _mbeanServer.getAttributes(oname, readable.toArray(new String[readable.size()])));
+            }
+            catch (InstanceNotFoundException e)
+            {
+                LOG.ignore(e);
+            }
+            catch (Exception e)
+            {
+                LOG.warn(e);
+            }
+        }
+        return snapshot;
+    }
+
     /**
      * Constructs MBeanContainer
      *
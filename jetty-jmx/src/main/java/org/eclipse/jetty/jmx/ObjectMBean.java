@@ -19,6 +19,9 @@
 package org.eclipse.jetty.jmx;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
@@ -26,6 +29,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -33,6 +37,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.management.Attribute;
 import javax.management.AttributeList;
@@ -67,6 +73,9 @@ import org.eclipse.jetty.util.log.Logger;
  * the merge of property bundles discovered by names related to all
  * superclasses and all superinterfaces.
  * <p>
+ * The MBeanInfo and the attribute accessors are introspected once per MBean and
+ * managed object class pair, and shared by all the instances of that pair.
+ * <p>
  * Attributes and methods exported may be "Object" and must exist on the
  * wrapped object, or "MBean" and must exist on a subclass of OBjectMBean
  * or "MObject" which exists on the wrapped object, but whose values are
@@ -78,8 +87,35 @@ public class ObjectMBean implements DynamicMBean
 
     private static Class<?>[] OBJ_ARG = new Class[]{Object.class};
 
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class,Object.class);
+
+    // introspection results by managed object class then by MBean class
+    private static final ClassValue<ConcurrentMap<Class<?>, Metadata>> __metadata = new ClassValue<ConcurrentMap<Class<?>, Metadata>>()
+    {
+        @Override
+        protected ConcurrentMap<Class<?>, Metadata> computeValue(Class<?> type)
+        {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    // whether a class or any of its super classes is a managed object
+    private static final ClassValue<Boolean> __managedObject = new ClassValue<Boolean>()
+    {
+        @Override
+        protected Boolean computeValue(Class<?> type)
+        {
+            for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass())
+                if (clazz.isAnnotationPresent(ManagedObject.class))
+                    return Boolean.TRUE;
+            return Boolean.FALSE;
+        }
+    };
+
     protected Object _managed;
-    private MBeanInfo _info;
+    private volatile Metadata _metadata;
+
+    // introspection state, only used while the Metadata is being built
     private Map<String, Method> _getters=new HashMap<String, Method>();
     private Map<String, Method> _setters=new HashMap<String, Method>();
     private Map<String, Method> _methods=new HashMap<String, Method>();
@@ -241,125 +277,160 @@ public class ObjectMBean implements DynamicMBean
 
     public MBeanInfo getMBeanInfo()
     {
-        try
+        return getMetadata()._info;
+    }
+
+    /* ------------------------------------------------------------ */
+    private Metadata getMetadata()
+    {
+        Metadata metadata = _metadata;
+        if (metadata == null)
         {
-            if (_info==null)
+            ConcurrentMap<Class<?>, Metadata> cache = __metadata.get(_managed.getClass());
+            metadata = cache.get(getClass());
+            if (metadata == null)
             {
-                // Start with blank lazy lists attributes etc.
-                String desc=null;
-                List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
-                List<MBeanConstructorInfo> constructors = new ArrayList<MBeanConstructorInfo>();
-                List<MBeanOperationInfo> operations = new ArrayList<MBeanOperationInfo>();
-                List<MBeanNotificationInfo> notifications = new ArrayList<MBeanNotificationInfo>();
-
-                // Find list of classes that can influence the mbean
-                Class<?> o_class=_managed.getClass();
-                List<Class<?>> influences = new ArrayList<Class<?>>();
-                influences.add(this.getClass()); // always add MBean itself
-                influences = findInfluences(influences, _managed.getClass());
+                metadata = newMetadata();
+                Metadata existing = cache.putIfAbsent(getClass(),metadata);
+                if (existing != null)
+                    metadata = existing;
+            }
+            _metadata = metadata;
+        }
+        return metadata;
+    }
+
+    /* ------------------------------------------------------------ */
+    private Metadata newMetadata()
+    {
+        try
+        {
+            // Start with blank lazy lists attributes etc.
+            String desc=null;
+            List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+            List<MBeanConstructorInfo> constructors = new ArrayList<MBeanConstructorInfo>();
+            List<MBeanOperationInfo> operations = new ArrayList<MBeanOperationInfo>();
+            List<MBeanNotificationInfo> notifications = new ArrayList<MBeanNotificationInfo>();
+
+            // Find list of classes that can influence the mbean
+            Class<?> o_class=_managed.getClass();
+            List<Class<?>> influences = new ArrayList<Class<?>>();
+            influences.add(this.getClass()); // always add MBean itself
+            influences = findInfluences(influences, _managed.getClass());
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Influence Count: {}", influences.size() );
 
+            // Process Type Annotations
+            ManagedObject primary = o_class.getAnnotation( ManagedObject.class);
+
+            if ( primary != null )
+            {
+                desc = primary.value();
+            }
+            else
+            {
                 if (LOG.isDebugEnabled())
-                    LOG.debug("Influence Count: {}", influences.size() );
+                    LOG.debug("No @ManagedObject declared on {}", _managed.getClass());
+            }
 
-                // Process Type Annotations
-                ManagedObject primary = o_class.getAnnotation( ManagedObject.class);
 
-                if ( primary != null )
-                {
-                    desc = primary.value();
-                }
-                else
+            // For each influence
+            for (int i=0;i<influences.size();i++)
+            {
+                Class<?> oClass = influences.get(i);
+
+                ManagedObject typeAnnotation = oClass.getAnnotation( ManagedObject.class );
+
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Influenced by: " + oClass.getCanonicalName() );
+
+                if ( typeAnnotation == null )
                 {
                     if (LOG.isDebugEnabled())
-                        LOG.debug("No @ManagedObject declared on {}", _managed.getClass());
+                        LOG.debug("Annotations not found for: {}", oClass.getCanonicalName() );
+                    continue;
                 }
 
+                // Process Method Annotations
 
-                // For each influence
-                for (int i=0;i<influences.size();i++)
+                for (Method method : oClass.getDeclaredMethods())
                 {
-                    Class<?> oClass = influences.get(i);
-
-                    ManagedObject typeAnnotation = oClass.getAnnotation( ManagedObject.class );
-
-                    if (LOG.isDebugEnabled())
-                        LOG.debug("Influenced by: " + oClass.getCanonicalName() );
+                    ManagedAttribute methodAttributeAnnotation = method.getAnnotation(ManagedAttribute.class);
 
-                    if ( typeAnnotation == null )
+                    if (methodAttributeAnnotation != null)
                     {
+                        // TODO sort out how a proper name could get here, its a method name as an attribute at this point.
                         if (LOG.isDebugEnabled())
-                            LOG.debug("Annotations not found for: {}", oClass.getCanonicalName() );
-                        continue;
-                    }
-
-                    // Process Method Annotations
-
-                    for (Method method : oClass.getDeclaredMethods())
-                    {
-                        ManagedAttribute methodAttributeAnnotation = method.getAnnotation(ManagedAttribute.class);
-
-                        if (methodAttributeAnnotation != null)
+                            LOG.debug("Attribute Annotation found for: {}", method.getName());
+                        MBeanAttributeInfo mai = defineAttribute(method,methodAttributeAnnotation);
+                        if ( mai != null )
                         {
-                            // TODO sort out how a proper name could get here, its a method name as an attribute at this point.
-                            if (LOG.isDebugEnabled())
-                                LOG.debug("Attribute Annotation found for: {}", method.getName());
-                            MBeanAttributeInfo mai = defineAttribute(method,methodAttributeAnnotation);
-                            if ( mai != null )
-                            {
-                                attributes.add(mai);
-                            }
+                            attributes.add(mai);
                         }
+                    }
 
-                        ManagedOperation methodOperationAnnotation = method.getAnnotation(ManagedOperation.class);
+                    ManagedOperation methodOperationAnnotation = method.getAnnotation(ManagedOperation.class);
 
-                        if (methodOperationAnnotation != null)
+                    if (methodOperationAnnotation != null)
+                    {
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Method Annotation found for: {}", method.getName());
+                        MBeanOperationInfo oi = defineOperation(method,methodOperationAnnotation);
+                        if (oi != null)
                         {
-                            if (LOG.isDebugEnabled())
-                                LOG.debug("Method Annotation found for: {}", method.getName());
-                            MBeanOperationInfo oi = defineOperation(method,methodOperationAnnotation);
-                            if (oi != null)
-                            {
-                                operations.add(oi);
-                            }
+                            operations.add(oi);
                         }
                     }
-
                 }
 
-                _info = new MBeanInfo(o_class.getName(),
-                                desc,
-                                (MBeanAttributeInfo[])attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
-                                (MBeanConstructorInfo[])constructors.toArray(new MBeanConstructorInfo[constructors.size()]),
-                                (MBeanOperationInfo[])operations.toArray(new MBeanOperationInfo[operations.size()]),
-                                (MBeanNotificationInfo[])notifications.toArray(new MBeanNotificationInfo[notifications.size()]));
             }
+
+            MBeanInfo info = new MBeanInfo(o_class.getName(),
+                            desc,
+                            (MBeanAttributeInfo[])attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+                            (MBeanConstructorInfo[])constructors.toArray(new MBeanConstructorInfo[constructors.size()]),
+                            (MBeanOperationInfo[])operations.toArray(new MBeanOperationInfo[operations.size()]),
+                            (MBeanNotificationInfo[])notifications.toArray(new MBeanNotificationInfo[notifications.size()]));
+
+            Map<String, Accessor> getters = new HashMap<>();
+            for (Map.Entry<String, Method> entry : _getters.entrySet())
+                getters.put(entry.getKey(),new Accessor(entry.getValue(),entry.getValue().getDeclaringClass().isInstance(this),true));
+            Map<String, Accessor> setters = new HashMap<>();
+            for (Map.Entry<String, Method> entry : _setters.entrySet())
+                if (entry.getValue() != null)
+                    setters.put(entry.getKey(),new Accessor(entry.getValue(),entry.getValue().getDeclaringClass().isInstance(this),false));
+
+            return new Metadata(info,getters,setters,new HashMap<>(_methods),new HashSet<>(_convert));
         }
         catch(RuntimeException e)
         {
             LOG.warn(e);
             throw e;
         }
-        return _info;
     }
 
 
     /* ------------------------------------------------------------ */
     public Object getAttribute(String name) throws AttributeNotFoundException, MBeanException, ReflectionException
     {
-        Method getter = (Method) _getters.get(name);
+        Accessor getter = getMetadata()._getters.get(name);
         if (getter == null)
         {
             throw new AttributeNotFoundException(name);
         }
+        return getAttribute(getter);
+    }
 
+    /* ------------------------------------------------------------ */
+    private Object getAttribute(Accessor getter) throws AttributeNotFoundException, ReflectionException
+    {
         try
         {
-            Object o = _managed;
-            if (getter.getDeclaringClass().isInstance(this))
-                o = this; // mbean method
+            Object o = getter._onMBean ? this : _managed;
 
             // get the attribute
-            Object r=getter.invoke(o, (java.lang.Object[]) null);
+            Object r=getter.get(o);
 
             // convert to ObjectName if the type has the @ManagedObject annotation
             if (r!=null )
@@ -394,27 +465,9 @@ public class ObjectMBean implements DynamicMBean
                         r = on;
                     }
                 }
-                else
+                else if (__managedObject.get(r.getClass()))
                 {
-                    Class<?> clazz = r.getClass();
-                    
-                    while (clazz != null)
-                    {
-                        if (clazz.isAnnotationPresent(ManagedObject.class))
-                        {
-                            ObjectName mbean = _mbeanContainer.findMBean(r);
-
-                            if (mbean != null)
-                            {    
-                                return mbean;
-                            }
-                            else
-                            {
-                                return null;
-                            }
-                        }                   
-                        clazz = clazz.getSuperclass();
-                    }              
+                    return _mbeanContainer.findMBean(r);
                 }
             }
 
@@ -435,12 +488,16 @@ public class ObjectMBean implements DynamicMBean
     /* ------------------------------------------------------------ */
     public AttributeList getAttributes(String[] names)
     {
+        Map<String, Accessor> getters = getMetadata()._getters;
         AttributeList results = new AttributeList(names.length);
         for (int i = 0; i < names.length; i++)
         {
             try
             {
-                results.add(new Attribute(names[i], getAttribute(names[i])));
+                Accessor getter = getters.get(names[i]);
+                if (getter == null)
+                    throw new AttributeNotFoundException(names[i]);
+                results.add(new Attribute(names[i], getAttribute(getter)));
             }
             catch (Exception e)
             {
@@ -450,6 +507,35 @@ public class ObjectMBean implements DynamicMBean
         return results;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Read all the attributes of the MBean in a single pass over the
+     * introspected getters.
+     * <p>
+     * Unlike {@link #getAttributes(String[])}, attributes that cannot be read
+     * are skipped without a warning, so that periodic monitoring of many beans
+     * is cheap.
+     *
+     * @return the list of all readable attributes
+     */
+    public AttributeList snapshot()
+    {
+        Metadata metadata = getMetadata();
+        AttributeList results = new AttributeList(metadata._getters.size());
+        for (Map.Entry<String, Accessor> entry : metadata._getters.entrySet())
+        {
+            try
+            {
+                results.add(new Attribute(entry.getKey(), getAttribute(entry.getValue())));
+            }
+            catch (Exception e)
+            {
+                LOG.ignore(e);
+            }
+        }
+        return results;
+    }
+
     /* ------------------------------------------------------------ */
     public void setAttribute(Attribute attr) throws AttributeNotFoundException, InvalidAttributeValueException, MBeanException, ReflectionException
     {
@@ -458,24 +544,23 @@ public class ObjectMBean implements DynamicMBean
 
         if (LOG.isDebugEnabled())
             LOG.debug("setAttribute " + _managed + ":" +attr.getName() + "=" + attr.getValue());
-        Method setter = (Method) _setters.get(attr.getName());
+        Metadata metadata = getMetadata();
+        Accessor setter = metadata._setters.get(attr.getName());
         if (setter == null)
             throw new AttributeNotFoundException(attr.getName());
         try
         {
-            Object o = _managed;
-            if (setter.getDeclaringClass().isInstance(this))
-                o = this;
+            Object o = setter._onMBean ? this : _managed;
 
             // get the value
             Object value = attr.getValue();
 
             // convert from ObjectName if need be
-            if (value!=null && _convert.contains(attr.getName()))
+            if (value!=null && metadata._convert.contains(attr.getName()))
             {
                 if (value.getClass().isArray())
                 {
-                    Class<?> t=setter.getParameterTypes()[0].getComponentType();
+                    Class<?> t=setter._method.getParameterTypes()[0].getComponentType();
                     Object na = Array.newInstance(t,Array.getLength(value));
                     for (int i=Array.getLength(value);i-->0;)
                         Array.set(na, i, _mbeanContainer.findBean((ObjectName)Array.get(value, i)));
@@ -486,7 +571,7 @@ public class ObjectMBean implements DynamicMBean
             }
 
             // do the setting
-            setter.invoke(o, new Object[]{ value });
+            setter._method.invoke(o, new Object[]{ value });
         }
         catch (IllegalAccessException e)
         {
@@ -540,7 +625,7 @@ public class ObjectMBean implements DynamicMBean
         try
         {
             Thread.currentThread().setContextClassLoader(_loader);
-            Method method = (Method) _methods.get(methodKey);
+            Method method = getMetadata()._methods.get(methodKey);
             if (method == null)
                 throw new NoSuchMethodException(methodKey);
 
@@ -916,4 +1001,72 @@ public class ObjectMBean implements DynamicMBean
         }
         return false;
     }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * The result of introspecting an MBean class and managed object class pair.
+     */
+    private static class Metadata
+    {
+        private final MBeanInfo _info;
+        private final Map<String, Accessor> _getters;
+        private final Map<String, Accessor> _setters;
+        private final Map<String, Method> _methods;
+        private final Set<String> _convert;
+
+        private Metadata(MBeanInfo info, Map<String, Accessor> getters, Map<String, Accessor> setters, Map<String, Method> methods, Set<String> convert)
+        {
+            _info = info;
+            _getters = Collections.unmodifiableMap(getters);
+            _setters = Collections.unmodifiableMap(setters);
+            _methods = Collections.unmodifiableMap(methods);
+            _convert = Collections.unmodifiableSet(convert);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * An attribute getter or setter, with a MethodHandle for getters
+     * that can be invoked without reflection.
+     */
+    private static class Accessor
+    {
+        private final Method _method;
+        private final MethodHandle _handle;
+        private final boolean _onMBean;
+
+        private Accessor(Method method, boolean onMBean, boolean getter)
+        {
+            _method = method;
+            _onMBean = onMBean;
+            MethodHandle handle = null;
+            if (getter)
+            {
+                try
+                {
+                    handle = MethodHandles.publicLookup().unreflect(method).asType(GETTER_TYPE);
+                }
+                catch (IllegalAccessException e)
+                {
+                    // not publicly accessible, so use reflection
+                    LOG.ignore(e);
+                }
+            }
+            _handle = handle;
+        }
+
+        private Object get(Object o) throws IllegalAccessException, InvocationTargetException
+        {
+            if (_handle == null)
+                return _method.invoke(o, (Object[])null);
+            try
+            {
+                return (Object)_handle.invokeExact(o);
+            }
+            catch (Throwable e)
+            {
+                throw new InvocationTargetException(e);
+            }
+        }
+    }
 }
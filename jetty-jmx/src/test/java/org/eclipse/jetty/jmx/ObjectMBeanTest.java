@@ -19,11 +19,14 @@
 package org.eclipse.jetty.jmx;
 
 import java.lang.management.ManagementFactory;
+import java.util.Map;
 
 import javax.management.Attribute;
+import javax.management.AttributeList;
 import javax.management.MBeanInfo;
 import javax.management.MBeanOperationInfo;
 import javax.management.MBeanParameterInfo;
+import javax.management.ObjectName;
 
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -211,6 +214,47 @@ public class ObjectMBeanTest
 
     }
 
+    @Test
+    public void testSharedMBeanInfo() throws Exception
+    {
+        Derived derived1 = new Derived();
+        Derived derived2 = new Derived();
+        ObjectMBean mbean1 = (ObjectMBean)ObjectMBean.mbeanFor(derived1);
+        ObjectMBean mbean2 = (ObjectMBean)ObjectMBean.mbeanFor(derived2);
+        mbean1.setMBeanContainer(container);
+        mbean2.setMBeanContainer(container);
+
+        Assert.assertSame("introspection is shared", mbean1.getMBeanInfo(), mbean2.getMBeanInfo());
+
+        // the shared accessors still read each instance
+        derived2.setFullName("Other Name");
+        Assert.assertEquals("Full Name", mbean1.getAttribute("fname"));
+        Assert.assertEquals("Other Name", mbean2.getAttribute("fname"));
+    }
+
+    @Test
+    public void testSnapshot() throws Exception
+    {
+        Derived derived = new Derived();
+        container.beanAdded(null,derived);
+        container.beanAdded(null,derived.getManagedInstance());
+
+        ObjectName oname = container.findMBean(derived);
+        Assert.assertNotNull(oname);
+
+        Map<ObjectName, AttributeList> snapshot = container.snapshot();
+        Assert.assertTrue(snapshot.containsKey(oname));
+        Assert.assertTrue(snapshot.containsKey(container.findMBean(derived.getManagedInstance())));
+
+        AttributeList attributes = snapshot.get(oname);
+        Assert.assertEquals("attribute count does not match", 6, attributes.size());
+        for (Attribute attribute : attributes.asList())
+        {
+            Object expected = container.getMBeanServer().getAttribute(oname,attribute.getName());
+            Assert.assertEquals(attribute.getName(), expected, attribute.getValue());
+        }
+    }
+
     @Test
     public void testMethodNameMining() throws Exception
     {
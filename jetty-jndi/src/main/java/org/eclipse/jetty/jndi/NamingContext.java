@@ -22,10 +22,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.naming.Binding;
 import javax.naming.CompoundName;
@@ -54,6 +55,11 @@ import org.eclipse.jetty.util.log.Logger;
  * <p>
  * <b>Notes:</b>
  * All Names are expected to be Compound, not Composite.
+ * <p>
+ * Bindings are held in a concurrent map, so lookups do not lock and see
+ * bindings made by other threads. Names passed as Strings to
+ * {@link #lookup(String)} and {@link #lookupLink(String)} are parsed once
+ * and the canonical Name is cached.
  */
 @SuppressWarnings("unchecked")
 public class NamingContext implements Context, Cloneable, Dumpable
@@ -63,14 +69,16 @@ public class NamingContext implements Context, Cloneable, Dumpable
     public static final String DEEP_BINDING = "org.eclipse.jetty.jndi.deepBinding";
     public static final String LOCK_PROPERTY = "org.eclipse.jetty.jndi.lock";
     public static final String UNLOCK_PROPERTY = "org.eclipse.jetty.jndi.unlock";
+    private static final int MAX_CACHED_NAMES = Integer.getInteger("org.eclipse.jetty.jndi.maxCachedNames",512);
 
     protected final Hashtable<String,Object> _env = new Hashtable<String,Object>();
     private boolean _supportDeepBinding = false;
-    protected Map<String,Binding> _bindings = new HashMap<String,Binding>();
+    protected Map<String,Binding> _bindings = new ConcurrentHashMap<String,Binding>();
 
     protected NamingContext _parent = null;
     protected String _name = null;
     protected NameParser _parser = null;
+    private final ConcurrentMap<String,Name> _names = new ConcurrentHashMap<>();
     private Collection<Listener> _listeners;
 
     /*------------------------------------------------*/
@@ -180,6 +188,7 @@ public class NamingContext implements Context, Cloneable, Dumpable
     public void setNameParser (NameParser parser)
     {
         _parser = parser;
+        _names.clear();
     }
 
 
@@ -575,7 +584,7 @@ public class NamingContext implements Context, Cloneable, Dumpable
     public Object lookup (String name)
         throws NamingException
     {
-        return lookup (_parser.parse(name));
+        return lookup (toCachedName(name));
     }
 
 
@@ -688,7 +697,7 @@ public class NamingContext implements Context, Cloneable, Dumpable
     public Object lookupLink (String name)
         throws NamingException
     {
-        return lookupLink (_parser.parse(name));
+        return lookupLink (toCachedName(name));
     }
 
 
@@ -1276,7 +1285,7 @@ public class NamingContext implements Context, Cloneable, Dumpable
 
         if (binding!=null)
         {
-            if (_bindings.containsKey(key)) {
+            if (_bindings.putIfAbsent(key,binding)!=null) {
                 if(_supportDeepBinding) {
                     // quietly return (no exception)
                     // this is jndi spec breaking, but is added to support broken
@@ -1285,7 +1294,6 @@ public class NamingContext implements Context, Cloneable, Dumpable
                 }
                 throw new NameAlreadyBoundException(name.toString());
             }
-            _bindings.put(key,binding);
         }
     }
 
@@ -1356,6 +1364,33 @@ public class NamingContext implements Context, Cloneable, Dumpable
         return canonicalName;
     }
 
+    /*------------------------------------------------*/
+    /**
+     * Parse a name with the parser of this context, using the cache
+     * of previously parsed canonical names.
+     * <p>
+     * The returned Name may be shared, so it must not be modified.
+     *
+     * @param name the name to parse
+     * @return the canonical Name
+     * @throws NamingException if the name cannot be parsed
+     */
+    protected Name toCachedName (String name)
+        throws NamingException
+    {
+        Name cname = _names.get(name);
+        if (cname == null)
+        {
+            cname = toCanonicalName(_parser.parse(name));
+            if (cname == null)
+                return null;
+            if (_names.size() >= MAX_CACHED_NAMES)
+                _names.clear();
+            _names.put(name,cname);
+        }
+        return cname;
+    }
+
     /* ------------------------------------------------------------ */
     public boolean isLocked()
     {
@@ -27,6 +27,9 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.naming.Context;
 import javax.naming.InitialContext;
@@ -275,6 +278,64 @@ public class TestJNDI
     
     
 
+    @Test
+    public void testConcurrentLookup() throws Exception
+    {
+        final NamingContext root = new NamingContext(null,"root",null,new javaNameParser());
+        Context env = root.createSubcontext("env");
+        env.bind("x","value");
+
+        final int threads = 4;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int t=0; t<threads; t++)
+        {
+            new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for (int i=0; i<10000; i++)
+                            assertEquals("value",root.lookup("env/x"));
+                    }
+                    catch (Throwable th)
+                    {
+                        failure.set(th);
+                    }
+                    finally
+                    {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        for (int i=0; i<1000; i++)
+            env.bind("y"+i,i);
+
+        assertTrue(latch.await(30,TimeUnit.SECONDS));
+        if (failure.get()!=null)
+            throw new AssertionError(failure.get());
+
+        for (int i=0; i<1000; i++)
+            assertEquals(i,root.lookup("env/y"+i));
+
+        // cached names must not hide changes to the bindings
+        env.unbind("x");
+        try
+        {
+            root.lookup("env/x");
+            fail("x should be unbound");
+        }
+        catch (NameNotFoundException e)
+        {
+            //expected
+        }
+        env.bind("x","other");
+        assertEquals("other",root.lookup("env/x"));
+    }
+
     @Test
     public void testIt() throws Exception
     {
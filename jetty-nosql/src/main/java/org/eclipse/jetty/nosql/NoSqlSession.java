@@ -168,6 +168,9 @@ public class NoSqlSession extends MemSession
         {
             _version=_manager.save(this,_version,activateAfterSave);
             _lastSync=getAccessed();
+            //a session not reactivated after the save is leaving memory
+            if (activateAfterSave)
+                _manager._nearCache.save(getClusterId(),_version);
         }
     }
 
@@ -177,10 +180,32 @@ public class NoSqlSession extends MemSession
     {
         synchronized (this)
         {
-            _version=_manager.refresh(this,_version);
+            //trust a version recently confirmed against the store
+            if (_manager._nearCache.isCurrent(getClusterId(),_version))
+                return;
+
+            Object version=_version;
+            _version=_manager.refresh(this,version);
+            if (_version!=null)
+            {
+                //the store hands back the version we held if no reload was needed
+                if (_version.equals(version))
+                    _manager._nearCache.confirm(getClusterId(),_version);
+                else
+                    _manager._nearCache.load(getClusterId(),_version);
+            }
         }
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @return true if a request is currently using this session
+     */
+    protected boolean isActive()
+    {
+        return _active.get()>0;
+    }
+
     /* ------------------------------------------------------------ */
     public boolean isDirty()
     {
@@ -25,9 +25,11 @@ import java.util.concurrent.TimeUnit;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.SessionManager;
 import org.eclipse.jetty.server.session.AbstractSession;
 import org.eclipse.jetty.server.session.AbstractSessionManager;
+import org.eclipse.jetty.server.session.SessionNearCache;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
@@ -48,6 +50,21 @@ public abstract class NoSqlSessionManager extends AbstractSessionManager impleme
     private boolean _invalidateOnStop;
     private boolean _preserveOnStop = true;
     private boolean _saveAllAttributes;
+
+    protected final SessionNearCache _nearCache=new SessionNearCache(new SessionNearCache.Evictor()
+    {
+        @Override
+        public boolean evict(String id)
+        {
+            return evictSession(id);
+        }
+    });
+
+    /* ------------------------------------------------------------ */
+    public NoSqlSessionManager()
+    {
+        addBean(_nearCache);
+    }
     
     /* ------------------------------------------------------------ */
     /**
@@ -56,6 +73,10 @@ public abstract class NoSqlSessionManager extends AbstractSessionManager impleme
     @Override
     public void doStart() throws Exception
     {
+        //evict least recently used sessions on the server thread pool, as sessions
+        //update the near cache while holding their own lock, or inline if there is none
+        Server server = getSessionHandler().getServer();
+        _nearCache.setExecutor(server == null ? SessionNearCache.INLINE : server.getThreadPool());
         super.doStart();
        
     }
@@ -68,7 +89,7 @@ public abstract class NoSqlSessionManager extends AbstractSessionManager impleme
         {
             //add into memory
             _sessions.put(session.getClusterId(),(NoSqlSession)session);
-            //add into db
+            //add into db, which also puts it in the near cache
             ((NoSqlSession)session).save(true);
         }
     }
@@ -99,6 +120,7 @@ public abstract class NoSqlSessionManager extends AbstractSessionManager impleme
                 {
                     __log.debug("session loaded ", idInCluster);
                     _sessionsStats.increment();
+                    _nearCache.load(idInCluster,session.getVersion());
                 }
                 
                 //check if the session we just loaded has actually expired, maybe while we weren't running
@@ -112,6 +134,8 @@ public abstract class NoSqlSessionManager extends AbstractSessionManager impleme
             else
                 __log.debug("session does not exist {}", idInCluster);
         }
+        else
+            _nearCache.access(idInCluster);
 
         return session;
     }
@@ -144,6 +168,7 @@ public abstract class NoSqlSessionManager extends AbstractSessionManager impleme
                     //and remove from memory
                     session.save(false);
                     _sessions.remove(session.getClusterId());
+                    _nearCache.remove(session.getClusterId());
                 }
                 else
                 {
@@ -179,6 +204,7 @@ public abstract class NoSqlSessionManager extends AbstractSessionManager impleme
     protected boolean removeSession(String idInCluster)
     {
         NoSqlSession session = _sessions.remove(idInCluster);
+        _nearCache.remove(idInCluster);
 
         try
         {
@@ -196,6 +222,38 @@ public abstract class NoSqlSessionManager extends AbstractSessionManager impleme
 
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Drop a least recently used session from memory on behalf of the near cache.
+     * The session is saved and passivated, but remains valid in the store so that
+     * it can be reloaded by the next request that uses it.
+     *
+     * @param idInCluster the session id
+     * @return true if the session is no longer in memory, false if it is in use
+     */
+    protected boolean evictSession(String idInCluster)
+    {
+        NoSqlSession session = _sessions.get(idInCluster);
+        if (session == null)
+            return true;
+
+        //do not wait for the lock of a session in use, as evictions may run inline
+        if (session.isActive())
+            return false;
+
+        synchronized (session)
+        {
+            if (session.isActive())
+                return false;
+
+            session.save(false);
+            if (!_sessions.remove(idInCluster,session))
+                return false;
+        }
+        _sessionsStats.decrement();
+        return true;
+    }
+
     /* ------------------------------------------------------------ */
     protected void expire( String idInCluster )
     {
@@ -407,6 +465,8 @@ public abstract class NoSqlSessionManager extends AbstractSessionManager impleme
                 session.setClusterId(newClusterId);
                 session.setNodeId(newNodeId);
                 _sessions.put(newClusterId, session);
+                _nearCache.remove(oldClusterId);
+                _nearCache.save(newClusterId,session.getVersion());
             }
             catch (Exception e)
             {
@@ -417,6 +477,59 @@ public abstract class NoSqlSessionManager extends AbstractSessionManager impleme
     }
 
     
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the near cache tracking the sessions held in memory
+     */
+    public SessionNearCache getNearCache()
+    {
+        return _nearCache;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the maximum number of sessions held in memory, or 0 for no limit
+     */
+    public int getMaxNearCacheSize()
+    {
+        return _nearCache.getMaxEntries();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Bound the number of sessions held in memory. Least recently used
+     * sessions that are not in use by a request are saved and dropped from
+     * memory, to be reloaded from the store when next needed.
+     *
+     * @param size the maximum number of sessions held in memory, or 0 for no limit
+     */
+    public void setMaxNearCacheSize(int size)
+    {
+        _nearCache.setMaxEntries(size);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the time in ms a session version confirmed against the store is trusted
+     */
+    public long getNearCacheVerifyInterval()
+    {
+        return _nearCache.getVerifyInterval();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * When the stale period requires the store to be checked, a session whose
+     * version was confirmed against the store less than this many ms ago is
+     * used as is, without another round trip.
+     *
+     * @param ms the verify interval in ms, 0 to always check the store
+     */
+    public void setNearCacheVerifyInterval(long ms)
+    {
+        _nearCache.setVerifyInterval(ms);
+    }
+
     /* ------------------------------------------------------------ */
     abstract protected NoSqlSession loadSession(String clusterId);
     
@@ -32,6 +32,7 @@ import java.util.Set;
 import org.eclipse.jetty.nosql.NoSqlSession;
 import org.eclipse.jetty.nosql.NoSqlSessionManager;
 import org.eclipse.jetty.server.SessionIdManager;
+import org.eclipse.jetty.server.session.SerializedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
@@ -283,7 +284,8 @@ public class MongoSessionManager extends NoSqlSessionManager
                     
                 for (String name : names)
                 {
-                    Object value = session.getAttribute(name);
+                    //attributes not used since the session was loaded are written back as is
+                    Object value = session.getAttributeMap().get(name);
                     if (value == null)
                         unsets.put(getContextKey() + "." + encodeName(name),1);
                     else
@@ -385,10 +387,10 @@ public class MongoSessionManager extends NoSqlSessionManager
                         continue;
 
                     String attr = decodeName(name);
-                    Object value = decodeValue(attrs.get(name));
+                    Object value = decodeAttribute(attrs.get(name));
 
                     //session does not already contain this attribute, so bind it
-                    if (session.getAttribute(attr) == null)
+                    if (!session.getAttributeMap().containsKey(attr))
                     { 
                         session.doPutOrRemove(attr,value);
                         session.bindValue(attr,value);
@@ -478,7 +480,7 @@ public class MongoSessionManager extends NoSqlSessionManager
                         continue;
                     
                     String attr = decodeName(name);
-                    Object value = decodeValue(attrs.get(name));
+                    Object value = decodeAttribute(attrs.get(name));
 
                     session.doPutOrRemove(attr,value);
                     session.bindValue(attr,value);
@@ -594,7 +596,12 @@ public class MongoSessionManager extends NoSqlSessionManager
     /*------------------------------------------------------------ */
     protected Object encodeName(Object value) throws IOException
     {
-        if (value instanceof Number || value instanceof String || value instanceof Boolean || value instanceof Date)
+        if (value instanceof SerializedAttribute)
+        {
+            //never deserialized, so unchanged
+            return ((SerializedAttribute)value).getBytes();
+        }
+        else if (value instanceof Number || value instanceof String || value instanceof Boolean || value instanceof Date)
         {
             return value;
         }
@@ -623,6 +630,23 @@ public class MongoSessionManager extends NoSqlSessionManager
         return bout.toByteArray();
     }
 
+    /*------------------------------------------------------------ */
+    /**
+     * Decode the value of a top level session attribute. Serialized values are
+     * not deserialized here, but by the session when the attribute is first used.
+     *
+     * @param valueToDecode the value held by the store
+     * @return the attribute value
+     * @throws IOException if the value cannot be decoded
+     * @throws ClassNotFoundException if a class of the value cannot be found
+     */
+    protected Object decodeAttribute(final Object valueToDecode) throws IOException, ClassNotFoundException
+    {
+        if (valueToDecode instanceof byte[])
+            return new SerializedAttribute((byte[])valueToDecode);
+        return decodeValue(valueToDecode);
+    }
+
     /*------------------------------------------------------------ */
     protected Object decodeValue(final Object valueToDecode) throws IOException, ClassNotFoundException
     {
@@ -77,6 +77,7 @@ public class ConnectHandler extends HandlerWrapper
     private long connectTimeout = 15000;
     private long idleTimeout = 30000;
     private int bufferSize = 4096;
+    private boolean nonBlockingTunnel;
 
     public ConnectHandler()
     {
@@ -160,6 +161,31 @@ public class ConnectHandler extends HandlerWrapper
         this.bufferSize = bufferSize;
     }
 
+    /**
+     * @return whether tunnelled data is read and written directly by the selector thread
+     * @see #setNonBlockingTunnel(boolean)
+     */
+    public boolean isNonBlockingTunnel()
+    {
+        return nonBlockingTunnel;
+    }
+
+    /**
+     * <p>Sets whether tunnelled data is read and written directly by the selector thread.</p>
+     * <p>When enabled, a chunk of data read from one side of the tunnel is written to the
+     * other side without dispatching to the executor, and reading continues in the same
+     * thread if the write completes immediately.
+     * This must only be enabled if {@link #read(EndPoint, ByteBuffer, ConcurrentMap)} and
+     * {@link #write(EndPoint, ByteBuffer, Callback, ConcurrentMap)} are not overridden
+     * with code that may block.</p>
+     *
+     * @param nonBlockingTunnel whether tunnelled data is handled by the selector thread
+     */
+    public void setNonBlockingTunnel(boolean nonBlockingTunnel)
+    {
+        this.nonBlockingTunnel = nonBlockingTunnel;
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -335,7 +361,7 @@ public class ConnectHandler extends HandlerWrapper
         HttpConnection httpConnection = connectContext.getHttpConnection();
         EndPoint downstreamEndPoint = httpConnection.getEndPoint();
         DownstreamConnection downstreamConnection = newDownstreamConnection(downstreamEndPoint, context);
-        downstreamConnection.setInputBufferSize(getBufferSize());
+        configure(downstreamConnection);
 
         upstreamConnection.setConnection(downstreamConnection);
         downstreamConnection.setConnection(upstreamConnection);
@@ -405,6 +431,21 @@ public class ConnectHandler extends HandlerWrapper
     {
     }
 
+    /**
+     * <p>Configures a tunnel connection with the buffer size and the blocking mode
+     * of this handler, and adds to it the {@link Connection.Listener}s that are
+     * beans of this handler, for example to gather per-tunnel byte statistics.</p>
+     *
+     * @param connection the connection to configure
+     */
+    protected void configure(ProxyConnection connection)
+    {
+        connection.setInputBufferSize(getBufferSize());
+        connection.setNonBlocking(isNonBlockingTunnel());
+        for (Connection.Listener listener : getBeans(Connection.Listener.class))
+            connection.addListener(listener);
+    }
+
     private void upgradeConnection(HttpServletRequest request, HttpServletResponse response, Connection connection)
     {
         // Set the new connection as request attribute and change the status to 101
@@ -518,7 +559,7 @@ public class ConnectHandler extends HandlerWrapper
                 ConnectHandler.LOG.debug("Connected to {}", ((SocketChannel)channel).getRemoteAddress());
             ConnectContext connectContext = (ConnectContext)attachment;
             UpstreamConnection connection = newUpstreamConnection(endpoint, connectContext);
-            connection.setInputBufferSize(getBufferSize());
+            configure(connection);
             return connection;
         }
 
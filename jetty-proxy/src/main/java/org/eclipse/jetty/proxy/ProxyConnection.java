@@ -22,11 +22,15 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jetty.io.AbstractConnection;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingCallback;
 import org.eclipse.jetty.util.log.Logger;
@@ -34,10 +38,17 @@ import org.eclipse.jetty.util.log.Logger;
 public abstract class ProxyConnection extends AbstractConnection
 {
     protected static final Logger LOG = ConnectHandler.LOG;
-    private final IteratingCallback pipe = new ProxyIteratingCallback();
+    private final ProxyIteratingCallback pipe = new ProxyIteratingCallback();
+    private final Callback fillableCallback = new FillableCallback();
+    private final AtomicReference<ByteBuffer> buffer = new AtomicReference<>();
+    private final AtomicBoolean bufferInUse = new AtomicBoolean();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
     private final ByteBufferPool bufferPool;
     private final ConcurrentMap<String, Object> context;
     private Connection connection;
+    private boolean nonBlocking;
+    private volatile boolean closed;
 
     protected ProxyConnection(EndPoint endp, Executor executor, ByteBufferPool bufferPool, ConcurrentMap<String, Object> context)
     {
@@ -66,12 +77,133 @@ public abstract class ProxyConnection extends AbstractConnection
         this.connection = connection;
     }
 
+    /**
+     * @return whether reads and writes of this connection are performed
+     * directly by the selector thread, without dispatching to the executor
+     */
+    public boolean isNonBlocking()
+    {
+        return nonBlocking;
+    }
+
+    /**
+     * <p>Sets whether reads and writes of this connection are performed
+     * directly by the selector thread.</p>
+     * <p>This avoids a thread dispatch for every chunk of data tunnelled,
+     * but must only be enabled if {@link #read(EndPoint, ByteBuffer)} and
+     * {@link #write(EndPoint, ByteBuffer, Callback)} never block.</p>
+     *
+     * @param nonBlocking whether this connection never blocks
+     */
+    public void setNonBlocking(boolean nonBlocking)
+    {
+        this.nonBlocking = nonBlocking;
+    }
+
+    @Override
+    public void fillInterested()
+    {
+        if (isNonBlocking())
+            getEndPoint().fillInterested(fillableCallback);
+        else
+            super.fillInterested();
+    }
+
     @Override
     public void onFillable()
     {
         pipe.iterate();
     }
 
+    @Override
+    public void onClose()
+    {
+        closed = true;
+        pipe.close();
+        // A write of the buffer may still be outstanding on the other
+        // endpoint, in which case its callback releases the buffer.
+        if (!bufferInUse.get())
+            releaseBuffer();
+        super.onClose();
+        if (LOG.isDebugEnabled())
+        {
+            long elapsed = System.currentTimeMillis() - getCreatedTimeStamp();
+            LOG.debug("{} closed after {} ms, in={} bytes ({} B/s), out={} bytes ({} B/s)",
+                    this, elapsed, getBytesIn(), getBytesInRate(), getBytesOut(), getBytesOutRate());
+        }
+    }
+
+    /**
+     * @return the number of bytes read from this connection's endpoint
+     */
+    @Override
+    public long getBytesIn()
+    {
+        return bytesIn.get();
+    }
+
+    /**
+     * @return the number of bytes written to this connection's endpoint
+     */
+    @Override
+    public long getBytesOut()
+    {
+        return bytesOut.get();
+    }
+
+    /**
+     * @return the average number of bytes per second read from this connection's endpoint
+     */
+    public long getBytesInRate()
+    {
+        return rate(getBytesIn());
+    }
+
+    /**
+     * @return the average number of bytes per second written to this connection's endpoint
+     */
+    public long getBytesOutRate()
+    {
+        return rate(getBytesOut());
+    }
+
+    private long rate(long bytes)
+    {
+        long elapsed = System.currentTimeMillis() - getCreatedTimeStamp();
+        return elapsed > 0 ? bytes * 1000 / elapsed : bytes;
+    }
+
+    private ByteBuffer acquireBuffer()
+    {
+        ByteBuffer result = buffer.get();
+        if (result == null)
+        {
+            // One buffer per direction, kept for the whole life of the tunnel.
+            result = bufferPool.acquire(getInputBufferSize(), true);
+            if (!buffer.compareAndSet(null, result))
+            {
+                bufferPool.release(result);
+                result = buffer.get();
+            }
+        }
+        BufferUtil.clear(result);
+        return result;
+    }
+
+    private void bufferDone()
+    {
+        bufferInUse.set(false);
+        if (closed)
+            releaseBuffer();
+    }
+
+    private void releaseBuffer()
+    {
+        ByteBuffer result = buffer.getAndSet(null);
+        if (result != null)
+            bufferPool.release(result);
+    }
+
     protected abstract int read(EndPoint endPoint, ByteBuffer buffer) throws IOException;
 
     protected abstract void write(EndPoint endPoint, ByteBuffer buffer, Callback callback);
@@ -87,32 +219,34 @@ public abstract class ProxyConnection extends AbstractConnection
 
     private class ProxyIteratingCallback extends IteratingCallback
     {
-        private ByteBuffer buffer;
         private int filled;
 
         @Override
         protected Action process() throws Exception
         {
-            buffer = bufferPool.acquire(getInputBufferSize(), true);
+            bufferInUse.set(true);
             try
             {
+                ByteBuffer buffer = acquireBuffer();
                 int filled = this.filled = read(getEndPoint(), buffer);
                 if (LOG.isDebugEnabled())
                     LOG.debug("{} filled {} bytes", ProxyConnection.this, filled);
                 if (filled > 0)
                 {
+                    bytesIn.addAndGet(filled);
                     write(connection.getEndPoint(), buffer, this);
                     return Action.SCHEDULED;
                 }
                 else if (filled == 0)
                 {
-                    bufferPool.release(buffer);
+                    bufferDone();
                     fillInterested();
                     return Action.IDLE;
                 }
                 else
                 {
-                    bufferPool.release(buffer);
+                    bufferDone();
+                    releaseBuffer();
                     connection.getEndPoint().shutdownOutput();
                     return Action.SUCCEEDED;
                 }
@@ -121,7 +255,7 @@ public abstract class ProxyConnection extends AbstractConnection
             {
                 if (LOG.isDebugEnabled())
                     LOG.debug(ProxyConnection.this + " could not fill", x);
-                bufferPool.release(buffer);
+                bufferDone();
                 disconnect();
                 return Action.SUCCEEDED;
             }
@@ -132,10 +266,25 @@ public abstract class ProxyConnection extends AbstractConnection
         {
             if (LOG.isDebugEnabled())
                 LOG.debug("{} wrote {} bytes", ProxyConnection.this, filled);
-            bufferPool.release(buffer);
+            if (connection instanceof ProxyConnection)
+                ((ProxyConnection)connection).bytesOut.addAndGet(filled);
+            bufferDone();
             super.succeeded();
         }
 
+        @Override
+        public void failed(Throwable x)
+        {
+            bufferDone();
+            super.failed(x);
+        }
+
+        @Override
+        public boolean isNonBlocking()
+        {
+            return ProxyConnection.this.isNonBlocking();
+        }
+
         @Override
         protected void onCompleteSuccess()
         {
@@ -151,9 +300,29 @@ public abstract class ProxyConnection extends AbstractConnection
 
         private void disconnect()
         {
-            bufferPool.release(buffer);
             ProxyConnection.this.close();
             connection.close();
         }
     }
+
+    private class FillableCallback implements Callback
+    {
+        @Override
+        public void succeeded()
+        {
+            onFillable();
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            onFillInterestedFailed(x);
+        }
+
+        @Override
+        public boolean isNonBlocking()
+        {
+            return true;
+        }
+    }
 }
@@ -31,13 +31,18 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Server;
@@ -765,6 +770,111 @@ public class ConnectHandlerTest extends AbstractConnectHandlerTest
         }
     }
 
+    @Test
+    public void testCONNECTAndPOSTWithBigBodyNonBlockingTunnel() throws Exception
+    {
+        disposeProxy();
+        connectHandler.setNonBlockingTunnel(true);
+        proxy.start();
+
+        String hostPort = "localhost:" + serverConnector.getLocalPort();
+        String request = "" +
+                "CONNECT " + hostPort + " HTTP/1.1\r\n" +
+                "Host: " + hostPort + "\r\n" +
+                "\r\n";
+        try (Socket socket = newSocket())
+        {
+            OutputStream output = socket.getOutputStream();
+            BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+
+            output.write(request.getBytes(StandardCharsets.UTF_8));
+            output.flush();
+
+            // Expect 200 OK from the CONNECT request
+            SimpleHttpResponse response = readResponse(input);
+            Assert.assertEquals("200", response.getCode());
+
+            StringBuilder body = new StringBuilder();
+            String chunk = "0123456789ABCDEF";
+            for (int i = 0; i < 64 * 1024; ++i)
+                body.append(chunk);
+
+            request = "" +
+                    "POST /echo HTTP/1.1\r\n" +
+                    "Host: " + hostPort + "\r\n" +
+                    "Content-Length: " + body.length() + "\r\n" +
+                    "\r\n" +
+                    body;
+            output.write(request.getBytes(StandardCharsets.UTF_8));
+            output.flush();
+
+            response = readResponse(input);
+            Assert.assertEquals("200", response.getCode());
+            Assert.assertEquals("POST /echo\r\n" + body, response.getBody());
+        }
+    }
+
+    @Test
+    public void testCONNECTTunnelStatistics() throws Exception
+    {
+        final Queue<ProxyConnection> closed = new ConcurrentLinkedQueue<>();
+        final CountDownLatch closeLatch = new CountDownLatch(2);
+        connectHandler.addBean(new Connection.Listener.Adapter()
+        {
+            @Override
+            public void onClosed(Connection connection)
+            {
+                closed.offer((ProxyConnection)connection);
+                closeLatch.countDown();
+            }
+        });
+
+        String hostPort = "localhost:" + serverConnector.getLocalPort();
+        String request = "" +
+                "CONNECT " + hostPort + " HTTP/1.1\r\n" +
+                "Host: " + hostPort + "\r\n" +
+                "\r\n";
+        String get = "" +
+                "GET /echo" + " HTTP/1.1\r\n" +
+                "Host: " + hostPort + "\r\n" +
+                "Connection: close\r\n" +
+                "\r\n";
+        try (Socket socket = newSocket())
+        {
+            OutputStream output = socket.getOutputStream();
+            BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+
+            output.write(request.getBytes(StandardCharsets.UTF_8));
+            output.flush();
+
+            // Expect 200 OK from the CONNECT request
+            SimpleHttpResponse response = readResponse(input);
+            Assert.assertEquals("200", response.getCode());
+
+            output.write(get.getBytes(StandardCharsets.UTF_8));
+            output.flush();
+
+            response = readResponse(input);
+            Assert.assertEquals("200", response.getCode());
+            Assert.assertEquals("GET /echo", response.getBody());
+        }
+
+        Assert.assertTrue(closeLatch.await(5, TimeUnit.SECONDS));
+        for (ProxyConnection connection : closed)
+        {
+            if (connection instanceof ConnectHandler.DownstreamConnection)
+            {
+                Assert.assertEquals(get.length(), connection.getBytesIn());
+                Assert.assertEquals(connection.getConnection().getBytesIn(), connection.getBytesOut());
+            }
+            else
+            {
+                Assert.assertEquals(get.length(), connection.getBytesOut());
+                Assert.assertTrue(connection.getBytesIn() > 0);
+            }
+        }
+    }
+
     private static class ServerHandler extends AbstractHandler
     {
         public void handle(String target, Request request, HttpServletRequest httpRequest, HttpServletResponse httpResponse) throws IOException, ServletException
@@ -27,6 +27,7 @@ import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.webapp.StandardDescriptorProcessor;
 import org.eclipse.jetty.webapp.WebAppClassLoader;
 import org.eclipse.jetty.webapp.WebAppContext;
+import org.eclipse.jetty.webapp.WebDescriptor;
 import org.eclipse.jetty.webapp.WebInfConfiguration;
 
 /**
@@ -75,7 +76,15 @@ public class QuickStartConfiguration extends WebInfConfiguration
         Resource quickStartWebXml = getQuickStartWebXml(context);
         LOG.debug("quickStartWebXml={}",quickStartWebXml);
         
-        context.getMetaData().setWebXml(quickStartWebXml);
+        //use a binary snapshot of the quickstart-web.xml if there is a valid one
+        WebDescriptor snapshot = new QuickStartSnapshot(context.getWebInf()).newWebDescriptor();
+        if (snapshot != null)
+        {
+            LOG.debug("quickStartSnapshot={}",snapshot);
+            context.getMetaData().setWebXml(snapshot);
+        }
+        else
+            context.getMetaData().setWebXml(quickStartWebXml);
     }
 
     
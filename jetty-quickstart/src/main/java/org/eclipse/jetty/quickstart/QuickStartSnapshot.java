@@ -0,0 +1,370 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.quickstart;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.eclipse.jetty.util.TypeUtil;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.webapp.WebDescriptor;
+import org.eclipse.jetty.xml.XmlParser;
+
+/**
+ * QuickStartSnapshot
+ * <p>
+ * A compact binary image of the parsed quickstart-web.xml of a webapp, so that a
+ * restart can rebuild the {@link WebDescriptor} without any XML parsing.  The image
+ * contains the complete element tree of the descriptor, so the servlets, filters,
+ * listeners, constraints, JNDI entries and discovered annotations recorded by the
+ * {@link QuickStartDescriptorGenerator} are applied by the usual descriptor processors.
+ * <p>
+ * The image is stamped with a checksum of the quickstart-web.xml content and of the
+ * names, sizes and modification times of WEB-INF/web.xml, WEB-INF/lib and WEB-INF/classes.
+ * An image whose checksum does not match the unpacked WAR, or whose content is corrupt,
+ * is ignored and the quickstart-web.xml is parsed instead.
+ */
+public class QuickStartSnapshot
+{
+    private static final Logger LOG = Log.getLogger(QuickStartSnapshot.class);
+
+    public static final String DEFAULT_QUICKSTART_SNAPSHOT_NAME = "quickstart-web.bin";
+
+    private static final int MAGIC = 0x4A515331; // "JQS1"
+    private static final byte STRING = 0;
+    private static final byte NODE = 1;
+
+    private final Resource _webInf;
+
+    /**
+     * @param webInf the WEB-INF directory of an unpacked webapp
+     */
+    public QuickStartSnapshot(Resource webInf)
+    {
+        _webInf = webInf;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the snapshot file resource
+     * @throws IOException if unable to resolve the resource
+     */
+    public Resource getSnapshot() throws IOException
+    {
+        return _webInf.addPath(DEFAULT_QUICKSTART_SNAPSHOT_NAME);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the quickstart-web.xml resource
+     * @throws IOException if unable to resolve the resource
+     */
+    public Resource getQuickStartWebXml() throws IOException
+    {
+        return _webInf.addPath(QuickStartDescriptorGenerator.DEFAULT_QUICKSTART_DESCRIPTOR_NAME);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Calculate the checksum of the current state of the webapp.
+     * @return the hex encoded checksum
+     * @throws IOException if unable to read the webapp
+     */
+    public String getChecksum() throws IOException
+    {
+        MessageDigest digest = newDigest();
+        try (InputStream in = getQuickStartWebXml().getInputStream())
+        {
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) >= 0)
+                digest.update(buffer,0,len);
+        }
+        update(digest,"web.xml",_webInf.addPath("web.xml"));
+        update(digest,"lib/",_webInf.addPath("lib/"));
+        update(digest,"classes/",_webInf.addPath("classes/"));
+        return TypeUtil.toHexString(digest.digest());
+    }
+
+    private void update(MessageDigest digest, String name, Resource resource) throws IOException
+    {
+        if (!resource.exists())
+            return;
+
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        if (resource.isDirectory())
+        {
+            String[] list = resource.list();
+            if (list == null)
+                return;
+            Arrays.sort(list);
+            for (String child : list)
+                update(digest,name + child,resource.addPath(child));
+        }
+        else
+        {
+            digest.update(Long.toString(resource.length()).getBytes(StandardCharsets.UTF_8));
+            digest.update(Long.toString(resource.lastModified()).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Write the snapshot of a parsed quickstart-web.xml
+     * @param root the root node of the parsed quickstart-web.xml
+     * @throws IOException if unable to write the snapshot
+     */
+    public void write(XmlParser.Node root) throws IOException
+    {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(16 * 1024);
+        try (DataOutputStream out = new DataOutputStream(payload))
+        {
+            writeNode(out,root);
+        }
+        byte[] bytes = payload.toByteArray();
+
+        File file = getSnapshot().getFile();
+        if (file == null)
+            throw new IOException("Not a file: " + getSnapshot());
+        File tmp = new File(file.getParentFile(),file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp)))
+        {
+            out.writeInt(MAGIC);
+            out.writeUTF(getChecksum());
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.write(newDigest().digest(bytes));
+        }
+        if (file.exists() && !file.delete() || !tmp.renameTo(file))
+        {
+            tmp.delete();
+            throw new IOException("Unable to write " + file);
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Wrote {} ({} bytes)",file,file.length());
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Read the snapshot.
+     * @return the root node of the quickstart-web.xml, or null if there is no snapshot,
+     * or if it is corrupt or does not match the current state of the webapp.
+     */
+    public XmlParser.Node read()
+    {
+        try
+        {
+            Resource snapshot = getSnapshot();
+            if (!snapshot.exists())
+                return null;
+
+            byte[] bytes;
+            String checksum;
+            try (DataInputStream in = new DataInputStream(snapshot.getInputStream()))
+            {
+                if (in.readInt() != MAGIC)
+                {
+                    LOG.warn("Bad quickstart snapshot {}",snapshot);
+                    return null;
+                }
+                checksum = in.readUTF();
+                int length = in.readInt();
+                if (length < 0 || length > snapshot.length())
+                {
+                    LOG.warn("Corrupt quickstart snapshot {}",snapshot);
+                    return null;
+                }
+                bytes = new byte[length];
+                in.readFully(bytes);
+                byte[] hash = new byte[newDigest().getDigestLength()];
+                in.readFully(hash);
+                if (!MessageDigest.isEqual(hash,newDigest().digest(bytes)))
+                {
+                    LOG.warn("Corrupt quickstart snapshot {}",snapshot);
+                    return null;
+                }
+            }
+
+            if (!checksum.equals(getChecksum()))
+            {
+                LOG.info("Stale quickstart snapshot {}",snapshot);
+                return null;
+            }
+
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes)))
+            {
+                XmlParser.Node root = readNode(in,null);
+                // The version is needed to process the descriptor without a parser
+                if (root.getAttribute("version") == null)
+                    return null;
+                return root;
+            }
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Unable to read quickstart snapshot",e);
+            return null;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return A descriptor for the quickstart-web.xml restored from the snapshot,
+     * or null if there is no usable snapshot.
+     * @throws IOException if unable to resolve the quickstart-web.xml
+     */
+    public WebDescriptor newWebDescriptor() throws IOException
+    {
+        long start = System.nanoTime();
+        XmlParser.Node root = read();
+        if (root == null)
+            return null;
+        if (LOG.isDebugEnabled())
+            LOG.debug("Read quickstart snapshot {} in {}us",getSnapshot(),(System.nanoTime() - start) / 1000);
+        return new SnapshotDescriptor(getQuickStartWebXml(),root);
+    }
+
+    private static void writeNode(DataOutputStream out, XmlParser.Node node) throws IOException
+    {
+        writeString(out,node.getTag());
+        XmlParser.Attribute[] attrs = node.getAttributes();
+        out.writeInt(attrs == null ? -1 : attrs.length);
+        if (attrs != null)
+        {
+            for (XmlParser.Attribute attr : attrs)
+            {
+                writeString(out,attr.getName());
+                writeString(out,attr.getValue());
+            }
+        }
+        out.writeInt(node.size());
+        for (int i = 0; i < node.size(); i++)
+        {
+            Object child = node.get(i);
+            if (child instanceof XmlParser.Node)
+            {
+                out.writeByte(NODE);
+                writeNode(out,(XmlParser.Node)child);
+            }
+            else
+            {
+                out.writeByte(STRING);
+                writeString(out,String.valueOf(child));
+            }
+        }
+    }
+
+    private static XmlParser.Node readNode(DataInputStream in, XmlParser.Node parent) throws IOException
+    {
+        String tag = readString(in);
+        int length = in.readInt();
+        XmlParser.Attribute[] attrs = null;
+        if (length >= 0)
+        {
+            attrs = new XmlParser.Attribute[length];
+            for (int i = 0; i < length; i++)
+                attrs[i] = new XmlParser.Attribute(readString(in),readString(in));
+        }
+        XmlParser.Node node = XmlParser.Node.newNode(parent,tag,attrs);
+        int size = in.readInt();
+        for (int i = 0; i < size; i++)
+        {
+            byte type = in.readByte();
+            switch (type)
+            {
+                case NODE:
+                    node.add(readNode(in,node));
+                    break;
+                case STRING:
+                    node.add(readString(in));
+                    break;
+                default:
+                    throw new IOException("Bad node type " + type);
+            }
+        }
+        return node;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException
+    {
+        if (s == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes,StandardCharsets.UTF_8);
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * A quickstart-web.xml descriptor whose element tree has been restored from a snapshot.
+     */
+    public static class SnapshotDescriptor extends WebDescriptor
+    {
+        public SnapshotDescriptor(Resource xml, XmlParser.Node root)
+        {
+            super(xml);
+            _root = root;
+        }
+
+        @Override
+        public void ensureParser() throws ClassNotFoundException
+        {
+            // Already parsed
+            if (_root == null)
+                super.ensureParser();
+        }
+    }
+}
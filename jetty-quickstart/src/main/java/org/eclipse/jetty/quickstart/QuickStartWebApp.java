@@ -25,6 +25,7 @@ import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.resource.JarResource;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.webapp.WebAppContext;
+import org.eclipse.jetty.webapp.WebDescriptor;
 
 /**
  * QuickStartWar
@@ -48,6 +49,7 @@ public class QuickStartWebApp extends WebAppContext
     private boolean _preconfigure=false;
     private boolean _autoPreconfigure=false;
     private boolean _startWebapp=false;
+    private boolean _generateSnapshot=false;
     private PreconfigureDescriptorProcessor _preconfigProcessor;
     
 
@@ -94,6 +96,22 @@ public class QuickStartWebApp extends WebAppContext
         _autoPreconfigure = autoPrecompile;
     }
     
+    public boolean isGenerateSnapshot()
+    {
+        return _generateSnapshot;
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Generate a binary snapshot of the quickstart-web.xml
+     * @param generateSnapshot If true, then preconfiguring the webapp also generates
+     * the WEB-INF/quickstart-web.bin {@link QuickStartSnapshot}, which is used in
+     * preference to parsing the quickstart-web.xml when the webapp is started.
+     */
+    public void setGenerateSnapshot(boolean generateSnapshot)
+    {
+        _generateSnapshot = generateSnapshot;
+    }
+    
     @Override
     protected void startWebapp() throws Exception
     {
@@ -187,6 +205,16 @@ public class QuickStartWebApp extends WebAppContext
         {
             generator.generateQuickStartWebXml(fos);
         }
+
+        QuickStartSnapshot snapshot = new QuickStartSnapshot(getWebInf());
+        if (_generateSnapshot)
+        {
+            WebDescriptor webDescriptor = new WebDescriptor(descriptor);
+            webDescriptor.parse();
+            snapshot.write(webDescriptor.getRoot());
+        }
+        else if (snapshot.getSnapshot().exists())
+            snapshot.getSnapshot().delete();
     }
 
   
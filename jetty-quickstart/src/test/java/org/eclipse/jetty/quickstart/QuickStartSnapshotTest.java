@@ -0,0 +1,249 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.quickstart;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.toolchain.test.FS;
+import org.eclipse.jetty.toolchain.test.TestingDir;
+import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.eclipse.jetty.webapp.WebDescriptor;
+import org.eclipse.jetty.xml.XmlParser;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class QuickStartSnapshotTest
+{
+    @Rule
+    public TestingDir testdir = new TestingDir();
+
+    private File webapp;
+    private File webInf;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        webapp = testdir.getEmptyDir();
+        webInf = new File(webapp,"WEB-INF");
+        FS.ensureDirExists(new File(webInf,"lib"));
+        FS.ensureDirExists(new File(webInf,"classes"));
+        write(new File(webInf,"web.xml"),
+              "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"+
+              "<web-app xmlns=\"http://xmlns.jcp.org/xml/ns/javaee\" version=\"3.1\">\n"+
+              "  <context-param><param-name>snapshot</param-name><param-value>true</param-value></context-param>\n"+
+              "  <servlet><servlet-name>test</servlet-name><servlet-class>org.eclipse.jetty.servlet.DefaultServlet</servlet-class></servlet>\n"+
+              "  <servlet-mapping><servlet-name>test</servlet-name><url-pattern>/test/*</url-pattern></servlet-mapping>\n"+
+              "</web-app>\n");
+        jar(new File(webInf,"lib/library.jar"),"library.txt");
+    }
+
+    @Test
+    public void testSnapshotReplaysDescriptor() throws Exception
+    {
+        preconfigure(true);
+        QuickStartSnapshot snapshot = new QuickStartSnapshot(Resource.newResource(webInf));
+        assertTrue(snapshot.getSnapshot().exists());
+
+        WebDescriptor xml = new WebDescriptor(snapshot.getQuickStartWebXml());
+        xml.parse();
+        WebDescriptor replayed = snapshot.newWebDescriptor();
+        assertNotNull(replayed);
+        assertSameNode(xml.getRoot(),replayed.getRoot());
+
+        // the descriptor processors see the same descriptor
+        replayed.parse();
+        assertEquals(xml.getMajorVersion(),replayed.getMajorVersion());
+        assertEquals(xml.getMinorVersion(),replayed.getMinorVersion());
+        assertEquals(xml.getMetaDataComplete(),replayed.getMetaDataComplete());
+        assertEquals(xml.getOrdering(),replayed.getOrdering());
+
+        // and the quickstart configuration uses it
+        WebAppContext context = new WebAppContext();
+        context.setResourceBase(webapp.getAbsolutePath());
+        new QuickStartConfiguration().preConfigure(context);
+        assertThat(context.getMetaData().getWebXml(),instanceOf(QuickStartSnapshot.SnapshotDescriptor.class));
+    }
+
+    @Test
+    public void testStaleLibIgnored() throws Exception
+    {
+        preconfigure(true);
+        QuickStartSnapshot snapshot = new QuickStartSnapshot(Resource.newResource(webInf));
+        assertNotNull(snapshot.read());
+
+        jar(new File(webInf,"lib/other.jar"),"other.txt");
+        assertNull(snapshot.read());
+        assertNull(snapshot.newWebDescriptor());
+    }
+
+    @Test
+    public void testStaleClassesIgnored() throws Exception
+    {
+        preconfigure(true);
+        QuickStartSnapshot snapshot = new QuickStartSnapshot(Resource.newResource(webInf));
+        assertNotNull(snapshot.read());
+
+        FS.ensureDirExists(new File(webInf,"classes/org/example"));
+        write(new File(webInf,"classes/org/example/Added.class"),"not really a class");
+        assertNull(snapshot.read());
+    }
+
+    @Test
+    public void testStaleWebXmlIgnored() throws Exception
+    {
+        preconfigure(true);
+        QuickStartSnapshot snapshot = new QuickStartSnapshot(Resource.newResource(webInf));
+        assertNotNull(snapshot.read());
+
+        File webXml = new File(webInf,"web.xml");
+        long lastModified = webXml.lastModified();
+        write(webXml,new String(Files.readAllBytes(webXml.toPath()),StandardCharsets.UTF_8).replace("/test/*","/changed/*"));
+        webXml.setLastModified(lastModified + 2000);
+        assertNull(snapshot.read());
+    }
+
+    @Test
+    public void testCorruptSnapshotFallsBackToXml() throws Exception
+    {
+        preconfigure(true);
+        QuickStartSnapshot snapshot = new QuickStartSnapshot(Resource.newResource(webInf));
+        File bin = snapshot.getSnapshot().getFile();
+
+        // flip a byte near the end of the payload
+        try (RandomAccessFile file = new RandomAccessFile(bin,"rw"))
+        {
+            long position = file.length() - 64;
+            file.seek(position);
+            int b = file.read();
+            file.seek(position);
+            file.write(b ^ 0xFF);
+        }
+        assertNull(snapshot.read());
+
+        WebAppContext context = new WebAppContext();
+        context.setResourceBase(webapp.getAbsolutePath());
+        new QuickStartConfiguration().preConfigure(context);
+        assertThat(context.getMetaData().getWebXml(),not(instanceOf(QuickStartSnapshot.SnapshotDescriptor.class)));
+        assertEquals(snapshot.getQuickStartWebXml(),context.getMetaData().getWebXml().getResource());
+    }
+
+    @Test
+    public void testTruncatedSnapshotIgnored() throws Exception
+    {
+        preconfigure(true);
+        QuickStartSnapshot snapshot = new QuickStartSnapshot(Resource.newResource(webInf));
+        File bin = snapshot.getSnapshot().getFile();
+
+        try (RandomAccessFile file = new RandomAccessFile(bin,"rw"))
+        {
+            file.setLength(file.length() / 2);
+        }
+        assertNull(snapshot.read());
+
+        try (RandomAccessFile file = new RandomAccessFile(bin,"rw"))
+        {
+            file.setLength(2);
+        }
+        assertNull(snapshot.read());
+    }
+
+    @Test
+    public void testNoSnapshotDeletesOldSnapshot() throws Exception
+    {
+        preconfigure(true);
+        QuickStartSnapshot snapshot = new QuickStartSnapshot(Resource.newResource(webInf));
+        assertTrue(snapshot.getSnapshot().exists());
+
+        preconfigure(false);
+        assertFalse(snapshot.getSnapshot().exists());
+        assertTrue(snapshot.getQuickStartWebXml().exists());
+    }
+
+    private void preconfigure(boolean generateSnapshot) throws Exception
+    {
+        Server server = new Server();
+        QuickStartWebApp quickstart = new QuickStartWebApp();
+        quickstart.setResourceBase(webapp.getAbsolutePath());
+        quickstart.setPreconfigure(true);
+        quickstart.setGenerateSnapshot(generateSnapshot);
+        server.setHandler(quickstart);
+        server.start();
+        server.stop();
+    }
+
+    private static void assertSameNode(XmlParser.Node expected, XmlParser.Node actual)
+    {
+        assertEquals(expected.getTag(),actual.getTag());
+        XmlParser.Attribute[] expectedAttrs = expected.getAttributes();
+        XmlParser.Attribute[] actualAttrs = actual.getAttributes();
+        assertEquals(expectedAttrs == null ? 0 : expectedAttrs.length,actualAttrs == null ? 0 : actualAttrs.length);
+        for (int i = 0; expectedAttrs != null && i < expectedAttrs.length; i++)
+        {
+            assertEquals(expectedAttrs[i].getName(),actualAttrs[i].getName());
+            assertEquals(expectedAttrs[i].getValue(),actualAttrs[i].getValue());
+        }
+        assertEquals(expected.getTag(),expected.size(),actual.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            Object e = expected.get(i);
+            Object a = actual.get(i);
+            if (e instanceof XmlParser.Node)
+                assertSameNode((XmlParser.Node)e,(XmlParser.Node)a);
+            else
+                assertEquals(String.valueOf(e),String.valueOf(a));
+        }
+    }
+
+    private static void jar(File file, String entry) throws IOException
+    {
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file)))
+        {
+            out.putNextEntry(new ZipEntry(entry));
+            out.write(entry.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException
+    {
+        try (FileOutputStream out = new FileOutputStream(file))
+        {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -27,7 +27,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -38,6 +37,7 @@ import javax.servlet.ServletSecurityElement;
 import javax.servlet.annotation.ServletSecurity.EmptyRoleSemantic;
 import javax.servlet.annotation.ServletSecurity.TransportGuarantee;
 
+import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.PathMap;
 import org.eclipse.jetty.server.HttpConfiguration;
@@ -66,6 +66,8 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
     private final List<ConstraintMapping> _constraintMappings= new CopyOnWriteArrayList<>();
     private final Set<String> _roles = new CopyOnWriteArraySet<>();
     private final PathMap<Map<String, RoleInfo>> _constraintMap = new PathMap<>();
+    private final Object _lock = new Object();
+    private volatile PathMap<CompiledConstraints> _compiled;
     private boolean _denyUncoveredMethods = false;
 
 
@@ -334,9 +336,6 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
     @Override
     public void setConstraintMappings(List<ConstraintMapping> constraintMappings, Set<String> roles)
     {
-        _constraintMappings.clear();
-        _constraintMappings.addAll(constraintMappings);
-
         if (roles==null)
         {
             roles = new HashSet<>();
@@ -351,14 +350,16 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
                 }
             }
         }
-        setRoles(roles);
-        
-        if (isStarted())
+
+        synchronized (_lock)
         {
-            for (ConstraintMapping mapping : _constraintMappings)
-            {
-                processConstraintMapping(mapping);
-            }
+            _constraintMappings.clear();
+            _constraintMappings.addAll(constraintMappings);
+            _roles.clear();
+            _roles.addAll(roles);
+
+            if (_compiled!=null)
+                rebuild();
         }
     }
 
@@ -371,8 +372,14 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
      */
     public void setRoles(Set<String> roles)
     {
-        _roles.clear();
-        _roles.addAll(roles);
+        synchronized (_lock)
+        {
+            _roles.clear();
+            _roles.addAll(roles);
+
+            if (_compiled!=null)
+                rebuild();
+        }
     }
 
 
@@ -384,22 +391,26 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
     @Override
     public void addConstraintMapping(ConstraintMapping mapping)
     {
-        _constraintMappings.add(mapping);
-        if (mapping.getConstraint()!=null && mapping.getConstraint().getRoles()!=null)
+        synchronized (_lock)
         {
-            //allow for lazy role naming: if a role is named in a security constraint, try and
-            //add it to the list of declared roles (ie as if it was declared with a security-role
-            for (String role :  mapping.getConstraint().getRoles())
+            _constraintMappings.add(mapping);
+            if (mapping.getConstraint()!=null && mapping.getConstraint().getRoles()!=null)
             {
-                if ("*".equals(role) || "**".equals(role))
-                    continue;
-                addRole(role);
+                //allow for lazy role naming: if a role is named in a security constraint, try and
+                //add it to the list of declared roles (ie as if it was declared with a security-role
+                for (String role :  mapping.getConstraint().getRoles())
+                {
+                    if ("*".equals(role) || "**".equals(role))
+                        continue;
+                    declareRole(role);
+                }
             }
-        }
 
-        if (isStarted())
-        {
-            processConstraintMapping(mapping);
+            if (_compiled!=null)
+            {
+                processConstraintMapping(mapping);
+                _compiled = compile();
+            }
         }
     }
 
@@ -409,10 +420,20 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
      */
     @Override
     public void addRole(String role)
+    {
+        synchronized (_lock)
+        {
+            if (declareRole(role) && _compiled!=null)
+                _compiled = compile();
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private boolean declareRole(String role)
     {
         //add to list of declared roles
         boolean modified = _roles.add(role);
-        if (isStarted() && modified)
+        if (modified && _compiled!=null)
         {
             // Add the new role to currently defined any role role infos
             for (Map<String,RoleInfo> map : _constraintMap.values())
@@ -424,6 +445,24 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
                 }
             }
         }
+        return modified;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Reprocess all the constraint mappings and publish the compiled result.
+     * Must be called with the lock held. The compiled constraints are non null
+     * from {@link #doStart()} to {@link #doStop()}, and the mutators only
+     * recompile while they are.
+     */
+    private void rebuild()
+    {
+        _constraintMap.clear();
+        for (ConstraintMapping mapping : _constraintMappings)
+        {
+            processConstraintMapping(mapping);
+        }
+        _compiled = compile();
     }
 
     /* ------------------------------------------------------------ */
@@ -433,15 +472,11 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
     @Override
     protected void doStart() throws Exception
     {
-        _constraintMap.clear();
-        if (_constraintMappings!=null)
+        synchronized (_lock)
         {
-            for (ConstraintMapping mapping : _constraintMappings)
-            {
-                processConstraintMapping(mapping);
-            }
+            rebuild();
         }
-        
+
         //Servlet Spec 3.1 pg 147 sec 13.8.4.2 log paths for which there are uncovered http methods
         checkPathsWithUncoveredHttpMethods();        
        
@@ -454,7 +489,11 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
     protected void doStop() throws Exception
     {
         super.doStop();
-        _constraintMap.clear();
+        synchronized (_lock)
+        {
+            _constraintMap.clear();
+            _compiled = null;
+        }
     }
     
     
@@ -606,59 +645,38 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
      * <li>A mapping with key * that matches every method name</li>
      * <li>Mappings with keys of the form "&lt;method&gt;.&lt;method&gt;.&lt;method&gt;.omission" that indicates it will match every method name EXCEPT those given</li>
      * </ol>
+     * The mappings are compiled (see {@link #compile()}) so that the combined {@link RoleInfo} 
+     * for each known {@link HttpMethod} is worked out once, rather than for every request.
      * 
      * @see org.eclipse.jetty.security.SecurityHandler#prepareConstraintInfo(java.lang.String, org.eclipse.jetty.server.Request)
      */
     @Override
     protected RoleInfo prepareConstraintInfo(String pathInContext, Request request)
     {
-        Map<String, RoleInfo> mappings = _constraintMap.match(pathInContext);
+        // Only read here: the mutators recompile and publish under the lock.
+        PathMap<CompiledConstraints> compiled = _compiled;
+        if (compiled == null || compiled.isEmpty())
+            return null;
 
-        if (mappings != null)
-        {
-            String httpMethod = request.getMethod();
-            RoleInfo roleInfo = mappings.get(httpMethod);
-            if (roleInfo == null)
-            {
-                //No specific http-method names matched
-                List<RoleInfo> applicableConstraints = new ArrayList<RoleInfo>();
-
-                //Get info for constraint that matches all methods if it exists
-                RoleInfo all = mappings.get(ALL_METHODS);
-                if (all != null)
-                    applicableConstraints.add(all);
-          
-                
-                //Get info for constraints that name method omissions where target method name is not omitted
-                //(ie matches because target method is not omitted, hence considered covered by the constraint)
-                for (Entry<String, RoleInfo> entry: mappings.entrySet())
-                {
-                    if (entry.getKey() != null && entry.getKey().endsWith(OMISSION_SUFFIX) && ! entry.getKey().contains(httpMethod))
-                        applicableConstraints.add(entry.getValue());
-                }
-                
-                if (applicableConstraints.size() == 0 && isDenyUncoveredHttpMethods())
-                {
-                    roleInfo = new RoleInfo();
-                    roleInfo.setForbidden(true);
-                }
-                else if (applicableConstraints.size() == 1)
-                    roleInfo = applicableConstraints.get(0);
-                else
-                {
-                    roleInfo = new RoleInfo();
-                    roleInfo.setUserDataConstraint(UserDataConstraint.None);
-                    
-                    for (RoleInfo r:applicableConstraints)
-                        roleInfo.combine(r);
-                }
-
-            }
-           
-            return roleInfo;
-        }
+        CompiledConstraints constraints = compiled.match(pathInContext);
+        if (constraints == null)
+            return null;
+        return constraints.getRoleInfo(request.getMethod());
+    }
 
-        return null;
+    /* ------------------------------------------------------------ */
+    /**
+     * Compile the processed constraint mappings into an immutable form that
+     * is replaced, rather than updated, whenever the mappings change.
+     * @return the compiled constraints for each path spec
+     */
+    protected PathMap<CompiledConstraints> compile()
+    {
+        PathMap<CompiledConstraints> compiled = new PathMap<>();
+        boolean deny = isDenyUncoveredHttpMethods();
+        for (Map.Entry<String, Map<String, RoleInfo>> entry : _constraintMap.entrySet())
+            compiled.put(entry.getKey(),new CompiledConstraints(entry.getValue(),deny));
+        return compiled;
     }
 
     @Override
@@ -781,7 +799,12 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
     @Override
     public void setDenyUncoveredHttpMethods(boolean deny)
     {
-        _denyUncoveredMethods = deny;
+        synchronized (_lock)
+        {
+            _denyUncoveredMethods = deny;
+            if (_compiled!=null)
+                _compiled = compile();
+        }
     }
     
     /* ------------------------------------------------------------ */
@@ -907,4 +930,121 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
             methods.add(strings[i]);
         return methods;
     }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * The constraints for a single path spec, with the {@link RoleInfo}
+     * for every known {@link HttpMethod} combined in advance. Omissions are held as
+     * a bitmask of the known methods they omit, so that only a non standard 
+     * method needs the constraints to be combined at request time.
+     */
+    protected static class CompiledConstraints
+    {
+        private final Map<String, RoleInfo> _methods = new HashMap<>();
+        private final RoleInfo _all;
+        private final List<RoleInfo> _omissions = new ArrayList<>();
+        private final List<Set<String>> _omitted = new ArrayList<>();
+        private final long[] _omittedMask;
+        private final RoleInfo _uncovered = new RoleInfo();
+        private final RoleInfo[] _known = new RoleInfo[HttpMethod.values().length];
+
+        /* ------------------------------------------------------------ */
+        public CompiledConstraints(Map<String, RoleInfo> mappings, boolean denyUncoveredMethods)
+        {
+            if (denyUncoveredMethods)
+                _uncovered.setForbidden(true);
+            else
+                _uncovered.setUserDataConstraint(UserDataConstraint.None);
+
+            RoleInfo all = null;
+            for (Map.Entry<String, RoleInfo> entry : mappings.entrySet())
+            {
+                String key = entry.getKey();
+                if (key == null)
+                    continue;
+                if (ALL_METHODS.equals(key))
+                    all = entry.getValue();
+                else if (key.endsWith(OMISSION_SUFFIX))
+                {
+                    _omissions.add(entry.getValue());
+                    _omitted.add(new HashSet<>(Arrays.asList(key.substring(0,key.length()-OMISSION_SUFFIX.length()).split("\\."))));
+                }
+                else
+                    _methods.put(key,entry.getValue());
+            }
+            _all = all;
+
+            _omittedMask = new long[_omitted.size()];
+            for (int i = 0; i < _omittedMask.length; i++)
+            {
+                for (String method : _omitted.get(i))
+                {
+                    HttpMethod known = HttpMethod.fromString(method);
+                    if (known != null && known.asString().equals(method))
+                        _omittedMask[i] |= 1L << known.ordinal();
+                }
+            }
+
+            for (HttpMethod method : HttpMethod.values())
+                _known[method.ordinal()] = combine(method.asString(),method);
+        }
+
+        /* ------------------------------------------------------------ */
+        /**
+         * @param method the request method
+         * @return the combined RoleInfo that applies to the method, or null if the method is not covered
+         */
+        public RoleInfo getRoleInfo(String method)
+        {
+            HttpMethod known = HttpMethod.fromString(method);
+            if (known != null && known.asString().equals(method))
+                return _known[known.ordinal()];
+            return combine(method,null);
+        }
+
+        /* ------------------------------------------------------------ */
+        private RoleInfo combine(String method, HttpMethod known)
+        {
+            RoleInfo roleInfo = _methods.get(method);
+            if (roleInfo != null)
+                return roleInfo;
+
+            //No specific http-method names matched
+            List<RoleInfo> applicableConstraints = new ArrayList<RoleInfo>();
+
+            //Get info for constraint that matches all methods if it exists
+            if (_all != null)
+                applicableConstraints.add(_all);
+
+            //Get info for constraints that name method omissions where target method name is not omitted
+            //(ie matches because target method is not omitted, hence considered covered by the constraint)
+            for (int i = 0; i < _omittedMask.length; i++)
+            {
+                boolean omitted = known == null ? _omitted.get(i).contains(method) : (_omittedMask[i] & (1L << known.ordinal())) != 0;
+                if (!omitted)
+                    applicableConstraints.add(_omissions.get(i));
+            }
+
+            if (applicableConstraints.size() == 0)
+                roleInfo = _uncovered;
+            else if (applicableConstraints.size() == 1)
+                roleInfo = applicableConstraints.get(0);
+            else
+            {
+                roleInfo = new RoleInfo();
+                roleInfo.setUserDataConstraint(UserDataConstraint.None);
+
+                for (RoleInfo r:applicableConstraints)
+                    roleInfo.combine(r);
+            }
+            return roleInfo;
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public String toString()
+        {
+            return String.format("%s{%s,*=%s,omissions=%s}",getClass().getSimpleName(),_methods,_all,_omitted);
+        }
+    }
 }
@@ -26,13 +26,23 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletRequest;
+import javax.sql.DataSource;
 
 import org.eclipse.jetty.server.UserIdentity;
 import org.eclipse.jetty.util.Loader;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.annotation.Name;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.resource.Resource;
@@ -40,18 +50,21 @@ import org.eclipse.jetty.util.security.Credential;
 
 /* ------------------------------------------------------------ */
 /**
- * HashMapped User Realm with JDBC as data source. 
- * The {@link #login(String, Object, ServletRequest)} method checks the inherited Map for the user. If the user is not
- * found, it will fetch details from the database and populate the inherited
- * Map. It then calls the superclass {@link #login(String, Object, ServletRequest)} method to perform the actual
- * authentication. Periodically (controlled by configuration parameter),
- * internal hashes are cleared. Caching can be disabled by setting cache refresh
- * interval to zero. Uses one database connection that is initialized at
- * startup. Reconnect on failures.
+ * User Realm with JDBC as data source. 
+ * The {@link #login(String, Object, ServletRequest)} method checks the user cache for the user. If the user is not
+ * found, it will fetch details from the database and, once authenticated, cache the resulting
+ * {@link UserIdentity} for the configured <code>cachetime</code> (in seconds). The cache holds at
+ * most <code>cachesize</code> users, and caching is disabled if the cache time is zero. Cached users
+ * can be removed via jmx.
+ * <p>
+ * Connections are obtained from the {@link DataSource} if one is set, otherwise they are opened
+ * with the configured driver and url and kept, with their prepared statements, in a small pool of
+ * idle connections. A connection that fails is discarded.
  * <p> 
  * An example properties file for configuration is in
  * <code>${jetty.home}/etc/jdbcRealm.properties</code>
  */
+@ManagedObject("JDBC Login Service")
 public class JDBCLoginService extends AbstractLoginService
 {
     private static final Logger LOG = Log.getLogger(JDBCLoginService.class);
@@ -64,9 +77,12 @@ public class JDBCLoginService extends AbstractLoginService
     protected String _userTableKey;
     protected String _userTablePasswordField;
     protected String _roleTableRoleField;
-    protected Connection _con;
+    protected DataSource _datasource;
     protected String _userSql;
     protected String _roleSql;
+    protected final UserCache<UserIdentity> _users = new UserCache<UserIdentity>();
+    private int _maxIdleConnections = 8;
+    private BlockingQueue<PooledConnection> _idle;
 
     
     /**
@@ -89,6 +105,43 @@ public class JDBCLoginService extends AbstractLoginService
         }
     }
 
+    /**
+     * A database connection and the statements prepared on it
+     */
+    private class PooledConnection
+    {
+        private final Connection _connection;
+        private final Map<String,PreparedStatement> _statements = new HashMap<String,PreparedStatement>();
+
+        private PooledConnection(Connection connection)
+        {
+            _connection = connection;
+        }
+
+        private PreparedStatement prepare(String sql) throws SQLException
+        {
+            PreparedStatement statement = _statements.get(sql);
+            if (statement == null)
+            {
+                statement = _connection.prepareStatement(sql);
+                _statements.put(sql,statement);
+            }
+            else
+                statement.clearParameters();
+            return statement;
+        }
+
+        private void close()
+        {
+            for (PreparedStatement statement : _statements.values())
+            {
+                try { statement.close(); } catch (Exception e) { LOG.ignore(e); }
+            }
+            _statements.clear();
+            try { _connection.close(); } catch (Exception e) { LOG.ignore(e); }
+        }
+    }
+
     /* ------------------------------------------------------------ */
     public JDBCLoginService()
         throws IOException
@@ -144,14 +197,19 @@ public class JDBCLoginService extends AbstractLoginService
         String _userRoleTable = properties.getProperty("userroletable");
         String _userRoleTableUserKey = properties.getProperty("userroletableuserkey");
         String _userRoleTableRoleKey = properties.getProperty("userroletablerolekey");
-      
+        String cacheTime = properties.getProperty("cachetime");
+        if (cacheTime != null)
+            setCacheTime(Integer.parseInt(cacheTime.trim()));
+        String cacheSize = properties.getProperty("cachesize");
+        if (cacheSize != null)
+            setCacheSize(Integer.parseInt(cacheSize.trim()));
 
-        if (_jdbcDriver == null || _jdbcDriver.equals("")
+        if (_datasource == null && (_jdbcDriver == null || _jdbcDriver.equals("")
             || _url == null
             || _url.equals("")
             || _userName == null
             || _userName.equals("")
-            || _password == null)
+            || _password == null))
         {
             LOG.warn("UserRealm " + getName() + " has not been properly configured");
         }
@@ -170,7 +228,9 @@ public class JDBCLoginService extends AbstractLoginService
                    + " = u."
                    + _userRoleTableRoleKey;
         
-        Loader.loadClass(_jdbcDriver).newInstance();
+        if (_datasource == null)
+            Loader.loadClass(_jdbcDriver).newInstance();
+        _idle = new ArrayBlockingQueue<PooledConnection>(Math.max(1,_maxIdleConnections));
         super.doStart();
     }
 
@@ -194,60 +254,186 @@ public class JDBCLoginService extends AbstractLoginService
         _config=config;
     }
 
+    /* ------------------------------------------------------------ */
+    public DataSource getDataSource()
+    {
+        return _datasource;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Obtain connections from a DataSource (typically a connection pool) rather
+     * than from the jdbcdriver and url of the configuration.
+     *
+     * @param datasource the datasource
+     */
+    public void setDataSource(DataSource datasource)
+    {
+        if (isRunning())
+            throw new IllegalStateException("Running");
+        _datasource = datasource;
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("max number of idle database connections kept when no datasource is used")
+    public int getMaxIdleConnections()
+    {
+        return _maxIdleConnections;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param maxIdleConnections the maximum number of idle connections (and their prepared statements)
+     * kept for reuse when connections are not obtained from a DataSource
+     */
+    public void setMaxIdleConnections(int maxIdleConnections)
+    {
+        if (isRunning())
+            throw new IllegalStateException("Running");
+        _maxIdleConnections = maxIdleConnections;
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("time in seconds that authenticated users are cached, 0 to disable caching")
+    public int getCacheTime()
+    {
+        return (int)TimeUnit.MILLISECONDS.toSeconds(_users.getTimeToLive());
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param seconds the time in seconds an authenticated user is cached for, 0 to disable caching
+     */
+    public void setCacheTime(int seconds)
+    {
+        _users.setTimeToLive(TimeUnit.SECONDS.toMillis(seconds));
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("max number of cached users")
+    public int getCacheSize()
+    {
+        return _users.getMaxSize();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param size the maximum number of cached users
+     */
+    public void setCacheSize(int size)
+    {
+        _users.setMaxSize(size);
+    }
+
     /* ------------------------------------------------------------ */
     /**
-     * (re)Connect to database with parameters setup by loadConfig()
+     * @return the cache of authenticated users
+     */
+    public UserCache<UserIdentity> getUserCache()
+    {
+        return _users;
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("number of cached users")
+    public int getCachedUsers()
+    {
+        return _users.getSize();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Remove a user from the cache, so that the next login is checked against the database.
+     *
+     * @param username the user name
+     * @return true if the user was cached
+     */
+    @ManagedOperation(value="remove a user from the cache", impact="ACTION")
+    public boolean invalidateUser(@Name("username") String username)
+    {
+        return _users.remove(username);
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedOperation(value="remove all users from the cache", impact="ACTION")
+    public void invalidateAll()
+    {
+        _users.clear();
+    }
+
+    /* ------------------------------------------------------------ */
+    /** 
+     * @see org.eclipse.jetty.security.AbstractLoginService#login(java.lang.String, java.lang.Object, javax.servlet.ServletRequest)
+     */
+    @Override
+    public UserIdentity login(String username, Object credentials, ServletRequest request)
+    {
+        if (username == null)
+            return null;
+
+        UserIdentity cached = _users.get(username);
+        if (cached != null)
+        {
+            if (((UserPrincipal)cached.getUserPrincipal()).authenticate(credentials))
+                return cached;
+            //the credentials may have changed in the database
+            _users.remove(username);
+        }
+
+        UserIdentity user = super.login(username,credentials,request);
+        if (user != null)
+            _users.put(username,user);
+        return user;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Open a connection to the database with parameters setup by loadConfig()
+     * and keep it for use by the next lookup.
      */
     public void connectDatabase()
     {
         try
         {
-            Class.forName(_jdbcDriver);
-            _con = DriverManager.getConnection(_url, _userName, _password);
+            release(acquire(),false);
         }
         catch (SQLException e)
         {
             LOG.warn("UserRealm " + getName() + " could not connect to database; will try later", e);
         }
-        catch (ClassNotFoundException e)
-        {
-            LOG.warn("UserRealm " + getName() + " could not connect to database; will try later", e);
-        }
     }
 
- 
-    
-
     /* ------------------------------------------------------------ */
     public UserPrincipal loadUserInfo (String username)
     {
+        PooledConnection connection = null;
+        boolean failed = true;
         try
         {
-            if (null == _con) 
-                connectDatabase();
-
-            if (null == _con) 
-                throw new SQLException("Can't connect to database");
-
-            try (PreparedStatement stat1 = _con.prepareStatement(_userSql))
+            connection = acquire();
+            PreparedStatement stat1 = connection.prepare(_userSql);
+            stat1.setObject(1, username);
+            UserPrincipal user = null;
+            try (ResultSet rs1 = stat1.executeQuery())
             {
-                stat1.setObject(1, username);
-                try (ResultSet rs1 = stat1.executeQuery())
+                if (rs1.next())
                 {
-                    if (rs1.next())
-                    {
-                        int key = rs1.getInt(_userTableKey);
-                        String credentials = rs1.getString(_userTablePasswordField);
+                    int key = rs1.getInt(_userTableKey);
+                    String credentials = rs1.getString(_userTablePasswordField);
 
-                        return new JDBCUserPrincipal (username, Credential.getCredential(credentials), key);
-                    }
+                    user = new JDBCUserPrincipal (username, Credential.getCredential(credentials), key);
                 }
             }
+            failed = false;
+            return user;
         }
         catch (SQLException e)
         {
             LOG.warn("UserRealm " + getName() + " could not load user information from database", e);
-            closeConnection();
+        }
+        finally
+        {
+            release(connection,failed);
         }
         
         return null;
@@ -258,33 +444,30 @@ public class JDBCLoginService extends AbstractLoginService
     public String[] loadRoleInfo (UserPrincipal user)
     {
         JDBCUserPrincipal jdbcUser = (JDBCUserPrincipal)user;
-        
+        PooledConnection connection = null;
+        boolean failed = true;
         try
         {
-            if (null == _con) 
-                connectDatabase();
-
-            if (null == _con) 
-                throw new SQLException("Can't connect to database");
-            
-            
+            connection = acquire();
             List<String> roles = new ArrayList<String>();
 
-            try (PreparedStatement stat2 = _con.prepareStatement(_roleSql))
+            PreparedStatement stat2 = connection.prepare(_roleSql);
+            stat2.setInt(1, jdbcUser.getUserKey());
+            try (ResultSet rs2 = stat2.executeQuery())
             {
-                stat2.setInt(1, jdbcUser.getUserKey());
-                try (ResultSet rs2 = stat2.executeQuery())
-                {
-                    while (rs2.next())
-                        roles.add(rs2.getString(_roleTableRoleField));
-                    return roles.toArray(new String[roles.size()]);
-                }
+                while (rs2.next())
+                    roles.add(rs2.getString(_roleTableRoleField));
             }
+            failed = false;
+            return roles.toArray(new String[roles.size()]);
         }
         catch (SQLException e)
         {
             LOG.warn("UserRealm " + getName() + " could not load user information from database", e);
-            closeConnection();
+        }
+        finally
+        {
+            release(connection,failed);
         }
         
         return null;
@@ -298,21 +481,58 @@ public class JDBCLoginService extends AbstractLoginService
     @Override
     protected void doStop() throws Exception
     {
-        closeConnection();
+        closeConnections();
+        _users.clear();
         super.doStop();
     }
 
     /* ------------------------------------------------------------ */
     /**
-     * Close an existing connection
+     * Get a connection, either from the datasource or an idle one.
      */
-    private void closeConnection ()
+    private PooledConnection acquire () throws SQLException
     {
-        if (_con != null)
-        {
-            if (LOG.isDebugEnabled()) LOG.debug("Closing db connection for JDBCUserRealm");
-            try { _con.close(); }catch (Exception e) {LOG.ignore(e);}
-        }
-        _con = null;
+        if (_datasource != null)
+            return new PooledConnection(_datasource.getConnection());
+
+        PooledConnection connection = _idle == null ? null : _idle.poll();
+        if (connection != null)
+            return connection;
+
+        if (LOG.isDebugEnabled()) LOG.debug("Opening db connection for JDBCUserRealm");
+        return new PooledConnection(DriverManager.getConnection(_url, _userName, _password));
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Return a connection after use. Connections from a datasource, and connections
+     * whose use failed, are closed. Others are kept, with their prepared statements,
+     * if there are not already enough idle connections.
+     *
+     * @param connection the connection, which may be null if it could not be acquired
+     * @param failed true if the use of the connection failed
+     */
+    private void release (PooledConnection connection, boolean failed)
+    {
+        if (connection == null)
+            return;
+        BlockingQueue<PooledConnection> idle = _idle;
+        if (failed || _datasource != null || idle == null || !isRunning() || !idle.offer(connection))
+            connection.close();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Close the idle connections
+     */
+    private void closeConnections ()
+    {
+        BlockingQueue<PooledConnection> idle = _idle;
+        if (idle == null)
+            return;
+        if (LOG.isDebugEnabled()) LOG.debug("Closing db connections for JDBCUserRealm");
+        PooledConnection connection;
+        while ((connection = idle.poll()) != null)
+            connection.close();
     }
 }
@@ -0,0 +1,228 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.security;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.annotation.Name;
+
+/* ------------------------------------------------------------ */
+/**
+ * UserCache
+ * <p>
+ * A cache of information looked up from an external user store (database,
+ * ldap, etc) by user name. Entries expire after a time to live, and the
+ * least recently used entries are discarded to keep the cache within its
+ * maximum size. A time to live of 0 or less disables the cache.
+ *
+ * @param <V> the type of the cached user information
+ */
+@ManagedObject("Cache of user lookups")
+public class UserCache<V>
+{
+    private static class CachedEntry<V>
+    {
+        private final V _value;
+        private final long _expiry;
+
+        private CachedEntry(V value, long expiry)
+        {
+            _value = value;
+            _expiry = expiry;
+        }
+    }
+
+    private final Map<String,CachedEntry<V>> _entries = new LinkedHashMap<String,CachedEntry<V>>(16,0.75f,true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,CachedEntry<V>> eldest)
+        {
+            return size() > _maxSize;
+        }
+    };
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private volatile long _timeToLiveMs;
+    private volatile int _maxSize = 1000;
+
+    /* ------------------------------------------------------------ */
+    public UserCache()
+    {
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param timeToLiveMs the time in ms that an entry is valid for, 0 to disable the cache
+     * @param maxSize the maximum number of entries
+     */
+    public UserCache(long timeToLiveMs, int maxSize)
+    {
+        _timeToLiveMs = timeToLiveMs;
+        _maxSize = maxSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("time in ms that a cached user is valid for, 0 if caching is disabled")
+    public long getTimeToLive()
+    {
+        return _timeToLiveMs;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param timeToLiveMs the time in ms that an entry is valid for, 0 to disable the cache
+     */
+    public void setTimeToLive(long timeToLiveMs)
+    {
+        _timeToLiveMs = timeToLiveMs;
+        if (timeToLiveMs <= 0)
+            clear();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("maximum number of cached users")
+    public int getMaxSize()
+    {
+        return _maxSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param maxSize the maximum number of entries
+     */
+    public void setMaxSize(int maxSize)
+    {
+        _maxSize = maxSize;
+        synchronized (_entries)
+        {
+            while (_entries.size() > maxSize)
+                _entries.remove(_entries.keySet().iterator().next());
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param username the user name
+     * @return the cached information, or null if not cached or expired
+     */
+    public V get(String username)
+    {
+        if (_timeToLiveMs <= 0)
+            return null;
+
+        CachedEntry<V> entry;
+        synchronized (_entries)
+        {
+            entry = _entries.get(username);
+            if (entry != null && entry._expiry - System.nanoTime() <= 0)
+            {
+                _entries.remove(username);
+                entry = null;
+            }
+        }
+
+        if (entry == null)
+        {
+            _misses.incrementAndGet();
+            return null;
+        }
+        _hits.incrementAndGet();
+        return entry._value;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param username the user name
+     * @param value the information looked up for the user
+     */
+    public void put(String username, V value)
+    {
+        long ttl = _timeToLiveMs;
+        if (ttl <= 0 || value == null)
+            return;
+
+        CachedEntry<V> entry = new CachedEntry<V>(value,System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl));
+        synchronized (_entries)
+        {
+            _entries.put(username,entry);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param username the user name
+     * @return true if the user was cached
+     */
+    @ManagedOperation(value="remove a user from the cache", impact="ACTION")
+    public boolean remove(@Name("username") String username)
+    {
+        synchronized (_entries)
+        {
+            return _entries.remove(username) != null;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedOperation(value="remove all users from the cache", impact="ACTION")
+    public void clear()
+    {
+        synchronized (_entries)
+        {
+            _entries.clear();
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("number of cached users")
+    public int getSize()
+    {
+        synchronized (_entries)
+        {
+            return _entries.size();
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("number of lookups answered from the cache")
+    public long getHits()
+    {
+        return _hits.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("number of lookups not answered from the cache")
+    public long getMisses()
+    {
+        return _misses.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{ttl=%d,size=%d/%d}",getClass().getSimpleName(),hashCode(),_timeToLiveMs,getSize(),_maxSize);
+    }
+}
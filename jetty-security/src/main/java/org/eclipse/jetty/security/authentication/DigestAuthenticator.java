@@ -20,14 +20,15 @@ package org.eclipse.jetty.security.authentication;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
-import java.util.BitSet;
-import java.util.Queue;
+import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
@@ -55,38 +56,95 @@ import org.eclipse.jetty.util.security.Credential;
  * The nonce max age in ms can be set with the {@link SecurityHandler#setInitParameter(String, String)}
  * using the name "maxNonceAge".  The nonce max count can be set with {@link SecurityHandler#setInitParameter(String, String)}
  * using the name "maxNonceCount".  When the age or count is exceeded, the nonce is considered stale.
+ * <p>
+ * Nonces are stateless: each carries its timestamp and a HMAC-SHA256 of it under a secret key, so
+ * nothing is stored when a nonce is issued. If the same secret is set on every node of a cluster with 
+ * the "nonceSecret" init parameter (or {@link #setNonceSecret(String)}), a nonce issued by one node
+ * is accepted by all of them. Otherwise a random secret is generated for each authenticator.
+ * <p>
+ * Replay of a nonce count is detected with a sliding window of the last 64 counts, kept only for 
+ * nonces that have been used to authenticate successfully and only until they expire.
+ * Replay detection is local to each node.
  */
 public class DigestAuthenticator extends LoginAuthenticator
 {
     private static final Logger LOG = Log.getLogger(DigestAuthenticator.class);
+    private static final String HMAC = "HmacSHA256";
+    private static final int NONCE_RANDOM = 9;
+    private static final int NONCE_MAC = 16;
+    private static final int NONCE_LENGTH = 8 + NONCE_RANDOM + NONCE_MAC;
     SecureRandom _random = new SecureRandom();
     private long _maxNonceAgeMs = 60*1000;
     private int _maxNC=1024;
-    private ConcurrentMap<String, Nonce> _nonceMap = new ConcurrentHashMap<String, Nonce>();
-    private Queue<Nonce> _nonceQueue = new ConcurrentLinkedQueue<Nonce>();
-    private static class Nonce
+    private volatile SecretKeySpec _secret;
+    private final ConcurrentMap<String, NonceWindow> _nonceWindows = new ConcurrentHashMap<>();
+    private volatile long _nextPurge;
+    private final ThreadLocal<Signer> _signer = new ThreadLocal<Signer>()
+    {
+        @Override
+        protected Signer initialValue()
+        {
+            try
+            {
+                return new Signer(Mac.getInstance(HMAC));
+            }
+            catch (GeneralSecurityException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    /* ------------------------------------------------------------ */
+    /**
+     * A per thread Mac, and the secret it has been initialized with.
+     */
+    private static class Signer
+    {
+        final Mac _mac;
+        SecretKeySpec _secret;
+
+        Signer(Mac mac)
+        {
+            _mac=mac;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * The nonce counts seen for a nonce, as a window of the highest
+     * count seen and a bitmap of the 63 counts below it.
+     */
+    private static class NonceWindow
     {
-        final String _nonce;
         final long _ts;
-        final BitSet _seen; 
+        long _highest = -1;
+        long _seen;
 
-        public Nonce(String nonce, long ts, int size)
+        public NonceWindow(long ts)
         {
-            _nonce=nonce;
             _ts=ts;
-            _seen = new BitSet(size);
         }
 
-        public boolean seen(int count)
+        public synchronized boolean seen(long count)
         {
-            synchronized (this)
+            if (count > _highest)
             {
-                if (count>=_seen.size())
-                    return true;
-                boolean s=_seen.get(count);
-                _seen.set(count);
-                return s;
+                long shift = count - _highest;
+                _seen = shift >= 64 ? 0 : _seen << shift;
+                _seen |= 1;
+                _highest = count;
+                return false;
             }
+
+            long offset = _highest - count;
+            if (offset >= 64)
+                return true;
+            long bit = 1L << offset;
+            if ((_seen & bit) != 0)
+                return true;
+            _seen |= bit;
+            return false;
         }
     }
 
@@ -115,6 +173,23 @@ public class DigestAuthenticator extends LoginAuthenticator
         {
             _maxNC=Integer.valueOf(mnc);
         }
+        String secret=configuration.getInitParameter("nonceSecret");
+        if (secret!=null)
+        {
+            setNonceSecret(secret);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set the secret used to sign nonces. Nodes of a cluster that share 
+     * the secret accept each other's nonces.
+     * @param secret the secret, or null for a random secret
+     */
+    public void setNonceSecret(String secret)
+    {
+        _secret = secret==null ? null : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8),HMAC);
+        _nonceWindows.clear();
     }
 
     /* ------------------------------------------------------------ */
@@ -226,11 +301,18 @@ public class DigestAuthenticator extends LoginAuthenticator
 
                 if (n > 0)
                 {
-                    //UserIdentity user = _loginService.login(digest.username,digest);
-                    UserIdentity user = login(digest.username, digest, req);
+                    // Verify the digest and record its nonce count before the login 
+                    // renews the session, so that a replayed request has no effect.
+                    UserIdentity user = _loginService.login(digest.username, digest, req);
                     if (user!=null)
                     {
-                        return new UserAuthentication(getAuthMethod(),user);
+                        if (!isReplay(digest,(Request)request))
+                        {
+                            renewSession(request, (request instanceof Request? ((Request)request).getResponse() : null));
+                            return new UserAuthentication(getAuthMethod(),user);
+                        }
+                        LOG.warn("Replayed nonce count {} for {}",digest.nc,digest.username);
+                        _loginService.logout(user);
                     }
                 }
                 else if (n == 0)
@@ -267,19 +349,17 @@ public class DigestAuthenticator extends LoginAuthenticator
     /* ------------------------------------------------------------ */
     public String newNonce(Request request)
     {
-        Nonce nonce;
-
-        do
-        {
-            byte[] nounce = new byte[24];
-            _random.nextBytes(nounce);
-
-            nonce = new Nonce(new String(B64Code.encode(nounce)),request.getTimeStamp(),_maxNC);
-        }
-        while (_nonceMap.putIfAbsent(nonce._nonce,nonce)!=null);
-        _nonceQueue.add(nonce);
-
-        return nonce._nonce;
+        byte[] nonce = new byte[NONCE_LENGTH];
+        long ts = request.getTimeStamp();
+        for (int i = 0; i < 8; i++)
+            nonce[i] = (byte)(ts >>> (56 - 8 * i));
+        byte[] random = new byte[NONCE_RANDOM];
+        _random.nextBytes(random);
+        System.arraycopy(random,0,nonce,8,NONCE_RANDOM);
+
+        byte[] mac = sign(nonce);
+        System.arraycopy(mac,0,nonce,8 + NONCE_RANDOM,NONCE_MAC);
+        return new String(B64Code.encode(nonce));
     }
 
     /**
@@ -290,28 +370,31 @@ public class DigestAuthenticator extends LoginAuthenticator
     /* ------------------------------------------------------------ */
     private int checkNonce(Digest digest, Request request)
     {
-        // firstly let's expire old nonces
-        long expired = request.getTimeStamp()-_maxNonceAgeMs;
-        Nonce nonce=_nonceQueue.peek();
-        while (nonce!=null && nonce._ts<expired)
-        {
-            _nonceQueue.remove(nonce);
-            _nonceMap.remove(nonce._nonce);
-            nonce=_nonceQueue.peek();
-        }
-
-        // Now check the requested nonce
         try
         {
-            nonce = _nonceMap.get(digest.nonce);
-            if (nonce==null)
+            // A nonce we did not sign (or signed with a previous secret) is treated as stale
+            // so that the client retries with a new nonce.
+            byte[] nonce = B64Code.decode(digest.nonce);
+            if (nonce.length != NONCE_LENGTH)
+                return 0;
+            byte[] mac = sign(nonce);
+            int mismatch = 0;
+            for (int i = 0; i < NONCE_MAC; i++)
+                mismatch |= mac[i] ^ nonce[8 + NONCE_RANDOM + i];
+            if (mismatch != 0)
+                return 0;
+
+            long ts = 0;
+            for (int i = 0; i < 8; i++)
+                ts = (ts << 8) | (nonce[i] & 0xff);
+            long now = request.getTimeStamp();
+            if (ts > now || now - ts > _maxNonceAgeMs)
                 return 0;
 
             long count = Long.parseLong(digest.nc,16);
             if (count>=_maxNC)
                 return 0;
-            
-            if (nonce.seen((int)count))
+            if (count<0)
                 return -1;
 
             return 1;
@@ -323,6 +406,81 @@ public class DigestAuthenticator extends LoginAuthenticator
         return -1;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Record the nonce count of a successfully authenticated digest.
+     * @return true if the nonce count has already been used with the nonce
+     */
+    private boolean isReplay(Digest digest, Request request)
+    {
+        long now = request.getTimeStamp();
+        if (now >= _nextPurge)
+        {
+            // expire the windows of old nonces
+            _nextPurge = now + Math.max(1000,_maxNonceAgeMs / 2);
+            long expired = now - _maxNonceAgeMs;
+            for (Iterator<NonceWindow> i = _nonceWindows.values().iterator(); i.hasNext();)
+            {
+                if (i.next()._ts < expired)
+                    i.remove();
+            }
+        }
+
+        byte[] nonce = B64Code.decode(digest.nonce);
+        long ts = 0;
+        for (int i = 0; i < 8; i++)
+            ts = (ts << 8) | (nonce[i] & 0xff);
+
+        NonceWindow window = _nonceWindows.get(digest.nonce);
+        if (window == null)
+        {
+            NonceWindow w = new NonceWindow(ts);
+            window = _nonceWindows.putIfAbsent(digest.nonce,w);
+            if (window == null)
+                window = w;
+        }
+        return window.seen(Long.parseLong(digest.nc,16));
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the HMAC of the timestamp and random parts of the nonce
+     */
+    private byte[] sign(byte[] nonce)
+    {
+        SecretKeySpec secret = _secret;
+        if (secret == null)
+        {
+            synchronized (this)
+            {
+                secret = _secret;
+                if (secret == null)
+                {
+                    byte[] key = new byte[32];
+                    _random.nextBytes(key);
+                    secret = new SecretKeySpec(key,HMAC);
+                    _secret = secret;
+                }
+            }
+        }
+
+        try
+        {
+            Signer signer = _signer.get();
+            if (signer._secret != secret)
+            {
+                signer._mac.init(secret);
+                signer._secret = secret;
+            }
+            signer._mac.update(nonce,0,8 + NONCE_RANDOM);
+            return signer._mac.doFinal();
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /* ------------------------------------------------------------ */
     /* ------------------------------------------------------------ */
     /* ------------------------------------------------------------ */
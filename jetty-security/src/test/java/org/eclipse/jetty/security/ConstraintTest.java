@@ -436,6 +436,59 @@ public class ConstraintTest
         Assert.assertEquals(0, uncoveredPaths.size());
     }
 
+    @Test
+    public void testCompiledConstraints() throws Exception
+    {
+        RoleInfo get = new RoleInfo();
+        get.setChecked(true);
+        get.addRole("user");
+        RoleInfo omission = new RoleInfo();
+        omission.setForbidden(true);
+
+        Map<String, RoleInfo> mappings = new HashMap<>();
+        mappings.put("GET", get);
+        mappings.put("GET.PROPFIND.omission", omission);
+
+        ConstraintSecurityHandler.CompiledConstraints compiled = new ConstraintSecurityHandler.CompiledConstraints(mappings, false);
+        Assert.assertSame(get, compiled.getRoleInfo("GET"));
+        Assert.assertSame(omission, compiled.getRoleInfo("POST"));
+        Assert.assertSame(omission, compiled.getRoleInfo("MKCOL"));
+        Assert.assertSame(omission, compiled.getRoleInfo("get"));
+        Assert.assertFalse(compiled.getRoleInfo("PROPFIND").isChecked());
+
+        compiled = new ConstraintSecurityHandler.CompiledConstraints(mappings, true);
+        Assert.assertTrue(compiled.getRoleInfo("PROPFIND").isForbidden());
+        Assert.assertSame(get, compiled.getRoleInfo("GET"));
+    }
+
+    @Test
+    public void testConstraintsChangedWhileStarted() throws Exception
+    {
+        _security.setAuthenticator(new BasicAuthenticator());
+        _server.start();
+
+        String response;
+        response = _connector.getResponses("GET /ctx/noauth/info HTTP/1.0\r\n\r\n");
+        Assert.assertThat(response, Matchers.startsWith("HTTP/1.1 200 OK"));
+
+        Constraint forbid = new Constraint();
+        forbid.setAuthenticate(true);
+        forbid.setName("forbid");
+        ConstraintMapping mapping = new ConstraintMapping();
+        mapping.setPathSpec("/noauth/*");
+        mapping.setConstraint(forbid);
+        _security.addConstraintMapping(mapping);
+
+        response = _connector.getResponses("GET /ctx/noauth/info HTTP/1.0\r\n\r\n");
+        Assert.assertThat(response, Matchers.startsWith("HTTP/1.1 403 Forbidden"));
+
+        _security.setConstraintMappings(Collections.<ConstraintMapping>emptyList());
+        response = _connector.getResponses("GET /ctx/noauth/info HTTP/1.0\r\n\r\n");
+        Assert.assertThat(response, Matchers.startsWith("HTTP/1.1 200 OK"));
+        response = _connector.getResponses("GET /ctx/forbid/info HTTP/1.0\r\n\r\n");
+        Assert.assertThat(response, Matchers.startsWith("HTTP/1.1 200 OK"));
+    }
+
     @Test
     public void testBasic() throws Exception
     {
@@ -685,6 +738,54 @@ public class ConstraintTest
     }
 
 
+    @Test
+    public void testDigestSharedNonceSecret() throws Exception
+    {
+        DigestAuthenticator authenticator = new DigestAuthenticator();
+        authenticator.setNonceSecret("cluster secret");
+        _security.setAuthenticator(authenticator);
+        _server.start();
+
+        String response = _connector.getResponses("GET /ctx/auth/info HTTP/1.0\r\n\r\n");
+        Assert.assertThat(response, Matchers.startsWith("HTTP/1.1 401 Unauthorized"));
+        Matcher matcher = Pattern.compile("nonce=\"([^\"]*)\",").matcher(response);
+        Assert.assertTrue(matcher.find());
+        String nonce=matcher.group(1);
+        _server.stop();
+
+        // another node with the same secret accepts the nonce
+        authenticator = new DigestAuthenticator();
+        authenticator.setNonceSecret("cluster secret");
+        _security.setAuthenticator(authenticator);
+        _server.start();
+
+        String digest= digest(nonce,"user","password","/ctx/auth/info","1");
+        response = _connector.getResponses("GET /ctx/auth/info HTTP/1.0\r\n" +
+            "Authorization: Digest username=\"user\", qop=auth, cnonce=\"1234567890\", uri=\"/ctx/auth/info\", realm=\"TestRealm\", "+
+            "nc=1, "+
+            "nonce=\""+nonce+"\", "+
+            "response=\""+digest+"\"\r\n"+
+            "\r\n");
+        Assert.assertThat(response, Matchers.startsWith("HTTP/1.1 200 OK"));
+        _server.stop();
+
+        // a node with a different secret treats it as stale
+        authenticator = new DigestAuthenticator();
+        authenticator.setNonceSecret("other secret");
+        _security.setAuthenticator(authenticator);
+        _server.start();
+
+        digest= digest(nonce,"user","password","/ctx/auth/info","2");
+        response = _connector.getResponses("GET /ctx/auth/info HTTP/1.0\r\n" +
+            "Authorization: Digest username=\"user\", qop=auth, cnonce=\"1234567890\", uri=\"/ctx/auth/info\", realm=\"TestRealm\", "+
+            "nc=2, "+
+            "nonce=\""+nonce+"\", "+
+            "response=\""+digest+"\"\r\n"+
+            "\r\n");
+        Assert.assertThat(response, Matchers.startsWith("HTTP/1.1 401 Unauthorized"));
+        Assert.assertThat(response, Matchers.containsString("stale=true"));
+    }
+
     @Test
     public void testFormDispatch() throws Exception
     {
@@ -0,0 +1,124 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.security;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.server.UserIdentity;
+import org.eclipse.jetty.util.security.Credential;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UserCacheTest
+{
+    private static class CountingLoginService extends JDBCLoginService
+    {
+        final AtomicInteger _userLoads = new AtomicInteger();
+        final AtomicInteger _roleLoads = new AtomicInteger();
+        volatile String _password = "secret";
+
+        CountingLoginService() throws IOException
+        {
+            super("counting");
+        }
+
+        @Override
+        public UserPrincipal loadUserInfo(String username)
+        {
+            _userLoads.incrementAndGet();
+            if ("nobody".equals(username))
+                return null;
+            return new JDBCUserPrincipal(username,Credential.getCredential(_password),1);
+        }
+
+        @Override
+        public String[] loadRoleInfo(UserPrincipal user)
+        {
+            _roleLoads.incrementAndGet();
+            return new String[]{"user"};
+        }
+    }
+
+    @Test
+    public void testExpiryAndSize() throws Exception
+    {
+        UserCache<String> cache = new UserCache<String>(60000,2);
+        cache.put("a","A");
+        cache.put("b","B");
+        Assert.assertEquals("A",cache.get("a"));
+        cache.put("c","C");
+        //b was least recently used
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals("C",cache.get("c"));
+        Assert.assertEquals(2,cache.getSize());
+        Assert.assertEquals(2,cache.getHits());
+        Assert.assertEquals(1,cache.getMisses());
+
+        cache.setTimeToLive(1);
+        cache.put("d","D");
+        Thread.sleep(5);
+        Assert.assertNull(cache.get("d"));
+
+        cache.setTimeToLive(0);
+        cache.put("e","E");
+        Assert.assertNull(cache.get("e"));
+        Assert.assertEquals(0,cache.getSize());
+    }
+
+    @Test
+    public void testJDBCLoginServiceCache() throws Exception
+    {
+        CountingLoginService service = new CountingLoginService();
+
+        //caching is disabled by default
+        Assert.assertNotNull(service.login("fred","secret",null));
+        Assert.assertNotNull(service.login("fred","secret",null));
+        Assert.assertEquals(2,service._userLoads.get());
+
+        service.setCacheTime(60);
+        UserIdentity fred = service.login("fred","secret",null);
+        Assert.assertSame(fred,service.login("fred","secret",null));
+        Assert.assertEquals(3,service._userLoads.get());
+        Assert.assertEquals(3,service._roleLoads.get());
+        Assert.assertTrue(fred.isUserInRole("user",null));
+
+        //a wrong password is checked against the store, and not cached
+        Assert.assertNull(service.login("fred","wrong",null));
+        Assert.assertEquals(4,service._userLoads.get());
+        Assert.assertEquals(0,service.getCachedUsers());
+
+        //a changed password is picked up
+        service.login("fred","secret",null);
+        service._password = "changed";
+        Assert.assertNotNull(service.login("fred","changed",null));
+        Assert.assertEquals(6,service._userLoads.get());
+
+        //invalidation via jmx
+        Assert.assertTrue(service.invalidateUser("fred"));
+        Assert.assertFalse(service.invalidateUser("fred"));
+        service.login("fred","changed",null);
+        service.invalidateAll();
+        Assert.assertEquals(0,service.getCachedUsers());
+
+        //unknown users are not an error
+        Assert.assertNull(service.login("nobody","secret",null));
+    }
+}
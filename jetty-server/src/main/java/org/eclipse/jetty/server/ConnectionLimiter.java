@@ -0,0 +1,280 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+
+/* ------------------------------------------------------------ */
+/** A Connection.Listener that limits abusive clients before any request is dispatched.
+ * <p>
+ * Adding an instance of this class with {@link AbstractConnector#addBean(Object)}
+ * will register the listener with all connections accepted by that connector.
+ * Connections are checked as they are opened, on the selector thread, and are
+ * closed immediately if either:
+ * <ul>
+ * <li>more than {@link #getMaxAcceptsPerSecond()} connections have been opened in the current second</li>
+ * <li>the remote address already has {@link #getMaxConnectionsPerAddress()} connections open</li>
+ * </ul>
+ * Additionally, {@link HttpConnection}s are configured with
+ * {@link #getMaxRequestsPerConnectionPerSecond()}, so that requests in excess of that
+ * rate are answered with a 429 by the parser, before an HttpChannel is dispatched,
+ * and the connection is then closed.
+ * <p>
+ * A limit of 0 or less disables the corresponding check.
+ * Connections upgraded on the same EndPoint are seen as closed and opened again.
+ */
+@ManagedObject("Connection Limiter")
+public class ConnectionLimiter extends AbstractLifeCycle implements Connection.Listener
+{
+    private static final Logger LOG = Log.getLogger(ConnectionLimiter.class);
+
+    private final ConcurrentMap<InetAddress, AtomicInteger> _addresses = new ConcurrentHashMap<>();
+    private final AtomicLong _accepts = new AtomicLong();
+    private final AtomicLong _rejected = new AtomicLong();
+    private volatile int _maxAcceptsPerSecond;
+    private volatile int _maxConnectionsPerAddress;
+    private volatile int _maxRequestsPerConnectionPerSecond;
+
+    public ConnectionLimiter()
+    {
+        this(0,0,0);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param maxAcceptsPerSecond the maximum number of connections opened per second
+     * @param maxConnectionsPerAddress the maximum number of concurrent connections per remote address
+     * @param maxRequestsPerConnectionPerSecond the maximum number of requests per second on a single connection
+     */
+    public ConnectionLimiter(int maxAcceptsPerSecond, int maxConnectionsPerAddress, int maxRequestsPerConnectionPerSecond)
+    {
+        _maxAcceptsPerSecond=maxAcceptsPerSecond;
+        _maxConnectionsPerAddress=maxConnectionsPerAddress;
+        _maxRequestsPerConnectionPerSecond=maxRequestsPerConnectionPerSecond;
+    }
+
+    @ManagedAttribute("Maximum number of connections opened per second")
+    public int getMaxAcceptsPerSecond()
+    {
+        return _maxAcceptsPerSecond;
+    }
+
+    public void setMaxAcceptsPerSecond(int maxAcceptsPerSecond)
+    {
+        _maxAcceptsPerSecond=maxAcceptsPerSecond;
+    }
+
+    @ManagedAttribute("Maximum number of concurrent connections per remote address")
+    public int getMaxConnectionsPerAddress()
+    {
+        return _maxConnectionsPerAddress;
+    }
+
+    public void setMaxConnectionsPerAddress(int maxConnectionsPerAddress)
+    {
+        _maxConnectionsPerAddress=maxConnectionsPerAddress;
+    }
+
+    @ManagedAttribute("Maximum number of requests per second on a single connection")
+    public int getMaxRequestsPerConnectionPerSecond()
+    {
+        return _maxRequestsPerConnectionPerSecond;
+    }
+
+    public void setMaxRequestsPerConnectionPerSecond(int maxRequestsPerConnectionPerSecond)
+    {
+        _maxRequestsPerConnectionPerSecond=maxRequestsPerConnectionPerSecond;
+    }
+
+    @ManagedAttribute("Number of connections rejected")
+    public long getRejectedConnections()
+    {
+        return _rejected.get();
+    }
+
+    @ManagedAttribute("Number of remote addresses with open connections")
+    public int getAddresses()
+    {
+        return _addresses.size();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param address the remote address
+     * @return the number of connections currently open from the given address
+     */
+    public int getConnections(InetAddress address)
+    {
+        AtomicInteger count=_addresses.get(address);
+        return count==null?0:Math.max(0,count.get());
+    }
+
+    @ManagedOperation("Resets the rejected connections statistics")
+    public void reset()
+    {
+        _rejected.set(0);
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        _addresses.clear();
+        super.doStop();
+    }
+
+    @Override
+    public void onOpened(Connection connection)
+    {
+        if (!isStarted())
+            return;
+
+        if (connection instanceof HttpConnection)
+            ((HttpConnection)connection).setMaxRequestsPerSecond(getMaxRequestsPerConnectionPerSecond());
+
+        EndPoint endPoint=connection.getEndPoint();
+        // The connection over TLS shares the network connection of its SslConnection.
+        if (endPoint instanceof SslConnection.DecryptedEndPoint)
+            return;
+
+        InetAddress address=getAddress(endPoint);
+        int connections=address==null?0:increment(address);
+
+        if (isAcceptRateExceeded())
+            reject(connection,"accept rate");
+        else
+        {
+            int maxConnections=getMaxConnectionsPerAddress();
+            if (maxConnections>0 && connections>maxConnections)
+                reject(connection,"connections per address");
+        }
+    }
+
+    @Override
+    public void onClosed(Connection connection)
+    {
+        EndPoint endPoint=connection.getEndPoint();
+        if (endPoint instanceof SslConnection.DecryptedEndPoint)
+            return;
+
+        InetAddress address=getAddress(endPoint);
+        if (address!=null)
+            decrement(address);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Closes a connection that exceeded a limit.
+     * This method may be extended to log or otherwise react to rejections.
+     * @param connection the connection being rejected
+     * @param reason the limit that was exceeded
+     */
+    protected void reject(Connection connection, String reason)
+    {
+        _rejected.incrementAndGet();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Rejected {}: {}",connection,reason);
+        connection.getEndPoint().close();
+    }
+
+    private InetAddress getAddress(EndPoint endPoint)
+    {
+        InetSocketAddress remote=endPoint.getRemoteAddress();
+        return remote==null?null:remote.getAddress();
+    }
+
+    private boolean isAcceptRateExceeded()
+    {
+        int max=getMaxAcceptsPerSecond();
+        if (max<=0)
+            return false;
+
+        // The high 32 bits hold the current second, the low 32 bits the accepts in that second.
+        long second=TimeUnit.NANOSECONDS.toSeconds(System.nanoTime())&0xFFFFFFFFL;
+        while (true)
+        {
+            long state=_accepts.get();
+            long next=(state>>>32)==second?state+1:(second<<32)|1;
+            if (_accepts.compareAndSet(state,next))
+                return (int)next>max;
+        }
+    }
+
+    private int increment(InetAddress address)
+    {
+        while (true)
+        {
+            AtomicInteger count=_addresses.get(address);
+            if (count==null)
+            {
+                count=new AtomicInteger();
+                AtomicInteger existing=_addresses.putIfAbsent(address,count);
+                if (existing!=null)
+                    count=existing;
+            }
+
+            while (true)
+            {
+                int current=count.get();
+                // A negative count has been discarded by decrement(), retry with a new one.
+                if (current<0)
+                {
+                    _addresses.remove(address,count);
+                    break;
+                }
+                if (count.compareAndSet(current,current+1))
+                    return current+1;
+            }
+        }
+    }
+
+    private void decrement(InetAddress address)
+    {
+        AtomicInteger count=_addresses.get(address);
+        if (count!=null && count.decrementAndGet()==0 && count.compareAndSet(0,-1))
+            _addresses.remove(address,count);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{accepts=%d/s,address=%d,requests=%d/s}",
+                getClass().getSimpleName(),
+                hashCode(),
+                getMaxAcceptsPerSecond(),
+                getMaxConnectionsPerAddress(),
+                getMaxRequestsPerConnectionPerSecond());
+    }
+}
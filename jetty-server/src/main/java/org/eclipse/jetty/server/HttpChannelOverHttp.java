@@ -259,6 +259,12 @@ class HttpChannelOverHttp extends HttpChannel implements HttpParser.RequestHandl
     @Override
     public boolean headerComplete()
     {
+        if (_httpConnection.isRequestRateExceeded())
+        {
+            badMessage(HttpStatus.TOO_MANY_REQUESTS_429,null);
+            return false;
+        }
+
         boolean persistent;
 
         switch (_metadata.getVersion())
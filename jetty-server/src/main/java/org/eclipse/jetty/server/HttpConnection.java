@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritePendingException;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jetty.http.HttpField;
@@ -70,6 +71,9 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
     private final BlockingReadCallback _blockingReadCallback = new BlockingReadCallback();
     private final AsyncReadCallback _asyncReadCallback = new AsyncReadCallback();
     private final SendCallback _sendCallback = new SendCallback();
+    private int _maxRequestsPerSecond;
+    private long _requestsWindow;
+    private int _requestsInWindow;
 
     /**
      * Get the current connection that this thread is dispatched to.
@@ -172,6 +176,45 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         return getHttpChannel().getRequests();
     }
 
+    /**
+     * @return the maximum number of requests per second accepted on this connection, or 0 for no limit
+     * @see ConnectionLimiter
+     */
+    public int getMaxRequestsPerSecond()
+    {
+        return _maxRequestsPerSecond;
+    }
+
+    /**
+     * @param maxRequestsPerSecond the maximum number of requests per second accepted on this connection,
+     * or 0 for no limit. Requests in excess are answered with a 429 before being dispatched.
+     * @see ConnectionLimiter
+     */
+    public void setMaxRequestsPerSecond(int maxRequestsPerSecond)
+    {
+        _maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    /**
+     * <p>Counts a parsed request against {@link #getMaxRequestsPerSecond()}.</p>
+     * <p>Only called by the parsing thread, so no synchronization is needed.</p>
+     *
+     * @return whether the request exceeds the rate allowed on this connection
+     */
+    boolean isRequestRateExceeded()
+    {
+        int max = _maxRequestsPerSecond;
+        if (max <= 0)
+            return false;
+        long now = System.nanoTime();
+        if (_requestsInWindow == 0 || now - _requestsWindow >= TimeUnit.SECONDS.toNanos(1))
+        {
+            _requestsWindow = now;
+            _requestsInWindow = 0;
+        }
+        return ++_requestsInWindow > max;
+    }
+
     @Override
     public ByteBuffer onUpgradeFrom()
     {
@@ -450,6 +450,38 @@ public abstract class AbstractSession implements AbstractSessionManager.SessionI
     public abstract Enumeration<String> doGetAttributeNames();
     
     
+    /* ------------------------------------------------------------ */
+    /**
+     * Deserialize an attribute value that was loaded in its serialized form.
+     * If the value is an {@link HttpSessionActivationListener} it is notified
+     * of the activation it missed while the session was loaded.
+     *
+     * @param name the name of the attribute
+     * @param value the value held by the session
+     * @return the deserialized value, the value itself if not serialized, or
+     * null if it could not be deserialized
+     */
+    protected Object deserializeAttribute(String name, Object value)
+    {
+        if (!(value instanceof SerializedAttribute))
+            return value;
+
+        try
+        {
+            Object attribute=((SerializedAttribute)value).deserialize(_manager._loader);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Deserialized attribute {} of session {}",name,getId());
+            if (attribute instanceof HttpSessionActivationListener)
+                ((HttpSessionActivationListener)attribute).sessionDidActivate(new HttpSessionEvent(this));
+            return attribute;
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Unable to deserialize attribute "+name+" of session "+getId(),e);
+            return null;
+        }
+    }
+
     /* ------------------------------------------------------------ */
     @Override
     public Object getAttribute(String name)
@@ -483,7 +515,7 @@ public abstract class AbstractSession implements AbstractSessionManager.SessionI
         synchronized (this)
         {
             checkValid();
-            old=doPutOrRemove(name,value);
+            old=deserializeAttribute(name,doPutOrRemove(name,value));
         }
 
         if (value==null || !value.equals(old))
@@ -516,7 +548,7 @@ public abstract class AbstractSession implements AbstractSessionManager.SessionI
         synchronized (this)
         {
             checkValid();
-            old=doPutOrRemove(name,value);
+            old=deserializeAttribute(name,doPutOrRemove(name,value));
         }
 
         callSessionAttributeListeners(name, value, old);
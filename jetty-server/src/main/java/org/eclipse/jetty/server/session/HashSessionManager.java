@@ -641,6 +641,20 @@ public class HashSessionManager extends AbstractSessionManager
     
 
     /* ------------------------------------------------------------ */
+    /**
+     * Restore a session from the stream written by {@link HashedSession#save(java.io.OutputStream)}.
+     * <p>
+     * Attributes saved in their serialized form are not deserialized until first used,
+     * so restoring them does not call {@link javax.servlet.http.HttpSessionBindingListener#valueBound(javax.servlet.http.HttpSessionBindingEvent)}
+     * nor the {@link javax.servlet.http.HttpSessionAttributeListener}s, as they were bound
+     * before the session was saved. Activation listeners are notified on first use.
+     * Attributes saved as plain values are set as before.
+     *
+     * @param is the stream to read the session from
+     * @param session the session to restore into, or null to create a new one
+     * @return the restored session
+     * @throws Exception if the session cannot be read
+     */
     public HashedSession restoreSession (InputStream is, HashedSession session) throws Exception
     {
         DataInputStream di = new DataInputStream(is);
@@ -689,7 +703,10 @@ public class HashSessionManager extends AbstractSessionManager
             {
                 String key = ois.readUTF();
                 Object value = ois.readObject();
-                session.setAttribute(key,value);
+                if (value instanceof SerializedAttribute)
+                    session.doPutOrRemove(key,value); //deserialized on first use
+                else
+                    session.setAttribute(key,value);
             }
         }
     }
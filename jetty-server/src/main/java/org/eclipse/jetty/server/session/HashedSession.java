@@ -192,7 +192,8 @@ public class HashedSession extends MemSession
         {
             String key=e.nextElement();
             oos.writeUTF(key);
-            oos.writeObject(doGet(key));
+            //attributes not used since the session was restored keep their bytes
+            oos.writeObject(SerializedAttribute.persist(getAttributeMap().get(key),_hashSessionManager._loader));
         }
         
         out.writeInt(getMaxInactiveInterval());
@@ -29,11 +29,18 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.naming.InitialContext;
 import javax.servlet.http.HttpServletRequest;
@@ -44,6 +51,9 @@ import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.SessionManager;
 import org.eclipse.jetty.server.handler.ContextHandler;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import org.eclipse.jetty.util.thread.Scheduler;
@@ -56,7 +66,14 @@ import org.eclipse.jetty.util.thread.Scheduler;
  * SessionIdManager implementation that uses a database to store in-use session ids,
  * to support distributed sessions.
  *
+ * Expired sessions are scavenged in bounded batches, paging through the
+ * expiry time index. Old expired sessions that no node is managing any more
+ * are claimed by a node before being expired, so that several nodes do not
+ * scavenge the same sessions. Expiry of a batch by the session managers (and
+ * hence the invocation of the session listeners) is pipelined with the
+ * selection of the next batch.
  */
+@ManagedObject("JDBC Session Id Manager")
 public class JDBCSessionIdManager extends AbstractSessionIdManager
 {
     final static Logger LOG = SessionHandler.LOG;
@@ -71,6 +88,7 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
     protected String _jndiName;
 
     protected int _deleteBlockSize = 10; //number of ids to include in where 'in' clause
+    protected int _scavengeBatchSize = 100; //max number of expired sessions selected at once
 
     protected Scheduler.Task _task; //scavenge task
     protected Scheduler _scheduler;
@@ -78,6 +96,10 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
     protected boolean _ownScheduler;
     protected long _lastScavengeTime;
     protected long _scavengeIntervalMs = 1000L * 60 * 10; //10mins
+    protected final AtomicLong _scavengedSessions = new AtomicLong();
+    protected volatile double _scavengeRate;
+    protected volatile long _scavengeLag;
+    private long _oldestExpiryFound;
 
 
     protected String _createSessionIdTable;
@@ -85,6 +107,8 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
 
     protected String _selectBoundedExpiredSessions;
     private String _selectExpiredSessions;
+    protected String _selectExpiredSessionsBatch;
+    protected String _claimExpiredSession;
     
     protected String _insertId;
     protected String _deleteId;
@@ -124,6 +148,8 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
         protected String _expiryTimeColumn = "expiryTime";
         protected String _maxIntervalColumn = "maxInterval";
         protected String _mapColumn = "map";
+        protected String _claimedByColumn = "claimedBy";
+        protected String _claimedTimeColumn = "claimedTime";
         
         
         protected void setDatabaseAdaptor(DatabaseAdaptor dbadaptor)
@@ -257,6 +283,24 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
             checkNotNull(maxIntervalColumn);
             _maxIntervalColumn = maxIntervalColumn;
         }
+        public String getClaimedByColumn()
+        {
+            return _claimedByColumn;
+        }
+        public void setClaimedByColumn(String claimedByColumn)
+        {
+            checkNotNull(claimedByColumn);
+            _claimedByColumn = claimedByColumn;
+        }
+        public String getClaimedTimeColumn()
+        {
+            return _claimedTimeColumn;
+        }
+        public void setClaimedTimeColumn(String claimedTimeColumn)
+        {
+            checkNotNull(claimedTimeColumn);
+            _claimedTimeColumn = claimedTimeColumn;
+        }
         public String getMapColumn()
         {
             return _mapColumn;
@@ -279,7 +323,7 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
                     _contextPathColumn+" varchar(60), "+_virtualHostColumn+" varchar(60), "+_lastNodeColumn+" varchar(60), "+_accessTimeColumn+" "+longType+", "+
                     _lastAccessTimeColumn+" "+longType+", "+_createTimeColumn+" "+longType+", "+_cookieTimeColumn+" "+longType+", "+
                     _lastSavedTimeColumn+" "+longType+", "+_expiryTimeColumn+" "+longType+", "+_maxIntervalColumn+" "+longType+", "+
-                    _mapColumn+" "+blobType+", primary key("+getRowIdColumn()+"))";
+                    _mapColumn+" "+blobType+", "+_claimedByColumn+" varchar(120), "+_claimedTimeColumn+" "+longType+", primary key("+getRowIdColumn()+"))";
         }
         
         public String getCreateIndexOverExpiryStatementAsString (String indexName)
@@ -303,6 +347,24 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
             else
                 return stem +" not null default "+ MAX_INTERVAL_NOT_SET;
         }
+
+        /**
+         * @return a statement that adds the claimed by column to a session table created by an earlier release
+         */
+        public String getAlterTableForClaimedByAsString ()
+        {
+            return "alter table "+getTableName()+" add "+getClaimedByColumn()+" varchar(120)";
+        }
+
+        /**
+         * @return a statement that adds the claimed time column to a session table created by an earlier release
+         */
+        public String getAlterTableForClaimedTimeAsString ()
+        {
+            if (_dbAdaptor == null)
+                throw new IllegalStateException ("No DBAdaptor");
+            return "alter table "+getTableName()+" add "+getClaimedTimeColumn()+" "+_dbAdaptor.getLongType();
+        }
         
         private void checkNotNull(String s)
         {
@@ -350,6 +412,31 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
         {
             return "select * from "+getTableName()+" where "+getExpiryTimeColumn()+" >0 and "+getExpiryTimeColumn()+" <= ?";
         }
+
+        /**
+         * @return a statement selecting, in (expiry, rowId) order and without the attribute map,
+         * the sessions that expired before or at the first parameter and that come after the
+         * expiry given as the second and third parameters and the rowId given as the fourth one
+         */
+        public String getSelectExpiredSessionsBatchStatementAsString()
+        {
+            return "select "+getRowIdColumn()+", "+getIdColumn()+", "+getLastNodeColumn()+", "+getExpiryTimeColumn()+
+                    " from "+getTableName()+" where "+getExpiryTimeColumn()+" > 0 and "+getExpiryTimeColumn()+" <= ?"+
+                    " and ("+getExpiryTimeColumn()+" > ? or ("+getExpiryTimeColumn()+" = ? and "+getRowIdColumn()+" > ?))"+
+                    " order by "+getExpiryTimeColumn()+", "+getRowIdColumn();
+        }
+
+        /**
+         * @return a statement that records a claim on an expired session, provided its expiry
+         * has not changed since it was read and it has no claim, or only one older than the
+         * last parameter
+         */
+        public String getClaimExpiredSessionStatementAsString()
+        {
+            return "update "+getTableName()+" set "+getClaimedByColumn()+" = ?, "+getClaimedTimeColumn()+" = ?"+
+                    " where "+getRowIdColumn()+" = ? and "+getExpiryTimeColumn()+" = ?"+
+                    " and ("+getClaimedByColumn()+" is null or "+getClaimedTimeColumn()+" < ?)";
+        }
      
         public PreparedStatement getLoadStatement (Connection connection, String rowId, String contextPath, String virtualHosts)
         throws SQLException
@@ -805,6 +892,46 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
         return _scavengeIntervalMs/1000;
     }
 
+    /**
+     * @param size the maximum number of expired sessions selected, claimed and expired at once
+     */
+    public void setScavengeBatchSize (int size)
+    {
+        _scavengeBatchSize = size;
+    }
+
+    @ManagedAttribute("maximum number of expired sessions scavenged at once")
+    public int getScavengeBatchSize ()
+    {
+        return _scavengeBatchSize;
+    }
+
+    @ManagedAttribute("total number of sessions scavenged by this node")
+    public long getScavengedSessions ()
+    {
+        return _scavengedSessions.get();
+    }
+
+    @ManagedAttribute("sessions scavenged per second during the last scavenge")
+    public double getScavengeRate ()
+    {
+        return _scavengeRate;
+    }
+
+    @ManagedAttribute("time in ms between the last scavenge and the expiry of the oldest session it found")
+    public long getScavengeLag ()
+    {
+        return _scavengeLag;
+    }
+
+    @ManagedOperation("resets the scavenging statistics")
+    public void resetScavengeStats ()
+    {
+        _scavengedSessions.set(0);
+        _scavengeRate = 0;
+        _scavengeLag = 0;
+    }
+
 
     @Override
     public void addSession(HttpSession session)
@@ -1132,6 +1259,10 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
                     {
                         colResult.close();
                     }
+
+                    //check it has the claim columns used by the scavenger
+                    addColumn(metaData, statement, _sessionTableSchema.getClaimedByColumn(), _sessionTableSchema.getAlterTableForClaimedByAsString());
+                    addColumn(metaData, statement, _sessionTableSchema.getClaimedTimeColumn(), _sessionTableSchema.getAlterTableForClaimedTimeAsString());
                 }
             }
             //make some indexes on the JettySessions table
@@ -1164,6 +1295,39 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
             _updateSessionAccessTime = _sessionTableSchema.getUpdateSessionAccessTimeStatementAsString();
             _selectBoundedExpiredSessions = _sessionTableSchema.getBoundedExpiredSessionsStatementAsString();
             _selectExpiredSessions = _sessionTableSchema.getSelectExpiredSessionsStatementAsString();
+            _selectExpiredSessionsBatch = _sessionTableSchema.getSelectExpiredSessionsBatchStatementAsString();
+            _claimExpiredSession = _sessionTableSchema.getClaimExpiredSessionStatementAsString();
+        }
+    }
+
+    /**
+     * Add a column to the session table, if it does not already have it.
+     *
+     * @param metaData the database meta data
+     * @param statement the statement to use
+     * @param column the name of the column
+     * @param alter the statement that adds the column
+     * @throws SQLException if unable to check for or add the column
+     */
+    private void addColumn (DatabaseMetaData metaData, Statement statement, String column, String alter)
+    throws SQLException
+    {
+        try (ResultSet result = metaData.getColumns(null, null,
+                                                    _dbAdaptor.convertIdentifier(_sessionTableSchema.getTableName()),
+                                                    _dbAdaptor.convertIdentifier(column)))
+        {
+            if (result.next())
+                return;
+        }
+
+        try
+        {
+            statement.executeUpdate(alter);
+        }
+        catch (SQLException e)
+        {
+            LOG.warn("Problem adding "+column+" column. Ensure table "+_sessionTableSchema.getTableName()+" contains it: \""+alter+"\"");
+            throw e;
         }
     }
 
@@ -1251,7 +1415,10 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
     private void scavenge ()
     {
         Set<String> candidateIds = getAllCandidateExpiredSessionIds();
-        
+        long sweepStart = System.currentTimeMillis();
+        long scavenged = _scavengedSessions.get();
+        _oldestExpiryFound = 0;
+
         Connection connection = null;
         try
         {
@@ -1289,50 +1456,22 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
 
 
                 //Pass 2: find sessions that have expired a while ago for which this node was their last manager
-                try (PreparedStatement selectExpiredSessions = connection.prepareStatement(_selectExpiredSessions))
+                upperBound = _lastScavengeTime - (2 * _scavengeIntervalMs);
+                if (upperBound > 0)
                 {
-                    expiredSessionIds.clear();
-                    upperBound = _lastScavengeTime - (2 * _scavengeIntervalMs);
-                    if (upperBound > 0)
-                    {
-                        if (LOG.isDebugEnabled()) LOG.debug(getWorkerName()+"- Pass 2: Searching for sessions expired before "+upperBound);
-                        selectExpiredSessions.setLong(1, upperBound);
-                        try (ResultSet result = selectExpiredSessions.executeQuery())
-                        {
-                            while (result.next())
-                            {
-                                String sessionId = result.getString(_sessionTableSchema.getIdColumn());
-                                String lastNode = result.getString(_sessionTableSchema.getLastNodeColumn());
-                                if ((getWorkerName() == null && lastNode == null) || (getWorkerName() != null && getWorkerName().equals(lastNode)))
-                                    expiredSessionIds.add(sessionId);
-                                if (LOG.isDebugEnabled()) LOG.debug ("Found expired sessionId="+sessionId+" last managed by "+getWorkerName());
-                            }
-                        }
-                        scavengeSessions(candidateIds, expiredSessionIds, false);
-                    }
-
+                    if (LOG.isDebugEnabled()) LOG.debug(getWorkerName()+"- Pass 2: Searching for sessions expired before "+upperBound);
+                    scavengeBatches(connection, upperBound, candidateIds, false);
+                }
 
-                    //Pass 3:
-                    //find all sessions that have expired at least a couple of scanIntervals ago
-                    //if we did not succeed in loading them (eg their related context no longer exists, can't be loaded etc) then
-                    //they are simply deleted
-                    upperBound = _lastScavengeTime - (3 * _scavengeIntervalMs);
-                    expiredSessionIds.clear();
-                    if (upperBound > 0)
-                    {
-                        if (LOG.isDebugEnabled()) LOG.debug(getWorkerName()+"- Pass 3: searching for sessions expired before "+upperBound);
-                        selectExpiredSessions.setLong(1, upperBound);
-                        try (ResultSet result = selectExpiredSessions.executeQuery())
-                        {
-                            while (result.next())
-                            {
-                                String sessionId = result.getString(_sessionTableSchema.getIdColumn());
-                                expiredSessionIds.add(sessionId);
-                                if (LOG.isDebugEnabled()) LOG.debug ("Found expired sessionId="+sessionId);
-                            }
-                        }
-                        scavengeSessions(candidateIds, expiredSessionIds, true);
-                    }
+                //Pass 3:
+                //find all sessions that have expired at least a couple of scanIntervals ago
+                //if we did not succeed in loading them (eg their related context no longer exists, can't be loaded etc) then
+                //they are simply deleted. Sessions are claimed first so that other nodes skip them.
+                upperBound = _lastScavengeTime - (3 * _scavengeIntervalMs);
+                if (upperBound > 0)
+                {
+                    if (LOG.isDebugEnabled()) LOG.debug(getWorkerName()+"- Pass 3: searching for sessions expired before "+upperBound);
+                    scavengeBatches(connection, upperBound, candidateIds, true);
                 }
                 
                 //Tell session managers to check remaining sessions in memory that may have expired 
@@ -1350,7 +1489,10 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
         finally
         {
             _lastScavengeTime=System.currentTimeMillis();
-            if (LOG.isDebugEnabled()) LOG.debug(getWorkerName()+"- Scavenge sweep ended at "+_lastScavengeTime);
+            long elapsed = Math.max(1, _lastScavengeTime - sweepStart);
+            _scavengeRate = (_scavengedSessions.get() - scavenged) * 1000.0 / elapsed;
+            _scavengeLag = _oldestExpiryFound > 0 ? sweepStart - _oldestExpiryFound : 0;
+            if (LOG.isDebugEnabled()) LOG.debug(getWorkerName()+"- Scavenge sweep ended at "+_lastScavengeTime+", rate="+_scavengeRate+"/s, lag="+_scavengeLag+"ms");
             if (connection != null)
             {
                 try
@@ -1366,6 +1508,177 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
     }
     
     
+    /**
+     * Page through the sessions that expired before the given bound, in batches
+     * of at most {@link #getScavengeBatchSize()} sessions, using the expiry time index.
+     * While the session managers expire one batch, the next one is selected.
+     *
+     * @param connection the connection to use
+     * @param upperBound the time before which sessions have expired
+     * @param candidateIds the ids of the sessions the session managers think have expired
+     * @param claim if true, sessions last managed by any node are claimed and then
+     * forcibly deleted if they cannot be expired, otherwise only the sessions last managed by
+     * this node are expired
+     * @throws Exception if unable to select the expired sessions
+     */
+    private void scavengeBatches (Connection connection, long upperBound, final Set<String> candidateIds, final boolean claim)
+    throws Exception
+    {
+        int batchSize = Math.max(1, _scavengeBatchSize);
+        long lowerBound = 0;
+        String lowerRowId = "";
+        String token = claim ? newClaimToken() : null;
+        FutureTask<Void> pending = null;
+        try (PreparedStatement statement = connection.prepareStatement(_selectExpiredSessionsBatch))
+        {
+            statement.setMaxRows(batchSize);
+            while (true)
+            {
+                final Set<String> expiredSessionIds = new HashSet<String>();
+                List<Object[]> claims = new ArrayList<Object[]>();
+                int rows = 0;
+                statement.setLong(1, upperBound);
+                statement.setLong(2, lowerBound);
+                statement.setLong(3, lowerBound);
+                statement.setString(4, lowerRowId);
+                try (ResultSet result = statement.executeQuery())
+                {
+                    while (result.next())
+                    {
+                        ++rows;
+                        String sessionId = result.getString(_sessionTableSchema.getIdColumn());
+                        String rowId = result.getString(_sessionTableSchema.getRowIdColumn());
+                        String lastNode = result.getString(_sessionTableSchema.getLastNodeColumn());
+                        long expiry = result.getLong(_sessionTableSchema.getExpiryTimeColumn());
+                        //page on (expiry, rowId), so that sessions sharing an expiry across a page boundary are not skipped
+                        lowerBound = expiry;
+                        lowerRowId = rowId;
+                        if (_oldestExpiryFound == 0 || expiry < _oldestExpiryFound)
+                            _oldestExpiryFound = expiry;
+
+                        if (claim)
+                            claims.add(new Object[]{sessionId, rowId, expiry});
+                        else if ((getWorkerName() == null && lastNode == null) || (getWorkerName() != null && getWorkerName().equals(lastNode)))
+                            expiredSessionIds.add(sessionId);
+                        if (LOG.isDebugEnabled()) LOG.debug ("Found expired sessionId="+sessionId+" last managed by "+lastNode);
+                    }
+                }
+
+                //claim outside of the result set, as not all drivers keep it open across updates
+                for (Object[] c : claims)
+                {
+                    if (claim(connection, (String)c[1], (Long)c[2], token))
+                        expiredSessionIds.add((String)c[0]);
+                }
+
+                //wait for the previous batch before handing over the next one
+                await(pending);
+                pending = null;
+                if (!expiredSessionIds.isEmpty())
+                {
+                    pending = new FutureTask<Void>(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            scavengeSessions(candidateIds, expiredSessionIds, claim);
+                        }
+                    }, null);
+                    execute(pending);
+                }
+
+                if (rows < batchSize)
+                    break;
+            }
+        }
+        finally
+        {
+            await(pending);
+        }
+    }
+
+    /**
+     * @return a token identifying the claims made by this node in one scavenge pass
+     */
+    private String newClaimToken ()
+    {
+        String token = Long.toString(_random.nextLong() & Long.MAX_VALUE, 36);
+        String workerName = getWorkerName();
+        if (workerName == null)
+            return token;
+        if (workerName.length() > 100)
+            workerName = workerName.substring(0, 100);
+        return workerName+"-"+token;
+    }
+
+    /**
+     * Claim an expired session for this node, so that other nodes scavenging
+     * at the same time do not process it.
+     * <p>
+     * The claim succeeds only if the session has not been refreshed since it was
+     * read, and if no other scavenger holds a claim on it. A claim is released by
+     * deleting the session, or lapses after two scavenge intervals, so that the
+     * sessions claimed by a node that stopped are picked up by the others.
+     *
+     * @param connection the connection to use
+     * @param rowId the row id of the session
+     * @param expiry the expiry time of the session, as read from the database
+     * @param token the claim token of this scavenge pass
+     * @return true if this node now owns the session
+     * @throws SQLException if unable to claim the session
+     */
+    private boolean claim (Connection connection, String rowId, long expiry, String token)
+    throws SQLException
+    {
+        long now = System.currentTimeMillis();
+        try (PreparedStatement statement = connection.prepareStatement(_claimExpiredSession))
+        {
+            statement.setString(1, token);
+            statement.setLong(2, now);
+            statement.setString(3, rowId);
+            statement.setLong(4, expiry);
+            statement.setLong(5, now - (2 * _scavengeIntervalMs));
+            return statement.executeUpdate() == 1;
+        }
+    }
+
+    private void execute (FutureTask<Void> task)
+    {
+        Executor executor = _server == null ? null : _server.getThreadPool();
+        try
+        {
+            if (executor != null && isRunning())
+            {
+                executor.execute(task);
+                return;
+            }
+        }
+        catch (RejectedExecutionException e)
+        {
+            LOG.ignore(e);
+        }
+        task.run();
+    }
+
+    private void await (FutureTask<Void> task)
+    throws Exception
+    {
+        if (task == null)
+            return;
+        try
+        {
+            task.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception)cause;
+            throw e;
+        }
+    }
+
+
     /**
      * @param expiredSessionIds
      */
@@ -1379,9 +1692,13 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
             if (successfullyExpiredIds != null)
             {
                 remainingIds.removeAll(successfullyExpiredIds);
-                candidateIds.removeAll(successfullyExpiredIds);
+                synchronized (candidateIds)
+                {
+                    candidateIds.removeAll(successfullyExpiredIds);
+                }
             }
         }
+        _scavengedSessions.addAndGet(expiredSessionIds.size() - remainingIds.size());
     
 
         //Any remaining ids are of those sessions that no context removed
@@ -1397,6 +1714,7 @@ public class JDBCSessionIdManager extends AbstractSessionIdManager
                 }
                 
                 cleanExpiredSessionIds(remainingIds);
+                _scavengedSessions.addAndGet(remainingIds.size());
             }
             catch (Exception e)
             {
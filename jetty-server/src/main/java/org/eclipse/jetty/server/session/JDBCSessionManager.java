@@ -30,6 +30,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -46,6 +47,8 @@ import org.eclipse.jetty.server.session.JDBCSessionIdManager.SessionTableSchema;
 import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
 
 /**
  * JDBCSessionManager.
@@ -71,15 +74,49 @@ import org.eclipse.jetty.util.log.Logger;
  * the accessTime and lastAccessTime every time the session is accessed. Rather,
  * we write it out every so often. The frequency is controlled by the saveIntervalSec
  * field.
+ * <p>
+ * To further reduce the load on the database, a write-behind mode can be enabled
+ * with {@link #setWriteBehindInterval(long)}. Session writes at the end of requests
+ * are then queued, coalesced per session, and flushed periodically as JDBC batches
+ * in a single transaction. The queue is bounded by {@link #setMaxWriteBehindSize(int)}:
+ * when it is full, sessions are written synchronously as usual. The queue is always
+ * flushed when the manager stops, and a queued session is flushed before it is
+ * reloaded from the database.
  */
 public class JDBCSessionManager extends AbstractSessionManager
 {
     private static final Logger LOG = Log.getLogger(JDBCSessionManager.class);
 
     private ConcurrentHashMap<String, Session> _sessions;
+    private final ConcurrentHashMap<String, Session> _writeBehind = new ConcurrentHashMap<String, Session>();
     protected JDBCSessionIdManager _jdbcSessionIdMgr = null;
     protected long _saveIntervalSec = 60; //only persist changes to session access times every 60 secs
+    protected long _writeBehindMs = 0; //0 means session changes are written synchronously
+    protected int _maxWriteBehindSize = 1024;
+    protected int _maxWriteBehindRetries = 3;
     protected SessionTableSchema _sessionTableSchema;
+    protected Scheduler _scheduler;
+    protected boolean _ownScheduler;
+    protected Scheduler.Task _writeBehindTask;
+    protected final Runnable _writeBehindFlusher = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            try
+            {
+                flushWriteBehind();
+            }
+            finally
+            {
+                synchronized (JDBCSessionManager.this)
+                {
+                    if (_scheduler != null && _scheduler.isRunning() && isRunning())
+                        _writeBehindTask = _scheduler.schedule(this, _writeBehindMs, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    };
 
    
 
@@ -97,6 +134,16 @@ public class JDBCSessionManager extends AbstractSessionManager
          * If dirty, session needs to be (re)persisted
          */
         protected boolean _dirty=false;
+
+        /**
+         * If true, the session is queued for write-behind and its attributes need to be written
+         */
+        protected boolean _writeBehindDirty=false;
+
+        /**
+         * The number of consecutive write-behind flushes that failed to write the session
+         */
+        protected int _writeBehindFailures=0;
         
         
      
@@ -239,6 +286,8 @@ public class JDBCSessionManager extends AbstractSessionManager
             Object old = changeAttribute(name, value);
             if (value == null && old == null)
                 return; //if same as remove attribute but attribute was already removed, no change
+            if (_writeBehindMs > 0 && value != null && isImmutable(value) && value.equals(old))
+                return; //write-behind: same immutable value set again, nothing new to persist
             
             _dirty = true;
         }
@@ -320,11 +369,13 @@ public class JDBCSessionManager extends AbstractSessionManager
                         {
                             //The session attributes have changed, write to the db, ensuring
                             //http passivation/activation listeners called
-                            save(true);
+                            if (!writeBehind(this, true))
+                                save(true);
                         }
                         else if ((getAccessed() - _lastSaved) >= (getSaveInterval() * 1000L))
                         {
-                            updateSessionAccessTime(this);
+                            if (!writeBehind(this, false))
+                                updateSessionAccessTime(this);
                         }
                     }
                 }
@@ -422,6 +473,264 @@ public class JDBCSessionManager extends AbstractSessionManager
     }
 
 
+    /**
+     * Set the interval in milliseconds between flushes of the write-behind queue.
+     *
+     * If greater than 0, session data and access times that need saving at the
+     * end of a request are queued and written in JDBC batches by a periodic task,
+     * rather than synchronously by the request thread. Several requests on the
+     * same session before a flush result in a single write. In this mode, setting
+     * an attribute again to an equal String, boxed primitive or enum value does
+     * not make the session dirty.
+     *
+     * Note that while a session is queued, another node loading it from the
+     * database will see the previously saved data.
+     *
+     * @param ms the flush interval in milliseconds, or 0 to write synchronously
+     */
+    public void setWriteBehindInterval (long ms)
+    {
+        _writeBehindMs=ms;
+    }
+
+    public long getWriteBehindInterval ()
+    {
+        return _writeBehindMs;
+    }
+
+
+    /**
+     * Set the maximum number of sessions queued for write-behind.
+     * When the queue is full, sessions are written synchronously.
+     *
+     * @param size the maximum number of queued sessions
+     */
+    public void setMaxWriteBehindSize (int size)
+    {
+        _maxWriteBehindSize=size;
+    }
+
+    public int getMaxWriteBehindSize ()
+    {
+        return _maxWriteBehindSize;
+    }
+
+
+    /**
+     * Set the number of times a write-behind flush that fails to write a session
+     * requeues it. After that, the session is dropped from the queue and the failure
+     * logged, so that a session that cannot be written does not stay queued forever.
+     *
+     * @param retries the maximum number of consecutive failed writes of a session
+     */
+    public void setMaxWriteBehindRetries (int retries)
+    {
+        _maxWriteBehindRetries=retries;
+    }
+
+    public int getMaxWriteBehindRetries ()
+    {
+        return _maxWriteBehindRetries;
+    }
+
+
+    /**
+     * @return the number of sessions currently queued for write-behind
+     */
+    public int getWriteBehindSize ()
+    {
+        return _writeBehind.size();
+    }
+
+
+    /**
+     * Queue a session to be written by the write-behind flusher.
+     * Must be called with the session lock held.
+     *
+     * @param session the session to queue
+     * @param dirty true if the session attributes need to be written, false if only the access times
+     * @return true if the session was queued, false if it must be written synchronously
+     */
+    protected boolean writeBehind (Session session, boolean dirty)
+    {
+        if (_writeBehindMs <= 0 || _scheduler == null || session.getRowId() == null)
+            return false;
+
+        if (dirty)
+            session._writeBehindDirty=true;
+        if (_writeBehind.putIfAbsent(session.getRowId(), session) == null && _writeBehind.size() > _maxWriteBehindSize)
+        {
+            //queue is full, the caller writes the session itself
+            _writeBehind.remove(session.getRowId(), session);
+            session._writeBehindDirty=false;
+            return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Write all the sessions queued for write-behind, as JDBC batches
+     * within a single transaction.
+     */
+    protected void flushWriteBehind ()
+    {
+        if (_writeBehind.isEmpty() || _jdbcSessionIdMgr == null)
+            return;
+
+        List<Session> dirty = new ArrayList<Session>();
+        List<Session> accessed = new ArrayList<Session>();
+        List<Session> failed = new ArrayList<Session>();
+        long now = System.currentTimeMillis();
+        try (Connection connection = getConnection();
+                PreparedStatement update = connection.prepareStatement(_jdbcSessionIdMgr._updateSession);
+                PreparedStatement access = connection.prepareStatement(_jdbcSessionIdMgr._updateSessionAccessTime))
+        {
+            connection.setAutoCommit(false);
+            try
+            {
+                Iterator<Session> itor = _writeBehind.values().iterator();
+                while (itor.hasNext())
+                {
+                    Session session = itor.next();
+                    itor.remove();
+                    synchronized (session)
+                    {
+                        boolean attributes = session._writeBehindDirty;
+                        session._writeBehindDirty=false;
+                        if (!session.isValid())
+                            continue;
+                        try
+                        {
+                            if (attributes)
+                            {
+                                session.willPassivate();
+                                try
+                                {
+                                    bindUpdateSession(update, session, now);
+                                }
+                                finally
+                                {
+                                    session.didActivate();
+                                }
+                                update.addBatch();
+                                dirty.add(session);
+                            }
+                            else
+                            {
+                                bindUpdateSessionAccessTime(access, session, now);
+                                access.addBatch();
+                                accessed.add(session);
+                            }
+                            //the session is requeued if the batch fails, so it is saved either way
+                            session._lastSaved=now;
+                        }
+                        catch (Exception e)
+                        {
+                            LOG.warn("Problem persisting changed session data id="+session.getId(), e);
+                            session._writeBehindDirty=attributes;
+                            failed.add(session);
+                        }
+                    }
+                }
+
+                if (!dirty.isEmpty())
+                    update.executeBatch();
+                if (!accessed.isEmpty())
+                    access.executeBatch();
+                connection.commit();
+            }
+            catch (Exception e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+
+            written(dirty);
+            written(accessed);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Flushed write-behind sessions: {} updated, {} access times", dirty.size(), accessed.size());
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Problem flushing write-behind sessions, requeuing", e);
+            requeue(dirty, true);
+            requeue(accessed, false);
+        }
+        finally
+        {
+            requeue(failed, false);
+        }
+    }
+
+
+    /**
+     * Synchronously write a session if it is queued for write-behind.
+     *
+     * @param session the session to write
+     * @throws Exception if unable to write the session
+     */
+    protected void flushWriteBehind (Session session)
+    throws Exception
+    {
+        if (session.getRowId() == null || !_writeBehind.remove(session.getRowId(), session))
+            return;
+
+        synchronized (session)
+        {
+            boolean dirty = session._writeBehindDirty;
+            session._writeBehindDirty=false;
+            if (dirty)
+            {
+                session.willPassivate();
+                updateSession(session);
+                session.didActivate();
+            }
+            else
+                updateSessionAccessTime(session);
+        }
+    }
+
+
+    private void written (List<Session> sessions)
+    {
+        for (Session session : sessions)
+        {
+            synchronized (session)
+            {
+                session._writeBehindFailures=0;
+            }
+        }
+    }
+
+
+    private void requeue (List<Session> sessions, boolean dirty)
+    {
+        for (Session session : sessions)
+        {
+            synchronized (session)
+            {
+                if (!session.isValid())
+                    continue;
+                if (++session._writeBehindFailures > _maxWriteBehindRetries)
+                {
+                    LOG.warn("Giving up writing session id="+session.getId()+" after "+_maxWriteBehindRetries+" retries, changes since it was last saved are lost");
+                    session._writeBehindFailures=0;
+                    session._writeBehindDirty=false;
+                    continue;
+                }
+                if (dirty)
+                    session._writeBehindDirty=true;
+                _writeBehind.putIfAbsent(session.getRowId(), session);
+            }
+        }
+    }
+
+
 
     /**
      * A method that can be implemented in subclasses to support
@@ -505,6 +814,8 @@ public class JDBCSessionManager extends AbstractSessionManager
                 {
                     if (LOG.isDebugEnabled())
                         LOG.debug("getSession("+idInCluster+"): stale session. Reloading session data from db.");
+                    //don't lose changes that have not been written yet
+                    flushWriteBehind(memSession);
                     session = loadSession(idInCluster, canonicalize(_context.getContextPath()), getVirtualHost(_context));
                 }
                 else
@@ -613,6 +924,24 @@ public class JDBCSessionManager extends AbstractSessionManager
         _sessions = new ConcurrentHashMap<String, Session>();
 
         super.doStart();
+
+        if (_writeBehindMs > 0)
+        {
+            synchronized (this)
+            {
+                //try and use a common scheduler, fallback to own
+                _scheduler = getSessionHandler().getServer().getBean(Scheduler.class);
+                if (_scheduler == null)
+                {
+                    _scheduler = new ScheduledExecutorScheduler(toString()+"Writer", false);
+                    _ownScheduler = true;
+                    _scheduler.start();
+                }
+                else if (!_scheduler.isStarted())
+                    throw new IllegalStateException("Shared scheduler not started");
+                _writeBehindTask = _scheduler.schedule(_writeBehindFlusher, _writeBehindMs, TimeUnit.MILLISECONDS);
+            }
+        }
     }
 
 
@@ -625,6 +954,13 @@ public class JDBCSessionManager extends AbstractSessionManager
     public void doStop() throws Exception
     {
         super.doStop();
+        synchronized (this)
+        {
+            if (_ownScheduler && _scheduler != null)
+                _scheduler.stop();
+            _scheduler = null;
+            _ownScheduler = false;
+        }
         _sessions.clear();
         _sessions = null;
     }
@@ -632,6 +968,26 @@ public class JDBCSessionManager extends AbstractSessionManager
     @Override
     protected void shutdownSessions()
     {
+        //Stop the write-behind task and write everything still queued
+        synchronized (this)
+        {
+            if (_writeBehindTask != null)
+                _writeBehindTask.cancel();
+            _writeBehindTask = null;
+        }
+        flushWriteBehind();
+        for (Session session : new ArrayList<Session>(_writeBehind.values()))
+        {
+            try
+            {
+                flushWriteBehind(session);
+            }
+            catch (Exception e)
+            {
+                LOG.warn("Unable to write session id="+session.getId(), e);
+            }
+        }
+
         //Save the current state of all of our sessions,
         //do NOT delete them (so other nodes can manage them)
         long gracefulStopMs = getContextHandler().getServer().getStopTimeout();
@@ -1039,7 +1395,7 @@ public class JDBCSessionManager extends AbstractSessionManager
 
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
             ObjectOutputStream oos = new ObjectOutputStream(baos);
-            oos.writeObject(session.getAttributeMap());
+            oos.writeObject(SerializedAttribute.wrap(session.getAttributeMap(),_loader));
             oos.flush();
             byte[] bytes = baos.toByteArray();
 
@@ -1073,23 +1429,7 @@ public class JDBCSessionManager extends AbstractSessionManager
         {
             long now = System.currentTimeMillis();
             connection.setAutoCommit(true);
-            statement.setString(1, data.getClusterId());
-            statement.setString(2, getSessionIdManager().getWorkerName());//my node id
-            statement.setLong(3, data.getAccessed());//accessTime
-            statement.setLong(4, data.getLastAccessedTime()); //lastAccessTime
-            statement.setLong(5, now); //last saved time
-            statement.setLong(6, data.getExpiryTime());
-            statement.setLong(7, data.getMaxInactiveInterval());
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ObjectOutputStream oos = new ObjectOutputStream(baos);
-            oos.writeObject(data.getAttributeMap());
-            oos.flush();
-            byte[] bytes = baos.toByteArray();
-            ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-
-            statement.setBinaryStream(8, bais, bytes.length);//attribute map as blob
-            statement.setString(9, data.getRowId()); //rowId
+            bindUpdateSession(statement, data, now);
             statement.executeUpdate();
 
             data.setLastSaved(now);
@@ -1099,6 +1439,37 @@ public class JDBCSessionManager extends AbstractSessionManager
     }
 
 
+    /**
+     * Set the parameters of the update session statement.
+     *
+     * @param statement the update session statement
+     * @param data the session
+     * @param now the last saved time
+     * @throws Exception if unable to serialize the session attributes
+     */
+    private void bindUpdateSession (PreparedStatement statement, Session data, long now)
+    throws Exception
+    {
+        statement.setString(1, data.getClusterId());
+        statement.setString(2, getSessionIdManager().getWorkerName());//my node id
+        statement.setLong(3, data.getAccessed());//accessTime
+        statement.setLong(4, data.getLastAccessedTime()); //lastAccessTime
+        statement.setLong(5, now); //last saved time
+        statement.setLong(6, data.getExpiryTime());
+        statement.setLong(7, data.getMaxInactiveInterval());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(SerializedAttribute.wrap(data.getAttributeMap(),_loader));
+        oos.flush();
+        byte[] bytes = baos.toByteArray();
+        ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
+
+        statement.setBinaryStream(8, bais, bytes.length);//attribute map as blob
+        statement.setString(9, data.getRowId()); //rowId
+    }
+
+
     /**
      * Update the node on which the session was last seen to be my node.
      *
@@ -1135,14 +1506,7 @@ public class JDBCSessionManager extends AbstractSessionManager
         {
             long now = System.currentTimeMillis();
             connection.setAutoCommit(true);
-            statement.setString(1, getSessionIdManager().getWorkerName());
-            statement.setLong(2, data.getAccessed());
-            statement.setLong(3, data.getLastAccessedTime());
-            statement.setLong(4, now);
-            statement.setLong(5, data.getExpiryTime());
-            statement.setLong(6, data.getMaxInactiveInterval());
-            statement.setString(7, data.getRowId());
-          
+            bindUpdateSessionAccessTime(statement, data, now);
             statement.executeUpdate();
             data.setLastSaved(now);
         }
@@ -1151,6 +1515,27 @@ public class JDBCSessionManager extends AbstractSessionManager
     }
 
 
+    /**
+     * Set the parameters of the update session access time statement.
+     *
+     * @param statement the update session access time statement
+     * @param data the session
+     * @param now the last saved time
+     * @throws SQLException if unable to set the parameters
+     */
+    private void bindUpdateSessionAccessTime (PreparedStatement statement, Session data, long now)
+    throws SQLException
+    {
+        statement.setString(1, getSessionIdManager().getWorkerName());
+        statement.setLong(2, data.getAccessed());
+        statement.setLong(3, data.getLastAccessedTime());
+        statement.setLong(4, now);
+        statement.setLong(5, data.getExpiryTime());
+        statement.setLong(6, data.getMaxInactiveInterval());
+        statement.setString(7, data.getRowId());
+    }
+
+
 
 
     /**
@@ -1163,6 +1548,8 @@ public class JDBCSessionManager extends AbstractSessionManager
     protected void deleteSession (Session data)
     throws Exception
     {
+        if (data.getRowId() != null)
+            _writeBehind.remove(data.getRowId(), data);
         try (Connection connection = getConnection();
                 PreparedStatement statement = connection.prepareStatement(_jdbcSessionIdMgr._deleteSession))
         {
@@ -1223,6 +1610,21 @@ public class JDBCSessionManager extends AbstractSessionManager
         return vhosts[0];
     }
 
+    /**
+     * Check if a value cannot change once it has been set as an attribute,
+     * so that setting an equal value again does not need to be persisted.
+     *
+     * @param value the attribute value
+     * @return true if the value is of a well-known immutable type
+     */
+    private static boolean isImmutable (Object value)
+    {
+        return value instanceof String || value instanceof Boolean || value instanceof Character ||
+               value instanceof Integer || value instanceof Long || value instanceof Short ||
+               value instanceof Byte || value instanceof Double || value instanceof Float ||
+               value instanceof Enum;
+    }
+
     /**
      * Make an acceptable file name from a context path.
      *
@@ -112,7 +112,7 @@ public class MemSession extends AbstractSession
                 Object value;
                 synchronized(this)
                 {
-                    value=doPutOrRemove(key,null);
+                    value=deserializeAttribute(key,doPutOrRemove(key,null));
                 }
                 unbindValue(key,value);
 
@@ -140,7 +140,15 @@ public class MemSession extends AbstractSession
     @Override
     public Object doGet(String name)
     {
-        return _attributes.get(name);
+        Object value=_attributes.get(name);
+        if (value instanceof SerializedAttribute)
+        {
+            //first use since the session was loaded
+            value=deserializeAttribute(name,value);
+            if (value!=null)
+                _attributes.put(name,value);
+        }
+        return value;
     }
     
 }
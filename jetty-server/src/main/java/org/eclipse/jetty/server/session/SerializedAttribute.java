@@ -0,0 +1,192 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.server.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+
+/* ------------------------------------------------------------ */
+/**
+ * SerializedAttribute
+ * <p>
+ * The serialized form of a single session attribute value.
+ * <p>
+ * Session managers that persist sessions write the attribute map with each
+ * value wrapped in one of these (see {@link #wrap(Map, ClassLoader)}). Reading the map back
+ * therefore only copies bytes: no application class is loaded and no attribute
+ * is deserialized until it is first retrieved from the session, and attributes
+ * that are never retrieved are written back with their original bytes.
+ * <p>
+ * Maps written before attributes were wrapped contain the plain values, which
+ * sessions handle as before, so both encodings are always read. Nodes running
+ * earlier versions cannot read wrapped values, so a cluster upgraded one node
+ * at a time should set the {@link #LEGACY_FORMAT} system property (or call
+ * {@link #setLegacyFormat(boolean)}) on the upgraded nodes, which then keep
+ * writing plain values, and clear it once every node has been upgraded.
+ * Otherwise, stop the whole cluster for the upgrade.
+ */
+public class SerializedAttribute implements Serializable
+{
+    private static final long serialVersionUID = 7521869283125329212L;
+
+    public static final String LEGACY_FORMAT = SerializedAttribute.class.getName()+".legacyFormat";
+
+    private static volatile boolean __legacyFormat = Boolean.getBoolean(LEGACY_FORMAT);
+
+    private final byte[] _bytes;
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param bytes the java serialization of the attribute value
+     */
+    public SerializedAttribute(byte[] bytes)
+    {
+        _bytes = bytes;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return true if attributes are persisted as plain values, readable by earlier versions
+     */
+    public static boolean isLegacyFormat()
+    {
+        return __legacyFormat;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param legacyFormat true to persist attributes as plain values, readable by earlier versions
+     */
+    public static void setLegacyFormat(boolean legacyFormat)
+    {
+        __legacyFormat = legacyFormat;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param value the attribute value
+     * @return the serialized value, or the value itself if it was never deserialized
+     * @throws IOException if the value cannot be serialized
+     */
+    public static SerializedAttribute serialize(Object value) throws IOException
+    {
+        if (value instanceof SerializedAttribute)
+            return (SerializedAttribute)value;
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bout))
+        {
+            out.writeObject(value);
+        }
+        return new SerializedAttribute(bout.toByteArray());
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param value the attribute value
+     * @param loader the classloader of the session manager, used in the legacy format
+     * to deserialize values never used since the session was loaded, as sessions may be
+     * saved by threads (eg scavenger, write-behind) whose context classloader is not the
+     * webapp's; or null for the thread context classloader
+     * @return the value to persist: the serialized value, or in the legacy format the plain value
+     * @throws IOException if the value cannot be serialized or deserialized
+     */
+    public static Object persist(Object value, ClassLoader loader) throws IOException
+    {
+        if (!__legacyFormat)
+            return serialize(value);
+        if (!(value instanceof SerializedAttribute))
+            return value;
+        try
+        {
+            return ((SerializedAttribute)value).deserialize(loader);
+        }
+        catch (ClassNotFoundException e)
+        {
+            throw new IOException(e);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Copy an attribute map for persisting, serializing each value on its own.
+     * Values that have not been deserialized since the session was loaded are
+     * copied untouched. In the legacy format, the plain values are copied.
+     *
+     * @param attributes the session attributes
+     * @param loader the classloader of the session manager (see {@link #persist(Object, ClassLoader)})
+     * @return a map of attribute name to the value to persist (see {@link #persist(Object, ClassLoader)})
+     * @throws IOException if a value cannot be serialized
+     */
+    public static HashMap<String,Object> wrap(Map<String,Object> attributes, ClassLoader loader) throws IOException
+    {
+        HashMap<String,Object> wrapped = new HashMap<String,Object>(attributes.size()*4/3+1);
+        for (Map.Entry<String,Object> entry : attributes.entrySet())
+            wrapped.put(entry.getKey(),persist(entry.getValue(),loader));
+        return wrapped;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the java serialization of the attribute value
+     */
+    public byte[] getBytes()
+    {
+        return _bytes;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param loader the classloader to resolve classes with, or null for the thread context classloader
+     * @return the attribute value
+     * @throws IOException if the bytes cannot be read
+     * @throws ClassNotFoundException if a class of the value cannot be found
+     */
+    public Object deserialize(ClassLoader loader) throws IOException, ClassNotFoundException
+    {
+        Thread thread = Thread.currentThread();
+        ClassLoader old = thread.getContextClassLoader();
+        if (loader != null && loader != old)
+            thread.setContextClassLoader(loader);
+        try (ClassLoadingObjectInputStream in = new ClassLoadingObjectInputStream(new ByteArrayInputStream(_bytes)))
+        {
+            return in.readObject();
+        }
+        finally
+        {
+            if (loader != null && loader != old)
+                thread.setContextClassLoader(old);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%d bytes}",getClass().getSimpleName(),hashCode(),_bytes.length);
+    }
+}
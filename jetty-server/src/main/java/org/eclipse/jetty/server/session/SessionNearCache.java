@@ -0,0 +1,574 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.server.session;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/* ------------------------------------------------------------ */
+/**
+ * SessionNearCache
+ * <p>
+ * Bookkeeping for the sessions that a session manager backed by a remote store
+ * (eg mongo, infinispan, gcloud datastore) holds in local memory. The session manager
+ * keeps the session objects themselves; the near cache records, for each of them,
+ * the version of the remote copy it was last read from or written to and when that
+ * version was last confirmed against the store.
+ * <p>
+ * This allows a session manager to:
+ * <ul>
+ * <li>skip the round trip to the store if the local copy was confirmed within the
+ * verify interval (see {@link #isCurrent(String, Object)}),</li>
+ * <li>only reload the session when the version held by the store differs from the
+ * local one,</li>
+ * <li>bound the number of sessions held in memory: when more than {@link #getMaxEntries()}
+ * sessions are cached, the least recently used ones are handed to the {@link Evictor}
+ * so that the session manager can passivate them and drop them from memory. They
+ * remain in the store and will be reloaded on next use.</li>
+ * </ul>
+ * The entries are held in a concurrent map and stamped with their last access, so
+ * that lookups do not contend on a lock; evictions sweep the entries in bulk, least
+ * recently used first.
+ * <p>
+ * The cache is updated by threads that may hold the lock of a session, so evictions
+ * are run by a task on the {@link Executor} set with {@link #setExecutor(Executor)},
+ * or by an explicit call to {@link #evict()}. The {@link SessionEvictor} only tries
+ * to lock the sessions it evicts, so that the {@link #INLINE} executor may also be
+ * used when there is no thread pool.
+ * Hits (a session served from local memory) and misses (a session that had to be
+ * loaded or reloaded from the store) are counted and exposed via jmx.
+ */
+@ManagedObject("Near cache of remotely stored sessions")
+public class SessionNearCache
+{
+    private final static Logger LOG = Log.getLogger("org.eclipse.jetty.server.session");
+
+    /**
+     * An executor that runs evictions in the calling thread.
+     */
+    public final static Executor INLINE = new Executor()
+    {
+        @Override
+        public void execute(Runnable task)
+        {
+            task.run();
+        }
+    };
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Evictor
+     * <p>
+     * Called, outside of any lock held by the near cache or by a session, with
+     * the id of a session that has been evicted as least recently used.
+     */
+    public interface Evictor
+    {
+        /**
+         * @param id the cluster id of the session to drop from memory
+         * @return true if the session was dropped from memory, false if it
+         * could not be (eg it is being used by a request) and should be retained
+         */
+        public boolean evict(String id);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * SessionEvictor
+     * <p>
+     * An {@link Evictor} for session managers that hold their sessions in a map and
+     * guard each session with a {@link Lock}. A session that is not locked nor in use
+     * by a request is passivated, written to the store if dirty, and removed from memory.
+     *
+     * @param <S> the type of session
+     */
+    public static abstract class SessionEvictor<S extends AbstractSession> implements Evictor
+    {
+        @Override
+        public boolean evict(String id)
+        {
+            S session = getSession(id);
+            if (session == null)
+                return true;
+
+            //a locked session is in use, and waiting for it could deadlock with
+            //a thread holding its lock that runs evictions inline
+            Lock lock = getLock(session);
+            if (!lock.tryLock())
+                return false;
+            try
+            {
+                if (isInUse(session))
+                    return false;
+
+                session.willPassivate();
+                try
+                {
+                    saveIfDirty(session);
+                }
+                catch (Exception e)
+                {
+                    LOG.warn("Unable to save evicted session({})",id,e);
+                    session.didActivate();
+                    return false;
+                }
+
+                if (!removeSession(id,session))
+                {
+                    session.didActivate();
+                    return false;
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+
+            evicted(session);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Evicted session({}) from local memory",id);
+            return true;
+        }
+
+        /**
+         * @param id the cluster id of the session
+         * @return the session held in memory, or null
+         */
+        protected abstract S getSession(String id);
+
+        /**
+         * @param session the session
+         * @return the lock guarding the session against use by requests
+         */
+        protected abstract Lock getLock(S session);
+
+        /**
+         * @param session the session, locked
+         * @return true if a request is using the session
+         */
+        protected abstract boolean isInUse(S session);
+
+        /**
+         * Write the session to the store if it has changed since it was last written.
+         *
+         * @param session the session, locked and passivated
+         * @throws Exception if the session could not be written
+         */
+        protected abstract void saveIfDirty(S session) throws Exception;
+
+        /**
+         * @param id the cluster id of the session
+         * @param session the session
+         * @return true if the session was removed from memory, false if it had been replaced
+         */
+        protected abstract boolean removeSession(String id, S session);
+
+        /**
+         * Called once the session has been removed from memory.
+         *
+         * @param session the session
+         */
+        protected abstract void evicted(S session);
+    }
+
+    /* ------------------------------------------------------------ */
+    private static class Entry
+    {
+        private final Object _version;
+        private final long _verified;
+        private volatile long _accessed;
+
+        private Entry(Object version, long verified)
+        {
+            _version = version;
+            _verified = verified;
+            _accessed = verified;
+        }
+    }
+
+    private static final Comparator<Map.Entry<String,Entry>> LEAST_RECENTLY_USED = new Comparator<Map.Entry<String,Entry>>()
+    {
+        @Override
+        public int compare(Map.Entry<String,Entry> e1, Map.Entry<String,Entry> e2)
+        {
+            return Long.compare(e1.getValue()._accessed - e2.getValue()._accessed,0);
+        }
+    };
+
+    private final ConcurrentMap<String,Entry> _entries = new ConcurrentHashMap<String,Entry>();
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _evictions = new AtomicLong();
+    private final AtomicBoolean _evicting = new AtomicBoolean();
+    private final Evictor _evictor;
+    private volatile Executor _executor;
+    private volatile int _maxEntries;
+    private volatile long _verifyIntervalMs;
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param evictor the callback used to drop least recently used sessions from memory,
+     * or null if the cache is never bounded
+     */
+    public SessionNearCache(Evictor evictor)
+    {
+        _evictor = evictor;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the maximum number of sessions held in memory, or 0 for no limit
+     */
+    @ManagedAttribute("max number of sessions held in memory, 0 for no limit")
+    public int getMaxEntries()
+    {
+        return _maxEntries;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param maxEntries the maximum number of sessions held in memory, or 0 for no limit
+     */
+    public void setMaxEntries(int maxEntries)
+    {
+        _maxEntries = maxEntries;
+        scheduleEviction();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the executor that runs evictions
+     */
+    public Executor getExecutor()
+    {
+        return _executor;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param executor the executor that runs evictions, normally the server
+     * thread pool. If null, evictions only happen when {@link #evict()} is called.
+     */
+    public void setExecutor(Executor executor)
+    {
+        _executor = executor;
+        scheduleEviction();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the time in ms after a version check during which the local copy of
+     * a session is trusted without asking the store again
+     */
+    @ManagedAttribute("ms a confirmed session version is trusted without checking the store")
+    public long getVerifyInterval()
+    {
+        return _verifyIntervalMs;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param verifyIntervalMs the time in ms after a version check during which the local
+     * copy of a session is trusted without asking the store again. 0 means always ask.
+     */
+    public void setVerifyInterval(long verifyIntervalMs)
+    {
+        _verifyIntervalMs = verifyIntervalMs;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Check whether the local copy of a session at the given version can be
+     * used without consulting the store. A positive answer counts as a hit.
+     *
+     * @param id the cluster id of the session
+     * @param version the version of the local copy
+     * @return true if the local copy was confirmed at that version within the verify interval
+     */
+    public boolean isCurrent(String id, Object version)
+    {
+        long interval = _verifyIntervalMs;
+        if (interval <= 0 || version == null)
+            return false;
+
+        long now = System.nanoTime();
+        Entry entry = _entries.get(id);
+        if (entry == null || !version.equals(entry._version))
+            return false;
+        if (TimeUnit.NANOSECONDS.toMillis(now - entry._verified) >= interval)
+            return false;
+        entry._accessed = now;
+        _hits.incrementAndGet();
+        return true;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * A session has been used from local memory without consulting the store.
+     *
+     * @param id the cluster id of the session
+     */
+    public void access(String id)
+    {
+        Entry entry = _entries.get(id);
+        if (entry != null)
+            entry._accessed = System.nanoTime();
+        _hits.incrementAndGet();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * The store has been asked for the version of a session and it matched
+     * the local copy, so no reload was needed. Counts as a hit.
+     *
+     * @param id the cluster id of the session
+     * @param version the confirmed version, or null if the store does not version sessions
+     */
+    public void confirm(String id, Object version)
+    {
+        stamp(id,version);
+        _hits.incrementAndGet();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * A session has been loaded, or reloaded, from the store. Counts as a miss.
+     *
+     * @param id the cluster id of the session
+     * @param version the version read from the store, or null if the store does not version sessions
+     */
+    public void load(String id, Object version)
+    {
+        stamp(id,version);
+        _misses.incrementAndGet();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * A session has been written to the store.
+     *
+     * @param id the cluster id of the session
+     * @param version the version written, or null if the store does not version sessions
+     */
+    public void save(String id, Object version)
+    {
+        stamp(id,version);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * The session is no longer held in local memory.
+     *
+     * @param id the cluster id of the session
+     */
+    public void remove(String id)
+    {
+        _entries.remove(id);
+    }
+
+    /* ------------------------------------------------------------ */
+    public void clear()
+    {
+        _entries.clear();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param id the cluster id of the session
+     * @return the version of the store copy the local session was last synchronized with
+     */
+    public Object getVersion(String id)
+    {
+        Entry entry = _entries.get(id);
+        return entry == null ? null : entry._version;
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("number of sessions held in memory")
+    public int getSize()
+    {
+        return _entries.size();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("number of session accesses served from memory")
+    public long getHits()
+    {
+        return _hits.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("number of session accesses that loaded from the store")
+    public long getMisses()
+    {
+        return _misses.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("number of sessions evicted from memory")
+    public long getEvictions()
+    {
+        return _evictions.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("ratio of hits to total session accesses")
+    public double getHitRatio()
+    {
+        long hits = _hits.get();
+        long total = hits + _misses.get();
+        return total == 0 ? 0.0 : (double)hits / total;
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedOperation(value="reset the near cache statistics", impact="ACTION")
+    public void resetStats()
+    {
+        _hits.set(0);
+        _misses.set(0);
+        _evictions.set(0);
+    }
+
+    /* ------------------------------------------------------------ */
+    private void stamp(String id, Object version)
+    {
+        _entries.put(id,new Entry(version,System.nanoTime()));
+        scheduleEviction();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Run an eviction task on the executor if the cache is over its bound and
+     * no eviction task is already pending.
+     */
+    private void scheduleEviction()
+    {
+        final Executor executor = _executor;
+        if (executor == null || _evictor == null || _maxEntries <= 0 || getSize() <= _maxEntries)
+            return;
+
+        if (!_evicting.compareAndSet(false,true))
+            return;
+
+        try
+        {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        evict();
+                    }
+                    finally
+                    {
+                        _evicting.set(false);
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            _evicting.set(false);
+            LOG.warn("Unable to evict sessions from near cache",e);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Drop least recently used entries until the cache is within bounds.
+     * The entries are sorted once by last access and swept in that order; the
+     * evictor is called with no lock held, and sessions it refuses to drop are
+     * put back and skipped.
+     * <p>
+     * This must not be called by a thread that waits for the lock of a session.
+     */
+    public void evict()
+    {
+        int max = _maxEntries;
+        if (max <= 0 || _evictor == null)
+            return;
+
+        int excess = _entries.size() - max;
+        if (excess <= 0)
+            return;
+
+        List<Map.Entry<String,Entry>> entries = new ArrayList<Map.Entry<String,Entry>>(_entries.entrySet());
+        Collections.sort(entries,LEAST_RECENTLY_USED);
+        for (Map.Entry<String,Entry> e : entries)
+        {
+            if (excess <= 0)
+                return;
+
+            String id = e.getKey();
+            Entry entry = e.getValue();
+            //skip entries updated or removed since the sweep started
+            if (!_entries.remove(id,entry))
+                continue;
+
+            boolean evicted = false;
+            try
+            {
+                evicted = _evictor.evict(id);
+            }
+            catch (Exception x)
+            {
+                LOG.warn("Problem evicting session {}",id,x);
+            }
+
+            if (evicted)
+            {
+                excess--;
+                _evictions.incrementAndGet();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Evicted session {} from near cache",id);
+            }
+            else
+            {
+                _entries.putIfAbsent(id,entry);
+            }
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d,max=%d,hits=%d,misses=%d}",getClass().getSimpleName(),hashCode(),getSize(),_maxEntries,_hits.get(),_misses.get());
+    }
+}
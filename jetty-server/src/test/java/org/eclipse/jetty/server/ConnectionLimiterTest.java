@@ -0,0 +1,189 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.IO;
+import org.junit.After;
+import org.junit.Test;
+
+public class ConnectionLimiterTest
+{
+    private Server _server;
+    private ServerConnector _connector;
+    private ConnectionLimiter _limiter;
+
+    private void start(ConnectionLimiter limiter) throws Exception
+    {
+        _server = new Server();
+        _connector = new ServerConnector(_server);
+        _limiter = limiter;
+        _connector.addBean(_limiter);
+        _server.addConnector(_connector);
+        _server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                response.setContentLength(0);
+            }
+        });
+        _server.start();
+    }
+
+    @After
+    public void dispose() throws Exception
+    {
+        _server.stop();
+    }
+
+    private Socket open() throws IOException
+    {
+        Socket socket = new Socket("localhost", _connector.getLocalPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    /**
+     * @return the response head, or null if the connection was rejected
+     */
+    private String request(Socket socket)
+    {
+        try
+        {
+            OutputStream output = socket.getOutputStream();
+            output.write(("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            output.flush();
+            InputStream input = socket.getInputStream();
+            StringBuilder response = new StringBuilder();
+            while (!response.toString().endsWith("\r\n\r\n"))
+            {
+                int b = input.read();
+                if (b < 0)
+                    return null;
+                response.append((char)b);
+            }
+            return response.toString();
+        }
+        catch (IOException e)
+        {
+            // A rejected connection may be reset rather than shut down.
+            return null;
+        }
+    }
+
+    private void awaitConnections(int expected) throws Exception
+    {
+        InetAddress address = InetAddress.getByName("localhost");
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (_limiter.getConnections(address) != expected && System.nanoTime() < end)
+            Thread.sleep(10);
+        assertEquals(expected, _limiter.getConnections(address));
+    }
+
+    @Test
+    public void testMaxConnectionsPerAddress() throws Exception
+    {
+        start(new ConnectionLimiter(0, 2, 0));
+
+        try (Socket socket1 = open(); Socket socket2 = open())
+        {
+            assertThat(request(socket1), containsString(" 200 "));
+            assertThat(request(socket2), containsString(" 200 "));
+
+            try (Socket socket3 = open())
+            {
+                assertEquals(-1, socket3.getInputStream().read());
+            }
+            assertEquals(1, _limiter.getRejectedConnections());
+        }
+
+        // Closed connections free up the address.
+        awaitConnections(0);
+        try (Socket socket = open())
+        {
+            assertThat(request(socket), containsString(" 200 "));
+        }
+    }
+
+    @Test
+    public void testMaxAcceptsPerSecond() throws Exception
+    {
+        start(new ConnectionLimiter(2, 0, 0));
+
+        List<Socket> sockets = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < 10; i++)
+                sockets.add(open());
+            for (Socket socket : sockets)
+                request(socket);
+
+            // At most two windows of one second may have elapsed.
+            assertThat(_limiter.getRejectedConnections(), greaterThanOrEqualTo(6L));
+        }
+        finally
+        {
+            for (Socket socket : sockets)
+                socket.close();
+        }
+    }
+
+    @Test
+    public void testMaxRequestsPerConnectionPerSecond() throws Exception
+    {
+        start(new ConnectionLimiter(0, 0, 2));
+
+        try (Socket socket = open())
+        {
+            String request = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n";
+            OutputStream output = socket.getOutputStream();
+            output.write((request + request + request).getBytes(StandardCharsets.UTF_8));
+            output.flush();
+
+            String responses = IO.toString(socket.getInputStream());
+            int first = responses.indexOf(" 200 ");
+            int second = responses.indexOf(" 200 ", first + 1);
+            assertThat(first >= 0 && second > first, is(true));
+            assertThat(responses.substring(second), containsString(" 429 "));
+        }
+        assertEquals(0, _limiter.getRejectedConnections());
+    }
+}
@@ -0,0 +1,241 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.server.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpSessionActivationListener;
+import javax.servlet.http.HttpSessionAttributeListener;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+import javax.servlet.http.HttpSessionEvent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SerializedAttributeTest
+{
+    public static class Activated implements HttpSessionActivationListener, Serializable
+    {
+        private static final long serialVersionUID = 1L;
+        transient int _activations;
+
+        @Override
+        public void sessionWillPassivate(HttpSessionEvent se)
+        {
+        }
+
+        @Override
+        public void sessionDidActivate(HttpSessionEvent se)
+        {
+            _activations++;
+        }
+    }
+
+    public static class Plain implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+    }
+
+    public static class Bound implements HttpSessionBindingListener, Serializable
+    {
+        private static final long serialVersionUID = 1L;
+        transient int _bound;
+
+        @Override
+        public void valueBound(HttpSessionBindingEvent event)
+        {
+            _bound++;
+        }
+
+        @Override
+        public void valueUnbound(HttpSessionBindingEvent event)
+        {
+        }
+    }
+
+    @Test
+    public void testWrap() throws Exception
+    {
+        Map<String,Object> attributes = new HashMap<String,Object>();
+        attributes.put("a","value");
+        SerializedAttribute b = SerializedAttribute.serialize(new ArrayList<String>(Arrays.asList("x","y")));
+        attributes.put("b",b);
+
+        HashMap<String,Object> wrapped = SerializedAttribute.wrap(attributes,null);
+        Assert.assertEquals(2,wrapped.size());
+        Assert.assertEquals("value",((SerializedAttribute)wrapped.get("a")).deserialize(null));
+        //an attribute never deserialized is carried over as is
+        Assert.assertSame(b,wrapped.get("b"));
+        Assert.assertEquals(Arrays.asList("x","y"),b.deserialize(null));
+    }
+
+    @Test
+    public void testLegacyFormat() throws Exception
+    {
+        Map<String,Object> attributes = new HashMap<String,Object>();
+        attributes.put("a","value");
+        attributes.put("b",SerializedAttribute.serialize(new ArrayList<String>(Arrays.asList("x","y"))));
+
+        SerializedAttribute.setLegacyFormat(true);
+        try
+        {
+            //plain values, as written by earlier versions
+            HashMap<String,Object> wrapped = SerializedAttribute.wrap(attributes,null);
+            Assert.assertEquals("value",wrapped.get("a"));
+            Assert.assertEquals(Arrays.asList("x","y"),wrapped.get("b"));
+        }
+        finally
+        {
+            SerializedAttribute.setLegacyFormat(false);
+        }
+
+        //both encodings are read back
+        HashSessionManager manager = new HashSessionManager();
+        manager.setSessionIdManager(new HashSessionIdManager());
+        HashedSession session = (HashedSession)manager.newSession(System.currentTimeMillis(),System.currentTimeMillis(),"legacy");
+        session.setAttribute("user","fred");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SerializedAttribute.setLegacyFormat(true);
+        try
+        {
+            session.save(out);
+        }
+        finally
+        {
+            SerializedAttribute.setLegacyFormat(false);
+        }
+        HashedSession restored = manager.restoreSession(new ByteArrayInputStream(out.toByteArray()),null);
+        Assert.assertEquals("fred",restored.getAttributeMap().get("user"));
+        Assert.assertEquals("fred",restored.getAttribute("user"));
+    }
+
+    @Test
+    public void testLegacyFormatUsesManagerLoader() throws Exception
+    {
+        //a webapp loader, that alone can load the attribute class
+        URL classes = Plain.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader webapp = new URLClassLoader(new URL[]{classes},null))
+        {
+            Object plain = webapp.loadClass(Plain.class.getName()).newInstance();
+            SerializedAttribute attribute = SerializedAttribute.serialize(plain);
+
+            //eg a scavenger thread, whose context classloader is not the webapp's
+            Thread thread = Thread.currentThread();
+            ClassLoader old = thread.getContextClassLoader();
+            thread.setContextClassLoader(new URLClassLoader(new URL[0],null));
+            SerializedAttribute.setLegacyFormat(true);
+            try
+            {
+                Object value = SerializedAttribute.persist(attribute,webapp);
+                Assert.assertSame(webapp,value.getClass().getClassLoader());
+            }
+            finally
+            {
+                SerializedAttribute.setLegacyFormat(false);
+                thread.setContextClassLoader(old);
+            }
+        }
+    }
+
+    @Test
+    public void testRestoreDoesNotBind() throws Exception
+    {
+        final int[] added = new int[1];
+        HashSessionManager manager = new HashSessionManager();
+        manager.setSessionIdManager(new HashSessionIdManager());
+        manager.addEventListener(new HttpSessionAttributeListener()
+        {
+            @Override
+            public void attributeAdded(HttpSessionBindingEvent event)
+            {
+                added[0]++;
+            }
+
+            @Override
+            public void attributeRemoved(HttpSessionBindingEvent event)
+            {
+            }
+
+            @Override
+            public void attributeReplaced(HttpSessionBindingEvent event)
+            {
+            }
+        });
+
+        HashedSession session = (HashedSession)manager.newSession(System.currentTimeMillis(),System.currentTimeMillis(),"bound");
+        session.setAttribute("bound",new Bound());
+        Assert.assertEquals(1,added[0]);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        session.save(out);
+
+        //restored attributes were bound before the session was saved, so are not bound again
+        HashedSession restored = manager.restoreSession(new ByteArrayInputStream(out.toByteArray()),null);
+        Bound bound = (Bound)restored.getAttribute("bound");
+        Assert.assertEquals(0,bound._bound);
+        Assert.assertEquals(1,added[0]);
+    }
+
+    @Test
+    public void testLazyRestore() throws Exception
+    {
+        HashSessionManager manager = new HashSessionManager();
+        manager.setSessionIdManager(new HashSessionIdManager());
+        HashedSession session = (HashedSession)manager.newSession(System.currentTimeMillis(),System.currentTimeMillis(),"lazy");
+        session.setAttribute("user","fred");
+        session.setAttribute("cart",new ArrayList<String>(Arrays.asList("apple","pear")));
+        session.setAttribute("listener",new Activated());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        session.save(out);
+
+        HashedSession restored = manager.restoreSession(new ByteArrayInputStream(out.toByteArray()),null);
+
+        //nothing is deserialized until used
+        for (Object value : restored.getAttributeMap().values())
+            Assert.assertTrue(value instanceof SerializedAttribute);
+        byte[] cart = ((SerializedAttribute)restored.getAttributeMap().get("cart")).getBytes();
+
+        Assert.assertEquals("fred",restored.getAttribute("user"));
+        Assert.assertTrue(restored.getAttributeMap().get("cart") instanceof SerializedAttribute);
+        Activated listener = (Activated)restored.getAttribute("listener");
+        Assert.assertEquals(1,listener._activations);
+        Assert.assertSame(listener,restored.getAttribute("listener"));
+        Assert.assertEquals(1,listener._activations);
+
+        //the unread attribute is written back untouched
+        ByteArrayOutputStream again = new ByteArrayOutputStream();
+        restored.save(again);
+        HashedSession twice = manager.restoreSession(new ByteArrayInputStream(again.toByteArray()),null);
+        Assert.assertTrue(Arrays.equals(cart,((SerializedAttribute)twice.getAttributeMap().get("cart")).getBytes()));
+        Assert.assertEquals(Arrays.asList("apple","pear"),twice.getAttribute("cart"));
+
+        //replacing an unread attribute hands the listeners the real old value
+        Assert.assertEquals("fred",twice.changeAttribute("user","barney"));
+    }
+}
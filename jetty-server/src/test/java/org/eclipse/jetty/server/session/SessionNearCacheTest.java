@@ -0,0 +1,240 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.server.session;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SessionNearCacheTest
+{
+    /**
+     * Stand in for a remote store and the session manager's in-memory map.
+     */
+    private static class Store implements SessionNearCache.Evictor, Executor
+    {
+        final Map<String,Integer> _remote = new ConcurrentHashMap<String,Integer>();
+        final Map<String,Integer> _memory = new ConcurrentHashMap<String,Integer>();
+        final Set<String> _busy = new HashSet<String>();
+        final List<Runnable> _tasks = new ArrayList<Runnable>();
+        boolean _deferred;
+        Thread _getter;
+        int _versionChecks;
+        int _loads;
+        SessionNearCache _cache = new SessionNearCache(this);
+
+        Store()
+        {
+            _cache.setExecutor(this);
+        }
+
+        @Override
+        public void execute(Runnable task)
+        {
+            _tasks.add(task);
+        }
+
+        void runTasks()
+        {
+            List<Runnable> tasks = new ArrayList<Runnable>(_tasks);
+            _tasks.clear();
+            for (Runnable task : tasks)
+                task.run();
+        }
+
+        Integer get(String id)
+        {
+            _getter = Thread.currentThread();
+            try
+            {
+                return doGet(id);
+            }
+            finally
+            {
+                _getter = null;
+                //run evictions as the thread pool would, once the session is released
+                if (!_deferred)
+                    runTasks();
+            }
+        }
+
+        Integer doGet(String id)
+        {
+            Integer local = _memory.get(id);
+            if (local == null)
+            {
+                _loads++;
+                local = _remote.get(id);
+                _memory.put(id,local);
+                _cache.load(id,local);
+                return local;
+            }
+
+            if (_cache.isCurrent(id,local))
+                return local;
+
+            _versionChecks++;
+            Integer remote = _remote.get(id);
+            if (remote.equals(local))
+                _cache.confirm(id,local);
+            else
+            {
+                _loads++;
+                _memory.put(id,remote);
+                _cache.load(id,remote);
+            }
+            return remote;
+        }
+
+        @Override
+        public boolean evict(String id)
+        {
+            //a getter may hold the lock of a session, so must never evict
+            Assert.assertNotSame(Thread.currentThread(),_getter);
+            if (_busy.contains(id))
+                return false;
+            _memory.remove(id);
+            return true;
+        }
+    }
+
+    @Test
+    public void testReloadOnlyOnVersionChange() throws Exception
+    {
+        Store store = new Store();
+        store._remote.put("a",1);
+
+        Assert.assertEquals(1,store.get("a").intValue());
+        Assert.assertEquals(1,store.get("a").intValue());
+        Assert.assertEquals(1,store.get("a").intValue());
+        Assert.assertEquals(1,store._loads);
+        Assert.assertEquals(2,store._versionChecks);
+
+        store._remote.put("a",2);
+        Assert.assertEquals(2,store.get("a").intValue());
+        Assert.assertEquals(2,store._loads);
+        Assert.assertEquals(2,store._cache.getVersion("a"));
+
+        Assert.assertEquals(2,store._cache.getHits());
+        Assert.assertEquals(2,store._cache.getMisses());
+        Assert.assertEquals(0.5,store._cache.getHitRatio(),0.001);
+    }
+
+    @Test
+    public void testVerifyInterval() throws Exception
+    {
+        Store store = new Store();
+        store._remote.put("a",1);
+        store._cache.setVerifyInterval(60000);
+
+        store.get("a");
+        store.get("a");
+        store.get("a");
+        Assert.assertEquals(1,store._loads);
+        Assert.assertEquals(0,store._versionChecks);
+        Assert.assertEquals(2,store._cache.getHits());
+
+        //a different local version is never trusted
+        Assert.assertFalse(store._cache.isCurrent("a",7));
+
+        store._cache.setVerifyInterval(1);
+        Thread.sleep(5);
+        store.get("a");
+        Assert.assertEquals(1,store._versionChecks);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception
+    {
+        Store store = new Store();
+        for (int i=0;i<5;i++)
+            store._remote.put("s"+i,i);
+        store._cache.setMaxEntries(3);
+
+        store.get("s0");
+        store.get("s1");
+        store.get("s2");
+        store.get("s0");
+        store.get("s3");
+
+        //s1 was the least recently used
+        Assert.assertEquals(3,store._cache.getSize());
+        Assert.assertEquals(1,store._cache.getEvictions());
+        Assert.assertFalse(store._memory.containsKey("s1"));
+        Assert.assertTrue(store._memory.containsKey("s0"));
+
+        //a session in use is retained and the next one evicted instead
+        store._busy.add("s2");
+        store.get("s4");
+        Assert.assertTrue(store._memory.containsKey("s2"));
+        Assert.assertFalse(store._memory.containsKey("s0"));
+        Assert.assertEquals(2,store._cache.getEvictions());
+
+        //evicted sessions are reloaded from the store
+        int loads = store._loads;
+        Assert.assertEquals(1,store.get("s1").intValue());
+        Assert.assertEquals(loads+1,store._loads);
+
+        store._cache.resetStats();
+        Assert.assertEquals(0,store._cache.getHits());
+        Assert.assertEquals(0,store._cache.getMisses());
+        Assert.assertEquals(0,store._cache.getEvictions());
+    }
+
+    @Test
+    public void testEvictionNotRunByUpdatingThread() throws Exception
+    {
+        Store store = new Store();
+        store._deferred = true;
+        for (int i=0;i<4;i++)
+            store._remote.put("s"+i,i);
+        store._cache.setMaxEntries(2);
+
+        store.get("s0");
+        store.get("s1");
+        store.get("s2");
+        store.get("s3");
+
+        //nothing evicted until the eviction task runs, and only one task is pending
+        Assert.assertEquals(4,store._cache.getSize());
+        Assert.assertEquals(0,store._cache.getEvictions());
+        Assert.assertEquals(1,store._tasks.size());
+
+        store.runTasks();
+        Assert.assertEquals(2,store._cache.getSize());
+        Assert.assertEquals(2,store._cache.getEvictions());
+        Assert.assertFalse(store._memory.containsKey("s0"));
+        Assert.assertFalse(store._memory.containsKey("s1"));
+
+        //a new eviction task is scheduled once the previous one has completed
+        store._remote.put("s4",4);
+        store.get("s4");
+        Assert.assertEquals(1,store._tasks.size());
+        store.runTasks();
+        Assert.assertEquals(2,store._cache.getSize());
+    }
+}
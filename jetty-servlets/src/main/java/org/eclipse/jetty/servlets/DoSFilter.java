@@ -29,6 +29,8 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -102,7 +104,8 @@ import org.eclipse.jetty.util.thread.Scheduler;
  * <dd>how long to allow this request to run.</dd>
  * <dt>maxIdleTrackerMs</dt>
  * <dd>how long to keep track of request rates for a connection,
- * before deciding that the user has gone away, and discarding it</dd>
+ * before deciding that the user has gone away, and discarding it.
+ * Idle trackers are discarded in bulk by a single periodic sweep.</dd>
  * <dt>insertHeaders</dt>
  * <dd>if true , insert the DoSFilter headers into the response. Defaults to true.</dd>
  * <dt>trackSessions</dt>
@@ -186,6 +189,7 @@ public class DoSFilter implements Filter
     private Queue<AsyncContext>[] _queues;
     private AsyncListener[] _listeners;
     private Scheduler _scheduler;
+    private final Runnable _expirer = new TrackerExpirer();
 
     public void init(FilterConfig filterConfig) throws ServletException
     {
@@ -263,6 +267,7 @@ public class DoSFilter implements Filter
         setTooManyCode(parameter==null?429:Integer.parseInt(parameter));
         
         _scheduler = startScheduler();
+        scheduleExpiry();
 
         ServletContext context = filterConfig.getServletContext();
         if (context != null && Boolean.parseBoolean(filterConfig.getInitParameter(MANAGED_ATTR_INIT_PARAM)))
@@ -589,12 +594,8 @@ public class DoSFilter implements Filter
             if (existing != null)
                 tracker = existing;
 
-            if (type == USER_IP)
-            {
-                // USER_IP expiration from _rateTrackers is handled by the _scheduler
-                _scheduler.schedule(tracker, getMaxIdleTrackerMs(), TimeUnit.MILLISECONDS);
-            }
-            else if (session != null)
+            // USER_IP expiration from _rateTrackers is handled by the periodic TrackerExpirer
+            if (type != USER_IP && session != null)
             {
                 // USER_SESSION expiration from _rateTrackers are handled by the HttpSessionBindingListener
                 session.setAttribute(__TRACKER, tracker);
@@ -604,6 +605,46 @@ public class DoSFilter implements Filter
         return tracker;
     }
 
+    private void scheduleExpiry()
+    {
+        Scheduler scheduler = _scheduler;
+        if (scheduler != null && scheduler.isRunning())
+            scheduler.schedule(_expirer, Math.max(1, getMaxIdleTrackerMs()), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Removes, in a single pass, the IP rate trackers that have not seen
+     * any request for longer than {@link #getMaxIdleTrackerMs()}.
+     *
+     * @param now the time now (in milliseconds)
+     * @return the number of trackers removed
+     */
+    protected int expireIdleTrackers(long now)
+    {
+        long maxIdle = getMaxIdleTrackerMs();
+        int expired = 0;
+        for (RateTracker tracker : _rateTrackers.values())
+        {
+            if (tracker.getType() == USER_IP && tracker.isIdle(now, maxIdle))
+            {
+                if (_rateTrackers.remove(tracker.getId(), tracker))
+                    ++expired;
+            }
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Expired {} idle trackers, {} remaining", expired, _rateTrackers.size());
+        return expired;
+    }
+
+    /**
+     * @return the number of rate trackers currently held by this filter
+     */
+    @ManagedAttribute("number of rate trackers currently held")
+    public int getRateTrackerCount()
+    {
+        return _rateTrackers.size();
+    }
+
     protected boolean checkWhitelist(String candidate)
     {
         for (String address : _whitelist)
@@ -1102,6 +1143,10 @@ public class DoSFilter implements Filter
     /**
      * A RateTracker is associated with a connection, and stores request rate
      * data.
+     * <p>
+     * The timestamps of the last requests are kept in a ring that is updated
+     * with atomic operations only, so that concurrent requests from the same
+     * client do not contend on a lock.
      */
     class RateTracker implements Runnable, HttpSessionBindingListener, HttpSessionActivationListener, Serializable
     {
@@ -1109,15 +1154,15 @@ public class DoSFilter implements Filter
 
         protected final String _id;
         protected final int _type;
-        protected final long[] _timestamps;
-        protected int _next;
+        protected final AtomicLongArray _timestamps;
+        protected final AtomicInteger _next = new AtomicInteger();
+        protected volatile long _lastRequest;
 
         public RateTracker(String id, int type, int maxRequestsPerSecond)
         {
             _id = id;
             _type = type;
-            _timestamps = new long[maxRequestsPerSecond];
-            _next = 0;
+            _timestamps = new AtomicLongArray(Math.max(1, maxRequestsPerSecond));
         }
 
         /**
@@ -1126,17 +1171,45 @@ public class DoSFilter implements Filter
          */
         public boolean isRateExceeded(long now)
         {
-            final long last;
-            synchronized (this)
-            {
-                last = _timestamps[_next];
-                _timestamps[_next] = now;
-                _next = (_next + 1) % _timestamps.length;
-            }
-
+            long last = record(now);
             return last != 0 && (now - last) < 1000L;
         }
 
+        /**
+         * Records a request in the ring of timestamps.
+         *
+         * @param now the time now (in milliseconds)
+         * @return the timestamp of the request that was overwritten, or 0
+         */
+        protected long record(long now)
+        {
+            int length = _timestamps.length();
+            int index = (_next.getAndIncrement() & Integer.MAX_VALUE) % length;
+            long last = _timestamps.getAndSet(index, now);
+            // Published separately, as the slot at _next - 1 may not be written yet.
+            if (now > _lastRequest)
+                _lastRequest = now;
+            return last;
+        }
+
+        /**
+         * @return the timestamp of the most recent request, or 0 if none
+         */
+        public long getLastRequest()
+        {
+            return _lastRequest;
+        }
+
+        /**
+         * @param now the time now (in milliseconds)
+         * @param maxIdleMs the maximum idle time (in milliseconds)
+         * @return whether no request has been recorded for longer than the given idle time
+         */
+        public boolean isIdle(long now, long maxIdleMs)
+        {
+            return now - getLastRequest() >= maxIdleMs;
+        }
+
         public String getId()
         {
             return _id;
@@ -1177,14 +1250,8 @@ public class DoSFilter implements Filter
         @Override
         public void run()
         {
-            int latestIndex = _next == 0 ? (_timestamps.length - 1) : (_next - 1);
-            long last = _timestamps[latestIndex];
-            boolean hasRecentRequest = last != 0 && (System.currentTimeMillis() - last) < 1000L;
-
-            if (hasRecentRequest)
-                _scheduler.schedule(this, getMaxIdleTrackerMs(), TimeUnit.MILLISECONDS);
-            else
-                _rateTrackers.remove(_id);
+            if (isIdle(System.currentTimeMillis(), getMaxIdleTrackerMs()))
+                _rateTrackers.remove(_id, this);
         }
 
         @Override
@@ -1207,12 +1274,7 @@ public class DoSFilter implements Filter
             // rate limit is never exceeded, but we keep track of the request timestamps
             // so that we know whether there was recent activity on this tracker
             // and whether it should be expired
-            synchronized (this)
-            {
-                _timestamps[_next] = now;
-                _next = (_next + 1) % _timestamps.length;
-            }
-
+            record(now);
             return false;
         }
 
@@ -1223,6 +1285,22 @@ public class DoSFilter implements Filter
         }
     }
 
+    private class TrackerExpirer implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            try
+            {
+                expireIdleTrackers(System.currentTimeMillis());
+            }
+            finally
+            {
+                scheduleExpiry();
+            }
+        }
+    }
+
     private class DoSTimeoutAsyncListener implements AsyncListener
     {
         @Override
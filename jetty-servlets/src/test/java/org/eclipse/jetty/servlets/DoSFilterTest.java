@@ -18,15 +18,21 @@
 
 package org.eclipse.jetty.servlets;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.servlets.DoSFilter.RateTracker;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -95,6 +101,58 @@ public class DoSFilterTest extends AbstractDoSFilterTest
         Assert.assertFalse(filter.checkWhitelist("4d8:0:a:1234:ABc:1D:0:0"));
     }
 
+    @Test
+    public void testConcurrentRateTracker() throws Exception
+    {
+        DoSFilter doSFilter = new DoSFilter();
+        final RateTracker rateTracker = doSFilter.new RateTracker("test3",0,100);
+        final long now = System.currentTimeMillis();
+        final AtomicInteger exceeded = new AtomicInteger();
+        int threads = 4;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++)
+        {
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = 0; i < 50; i++)
+                    {
+                        if (rateTracker.isRateExceeded(now))
+                            exceeded.incrementAndGet();
+                    }
+                    latch.countDown();
+                }
+            }.start();
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        // Every slot is overwritten exactly once by the second hundred requests.
+        assertEquals(100, exceeded.get());
+        assertEquals(now, rateTracker.getLastRequest());
+    }
+
+    @Test
+    public void testIdleTrackersExpire() throws Exception
+    {
+        DoSFilter doSFilter = new DoSFilter();
+        doSFilter.setMaxRequestsPerSec(10);
+        doSFilter.setMaxIdleTrackerMs(1000);
+
+        for (int i = 1; i <= 3; i++)
+        {
+            Request request = new Request(null, null);
+            request.setRemoteAddr(new InetSocketAddress("127.0.0." + i, 8888));
+            RateTracker tracker = doSFilter.getRateTracker(request);
+            tracker.isRateExceeded(System.currentTimeMillis() - (i == 1 ? 0 : 5000));
+        }
+        assertEquals(3, doSFilter.getRateTrackerCount());
+
+        assertEquals(2, doSFilter.expireIdleTrackers(System.currentTimeMillis()));
+        assertEquals(1, doSFilter.getRateTrackerCount());
+    }
+
     private boolean hitRateTracker(DoSFilter doSFilter, int sleep) throws InterruptedException
     {
         boolean exceeded = false;
@@ -37,8 +37,11 @@ import java.net.InetAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.start.config.CommandLineConfigSource;
 
@@ -54,7 +57,7 @@ import org.eclipse.jetty.start.config.CommandLineConfigSource;
  * <li>Directory Location: jetty.base=[directory] (the jetty.base location)</li>
  * <li>Start Logging behavior: --debug (debugging enabled)</li>
  * <li>Start Logging behavior: --start-log-file=logs/start.log (output start logs to logs/start.log location)</li>
- * <li>Module Resolution</li>
+ * <li>Module Resolution (or restoration from the launch cache)</li>
  * <li>Properties Resolution</li>
  * <li>Present Optional Informational Options</li>
  * <li>Normal Startup</li>
@@ -102,6 +105,7 @@ public class Main
 
     private BaseHome baseHome;
     private StartArgs startupArgs;
+    private final Map<String, Long> timings = new LinkedHashMap<>();
 
     public Main() throws IOException
     {
@@ -235,6 +239,20 @@ public class Main
         args.dumpActiveXmls(baseHome);
     }
 
+    public void listTiming(StartArgs args)
+    {
+        System.out.println();
+        System.out.println("Jetty Start Timing:");
+        System.out.println("-------------------");
+        long total = 0;
+        for (Map.Entry<String, Long> timing : timings.entrySet())
+        {
+            total += timing.getValue();
+            System.out.printf(" %-28s %9.3f ms%n",timing.getKey(),timing.getValue() / 1000000.0);
+        }
+        System.out.printf(" %-28s %9.3f ms%n","Total",total / 1000000.0);
+    }
+
     public void listModules(StartArgs args)
     {
         StartLog.endStartLog();
@@ -267,11 +285,14 @@ public class Main
         // Processing Order is important!
         // ------------------------------------------------------------
         // 1) Configuration Locations
+        timings.clear();
+        long started = System.nanoTime();
         CommandLineConfigSource cmdLineSource = new CommandLineConfigSource(cmdLine);
         baseHome = new BaseHome(cmdLineSource);
 
         StartLog.debug("jetty.home=%s",baseHome.getHome());
         StartLog.debug("jetty.base=%s",baseHome.getBase());
+        started = timing("Configuration Sources",started);
 
         // ------------------------------------------------------------
         // 2) Parse everything provided.
@@ -281,15 +302,35 @@ public class Main
         StartLog.debug("Parsing collected arguments");
         StartArgs args = new StartArgs();
         args.parse(baseHome.getConfigSources());
+        started = timing("Argument Parsing",started);
 
         // ------------------------------------------------------------
-        // 3) Module Registration
+        // 3) Restore a previously resolved launch, if still valid
+        StartCache cache = null;
+        if (StartCache.isCacheable(args))
+        {
+            cache = new StartCache(baseHome);
+            boolean loaded = cache.load();
+            started = timing("Launch Cache Load",started);
+            if (loaded)
+            {
+                StartLog.debug("Using launch cache %s",baseHome.toShortForm(cache.getFile()));
+                args.setAllModules(new Modules(baseHome,args));
+                args.restore(cache);
+                timing("Launch Cache Restore",started);
+                return args;
+            }
+        }
+
+        // ------------------------------------------------------------
+        // 4) Module Registration
         Modules modules = new Modules(baseHome,args);
         StartLog.debug("Registering all modules");
         modules.registerAll();
+        started = timing("Module Registration",started);
 
         // ------------------------------------------------------------
-        // 4) Active Module Resolution
+        // 5) Active Module Resolution
         for (String enabledModule : args.getEnabledModules())
         {
             for (String source : args.getSources(enabledModule))
@@ -330,22 +371,48 @@ public class Main
             module.setSkipFilesValidation(true);
         }
 
+        started = timing("Module Resolution",started);
+
         // ------------------------------------------------------------
-        // 5) Lib & XML Expansion / Resolution
+        // 6) Lib & XML Expansion / Resolution
         args.expandLibs(baseHome);
         args.expandModules(baseHome,activeModules);
 
 
         // ------------------------------------------------------------
-        // 6) Resolve Extra XMLs
+        // 7) Resolve Extra XMLs
         args.resolveExtraXmls(baseHome);
         
         // ------------------------------------------------------------
-        // 9) Resolve Property Files
+        // 8) Resolve Property Files
         args.resolvePropertyFiles(baseHome);
+        started = timing("Lib & XML Expansion",started);
+
+        // ------------------------------------------------------------
+        // 9) Save the resolved launch for the next start
+        if (cache != null)
+        {
+            cache.store(args,activeModules);
+            timing("Launch Cache Store",started);
+        }
 
         return args;
     }
+
+    /**
+     * Record the time taken by a phase of the command line processing.
+     * 
+     * @param phase the name of the phase
+     * @param started the nano time the phase started at
+     * @return the nano time the phase ended at
+     */
+    private long timing(String phase, long started)
+    {
+        long now = System.nanoTime();
+        timings.put(phase,now - started);
+        StartLog.debug("%s took %dms",phase,TimeUnit.NANOSECONDS.toMillis(now - started));
+        return now;
+    }
     
     public void start(StartArgs args) throws IOException, InterruptedException
     {
@@ -379,6 +446,12 @@ public class Main
         {
             listModules(args);
         }
+
+        // Show the time taken by each phase
+        if (args.isListTiming())
+        {
+            listTiming(args);
+        }
         
         // Generate Module Graph File
         if (args.getModuleGraphFilename() != null)
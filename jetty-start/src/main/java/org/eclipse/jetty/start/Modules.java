@@ -226,8 +226,7 @@ public class Modules implements Iterable<Module>
             module.expandProperties(args.getProperties());
             if (module.hasDefaultConfig())
             {
-                for(String line:module.getDefaultConfig())
-                    args.parse(line,module.getFilesystemRef(),false);
+                args.parseModule(module);
                 for (Module m:modules)
                     m.expandProperties(args.getProperties());
             }
@@ -149,6 +149,8 @@ public class StartArgs
     private Props properties = new Props();
     private Set<String> systemPropertyKeys = new HashSet<>();
     private List<String> rawLibs = new ArrayList<>();
+    /** The [ini] lines of the selected modules, in the order they were parsed */
+    private RawArgs moduleArgs = new RawArgs();
 
     // jetty.base - build out commands
     /** --add-to-startd=[module,[module]] */
@@ -181,6 +183,8 @@ public class StartArgs
     private boolean listConfig = false;
     private boolean version = false;
     private boolean dryRun = false;
+    private boolean listTiming = false;
+    private boolean startCache = false;
 
     private boolean exec = false;
     private String exec_properties;
@@ -553,6 +557,21 @@ public class StartArgs
         return jvmArgs;
     }
 
+    public RawArgs getModuleArgs()
+    {
+        return moduleArgs;
+    }
+
+    public List<Path> getPropertyFiles()
+    {
+        return propertyFiles;
+    }
+
+    public List<String> getRawLibs()
+    {
+        return rawLibs;
+    }
+
     public CommandLineBuilder getMainArgs(BaseHome baseHome, boolean addJavaInit) throws IOException
     {
         CommandLineBuilder cmd = new CommandLineBuilder();
@@ -765,11 +784,21 @@ public class StartArgs
         return listModules;
     }
 
+    public boolean isListTiming()
+    {
+        return listTiming;
+    }
+
     public boolean isRun()
     {
         return run;
     }
 
+    public boolean isStartCache()
+    {
+        return startCache;
+    }
+
     public boolean isStopCommand()
     {
         return stopCommand;
@@ -911,6 +940,19 @@ public class StartArgs
             return;
         }
 
+        if ("--list-timing".equals(arg))
+        {
+            listTiming = true;
+            run = false;
+            return;
+        }
+
+        if ("--start-cache".equals(arg))
+        {
+            startCache = true;
+            return;
+        }
+
         // Enable forked execution of Jetty server
         if ("--exec".equals(arg))
         {
@@ -1120,11 +1162,52 @@ public class StartArgs
         {
             for (String line : module.getDefaultConfig())
             {
+                moduleArgs.addArg(line,module.getFilesystemRef());
                 parse(line,module.getFilesystemRef(),false);
             }
         }
     }
 
+    /**
+     * Restore the module resolution of a previous launch, in place of
+     * registering, selecting and expanding the modules.
+     *
+     * @param cache
+     *            the launch cache that was loaded and validated
+     */
+    public void restore(StartCache cache)
+    {
+        for (RawArgs.Entry arg : cache.getModuleArgs())
+        {
+            moduleArgs.addArg(arg.getLine(),arg.getOrigin());
+            parse(arg.getLine(),arg.getOrigin(),false);
+        }
+
+        for (File component : cache.getClasspath())
+        {
+            classpath.addComponent(component);
+        }
+
+        jvmArgs.clear();
+        jvmArgs.addAll(cache.getJvmArgs());
+        exec |= cache.isExec();
+
+        xmls.clear();
+        xmls.addAll(cache.getXmlFiles());
+
+        propertyFiles.clear();
+        propertyFiles.addAll(cache.getPropertyFiles());
+
+        for (String file : cache.getFiles())
+        {
+            FileArg arg = new FileArg(file);
+            if (!files.contains(arg))
+            {
+                files.add(arg);
+            }
+        }
+    }
+
     public void resolveExtraXmls(BaseHome baseHome) throws IOException
     {
         // Find and Expand XML files
@@ -0,0 +1,419 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.start;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.eclipse.jetty.start.config.ConfigSource;
+import org.eclipse.jetty.start.config.DirConfigSource;
+
+/**
+ * The resolved launch of a previous start, saved in <code>${jetty.base}/start.cache</code>.
+ * <p>
+ * Enabled with <code>--start-cache</code>, the cache holds the results of module registration,
+ * selection and expansion: the [ini] lines of the selected modules, the classpath, the XML and
+ * property files, the JVM arguments and the [files] of the modules. When it is valid, these are
+ * restored into the {@link StartArgs} instead of parsing every <code>*.mod</code> file, resolving
+ * the module graph and searching the lib directories.
+ * <p>
+ * The cache is keyed by the raw arguments of every config source (command line,
+ * <code>start.ini</code>, <code>start.d/*.ini</code> and included jetty dirs), the start version
+ * and the system properties. It is invalidated if the last modified time of any module file,
+ * module directory, classpath entry, searched lib directory, XML or property file has changed.
+ */
+public class StartCache
+{
+    private static final String MAGIC = "JSC1";
+    private static final String FILENAME = "start.cache";
+
+    private final BaseHome baseHome;
+    private final Path file;
+    private final RawArgs moduleArgs = new RawArgs();
+    private final List<File> classpath = new ArrayList<>();
+    private final List<String> jvmArgs = new ArrayList<>();
+    private final List<Path> xmls = new ArrayList<>();
+    private final List<Path> propertyFiles = new ArrayList<>();
+    private final List<String> files = new ArrayList<>();
+    private boolean exec;
+    private String key;
+
+    public StartCache(BaseHome baseHome)
+    {
+        this.baseHome = baseHome;
+        this.file = baseHome.getBasePath(FILENAME);
+    }
+
+    /**
+     * @param args
+     *            the parsed arguments
+     * @return true if the launch described by the arguments may be cached: the cache is enabled and
+     *         no command that inspects or modifies the modules or the base directory is present.
+     */
+    public static boolean isCacheable(StartArgs args)
+    {
+        return args.isStartCache() && !args.isHelp() && !args.isStopCommand() && !args.isDownload() && !args.isLicenseCheckRequired()
+                && !args.isListModules() && !args.isListConfig() && args.getModuleGraphFilename() == null && args.getAddToStartIni().isEmpty()
+                && args.getAddToStartdIni().isEmpty();
+    }
+
+    public Path getFile()
+    {
+        return file;
+    }
+
+    public RawArgs getModuleArgs()
+    {
+        return moduleArgs;
+    }
+
+    public List<File> getClasspath()
+    {
+        return classpath;
+    }
+
+    public List<String> getJvmArgs()
+    {
+        return jvmArgs;
+    }
+
+    public List<Path> getXmlFiles()
+    {
+        return xmls;
+    }
+
+    public List<Path> getPropertyFiles()
+    {
+        return propertyFiles;
+    }
+
+    public List<String> getFiles()
+    {
+        return files;
+    }
+
+    public boolean isExec()
+    {
+        return exec;
+    }
+
+    /**
+     * Load the cache, if it exists and is still valid for the current arguments.
+     * 
+     * @return true if the cache was loaded, false if it is missing or stale
+     */
+    public boolean load()
+    {
+        try
+        {
+            // The key is taken before the modules are resolved, as their [ini] may set system properties
+            key = getKey();
+        }
+        catch (IOException e)
+        {
+            StartLog.debug(e);
+            return false;
+        }
+
+        if (!FS.canReadFile(file))
+        {
+            StartLog.debug("No launch cache %s",file);
+            return false;
+        }
+
+        try (InputStream in = Files.newInputStream(file))
+        {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+            if (!MAGIC.equals(data.readUTF()))
+            {
+                StartLog.debug("Unknown launch cache format %s",file);
+                return false;
+            }
+
+            if (!key.equals(data.readUTF()))
+            {
+                StartLog.debug("Arguments changed since launch cache %s",file);
+                return false;
+            }
+
+            for (int i = data.readInt(); i-- > 0;)
+            {
+                Path path = Paths.get(data.readUTF());
+                long lastModified = data.readLong();
+                if (lastModified != getLastModified(path))
+                {
+                    StartLog.debug("Launch cache %s stale: %s modified",file,path);
+                    return false;
+                }
+            }
+
+            for (int i = data.readInt(); i-- > 0;)
+            {
+                String line = data.readUTF();
+                moduleArgs.addArg(line,data.readUTF());
+            }
+            for (int i = data.readInt(); i-- > 0;)
+                classpath.add(new File(data.readUTF()));
+            for (int i = data.readInt(); i-- > 0;)
+                jvmArgs.add(data.readUTF());
+            for (int i = data.readInt(); i-- > 0;)
+                xmls.add(Paths.get(data.readUTF()));
+            for (int i = data.readInt(); i-- > 0;)
+                propertyFiles.add(Paths.get(data.readUTF()));
+            for (int i = data.readInt(); i-- > 0;)
+                files.add(data.readUTF());
+            exec = data.readBoolean();
+            return true;
+        }
+        catch (IOException e)
+        {
+            StartLog.debug(e);
+            StartLog.debug("Unable to read launch cache %s",file);
+            return false;
+        }
+    }
+
+    /**
+     * Save the resolved launch to the cache, keyed by the arguments seen by {@link #load()}.
+     * 
+     * @param args
+     *            the fully resolved arguments
+     * @param activeModules
+     *            the selected modules
+     */
+    public void store(StartArgs args, List<Module> activeModules)
+    {
+        if (key == null)
+            return;
+
+        try
+        {
+            // Collect everything whose modification would change the resolution
+            Map<Path, Long> stamps = new TreeMap<>();
+            for (Path dir : getConfigDirs())
+                stampTree(stamps,dir.resolve("modules"),".mod");
+
+            List<String> librefs = new ArrayList<>(args.getRawLibs());
+            for (Module module : activeModules)
+                librefs.addAll(module.getLibs());
+            for (String libref : librefs)
+            {
+                String pattern = args.getProperties().expand(libref);
+                if (PathMatchers.isAbsolute(pattern))
+                    stampSearchRoot(stamps,PathMatchers.getSearchRoot(pattern),pattern);
+                else
+                {
+                    for (Path dir : getConfigDirs())
+                        stampSearchRoot(stamps,dir.resolve(PathMatchers.getSearchRoot(pattern)),pattern);
+                }
+            }
+
+            for (File component : args.getClasspath())
+            {
+                stamp(stamps,component.toPath());
+                stamp(stamps,component.toPath().getParent());
+            }
+            for (Path xml : args.getXmlFiles())
+                stamp(stamps,xml);
+            for (Path propertyFile : args.getPropertyFiles())
+                stamp(stamps,propertyFile);
+
+            Path tmp = file.resolveSibling(FILENAME + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp))
+            {
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+                data.writeUTF(MAGIC);
+                data.writeUTF(key);
+
+                data.writeInt(stamps.size());
+                for (Map.Entry<Path, Long> entry : stamps.entrySet())
+                {
+                    data.writeUTF(entry.getKey().toString());
+                    data.writeLong(entry.getValue());
+                }
+
+                List<RawArgs.Entry> lines = new ArrayList<>();
+                for (RawArgs.Entry arg : args.getModuleArgs())
+                    lines.add(arg);
+                data.writeInt(lines.size());
+                for (RawArgs.Entry arg : lines)
+                {
+                    data.writeUTF(arg.getLine());
+                    data.writeUTF(arg.getOrigin());
+                }
+
+                data.writeInt(args.getClasspath().count());
+                for (File component : args.getClasspath())
+                    data.writeUTF(component.getAbsolutePath());
+                data.writeInt(args.getJvmArgs().size());
+                for (String jvmArg : args.getJvmArgs())
+                    data.writeUTF(jvmArg);
+                data.writeInt(args.getXmlFiles().size());
+                for (Path xml : args.getXmlFiles())
+                    data.writeUTF(xml.toString());
+                data.writeInt(args.getPropertyFiles().size());
+                for (Path propertyFile : args.getPropertyFiles())
+                    data.writeUTF(propertyFile.toString());
+                data.writeInt(args.getFiles().size());
+                for (FileArg arg : args.getFiles())
+                    data.writeUTF(arg.uri == null?arg.location:(arg.uri + "|" + arg.location));
+                data.writeBoolean(args.isExec());
+                data.flush();
+            }
+            Files.move(tmp,file,StandardCopyOption.REPLACE_EXISTING);
+            StartLog.debug("Saved launch cache %s",file);
+        }
+        catch (IOException e)
+        {
+            StartLog.debug(e);
+            StartLog.warn("Unable to save launch cache %s",file);
+        }
+    }
+
+    /**
+     * The key of the arguments that the cache is valid for.
+     */
+    private String getKey() throws IOException
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest,StartArgs.VERSION);
+
+            ListIterator<ConfigSource> iter = baseHome.getConfigSources().reverseListIterator();
+            while (iter.hasPrevious())
+            {
+                ConfigSource source = iter.previous();
+                update(digest,source.getId());
+                for (RawArgs.Entry arg : source.getArgs())
+                {
+                    update(digest,arg.getLine());
+                    update(digest,arg.getOrigin());
+                }
+            }
+
+            // Module selection and expansion may refer to any system property
+            Properties system = System.getProperties();
+            for (String key : new TreeSet<>(system.stringPropertyNames()))
+            {
+                if ("java.class.path".equals(key))
+                    continue;
+                update(digest,key);
+                update(digest,system.getProperty(key));
+            }
+
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest())
+                key.append(String.format("%02x",b & 0xFF));
+            return key.toString();
+        }
+        catch (Exception e)
+        {
+            throw new IOException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value)
+    {
+        if (value != null)
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte)0);
+    }
+
+    private List<Path> getConfigDirs()
+    {
+        List<Path> dirs = new ArrayList<>();
+        for (ConfigSource source : baseHome.getConfigSources())
+        {
+            if (source instanceof DirConfigSource)
+                dirs.add(((DirConfigSource)source).getDir());
+        }
+        return dirs;
+    }
+
+    private static long getLastModified(Path path)
+    {
+        try
+        {
+            if (Files.exists(path))
+                return Files.getLastModifiedTime(path).toMillis();
+        }
+        catch (IOException e)
+        {
+            StartLog.debug(e);
+        }
+        return -1;
+    }
+
+    private static void stamp(Map<Path, Long> stamps, Path path)
+    {
+        if (path != null && !stamps.containsKey(path))
+            stamps.put(path,getLastModified(path));
+    }
+
+    private static void stampSearchRoot(Map<Path, Long> stamps, Path root, String pattern) throws IOException
+    {
+        // a recursive pattern finds files added to any sub directory
+        if (pattern.contains("**"))
+            stampTree(stamps,root,null);
+        else
+            stamp(stamps,root);
+    }
+
+    /**
+     * Stamp a directory, its sub directories and any files with the given suffix
+     * (or no files if the suffix is null).
+     */
+    private static void stampTree(Map<Path, Long> stamps, Path dir, String suffix) throws IOException
+    {
+        stamp(stamps,dir);
+        if (!FS.isValidDirectory(dir))
+            return;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir))
+        {
+            for (Path entry : entries)
+            {
+                if (Files.isDirectory(entry))
+                    stampTree(stamps,entry,suffix);
+                else if (suffix != null && entry.getFileName().toString().endsWith(suffix))
+                    stamp(stamps,entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.start;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jetty.start.Props.Prop;
+import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
+import org.eclipse.jetty.toolchain.test.TestingDir;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class StartCacheTest
+{
+    @Rule
+    public TestingDir testdir = new TestingDir();
+
+    private Path base;
+
+    @Before
+    public void setupBase() throws Exception
+    {
+        base = testdir.getEmptyDir().toPath().toRealPath();
+        Files.createDirectories(base.resolve("modules"));
+        Files.createDirectories(base.resolve("lib/cached"));
+        Files.write(base.resolve("modules/cached.mod"),Arrays.asList(
+                "[depend]","server",
+                "[lib]","lib/cached/*.jar",
+                "[exec]","-Xmx64m",
+                "[ini]","cached.property=cached"));
+    }
+
+    private StartArgs process(String... extra) throws Exception
+    {
+        List<String> cmdLine = new ArrayList<>();
+        cmdLine.add("jetty.home=" + MavenTestingUtils.getTestResourceDir("dist-home").getAbsolutePath());
+        cmdLine.add("jetty.base=" + base);
+        cmdLine.add("--start-cache");
+        cmdLine.add("--module=http,cached");
+        cmdLine.addAll(Arrays.asList(extra));
+        return new Main().processCommandLine(cmdLine);
+    }
+
+    private static boolean isRestored(StartArgs args)
+    {
+        return args.getAllModules().stream().count() == 0;
+    }
+
+    private static void assertSameLaunch(StartArgs expected, StartArgs actual)
+    {
+        assertEquals("classpath",expected.getClasspath().getElements(),actual.getClasspath().getElements());
+        assertEquals("xmls",expected.getXmlFiles(),actual.getXmlFiles());
+        assertEquals("property files",expected.getPropertyFiles(),actual.getPropertyFiles());
+        assertEquals("jvm args",expected.getJvmArgs(),actual.getJvmArgs());
+        assertEquals("exec",expected.isExec(),actual.isExec());
+        assertEquals("properties",expected.getProperties().size(),actual.getProperties().size());
+        for (Prop prop : expected.getProperties())
+            assertEquals(prop.key,prop.value,actual.getProperties().getString(prop.key));
+    }
+
+    @Test
+    public void testRestoredLaunch() throws Exception
+    {
+        StartArgs resolved = process();
+        assertFalse(isRestored(resolved));
+        assertTrue(Files.exists(base.resolve("start.cache")));
+        assertThat(resolved.getProperties().getString("cached.property"),is("cached"));
+        assertTrue(resolved.isExec());
+
+        StartArgs restored = process();
+        assertTrue(isRestored(restored));
+        assertSameLaunch(resolved,restored);
+    }
+
+    @Test
+    public void testChangedArguments() throws Exception
+    {
+        process();
+        assertTrue(isRestored(process()));
+
+        StartArgs args = process("jetty.http.port=9999");
+        assertFalse(isRestored(args));
+        assertThat(args.getProperties().getString("jetty.http.port"),is("9999"));
+        assertTrue(isRestored(process("jetty.http.port=9999")));
+    }
+
+    @Test
+    public void testModifiedModule() throws Exception
+    {
+        process();
+        File mod = base.resolve("modules/cached.mod").toFile();
+        assertTrue(mod.setLastModified(mod.lastModified() - 10000));
+        assertFalse(isRestored(process()));
+        assertTrue(isRestored(process()));
+    }
+
+    @Test
+    public void testAddedLib() throws Exception
+    {
+        StartArgs resolved = process();
+        File dir = base.resolve("lib/cached").toFile();
+        Path jar = base.resolve("lib/cached/added.jar");
+        Files.createFile(jar);
+        // ensure the directory stamp changes on coarse grained filesystems
+        assertTrue(dir.setLastModified(dir.lastModified() + 10000));
+
+        StartArgs args = process();
+        assertFalse(isRestored(args));
+        assertTrue(args.getClasspath().getElements().contains(jar.toFile()));
+        assertFalse(resolved.getClasspath().getElements().contains(jar.toFile()));
+    }
+
+    @Test
+    public void testNotCached() throws Exception
+    {
+        process("--list-modules");
+        assertFalse(Files.exists(base.resolve("start.cache")));
+    }
+}
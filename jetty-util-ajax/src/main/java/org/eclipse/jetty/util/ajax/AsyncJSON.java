@@ -0,0 +1,580 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.ajax;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jetty.util.TypeUtil;
+import org.eclipse.jetty.util.Utf8StringBuilder;
+
+/**
+ * Incremental JSON Parser.
+ * <p>
+ * Unlike {@link JSON#parse(JSON.Source)}, which pulls characters from a
+ * complete source, this parser is fed UTF-8 bytes in {@link ByteBuffer}
+ * chunks as they arrive (for example from an asynchronous read), and keeps
+ * its own state between chunks:
+ * <pre>
+ * AsyncJSON parser = new AsyncJSON(json);
+ * while (!parser.parse(buffer))
+ *     buffer = readMore();
+ * Object result = parser.complete();
+ * </pre>
+ * The objects produced are the same as those of the {@link JSON} instance
+ * given to the constructor: its {@link JSON#newMap()},
+ * {@link JSON#newArray(int)}, {@link JSON#contextFor(String)} and
+ * {@link JSON#contextForArray()} methods are used, and "class" and "x-class"
+ * fields are converted with the registered {@link JSON.Convertor}s.
+ * <p>
+ * Comments and the stripping of outer comments are not supported.
+ * <p>
+ * Instances are not thread safe, but may be reused after {@link #complete()}
+ * or {@link #reset()}.
+ */
+public class AsyncJSON
+{
+    private enum State
+    {
+        VALUE,
+        OBJECT_NAME_OR_END,
+        OBJECT_NAME,
+        OBJECT_COLON,
+        OBJECT_COMMA_OR_END,
+        ARRAY_VALUE_OR_END,
+        ARRAY_COMMA_OR_END,
+        STRING,
+        STRING_ESCAPE,
+        STRING_UNICODE,
+        NUMBER,
+        LITERAL,
+        COMPLETE
+    }
+
+    private final JSON _json;
+    private final Deque<Frame> _stack = new ArrayDeque<>();
+    private final Utf8StringBuilder _string = new Utf8StringBuilder();
+    private final StringBuilder _number = new StringBuilder();
+    private State _state;
+    private JSON _context;
+    private boolean _name;
+    private int _unicode;
+    private int _unicodeDigits;
+    private long _long;
+    private boolean _minus;
+    private boolean _double;
+    private String _literal;
+    private Object _literalValue;
+    private int _literalIndex;
+    private Object _result;
+
+    public AsyncJSON()
+    {
+        this(JSON.getDefault());
+    }
+
+    /**
+     * @param json the JSON instance used to create and convert the parsed objects
+     */
+    public AsyncJSON(JSON json)
+    {
+        _json = json;
+        reset();
+    }
+
+    /**
+     * Discard any partially parsed value, so that a new value can be parsed.
+     */
+    public void reset()
+    {
+        _stack.clear();
+        _string.reset();
+        _number.setLength(0);
+        _state = State.VALUE;
+        _context = _json;
+        _result = null;
+        _literal = null;
+        _literalValue = null;
+    }
+
+    /**
+     * @return true if no bytes of a value have been parsed since the last
+     * {@link #complete()} or {@link #reset()}
+     */
+    public boolean isEmpty()
+    {
+        return _state == State.VALUE && _stack.isEmpty();
+    }
+
+    /**
+     * Parse bytes of a JSON value.
+     *
+     * @param bytes the bytes to parse
+     * @param offset the offset of the first byte
+     * @param length the number of bytes to parse
+     * @return true if a complete value has been parsed
+     * @see #parse(ByteBuffer)
+     */
+    public boolean parse(byte[] bytes, int offset, int length)
+    {
+        return parse(ByteBuffer.wrap(bytes,offset,length));
+    }
+
+    /**
+     * Parse the bytes of a JSON value.
+     * <p>
+     * Bytes are consumed from the buffer until it is empty or until a complete
+     * value has been parsed, in which case the buffer position is left just after
+     * the value and the value is obtained with {@link #complete()}.
+     * <p>
+     * A top level number can only be known to be complete once a following byte
+     * (or the end of input) is seen, so such a value is only returned from
+     * {@link #complete()}.
+     *
+     * @param buffer the buffer of UTF-8 bytes to parse
+     * @return true if a complete value has been parsed
+     * @throws IllegalStateException if the JSON is invalid
+     */
+    public boolean parse(ByteBuffer buffer)
+    {
+        while (buffer.hasRemaining())
+        {
+            if (_state == State.COMPLETE)
+                return true;
+
+            byte b = buffer.get(buffer.position());
+            switch (_state)
+            {
+                case VALUE:
+                    buffer.get();
+                    parseValue(b);
+                    break;
+
+                case OBJECT_NAME_OR_END:
+                case OBJECT_NAME:
+                    buffer.get();
+                    if (b == '"')
+                    {
+                        _name = true;
+                        _state = State.STRING;
+                    }
+                    else if (b == '}')
+                        endObject();
+                    else if (!isWhitespace(b))
+                        throw unexpected(b);
+                    break;
+
+                case OBJECT_COLON:
+                    buffer.get();
+                    if (b == ':')
+                    {
+                        _context = _stack.peek()._context.contextFor(_stack.peek()._field);
+                        _state = State.VALUE;
+                    }
+                    else if (!isWhitespace(b))
+                        throw unexpected(b);
+                    break;
+
+                case OBJECT_COMMA_OR_END:
+                    buffer.get();
+                    if (b == ',')
+                        _state = State.OBJECT_NAME;
+                    else if (b == '}')
+                        endObject();
+                    else if (!isWhitespace(b))
+                        throw unexpected(b);
+                    break;
+
+                case ARRAY_VALUE_OR_END:
+                    buffer.get();
+                    if (b == ']')
+                        endArray();
+                    else if (!isWhitespace(b))
+                    {
+                        _context = _stack.peek()._context.contextForArray();
+                        parseValue(b);
+                    }
+                    break;
+
+                case ARRAY_COMMA_OR_END:
+                    buffer.get();
+                    if (b == ',')
+                        _state = State.ARRAY_VALUE_OR_END;
+                    else if (b == ']')
+                        endArray();
+                    else if (!isWhitespace(b))
+                        throw unexpected(b);
+                    break;
+
+                case STRING:
+                    parseString(buffer);
+                    break;
+
+                case STRING_ESCAPE:
+                    buffer.get();
+                    parseEscape(b);
+                    break;
+
+                case STRING_UNICODE:
+                    buffer.get();
+                    _unicode = (_unicode << 4) + TypeUtil.convertHexDigit(b);
+                    if (++_unicodeDigits == 4)
+                    {
+                        _string.append((char)_unicode);
+                        _state = State.STRING;
+                    }
+                    break;
+
+                case NUMBER:
+                    if (!parseNumber(b))
+                        endNumber();
+                    else
+                        buffer.get();
+                    break;
+
+                case LITERAL:
+                    buffer.get();
+                    if (b != _literal.charAt(_literalIndex++))
+                        throw unexpected(b);
+                    if (_literalIndex == _literal.length())
+                    {
+                        _literal = null;
+                        value(_literalValue);
+                    }
+                    break;
+
+                default:
+                    throw new IllegalStateException(_state.toString());
+            }
+        }
+        return _state == State.COMPLETE;
+    }
+
+    /**
+     * Complete the parsing of a value.
+     * <p>
+     * This is called either after {@link #parse(ByteBuffer)} has returned true,
+     * or at the end of input to complete a top level number. The parser is
+     * reset, so that another value can be parsed.
+     *
+     * @param <R> the type the result is cast to
+     * @return the parsed value
+     * @throws IllegalStateException if the value is incomplete
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R complete()
+    {
+        if (_state == State.NUMBER && _stack.isEmpty())
+            endNumber();
+        if (_state != State.COMPLETE)
+            throw new IllegalStateException("Incomplete JSON in state " + _state);
+        Object result = _result;
+        reset();
+        return (R)result;
+    }
+
+    private void parseValue(byte b)
+    {
+        switch (b)
+        {
+            case '{':
+                _stack.push(new Frame(_context,_context.newMap()));
+                _state = State.OBJECT_NAME_OR_END;
+                break;
+            case '[':
+                _stack.push(new Frame(_context,new ArrayList<>()));
+                _state = State.ARRAY_VALUE_OR_END;
+                break;
+            case '"':
+                _name = false;
+                _state = State.STRING;
+                break;
+            case '-':
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+            case '8':
+            case '9':
+                _long = 0;
+                _minus = false;
+                _double = false;
+                _number.setLength(0);
+                _state = State.NUMBER;
+                parseNumber(b);
+                break;
+            case 'n':
+                literal("null",null);
+                break;
+            case 't':
+                literal("true",Boolean.TRUE);
+                break;
+            case 'f':
+                literal("false",Boolean.FALSE);
+                break;
+            case 'u':
+                literal("undefined",null);
+                break;
+            case 'N':
+                literal("NaN",null);
+                break;
+            default:
+                if (!isWhitespace(b))
+                    throw unexpected(b);
+        }
+    }
+
+    private void literal(String literal, Object value)
+    {
+        _literal = literal;
+        _literalValue = value;
+        _literalIndex = 1;
+        _state = State.LITERAL;
+    }
+
+    private void parseString(ByteBuffer buffer)
+    {
+        if (buffer.hasArray())
+        {
+            byte[] array = buffer.array();
+            int offset = buffer.arrayOffset();
+            int start = offset + buffer.position();
+            int end = offset + buffer.limit();
+            for (int i = start; i < end; i++)
+            {
+                byte b = array[i];
+                if (b == '"' || b == '\\')
+                {
+                    _string.append(array,start,i - start);
+                    buffer.position(i + 1 - offset);
+                    endString(b);
+                    return;
+                }
+            }
+            _string.append(array,start,end - start);
+            buffer.position(buffer.limit());
+        }
+        else
+        {
+            while (buffer.hasRemaining())
+            {
+                byte b = buffer.get();
+                if (b == '"' || b == '\\')
+                {
+                    endString(b);
+                    return;
+                }
+                _string.append(b);
+            }
+        }
+    }
+
+    private void endString(byte b)
+    {
+        if (b == '\\')
+        {
+            _state = State.STRING_ESCAPE;
+            return;
+        }
+
+        String string = _string.toString();
+        _string.reset();
+        if (_name)
+        {
+            _stack.peek()._field = string;
+            _state = State.OBJECT_COLON;
+        }
+        else
+            value(string);
+    }
+
+    private void parseEscape(byte b)
+    {
+        _state = State.STRING;
+        switch (b)
+        {
+            case 'b':
+                _string.append('\b');
+                break;
+            case 'f':
+                _string.append('\f');
+                break;
+            case 'n':
+                _string.append('\n');
+                break;
+            case 'r':
+                _string.append('\r');
+                break;
+            case 't':
+                _string.append('\t');
+                break;
+            case 'u':
+                _unicode = 0;
+                _unicodeDigits = 0;
+                _state = State.STRING_UNICODE;
+                break;
+            default:
+                _string.append(b);
+        }
+    }
+
+    private boolean parseNumber(byte b)
+    {
+        if (_double)
+        {
+            switch (b)
+            {
+                case '0':
+                case '1':
+                case '2':
+                case '3':
+                case '4':
+                case '5':
+                case '6':
+                case '7':
+                case '8':
+                case '9':
+                case '-':
+                case '.':
+                case '+':
+                case 'e':
+                case 'E':
+                    _number.append((char)b);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        switch (b)
+        {
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+            case '8':
+            case '9':
+                _long = _long * 10 + (b - '0');
+                return true;
+            case '-':
+            case '+':
+                if (_long != 0)
+                    throw new IllegalStateException("bad number");
+                _minus = true;
+                return true;
+            case '.':
+            case 'e':
+            case 'E':
+                _double = true;
+                if (_minus)
+                    _number.append('-');
+                _number.append(_long).append((char)b);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void endNumber()
+    {
+        if (_double)
+            value(new Double(_number.toString()));
+        else
+            value(_minus ? -1 * _long : _long);
+    }
+
+    private void endObject()
+    {
+        Frame frame = _stack.pop();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>)frame._value;
+        value(frame._context.convertObject(map));
+    }
+
+    private void endArray()
+    {
+        Frame frame = _stack.pop();
+        @SuppressWarnings("unchecked")
+        List<Object> list = (List<Object>)frame._value;
+        value(list.toArray(frame._context.newArray(list.size())));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void value(Object value)
+    {
+        Frame frame = _stack.peek();
+        if (frame == null)
+        {
+            _result = value;
+            _state = State.COMPLETE;
+        }
+        else if (frame._value instanceof List)
+        {
+            ((List<Object>)frame._value).add(value);
+            _state = State.ARRAY_COMMA_OR_END;
+        }
+        else
+        {
+            ((Map<String, Object>)frame._value).put(frame._field,value);
+            _state = State.OBJECT_COMMA_OR_END;
+        }
+    }
+
+    private static boolean isWhitespace(byte b)
+    {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private IllegalStateException unexpected(byte b)
+    {
+        return new IllegalStateException("Unexpected '" + (char)(b & 0xFF) + "' in state " + _state);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[%s,depth=%d]",getClass().getSimpleName(),hashCode(),_state,_stack.size());
+    }
+
+    private static class Frame
+    {
+        private final JSON _context;
+        private final Object _value;
+        private String _field;
+
+        private Frame(JSON context, Object value)
+        {
+            _context = context;
+            _value = value;
+        }
+    }
+}
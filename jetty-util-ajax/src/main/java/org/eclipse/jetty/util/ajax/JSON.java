@@ -921,6 +921,21 @@ public class JSON
                 next = seekTo("\"}",source);
         }
 
+        return convertObject(map);
+    }
+
+    /**
+     * Convert a parsed JSON object to a java object.
+     * <p>
+     * If the map has a "x-class" field, the {@link Convertor} registered for that
+     * name is used.  If it has a "class" field, the class is loaded and
+     * {@link #convertTo(Class, Map)} is used.  Otherwise the map itself is returned.
+     *
+     * @param map the parsed JSON object
+     * @return the converted object or the map
+     */
+    protected Object convertObject(Map<String, Object> map)
+    {
         String xclassname = (String)map.get("x-class");
         if (xclassname != null)
         {
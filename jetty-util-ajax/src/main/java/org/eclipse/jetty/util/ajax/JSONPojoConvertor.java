@@ -18,6 +18,9 @@
 
 package org.eclipse.jetty.util.ajax;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -39,6 +42,7 @@ import org.eclipse.jetty.util.log.Logger;
  *  - returns the actual object from Convertor.fromJSON (JSONObjectConverter returns a Map)
  *  - the getters/setters are resolved at initialization (JSONObjectConverter resolves it at runtime)
  *  - correctly sets the number fields
+ *  - the getters, setters and constructor are invoked through MethodHandles when accessible
  * 
  */
 public class JSONPojoConvertor implements JSON.Convertor
@@ -46,6 +50,9 @@ public class JSONPojoConvertor implements JSON.Convertor
     private static final Logger LOG = Log.getLogger(JSONPojoConvertor.class);
     public static final Object[] GETTER_ARG = new Object[]{}, NULL_ARG = new Object[]{null};
     private static final Map<Class<?>, NumberType> __numberTypes = new HashMap<Class<?>, NumberType>();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class,Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class,Object.class,Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
     
     public static NumberType getNumberType(Class<?> clazz)
     {
@@ -57,6 +64,8 @@ public class JSONPojoConvertor implements JSON.Convertor
     protected Map<String,Method> _getters = new HashMap<String,Method>();
     protected Map<String,Setter> _setters = new HashMap<String,Setter>();
     protected Set<String> _excluded;
+    private final Map<String,MethodHandle> _getterHandles = new HashMap<String,MethodHandle>();
+    private MethodHandle _constructor;
 
     /**
      * @param pojoClass The class to convert
@@ -109,6 +118,16 @@ public class JSONPojoConvertor implements JSON.Convertor
     /* ------------------------------------------------------------ */
     protected void init()
     {
+        try
+        {
+            _constructor = MethodHandles.publicLookup().findConstructor(_pojoClass,MethodType.methodType(void.class)).asType(CONSTRUCTOR_TYPE);
+        }
+        catch (NoSuchMethodException | IllegalAccessException e)
+        {
+            // fromJSON will report the error from Class.newInstance()
+            LOG.ignore(e);
+        }
+
         Method[] methods = _pojoClass.getMethods();
         for (int i=0;i<methods.length;i++)
         {
@@ -149,6 +168,11 @@ public class JSONPojoConvertor implements JSON.Convertor
     protected void addGetter(String name, Method method)
     {
         _getters.put(name, method);
+        MethodHandle handle = toMethodHandle(method, GETTER_TYPE);
+        if (handle == null)
+            _getterHandles.remove(name);
+        else
+            _getterHandles.put(name, handle);
     }
     
     /* ------------------------------------------------------------ */
@@ -181,9 +205,16 @@ public class JSONPojoConvertor implements JSON.Convertor
         Object obj = null;
         try
         {
-            obj = _pojoClass.newInstance();
+            if (_constructor == null)
+                obj = _pojoClass.newInstance();
+            else
+                obj = (Object)_constructor.invokeExact();
         }
-        catch(Exception e)
+        catch(Error e)
+        {
+            throw e;
+        }
+        catch(Throwable e)
         {
             // TODO return Map instead?
             throw new RuntimeException(e);
@@ -229,7 +260,11 @@ public class JSONPojoConvertor implements JSON.Convertor
         {            
             try
             {
-                out.add(entry.getKey(), entry.getValue().invoke(obj, GETTER_ARG));                    
+                MethodHandle handle = _getterHandles.get(entry.getKey());
+                if (handle == null)
+                    out.add(entry.getKey(), entry.getValue().invoke(obj, GETTER_ARG));
+                else
+                    out.add(entry.getKey(), invoke(handle, obj));
             }
             catch(Exception e)
             {
@@ -247,6 +282,34 @@ public class JSONPojoConvertor implements JSON.Convertor
         LOG.ignore(t);
     }
 
+    /* ------------------------------------------------------------ */
+    private static MethodHandle toMethodHandle(Method method, MethodType type)
+    {
+        try
+        {
+            return MethodHandles.publicLookup().unreflect(method).asType(type);
+        }
+        catch (IllegalAccessException e)
+        {
+            // not publicly accessible, so use reflection
+            LOG.ignore(e);
+            return null;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private static Object invoke(MethodHandle getter, Object obj) throws InvocationTargetException
+    {
+        try
+        {
+            return (Object)getter.invokeExact(obj);
+        }
+        catch (Throwable e)
+        {
+            throw new InvocationTargetException(e);
+        }
+    }
+
     /* ------------------------------------------------------------ */
     public static class Setter
     {
@@ -255,12 +318,18 @@ public class JSONPojoConvertor implements JSON.Convertor
         protected NumberType _numberType;
         protected Class<?> _type;
         protected Class<?> _componentType;
+        private final MethodHandle _handle;
+        private final Class<?> _pojoType;
+        private final Class<?> _boxedType;
         
         public Setter(String propertyName, Method method)
         {
             _propertyName = propertyName;
             _setter = method;
+            _handle = toMethodHandle(method, SETTER_TYPE);
+            _pojoType = method.getDeclaringClass();
             _type = method.getParameterTypes()[0];
+            _boxedType = MethodType.methodType(_type).wrap().returnType();
             _numberType = __numberTypes.get(_type);
             if(_numberType==null && _type.isArray())
             {
@@ -303,10 +372,30 @@ public class JSONPojoConvertor implements JSON.Convertor
         IllegalAccessException, InvocationTargetException
         {
             if(value==null)
-                _setter.invoke(obj, NULL_ARG);
+                set(obj, null);
             else
                 invokeObject(obj, value);
         }
+
+        private void set(Object obj, Object value) throws IllegalArgumentException,
+            IllegalAccessException, InvocationTargetException
+        {
+            // arguments that need widening or are invalid are left to reflection
+            if (_handle == null || !_pojoType.isInstance(obj) || (value == null ? _type.isPrimitive() : !_boxedType.isInstance(value)))
+            {
+                _setter.invoke(obj, value == null ? NULL_ARG : new Object[]{value});
+                return;
+            }
+
+            try
+            {
+                _handle.invokeExact(obj, value);
+            }
+            catch (Throwable e)
+            {
+                throw new InvocationTargetException(e);
+            }
+        }
         
         protected void invokeObject(Object obj, Object value) throws IllegalArgumentException, 
             IllegalAccessException, InvocationTargetException
@@ -315,17 +404,17 @@ public class JSONPojoConvertor implements JSON.Convertor
             if (_type.isEnum())
             {
                 if (value instanceof Enum)
-                    _setter.invoke(obj, new Object[]{value});
+                    set(obj, value);
                 else
-                    _setter.invoke(obj, new Object[]{Enum.valueOf((Class<? extends Enum>)_type,value.toString())});
+                    set(obj, Enum.valueOf((Class<? extends Enum>)_type,value.toString()));
             }
             else if(_numberType!=null && value instanceof Number)
             {
-                _setter.invoke(obj, new Object[]{_numberType.getActualValue((Number)value)});
+                set(obj, _numberType.getActualValue((Number)value));
             }
             else if (Character.TYPE.equals(_type) || Character.class.equals(_type))
             {
-                _setter.invoke(obj, new Object[]{String.valueOf(value).charAt(0)});
+                set(obj, String.valueOf(value).charAt(0));
             }
             else if(_componentType!=null && value.getClass().isArray())
             {
@@ -341,10 +430,10 @@ public class JSONPojoConvertor implements JSON.Convertor
                     {                        
                         // unusual array with multiple types
                         LOG.ignore(e);
-                        _setter.invoke(obj, new Object[]{value});
+                        set(obj, value);
                         return;
                     }                    
-                    _setter.invoke(obj, new Object[]{array});
+                    set(obj, array);
                 }
                 else
                 {
@@ -359,14 +448,14 @@ public class JSONPojoConvertor implements JSON.Convertor
                     {                        
                         // unusual array with multiple types
                         LOG.ignore(e);
-                        _setter.invoke(obj, new Object[]{value});
+                        set(obj, value);
                         return;
                     }
-                    _setter.invoke(obj, new Object[]{array});
+                    set(obj, array);
                 }
             }
             else
-                _setter.invoke(obj, new Object[]{value});
+                set(obj, value);
         }
     }
     
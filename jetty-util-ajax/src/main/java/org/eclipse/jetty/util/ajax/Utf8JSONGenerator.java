@@ -0,0 +1,209 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.ajax;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+
+/**
+ * JSON generator that writes UTF-8 directly into pooled buffers.
+ * <p>
+ * {@link JSON#toJSON(Object)} builds a String that must then be encoded
+ * before it can be written.  This generator is an {@link Appendable} that
+ * encodes the characters appended by {@link JSON#append(Appendable, Object)}
+ * as UTF-8 straight into buffers acquired from a {@link ByteBufferPool.Lease}:
+ * <pre>
+ * ByteBufferPool.Lease lease = new ByteBufferPool.Lease(pool);
+ * new Utf8JSONGenerator(json, lease, 4096, false).generate(object).complete();
+ * endPoint.write(callback, lease.getByteBuffers().toArray(new ByteBuffer[lease.getSize()]));
+ * // once written
+ * lease.recycle();
+ * </pre>
+ * The same {@link JSON.Convertor}s, {@link JSON.Convertible}s and
+ * {@link JSON.Generator}s are used as for String generation.
+ * <p>
+ * Instances are not thread safe.
+ */
+public class Utf8JSONGenerator implements Appendable
+{
+    private final JSON _json;
+    private final ByteBufferPool.Lease _lease;
+    private final int _bufferSize;
+    private final boolean _direct;
+    private ByteBuffer _buffer;
+    private char _highSurrogate;
+
+    /**
+     * @param lease the lease to acquire buffers from and to append the generated buffers to
+     * @param bufferSize the size of the buffers to acquire
+     * @param direct whether to acquire direct buffers
+     */
+    public Utf8JSONGenerator(ByteBufferPool.Lease lease, int bufferSize, boolean direct)
+    {
+        this(JSON.getDefault(),lease,bufferSize,direct);
+    }
+
+    /**
+     * @param json the JSON instance used to generate objects
+     * @param lease the lease to acquire buffers from and to append the generated buffers to
+     * @param bufferSize the size of the buffers to acquire
+     * @param direct whether to acquire direct buffers
+     */
+    public Utf8JSONGenerator(JSON json, ByteBufferPool.Lease lease, int bufferSize, boolean direct)
+    {
+        if (bufferSize < 4)
+            throw new IllegalArgumentException("bufferSize " + bufferSize);
+        _json = json;
+        _lease = lease;
+        _bufferSize = bufferSize;
+        _direct = direct;
+    }
+
+    /**
+     * Generate an object as JSON.
+     *
+     * @param object the object to generate
+     * @return this generator
+     */
+    public Utf8JSONGenerator generate(Object object)
+    {
+        _json.append(this,object);
+        return this;
+    }
+
+    /**
+     * Append the last partially filled buffer to the lease.
+     *
+     * @return the lease holding the generated buffers in flush mode
+     */
+    public ByteBufferPool.Lease complete()
+    {
+        if (_highSurrogate != 0)
+        {
+            _highSurrogate = 0;
+            encode('?');
+        }
+        if (_buffer != null)
+        {
+            _buffer.flip();
+            _lease.append(_buffer,true);
+            _buffer = null;
+        }
+        return _lease;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq)
+    {
+        if (csq == null)
+            csq = "null";
+        return append(csq,0,csq.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end)
+    {
+        if (csq == null)
+            csq = "null";
+        for (int i = start; i < end; i++)
+            append(csq.charAt(i));
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c)
+    {
+        ByteBuffer buffer = _buffer;
+        if (buffer == null || buffer.remaining() < 4)
+            buffer = nextBuffer();
+
+        if (c < 0x80 && _highSurrogate == 0)
+            buffer.put((byte)c);
+        else
+            encode(c);
+        return this;
+    }
+
+    private void encode(char c)
+    {
+        ByteBuffer buffer = _buffer;
+        if (_highSurrogate != 0)
+        {
+            char high = _highSurrogate;
+            _highSurrogate = 0;
+            if (Character.isLowSurrogate(c))
+            {
+                int cp = Character.toCodePoint(high,c);
+                buffer.put((byte)(0xF0 | (cp >> 18)));
+                buffer.put((byte)(0x80 | ((cp >> 12) & 0x3F)));
+                buffer.put((byte)(0x80 | ((cp >> 6) & 0x3F)));
+                buffer.put((byte)(0x80 | (cp & 0x3F)));
+                return;
+            }
+            // unpaired surrogate
+            buffer.put((byte)'?');
+            if (buffer.remaining() < 4)
+                buffer = nextBuffer();
+        }
+
+        if (c < 0x80)
+        {
+            buffer.put((byte)c);
+        }
+        else if (c < 0x800)
+        {
+            buffer.put((byte)(0xC0 | (c >> 6)));
+            buffer.put((byte)(0x80 | (c & 0x3F)));
+        }
+        else if (Character.isHighSurrogate(c))
+        {
+            _highSurrogate = c;
+        }
+        else if (Character.isLowSurrogate(c))
+        {
+            // unpaired surrogate
+            buffer.put((byte)'?');
+        }
+        else
+        {
+            buffer.put((byte)(0xE0 | (c >> 12)));
+            buffer.put((byte)(0x80 | ((c >> 6) & 0x3F)));
+            buffer.put((byte)(0x80 | (c & 0x3F)));
+        }
+    }
+
+    private ByteBuffer nextBuffer()
+    {
+        if (_buffer != null)
+        {
+            _buffer.flip();
+            _lease.append(_buffer,true);
+        }
+        _buffer = _lease.acquire(_bufferSize,_direct);
+        return _buffer;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[buffers=%d]",getClass().getSimpleName(),hashCode(),_lease.getSize());
+    }
+}
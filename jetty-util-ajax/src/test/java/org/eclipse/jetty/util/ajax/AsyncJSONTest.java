@@ -0,0 +1,201 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.ajax;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class AsyncJSONTest
+{
+    private static final String JSON_TEXT = "{ "+
+    "\"onehundred\" : 100  ,"+
+    "\"small\":-0.2,"+
+    "\"name\" : \"fr\\\"ed\\u00e9\"  ," +
+    "\"unicode\" : \"é中😀\"  ," +
+    "\"empty\" : {}  ," +
+    "\"map\" : {\"a\":-1.0e2}  ," +
+    "\"array\" : [\"a\",-1.0e2,[],null,true,false]  ," +
+    "\"NaN\": NaN," +
+    "\"undefined\": undefined" +
+    "}";
+
+    @Test
+    public void testParseWhole()
+    {
+        AsyncJSON parser = new AsyncJSON();
+        ByteBuffer buffer = ByteBuffer.wrap(JSON_TEXT.getBytes(StandardCharsets.UTF_8));
+        assertTrue(parser.parse(buffer));
+        assertFalse(buffer.hasRemaining());
+        assertParsed(parser.<Map<String,Object>>complete());
+        assertTrue(parser.isEmpty());
+    }
+
+    @Test
+    public void testParseByteByByte()
+    {
+        AsyncJSON parser = new AsyncJSON();
+        byte[] bytes = JSON_TEXT.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++)
+            assertEquals(i == bytes.length - 1, parser.parse(bytes,i,1));
+        assertParsed(parser.<Map<String,Object>>complete());
+    }
+
+    @Test
+    public void testParseDirectBuffers()
+    {
+        AsyncJSON parser = new AsyncJSON();
+        byte[] bytes = JSON_TEXT.getBytes(StandardCharsets.UTF_8);
+        boolean complete = false;
+        for (int i = 0; i < bytes.length; i += 7)
+        {
+            int length = Math.min(7,bytes.length - i);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+            buffer.put(bytes,i,length).flip();
+            complete = parser.parse(buffer);
+        }
+        assertTrue(complete);
+        assertParsed(parser.<Map<String,Object>>complete());
+    }
+
+    @Test
+    public void testSameAsJSON()
+    {
+        String text = "[1,\"two\",{\"three\":3.0,\"four\":[4]},-5,null]";
+        Object expected = JSON.parse(text);
+        AsyncJSON parser = new AsyncJSON();
+        assertTrue(parser.parse(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(JSON.toString(expected),JSON.toString((Object)parser.complete()));
+    }
+
+    @Test
+    public void testTopLevelNumber()
+    {
+        AsyncJSON parser = new AsyncJSON();
+        assertFalse(parser.parse(ByteBuffer.wrap("12".getBytes(StandardCharsets.UTF_8))));
+        assertFalse(parser.parse(ByteBuffer.wrap("34".getBytes(StandardCharsets.UTF_8))));
+        assertEquals(1234L,(long)parser.<Long>complete());
+
+        assertFalse(parser.parse(ByteBuffer.wrap("-1.5e1".getBytes(StandardCharsets.UTF_8))));
+        assertEquals(-15.0,parser.<Double>complete(),0.0);
+    }
+
+    @Test
+    public void testMultipleValues()
+    {
+        AsyncJSON parser = new AsyncJSON();
+        ByteBuffer buffer = ByteBuffer.wrap("\"one\" [2] {\"three\":3} 4 ".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(parser.parse(buffer));
+        assertEquals("one",parser.complete());
+        assertTrue(parser.parse(buffer));
+        assertArrayEquals(new Object[]{2L},parser.<Object[]>complete());
+        assertTrue(parser.parse(buffer));
+        assertEquals(3L,parser.<Map<String,Object>>complete().get("three"));
+        assertTrue(parser.parse(buffer));
+        assertEquals(4L,(long)parser.<Long>complete());
+        assertFalse(parser.parse(buffer));
+        assertTrue(parser.isEmpty());
+    }
+
+    @Test
+    public void testConvertor()
+    {
+        JSON json = new JSON();
+        json.addConvertorFor("point",new JSON.Convertor()
+        {
+            public void toJSON(Object obj, JSON.Output out)
+            {
+            }
+
+            public Object fromJSON(Map object)
+            {
+                return ((Number)object.get("x")).intValue() + "," + ((Number)object.get("y")).intValue();
+            }
+        });
+
+        AsyncJSON parser = new AsyncJSON(json);
+        assertTrue(parser.parse(ByteBuffer.wrap("[{\"x-class\":\"point\",\"x\":1,\"y\":2}]".getBytes(StandardCharsets.UTF_8))));
+        assertArrayEquals(new Object[]{"1,2"},parser.<Object[]>complete());
+    }
+
+    @Test
+    public void testIncomplete()
+    {
+        AsyncJSON parser = new AsyncJSON();
+        assertFalse(parser.parse(ByteBuffer.wrap("{\"a\":[1,".getBytes(StandardCharsets.UTF_8))));
+        try
+        {
+            parser.complete();
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+
+        parser.reset();
+        assertTrue(parser.parse(ByteBuffer.wrap("null".getBytes(StandardCharsets.UTF_8))));
+        assertNull(parser.complete());
+    }
+
+    @Test
+    public void testInvalid()
+    {
+        for (String invalid : new String[]{"{1:2}","[1 2]","{\"a\" 1}","tru3","]"})
+        {
+            AsyncJSON parser = new AsyncJSON();
+            try
+            {
+                parser.parse(ByteBuffer.wrap(invalid.getBytes(StandardCharsets.UTF_8)));
+                fail(invalid);
+            }
+            catch (IllegalStateException e)
+            {
+                // expected
+            }
+        }
+    }
+
+    private void assertParsed(Map<String,Object> map)
+    {
+        assertEquals(100L,map.get("onehundred"));
+        assertEquals(-0.2,map.get("small"));
+        assertEquals("fr\"edé",map.get("name"));
+        assertEquals("é中😀",map.get("unicode"));
+        assertEquals(new HashMap<>(),map.get("empty"));
+        assertEquals(-100.0,((Map)map.get("map")).get("a"));
+        assertArrayEquals(new Object[]{"a",-100.0,new Object[0],null,Boolean.TRUE,Boolean.FALSE},(Object[])map.get("array"));
+        assertTrue(map.containsKey("NaN"));
+        assertNull(map.get("NaN"));
+        assertTrue(map.containsKey("undefined"));
+        assertNull(map.get("undefined"));
+    }
+}
@@ -0,0 +1,82 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.ajax;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.junit.Test;
+
+public class Utf8JSONGeneratorTest
+{
+    @Test
+    public void testGenerate()
+    {
+        Map<String,Object> map = new HashMap<>();
+        map.put("name","fr\"edé中😀");
+        map.put("number",42);
+        map.put("array",new Object[]{"a",1.5,null,true,new HashMap<>()});
+        map.put("bad","\ud83d-\ude00");
+
+        ByteBufferPool pool = new MappedByteBufferPool(8);
+        for (int size : new int[]{4,5,8,4096})
+        {
+            ByteBufferPool.Lease lease = new ByteBufferPool.Lease(pool);
+            new Utf8JSONGenerator(lease,size,false).generate(map).complete();
+            if (size < 16)
+                assertTrue(lease.getSize() > 1);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (ByteBuffer buffer : lease.getByteBuffers())
+                out.write(BufferUtil.toArray(buffer),0,buffer.remaining());
+
+            String expected = JSON.toString(map).replace("\ud83d-\ude00","?-?");
+            assertEquals(expected,new String(out.toByteArray(),StandardCharsets.UTF_8));
+            lease.recycle();
+        }
+    }
+
+    @Test
+    public void testParseGenerated()
+    {
+        Map<String,Object> map = new HashMap<>();
+        map.put("name","é中😀");
+        map.put("number",42L);
+
+        ByteBufferPool.Lease lease = new ByteBufferPool.Lease(new MappedByteBufferPool());
+        new Utf8JSONGenerator(lease,16,true).generate(map).complete();
+
+        AsyncJSON parser = new AsyncJSON();
+        boolean complete = false;
+        for (ByteBuffer buffer : lease.getByteBuffers())
+            complete = parser.parse(buffer);
+        assertTrue(complete);
+        assertEquals(map,parser.complete());
+    }
+}
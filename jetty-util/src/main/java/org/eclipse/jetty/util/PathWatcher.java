@@ -1415,6 +1415,17 @@ public class PathWatcher extends AbstractLifeCycle implements Runnable
         return _notifyExistingOnStart;
     }
 
+    /**
+     * Whether the started watcher is backed by a native (event based) WatchService,
+     * rather than the JVM's polling implementation.
+     *
+     * @return true if the WatchService is native
+     */
+    public boolean isNativeWatchService ()
+    {
+        return watchService != null && nativeWatchService;
+    }
+
     /**
      * Set the quiet time.
      * 
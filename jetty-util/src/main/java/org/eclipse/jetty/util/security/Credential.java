@@ -20,7 +20,12 @@ package org.eclipse.jetty.util.security;
 
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 
 import org.eclipse.jetty.util.TypeUtil;
 import org.eclipse.jetty.util.log.Log;
@@ -36,7 +41,9 @@ import org.eclipse.jetty.util.log.Logger;
  * a Password itself is a Credential, a UnixCrypt or MD5 digest of a a password
  * is only a credential that can be checked against the password.
  * <p>
- * This class includes an implementation for unix Crypt an MD5 digest.
+ * This class includes an implementation for unix Crypt, MD5 digest, PBKDF2 and
+ * bcrypt. Successful checks of the deliberately slow algorithms are remembered
+ * for a short time by the {@link CredentialCache}.
  * 
  * @see Password
  * 
@@ -62,7 +69,7 @@ public abstract class Credential implements Serializable
     /* ------------------------------------------------------------ */
     /**
      * Get a credential from a String. If the credential String starts with a
-     * known Credential type (eg "CRYPT:" or "MD5:" ) then a Credential of that
+     * known Credential type (eg "CRYPT:", "MD5:", "PBKDF2:" or "BCRYPT:") then a Credential of that
      * type is returned. Else the credential is assumed to be a Password.
      * 
      * @param credential String representation of the credential
@@ -72,6 +79,8 @@ public abstract class Credential implements Serializable
     {
         if (credential.startsWith(Crypt.__TYPE)) return new Crypt(credential);
         if (credential.startsWith(MD5.__TYPE)) return new MD5(credential);
+        if (credential.startsWith(PBKDF2.__TYPE)) return new PBKDF2(credential);
+        if (credential.startsWith(BCryptHash.__TYPE)) return new BCryptHash(credential);
 
         return new Password(credential);
     }
@@ -102,7 +111,12 @@ public abstract class Credential implements Serializable
                 LOG.warn("Can't check " + credentials.getClass() + " against CRYPT");
 
             String passwd = credentials.toString();
-            return _cooked.equals(UnixCrypt.crypt(passwd, _cooked));
+            if (CredentialCache.isVerified(_cooked,passwd))
+                return true;
+            boolean verified = _cooked.equals(UnixCrypt.crypt(passwd, _cooked));
+            if (verified)
+                CredentialCache.verified(_cooked,passwd);
+            return verified;
         }
         
         
@@ -134,9 +148,27 @@ public abstract class Credential implements Serializable
 
         public static final String __TYPE = "MD5:";
 
+        /**
+         * @deprecated digests are now computed with a per thread {@link MessageDigest} and no longer lock
+         */
+        @Deprecated
         public static final Object __md5Lock = new Object();
 
-        private static MessageDigest __md;
+        private static final ThreadLocal<MessageDigest> __md = new ThreadLocal<MessageDigest>()
+        {
+            @Override
+            protected MessageDigest initialValue()
+            {
+                try
+                {
+                    return MessageDigest.getInstance("MD5");
+                }
+                catch (GeneralSecurityException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
 
         private final byte[] _digest;
 
@@ -165,13 +197,9 @@ public abstract class Credential implements Serializable
                     credentials=new String((char[])credentials);
                 if (credentials instanceof Password || credentials instanceof String)
                 {
-                    synchronized (__md5Lock)
-                    {
-                        if (__md == null) __md = MessageDigest.getInstance("MD5");
-                        __md.reset();
-                        __md.update(credentials.toString().getBytes(StandardCharsets.ISO_8859_1));
-                        digest = __md.digest();
-                    }
+                    MessageDigest md = __md.get();
+                    md.reset();
+                    digest = md.digest(credentials.toString().getBytes(StandardCharsets.ISO_8859_1));
                     if (digest == null || digest.length != _digest.length) return false;
                     boolean digestMismatch = false;
                     for (int i = 0; i < digest.length; i++)
@@ -224,27 +252,9 @@ public abstract class Credential implements Serializable
         {
             try
             {
-                byte[] digest;
-                synchronized (__md5Lock)
-                {
-                    if (__md == null)
-                    {
-                        try
-                        {
-                            __md = MessageDigest.getInstance("MD5");
-                        }
-                        catch (Exception e)
-                        {
-                            LOG.warn(e);
-                            return null;
-                        }
-                    }
-
-                    __md.reset();
-                    __md.update(password.getBytes(StandardCharsets.ISO_8859_1));
-                    digest = __md.digest();
-                }
-
+                MessageDigest md = __md.get();
+                md.reset();
+                byte[] digest = md.digest(password.getBytes(StandardCharsets.ISO_8859_1));
                 return __TYPE + TypeUtil.toString(digest, 16);
             }
             catch (Exception e)
@@ -254,4 +264,197 @@ public abstract class Credential implements Serializable
             }
         }
     }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * PBKDF2 Credentials.
+     * <p>
+     * The credential has the form <code>PBKDF2:&lt;iterations&gt;:&lt;salt&gt;:&lt;hash&gt;</code>
+     * with the salt and hash in hex, derived with PBKDF2WithHmacSHA256.
+     */
+    public static class PBKDF2 extends Credential
+    {
+        private static final long serialVersionUID = 2618153785440531402L;
+
+        public static final String __TYPE = "PBKDF2:";
+
+        public static final int DEFAULT_ITERATIONS = 10000;
+
+        private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+
+        private static final SecureRandom __random = new SecureRandom();
+
+        private final String _cooked;
+        private final int _iterations;
+        private final byte[] _salt;
+        private final byte[] _hash;
+
+        /* ------------------------------------------------------------ */
+        PBKDF2(String cooked)
+        {
+            _cooked = cooked.startsWith(__TYPE) ? cooked.substring(__TYPE.length()) : cooked;
+            String[] parts = _cooked.split(":");
+            if (parts.length != 3)
+                throw new IllegalArgumentException("Bad PBKDF2 credential");
+            _iterations = Integer.parseInt(parts[0]);
+            _salt = TypeUtil.fromHexString(parts[1]);
+            _hash = TypeUtil.fromHexString(parts[2]);
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public boolean check(Object credentials)
+        {
+            if (credentials instanceof char[])
+                credentials=new String((char[])credentials);
+            if (!(credentials instanceof String) && !(credentials instanceof Password))
+            {
+                LOG.warn("Can't check " + credentials.getClass() + " against PBKDF2");
+                return false;
+            }
+
+            String passwd = credentials.toString();
+            if (CredentialCache.isVerified(_cooked,passwd))
+                return true;
+
+            try
+            {
+                byte[] hash = derive(passwd,_salt,_iterations,_hash.length);
+                boolean verified = MessageDigest.isEqual(hash,_hash);
+                if (verified)
+                    CredentialCache.verified(_cooked,passwd);
+                return verified;
+            }
+            catch (GeneralSecurityException e)
+            {
+                LOG.warn(e);
+                return false;
+            }
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public boolean equals(Object credential)
+        {
+            if (!(credential instanceof PBKDF2))
+                return false;
+            return _cooked.equals(((PBKDF2)credential)._cooked);
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public int hashCode()
+        {
+            return _cooked.hashCode();
+        }
+
+        /* ------------------------------------------------------------ */
+        public static String digest(String password)
+        {
+            return digest(password,DEFAULT_ITERATIONS);
+        }
+
+        /* ------------------------------------------------------------ */
+        public static String digest(String password, int iterations)
+        {
+            try
+            {
+                byte[] salt = new byte[16];
+                __random.nextBytes(salt);
+                byte[] hash = derive(password,salt,iterations,32);
+                return __TYPE + iterations + ":" + TypeUtil.toHexString(salt) + ":" + TypeUtil.toHexString(hash);
+            }
+            catch (GeneralSecurityException e)
+            {
+                LOG.warn(e);
+                return null;
+            }
+        }
+
+        /* ------------------------------------------------------------ */
+        private static byte[] derive(String password, byte[] salt, int iterations, int length) throws GeneralSecurityException
+        {
+            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(),salt,iterations,length * 8);
+            try
+            {
+                return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+            }
+            finally
+            {
+                spec.clearPassword();
+            }
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * bcrypt Credentials.
+     * <p>
+     * The credential has the form <code>BCRYPT:$2a$NN$...</code>, where the
+     * part after the prefix is a hash as produced by {@link BCrypt}, htpasswd
+     * or any other bcrypt implementation.
+     */
+    public static class BCryptHash extends Credential
+    {
+        private static final long serialVersionUID = -4916934226426151472L;
+
+        public static final String __TYPE = "BCRYPT:";
+
+        private final String _cooked;
+
+        /* ------------------------------------------------------------ */
+        BCryptHash(String cooked)
+        {
+            _cooked = cooked.startsWith(__TYPE) ? cooked.substring(__TYPE.length()) : cooked;
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public boolean check(Object credentials)
+        {
+            if (credentials instanceof char[])
+                credentials=new String((char[])credentials);
+            if (!(credentials instanceof String) && !(credentials instanceof Password))
+            {
+                LOG.warn("Can't check " + credentials.getClass() + " against BCRYPT");
+                return false;
+            }
+
+            String passwd = credentials.toString();
+            if (CredentialCache.isVerified(_cooked,passwd))
+                return true;
+            boolean verified = BCrypt.checkpw(passwd,_cooked);
+            if (verified)
+                CredentialCache.verified(_cooked,passwd);
+            return verified;
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public boolean equals(Object credential)
+        {
+            if (!(credential instanceof BCryptHash))
+                return false;
+            return _cooked.equals(((BCryptHash)credential)._cooked);
+        }
+
+        /* ------------------------------------------------------------ */
+        @Override
+        public int hashCode()
+        {
+            return _cooked.hashCode();
+        }
+
+        /* ------------------------------------------------------------ */
+        public static String digest(String password)
+        {
+            return digest(password,BCrypt.DEFAULT_LOG_ROUNDS);
+        }
+
+        /* ------------------------------------------------------------ */
+        public static String digest(String password, int logRounds)
+        {
+            return __TYPE + BCrypt.hashpw(password,BCrypt.gensalt(logRounds));
+        }
+    }
 }
@@ -0,0 +1,233 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/* ------------------------------------------------------------ */
+/**
+ * A cache of recently verified credentials.
+ * <p>
+ * Deliberately slow credentials such as {@link Credential.Crypt},
+ * {@link Credential.PBKDF2} and {@link Credential.BCryptHash} record each
+ * successful check here, so that a client repeating the same password (as
+ * with BASIC authentication on every request) is only verified at full cost
+ * once per time to live.
+ * <p>
+ * Neither the password nor the stored credential are kept. Entries are keyed
+ * by a HMAC-SHA256 of both, under a random key generated per JVM, so a cache
+ * entry can only be matched by presenting the password again. Only successful
+ * checks are cached, so a failed attempt always pays the full cost.
+ * <p>
+ * The time to live and the maximum number of entries default to the
+ * <code>org.eclipse.jetty.util.security.CredentialCache.ttl</code> (in ms) and
+ * <code>org.eclipse.jetty.util.security.CredentialCache.maxSize</code>
+ * system properties. A time to live of 0 disables the cache.
+ * <p>
+ * The size limit is approximate: when it is exceeded, expired entries are
+ * swept first and then arbitrary entries are evicted, without a global lock.
+ */
+public class CredentialCache
+{
+    private static final Logger LOG = Log.getLogger(CredentialCache.class);
+
+    private static final String HMAC = "HmacSHA256";
+
+    private static final byte[] __secret = new byte[32];
+    static
+    {
+        new SecureRandom().nextBytes(__secret);
+    }
+
+    private static final ThreadLocal<Mac> __mac = new ThreadLocal<Mac>()
+    {
+        @Override
+        protected Mac initialValue()
+        {
+            try
+            {
+                Mac mac = Mac.getInstance(HMAC);
+                mac.init(new SecretKeySpec(__secret,HMAC));
+                return mac;
+            }
+            catch (GeneralSecurityException e)
+            {
+                LOG.warn(e);
+                return null;
+            }
+        }
+    };
+
+    private static volatile long __ttlNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong(CredentialCache.class.getName() + ".ttl",30000));
+    private static volatile int __maxSize = Integer.getInteger(CredentialCache.class.getName() + ".maxSize",1024);
+
+    private static final ConcurrentMap<ByteBuffer, Long> __verified = new ConcurrentHashMap<>();
+    private static final AtomicBoolean __evicting = new AtomicBoolean();
+
+    /* ------------------------------------------------------------ */
+    private CredentialCache()
+    {
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param credential the stored form of the credential
+     * @param password the password presented
+     * @return true if the password was verified against the credential within the time to live
+     */
+    public static boolean isVerified(String credential, String password)
+    {
+        if (__ttlNanos <= 0)
+            return false;
+        ByteBuffer key = key(credential,password);
+        if (key == null)
+            return false;
+
+        Long expiry = __verified.get(key);
+        if (expiry == null)
+            return false;
+        if (expiry - System.nanoTime() > 0)
+            return true;
+        __verified.remove(key,expiry);
+        return false;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Record a successful check of a password against a credential.
+     * @param credential the stored form of the credential
+     * @param password the password that was verified
+     */
+    public static void verified(String credential, String password)
+    {
+        long ttl = __ttlNanos;
+        if (ttl <= 0 || __maxSize <= 0)
+            return;
+        ByteBuffer key = key(credential,password);
+        if (key == null)
+            return;
+
+        __verified.put(key,System.nanoTime() + ttl);
+        if (__verified.size() > __maxSize)
+            evict();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Forget all verified credentials, for example after passwords have been changed.
+     */
+    public static void clear()
+    {
+        __verified.clear();
+    }
+
+    /* ------------------------------------------------------------ */
+    public static int getSize()
+    {
+        return __verified.size();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the time in ms that a verified credential is remembered
+     */
+    public static long getTimeToLive()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(__ttlNanos);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param ms the time in ms that a verified credential is remembered, or 0 to disable the cache
+     */
+    public static void setTimeToLive(long ms)
+    {
+        __ttlNanos = TimeUnit.MILLISECONDS.toNanos(ms);
+        if (ms <= 0)
+            clear();
+    }
+
+    /* ------------------------------------------------------------ */
+    public static int getMaxSize()
+    {
+        return __maxSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    public static void setMaxSize(int maxSize)
+    {
+        __maxSize = maxSize;
+        evict();
+    }
+
+    /* ------------------------------------------------------------ */
+    private static void evict()
+    {
+        // Only one thread sweeps at a time, others carry on over the limit.
+        if (!__evicting.compareAndSet(false,true))
+            return;
+        try
+        {
+            long now = System.nanoTime();
+            int max = Math.max(0,__maxSize);
+            for (Iterator<Map.Entry<ByteBuffer, Long>> i = __verified.entrySet().iterator(); i.hasNext();)
+            {
+                if (i.next().getValue() - now <= 0)
+                    i.remove();
+            }
+            for (Iterator<ByteBuffer> i = __verified.keySet().iterator(); __verified.size() > max && i.hasNext();)
+            {
+                i.next();
+                i.remove();
+            }
+        }
+        finally
+        {
+            __evicting.set(false);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private static ByteBuffer key(String credential, String password)
+    {
+        Mac mac = __mac.get();
+        if (mac == null)
+            return null;
+        mac.update(credential.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte)0);
+        mac.update(password.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(mac.doFinal());
+    }
+}
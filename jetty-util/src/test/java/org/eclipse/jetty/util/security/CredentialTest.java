@@ -20,11 +20,14 @@
 package org.eclipse.jetty.util.security;
 
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import org.eclipse.jetty.util.security.Credential.BCryptHash;
 import org.eclipse.jetty.util.security.Credential.Crypt;
 import org.eclipse.jetty.util.security.Credential.MD5;
+import org.eclipse.jetty.util.security.Credential.PBKDF2;
 import org.junit.Test;
 
 
@@ -76,4 +79,103 @@ public class CredentialTest
         
         assertTrue (p1.equals(p2));
     }
+
+    @Test
+    public void testMD5Check() throws Exception
+    {
+        Credential m = Credential.getCredential(MD5.digest("123foo"));
+        assertTrue(m.check("123foo"));
+        assertTrue(m.check("123foo".toCharArray()));
+        assertFalse(m.check("123boo"));
+    }
+
+    @Test
+    public void testPBKDF2() throws Exception
+    {
+        String digest = PBKDF2.digest("123foo",1000);
+        assertTrue(digest.startsWith(PBKDF2.__TYPE));
+
+        Credential p = Credential.getCredential(digest);
+        assertTrue(p instanceof PBKDF2);
+        assertTrue(p.check("123foo"));
+        assertFalse(p.check("123boo"));
+        assertTrue(p.equals(Credential.getCredential(digest)));
+        assertFalse(p.equals(Credential.getCredential(PBKDF2.digest("123foo",1000))));
+    }
+
+    @Test
+    public void testBCrypt() throws Exception
+    {
+        assertEquals("$2a$06$If6bvum7DFjUnE9p2uDeDu0YHzrHM6tf.iqN8.yx.jNN1ILEf7h0i",
+                BCrypt.hashpw("abc","$2a$06$If6bvum7DFjUnE9p2uDeDu"));
+        assertEquals("$2b$06$DCq7YPn5Rq63x1Lad4cll.TV4S6ytwfsfvkgY8jIucDrjc8deX1s.",
+                BCrypt.hashpw("","$2b$06$DCq7YPn5Rq63x1Lad4cll."));
+
+        Credential b = Credential.getCredential("BCRYPT:$2y$06$If6bvum7DFjUnE9p2uDeDu0YHzrHM6tf.iqN8.yx.jNN1ILEf7h0i");
+        assertTrue(b instanceof BCryptHash);
+        assertTrue(b.check("abc"));
+        assertFalse(b.check("abd"));
+
+        Credential g = Credential.getCredential(BCryptHash.digest("123foo",4));
+        assertTrue(g.check("123foo"));
+        assertFalse(g.check("123boo"));
+        assertFalse(Credential.getCredential("BCRYPT:nonsense").check("123foo"));
+    }
+
+    @Test
+    public void testCredentialCache() throws Exception
+    {
+        long ttl = CredentialCache.getTimeToLive();
+        try
+        {
+            CredentialCache.setTimeToLive(60000);
+            CredentialCache.clear();
+
+            String digest = PBKDF2.digest("123foo",1000);
+            assertFalse(CredentialCache.isVerified(digest.substring(PBKDF2.__TYPE.length()),"123foo"));
+            assertFalse(Credential.getCredential(digest).check("123boo"));
+            assertEquals(0,CredentialCache.getSize());
+
+            assertTrue(Credential.getCredential(digest).check("123foo"));
+            assertEquals(1,CredentialCache.getSize());
+            assertTrue(CredentialCache.isVerified(digest.substring(PBKDF2.__TYPE.length()),"123foo"));
+            assertFalse(CredentialCache.isVerified(digest.substring(PBKDF2.__TYPE.length()),"123boo"));
+            assertTrue(Credential.getCredential(digest).check("123foo"));
+
+            CredentialCache.setTimeToLive(0);
+            assertEquals(0,CredentialCache.getSize());
+            assertTrue(Credential.getCredential(digest).check("123foo"));
+            assertEquals(0,CredentialCache.getSize());
+        }
+        finally
+        {
+            CredentialCache.setTimeToLive(ttl);
+        }
+    }
+
+    @Test
+    public void testCredentialCacheMaxSize() throws Exception
+    {
+        long ttl = CredentialCache.getTimeToLive();
+        int maxSize = CredentialCache.getMaxSize();
+        try
+        {
+            CredentialCache.setTimeToLive(60000);
+            CredentialCache.setMaxSize(10);
+            CredentialCache.clear();
+
+            for (int i = 0; i < 100; i++)
+                CredentialCache.verified("credential","password" + i);
+            assertEquals(10,CredentialCache.getSize());
+
+            CredentialCache.setMaxSize(5);
+            assertEquals(5,CredentialCache.getSize());
+        }
+        finally
+        {
+            CredentialCache.setMaxSize(maxSize);
+            CredentialCache.setTimeToLive(ttl);
+            CredentialCache.clear();
+        }
+    }
 }
@@ -18,6 +18,10 @@
 
 package org.eclipse.jetty.webapp;
 
+import java.io.File;
+
+import org.eclipse.jetty.util.StringUtil;
+
 public class AbstractConfiguration implements Configuration
 {
     public void preConfigure(WebAppContext context) throws Exception
@@ -43,4 +47,27 @@ public class AbstractConfiguration implements Configuration
     public void cloneConfigure(WebAppContext template, WebAppContext context) throws Exception
     {
     }
+
+    /**
+     * Get the directory of a scan cache, if one is configured.
+     * 
+     * @param context the context of the scan
+     * @param name the name of the context attribute, server attribute or System property 
+     * that sets the directory, tried in that order
+     * @return the directory or null
+     */
+    protected File getScanCacheDir(WebAppContext context, String name)
+    {
+        Object o = context.getAttribute(name);
+        if (o == null && context.getServer() != null)
+            o = context.getServer().getAttribute(name);
+        if (o == null)
+            o = System.getProperty(name);
+
+        if (o instanceof File)
+            return (File)o;
+        if (o != null && StringUtil.isNotBlank(o.toString()))
+            return new File(o.toString());
+        return null;
+    }
 }
@@ -29,8 +29,9 @@ import org.eclipse.jetty.util.StringUtil;
 
 /* ------------------------------------------------------------ */
 /**
- * Classpath classes list performs sequential pattern matching of a class name 
- * against an internal array of classpath pattern entries.
+ * Classpath classes list performs pattern matching of a class name 
+ * against an internal array of classpath pattern entries, where the
+ * first entry in the list that matches the class name determines the result.
  * A class pattern is a string of one of the forms:<ul>
  * <li>'org.package.SomeClass' will match a specific class
  * <li>'org.package.' will match a specific package hierarchy
@@ -43,6 +44,11 @@ import org.eclipse.jetty.util.StringUtil;
  * </ul>
  * When class is initialized from a classpath pattern string, entries 
  * in this string should be separated by ':' (semicolon) or ',' (comma).
+ * <p>
+ * The entries are compiled into a character trie of the pattern names, so that
+ * a class name is matched in a single pass over its characters, rather than
+ * being compared with every entry in turn.  The trie is rebuilt after the
+ * entries are modified.
  */
 
 public class ClasspathPattern extends AbstractList<String>
@@ -69,7 +75,47 @@ public class ClasspathPattern extends AbstractList<String>
         }
     }
     
+    /* ------------------------------------------------------------ */
+    /**
+     * A node of the compiled pattern trie, reached by the characters of a pattern name.
+     * The node holds the index and inclusiveness of the first package and the first class
+     * entry whose name ends at the node.
+     */
+    private static class Node
+    {
+        private char[] _chars = new char[0];
+        private Node[] _children = new Node[0];
+        private int _package = -1;
+        private boolean _packageInclusive;
+        private int _class = -1;
+        private boolean _classInclusive;
+
+        private Node child(char c)
+        {
+            for (int i = 0; i < _chars.length; i++)
+                if (_chars[i] == c)
+                    return _children[i];
+            return null;
+        }
+
+        private Node addChild(char c)
+        {
+            Node child = child(c);
+            if (child == null)
+            {
+                int n = _chars.length;
+                _chars = Arrays.copyOf(_chars,n + 1);
+                _children = Arrays.copyOf(_children,n + 1);
+                _chars[n] = c;
+                child = _children[n] = new Node();
+            }
+            return child;
+        }
+    }
+
     final private List<Entry> _entries = new ArrayList<Entry>();
+    private volatile Node _trie;
+    private volatile int _modifications;
     
     /* ------------------------------------------------------------ */
     public ClasspathPattern()
@@ -100,6 +146,7 @@ public class ClasspathPattern extends AbstractList<String>
     public String set(int index, String element)
     {
         Entry e = _entries.set(index,new Entry(element));
+        modified();
         return e==null?null:e._pattern;
     }
 
@@ -108,6 +155,7 @@ public class ClasspathPattern extends AbstractList<String>
     public void add(int index, String element)
     {
         _entries.add(index,new Entry(element));
+        modified();
     }
 
     /* ------------------------------------------------------------ */
@@ -122,6 +170,7 @@ public class ClasspathPattern extends AbstractList<String>
     public String remove(int index)
     {
         Entry e = _entries.remove(index);
+        modified();
         return e==null?null:e._pattern;
     }
     
@@ -133,6 +182,7 @@ public class ClasspathPattern extends AbstractList<String>
             if (pattern.equals(_entries.get(i)._pattern))
             {
                 _entries.remove(i);
+                modified();
                 return true;
             }
         }
@@ -155,6 +205,7 @@ public class ClasspathPattern extends AbstractList<String>
     private void setAll(String[] classes)
     {
         _entries.clear();
+        modified();
         addAll(classes);
     }
     
@@ -224,27 +275,93 @@ public class ClasspathPattern extends AbstractList<String>
      */
     public boolean match(String name)
     {       
-        name = name.replace('/','.');
+        Node node = _trie;
+        if (node == null)
+        {
+            synchronized (this)
+            {
+                node = _trie;
+                if (node == null)
+                {
+                    // only publish the trie if the entries were not modified while compiling
+                    int modifications = _modifications;
+                    node = compile();
+                    if (modifications == _modifications)
+                        _trie = node;
+                }
+            }
+        }
+
+        // Find the first entry (lowest index) that matches, with a single pass over the name
+        int first = Integer.MAX_VALUE;
+        boolean inclusive = false;
+        int length = name.length();
+        for (int i = 0; ; i++)
+        {
+            // package entries match any name that they prefix
+            if (node._package >= 0 && node._package < first)
+            {
+                first = node._package;
+                inclusive = node._packageInclusive;
+            }
+
+            // class entries match the class name or the name of a nested class
+            if (node._class >= 0 && node._class < first && (i == length || name.charAt(i) == '$'))
+            {
+                first = node._class;
+                inclusive = node._classInclusive;
+            }
 
-        for (Entry entry : _entries)
+            if (i == length)
+                break;
+
+            char c = name.charAt(i);
+            node = node.child(c == '/' ? '.' : c);
+            if (node == null)
+                break;
+        }
+        return inclusive;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Discard the compiled trie after the entries have been modified.
+     * The modification count is incremented before the trie is cleared, so that
+     * a trie compiled concurrently from the old entries is never published.
+     */
+    private void modified()
+    {
+        _modifications++;
+        _trie = null;
+    }
+
+    /* ------------------------------------------------------------ */
+    private Node compile()
+    {
+        Node root = new Node();
+        for (int index = 0; index < _entries.size(); index++)
         {
-            if (entry==null)
+            Entry entry = _entries.get(index);
+            if (entry == null)
                 continue;
+            Node node = root;
+            for (int i = 0; i < entry._name.length(); i++)
+                node = node.addChild(entry._name.charAt(i));
             if (entry._package)
             {
-                if (name.startsWith(entry._name))
-                    return entry._inclusive;
+                if (node._package < 0)
+                {
+                    node._package = index;
+                    node._packageInclusive = entry._inclusive;
+                }
             }
-            else
+            else if (node._class < 0)
             {
-                if (name.equals(entry._name))
-                    return entry._inclusive;
-                
-                if (name.length()>entry._name.length() && '$'==name.charAt(entry._name.length()) && name.startsWith(entry._name))
-                    return entry._inclusive;
+                node._class = index;
+                node._classInclusive = entry._inclusive;
             }
         }
-        return false;
+        return root;
     }
 
     public void addAfter(String afterPattern,String... patterns)
@@ -0,0 +1,501 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.webapp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.IllegalClassFormatException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.URIUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+
+/**
+ * A WebAppClassLoader that indexes the packages in its jars.
+ * <p>
+ * Each jar added to the classpath is opened once, and the directories (packages)
+ * of its entries are indexed. Class and resource lookups then only consider the
+ * jars that contain the package of the requested name, reading entries directly from
+ * the open {@link JarFile} rather than probing every jar in turn through 
+ * {@link java.net.JarURLConnection}s. Directories on the classpath are always searched.
+ * <p>
+ * If an element of the classpath is neither a jar file nor a directory, 
+ * lookups fall back to those of {@link WebAppClassLoader}.
+ */
+@ManagedObject
+public class IndexedWebAppClassLoader extends WebAppClassLoader
+{
+    private static final Logger LOG = Log.getLogger(IndexedWebAppClassLoader.class);
+
+    /* Not initialized in its declaration, as URLs may be added by the super constructor */
+    private volatile Index _index;
+
+    private final AtomicLong _classLookups = new AtomicLong();
+    private final AtomicLong _resourceLookups = new AtomicLong();
+    private final AtomicLong _jarsSearched = new AtomicLong();
+    private final AtomicLong _jarsSkipped = new AtomicLong();
+
+    /* ------------------------------------------------------------ */
+    /**
+     * An element of the classpath
+     */
+    private static abstract class Source
+    {
+        final int _ordinal;
+        final URL _url;
+
+        Source(int ordinal, URL url)
+        {
+            _ordinal = ordinal;
+            _url = url;
+        }
+
+        abstract URL getResource(String path) throws MalformedURLException;
+    }
+
+    /* ------------------------------------------------------------ */
+    private static class DirSource extends Source
+    {
+        final File _dir;
+
+        DirSource(int ordinal, URL url, File dir)
+        {
+            super(ordinal,url);
+            _dir = dir;
+        }
+
+        @Override
+        URL getResource(String path) throws MalformedURLException
+        {
+            File file = new File(_dir,path);
+            if (!file.exists())
+                return null;
+            return new URL(_url,URIUtil.encodePath(path));
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private static class JarSource extends Source
+    {
+        final JarFile _jar;
+        final URL _base;
+        final Manifest _manifest;
+
+        JarSource(int ordinal, URL url, JarFile jar) throws IOException
+        {
+            super(ordinal,url);
+            _jar = jar;
+            _base = new URL("jar:" + url + "!/");
+            _manifest = jar.getManifest();
+        }
+
+        @Override
+        URL getResource(String path) throws MalformedURLException
+        {
+            if (_jar.getEntry(path) == null)
+                return null;
+            return new URL(_base,URIUtil.encodePath(path));
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * The classpath, and the jars that contain each package
+     */
+    private static class Index
+    {
+        final List<Source> _sources = new CopyOnWriteArrayList<>();
+        final List<DirSource> _dirs = new CopyOnWriteArrayList<>();
+        final Map<String, List<JarSource>> _packages = new ConcurrentHashMap<>();
+        volatile boolean _complete = true;
+    }
+
+
+    /* ------------------------------------------------------------ */
+    public IndexedWebAppClassLoader(ClassLoader parent, Context context) throws IOException
+    {
+        super(parent,context);
+    }
+
+    /* ------------------------------------------------------------ */
+    public IndexedWebAppClassLoader(Context context) throws IOException
+    {
+        super(context);
+    }
+
+    /* ------------------------------------------------------------ */
+    private Index getIndex()
+    {
+        Index index = _index;
+        if (index == null)
+        {
+            synchronized (this)
+            {
+                index = _index;
+                if (index == null)
+                {
+                    index = new Index();
+                    _index = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    protected void addURL(URL url)
+    {
+        super.addURL(url);
+
+        Index index = getIndex();
+        synchronized (index)
+        {
+            if (!index._complete)
+                return;
+
+            int ordinal = index._sources.size();
+            try
+            {
+                File file = "file".equalsIgnoreCase(url.getProtocol()) ? new File(url.toURI()) : null;
+                if (file != null && file.isDirectory())
+                {
+                    DirSource dir = new DirSource(ordinal,url,file);
+                    index._dirs.add(dir);
+                    index._sources.add(dir);
+                }
+                else if (file != null && file.isFile())
+                {
+                    JarSource jar = new JarSource(ordinal,url,new JarFile(file));
+                    Set<String> packages = new HashSet<>();
+                    Enumeration<JarEntry> entries = jar._jar.entries();
+                    while (entries.hasMoreElements())
+                    {
+                        JarEntry entry = entries.nextElement();
+                        String name = entry.getName();
+                        // a directory entry is indexed under its own path and under its parent, 
+                        // as it may be looked up with or without a trailing '/'
+                        if (entry.isDirectory())
+                            packages.add(getPackagePath(name.substring(0,name.length() - 1)));
+                        packages.add(getPackagePath(name));
+                    }
+                    for (String p : packages)
+                    {
+                        List<JarSource> jars = index._packages.get(p);
+                        if (jars == null)
+                        {
+                            jars = new CopyOnWriteArrayList<>();
+                            index._packages.put(p,jars);
+                        }
+                        jars.add(jar);
+                    }
+                    index._sources.add(jar);
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Indexed {} packages in {}",packages.size(),url);
+                }
+                else
+                {
+                    LOG.info("Cannot index {}, indexing disabled for {}",url,this);
+                    index._complete = false;
+                }
+            }
+            catch (Exception e)
+            {
+                LOG.warn("Cannot index {}, indexing disabled for {}",url,this);
+                LOG.debug(e);
+                index._complete = false;
+            }
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private static String getPackagePath(String path)
+    {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0,slash + 1);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param path the path of a resource
+     * @return the classpath elements that may contain the resource, in classpath order, 
+     * or null if the index cannot be used.
+     */
+    private List<Source> getCandidates(String path)
+    {
+        Index index = getIndex();
+        if (!index._complete || path == null || path.startsWith("/") || path.contains(".."))
+            return null;
+
+        List<JarSource> jars = index._packages.get(getPackagePath(path));
+        if (jars == null)
+            jars = Collections.emptyList();
+        _jarsSearched.addAndGet(jars.size());
+        _jarsSkipped.addAndGet(index._sources.size() - index._dirs.size() - jars.size());
+
+        if (index._dirs.isEmpty())
+            return new ArrayList<Source>(jars);
+
+        // merge directories and jars in classpath order
+        List<Source> candidates = new ArrayList<>(jars.size() + index._dirs.size());
+        int j = 0;
+        for (DirSource dir : index._dirs)
+        {
+            while (j < jars.size() && jars.get(j)._ordinal < dir._ordinal)
+                candidates.add(jars.get(j++));
+            candidates.add(dir);
+        }
+        while (j < jars.size())
+            candidates.add(jars.get(j++));
+        return candidates;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public URL findResource(String name)
+    {
+        List<Source> candidates = getCandidates(name);
+        if (candidates == null)
+            return super.findResource(name);
+
+        _resourceLookups.incrementAndGet();
+        for (Source source : candidates)
+        {
+            try
+            {
+                URL url = source.getResource(name);
+                if (url != null)
+                    return url;
+            }
+            catch (MalformedURLException e)
+            {
+                LOG.ignore(e);
+            }
+        }
+        return null;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException
+    {
+        List<Source> candidates = getCandidates(name);
+        if (candidates == null)
+            return super.findResources(name);
+
+        _resourceLookups.incrementAndGet();
+        List<URL> urls = new ArrayList<>();
+        for (Source source : candidates)
+        {
+            URL url = source.getResource(name);
+            if (url != null)
+                urls.add(url);
+        }
+        return Collections.enumeration(urls);
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException
+    {
+        String path = name.replace('.','/').concat(".class");
+        List<Source> candidates = getCandidates(path);
+        if (candidates == null)
+            return super.findClass(name);
+
+        _classLookups.incrementAndGet();
+        for (Source source : candidates)
+        {
+            try
+            {
+                byte[] bytes;
+                CodeSigner[] signers = null;
+                Manifest manifest = null;
+                if (source instanceof JarSource)
+                {
+                    JarSource jar = (JarSource)source;
+                    JarEntry entry = jar._jar.getJarEntry(path);
+                    if (entry == null)
+                        continue;
+                    try (InputStream in = jar._jar.getInputStream(entry))
+                    {
+                        bytes = IO.readBytes(in);
+                    }
+                    // signers are only known once the entry has been read
+                    signers = entry.getCodeSigners();
+                    manifest = jar._manifest;
+                }
+                else
+                {
+                    File file = new File(((DirSource)source)._dir,path);
+                    if (!file.isFile())
+                        continue;
+                    try (InputStream in = new FileInputStream(file))
+                    {
+                        bytes = IO.readBytes(in);
+                    }
+                }
+
+                if (LOG.isDebugEnabled())
+                    LOG.debug("foundClass({}) source={} cl={}",name,source._url,this);
+
+                definePackageOf(name,manifest,source._url);
+                bytes = transform(name,bytes);
+                return defineClass(name,bytes,0,bytes.length,new CodeSource(source._url,signers));
+            }
+            catch (IOException e)
+            {
+                throw new ClassNotFoundException(name,e);
+            }
+            catch (IllegalClassFormatException e)
+            {
+                throw new ClassNotFoundException(name,e);
+            }
+        }
+        throw new ClassNotFoundException(name);
+    }
+
+    /* ------------------------------------------------------------ */
+    @SuppressWarnings("deprecation")
+    private void definePackageOf(String className, Manifest manifest, URL url)
+    {
+        int dot = className.lastIndexOf('.');
+        if (dot < 0)
+            return;
+        String pkg = className.substring(0,dot);
+        if (getPackage(pkg) != null)
+            return;
+        try
+        {
+            if (manifest != null)
+                definePackage(pkg,manifest,url);
+            else
+                definePackage(pkg,null,null,null,null,null,null,null);
+        }
+        catch (IllegalArgumentException e)
+        {
+            // defined concurrently
+            LOG.ignore(e);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("Number of classes looked up in the index")
+    public long getClassLookups()
+    {
+        return _classLookups.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("Number of resources looked up in the index")
+    public long getResourceLookups()
+    {
+        return _resourceLookups.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("Number of jars searched by lookups")
+    public long getJarsSearched()
+    {
+        return _jarsSearched.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("Number of jars skipped by lookups, as they do not contain the package")
+    public long getJarsSkipped()
+    {
+        return _jarsSkipped.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("Number of packages indexed")
+    public int getIndexedPackages()
+    {
+        return getIndex()._packages.size();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("True if the index is used for lookups")
+    public boolean isIndexed()
+    {
+        return getIndex()._complete;
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedOperation(value="Reset the lookup counters", impact="ACTION")
+    public void resetStats()
+    {
+        _classLookups.set(0);
+        _resourceLookups.set(0);
+        _jarsSearched.set(0);
+        _jarsSkipped.set(0);
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void close() throws IOException
+    {
+        Index index = getIndex();
+        synchronized (index)
+        {
+            index._complete = false;
+            for (Source source : index._sources)
+            {
+                if (source instanceof JarSource)
+                    IO.close(((JarSource)source)._jar);
+            }
+            index._sources.clear();
+            index._dirs.clear();
+            index._packages.clear();
+        }
+        super.close();
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return "Indexed["+super.toString()+"]";
+    }
+}
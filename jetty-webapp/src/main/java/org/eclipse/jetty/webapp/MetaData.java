@@ -185,7 +185,18 @@ public class MetaData
     public void setWebXml (Resource webXml)
     throws Exception
     {
-        _webXmlRoot = new WebDescriptor(webXml);
+        setWebXml(new WebDescriptor(webXml));
+    }
+
+    /**
+     * Set the web.xml descriptor.
+     * @param webXml the descriptor, which is parsed if it has not already been
+     * @throws Exception if unable to parse the descriptor
+     */
+    public void setWebXml (WebDescriptor webXml)
+    throws Exception
+    {
+        _webXmlRoot = webXml;
         _webXmlRoot.parse();
         _metaDataComplete=_webXmlRoot.getMetaDataComplete() == MetaDataComplete.True;
 
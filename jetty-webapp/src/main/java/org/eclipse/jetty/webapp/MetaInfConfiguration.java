@@ -24,21 +24,33 @@ import java.io.IOException;
 import java.net.JarURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
+import org.eclipse.jetty.util.MultiException;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.resource.EmptyResource;
 import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.util.thread.ThreadPool;
 
 /**
  * MetaInfConfiguration
@@ -56,8 +68,14 @@ import org.eclipse.jetty.util.resource.Resource;
  * <li>those from the container classpath whose pattern matched the WebInfConfiguration.CONTAINER_JAR_PATTERN</li>
  * <li>those from WEB-INF/lib</li>
  * </ol>
+ * <p>
+ * The jars are scanned in parallel using the server thread pool, unless the
+ * {@link #MULTI_THREADED} context or server attribute is false.  If a {@link #SCAN_CACHE_DIR}
+ * is configured, the results of scanning each jar are kept in a {@link MetaInfScanCache}
+ * that is shared by all the contexts and redeployments that use the same jar.
+ * The time taken to scan each jar is included in the dump of the configuration.
  */
-public class MetaInfConfiguration extends AbstractConfiguration
+public class MetaInfConfiguration extends AbstractConfiguration implements Dumpable
 {
     private static final Logger LOG = Log.getLogger(MetaInfConfiguration.class);
 
@@ -69,6 +87,35 @@ public class MetaInfConfiguration extends AbstractConfiguration
     public static final String METAINF_TLDS = "org.eclipse.jetty.tlds";
     public static final String METAINF_FRAGMENTS = FragmentConfiguration.FRAGMENT_RESOURCES;
     public static final String METAINF_RESOURCES = WebInfConfiguration.RESOURCE_DIRS;
+    public static final String MULTI_THREADED = "org.eclipse.jetty.metainf.multiThreaded";
+    public static final boolean DEFAULT_MULTI_THREADED = true;
+    public static final String SCAN_CACHE_DIR = "org.eclipse.jetty.metainf.scanCacheDir";
+
+    private final List<JarScan> _scans = new CopyOnWriteArrayList<>();
+    private MetaInfScanCache _scanCache;
+
+    /**
+     * The time taken to scan the META-INF of a jar.
+     */
+    private static class JarScan
+    {
+        private final Resource _jar;
+        private final String _source;
+        private final long _nanos;
+
+        private JarScan(Resource jar, String source, long nanos)
+        {
+            _jar = jar;
+            _source = source;
+            _nanos = nanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s %s in %dus",_jar,_source,TimeUnit.NANOSECONDS.toMicros(_nanos));
+        }
+    }
 
     @Override
     public void preConfigure(final WebAppContext context) throws Exception
@@ -89,7 +136,11 @@ public class MetaInfConfiguration extends AbstractConfiguration
             context.setAttribute(METAINF_RESOURCES, new HashSet<Resource>());
         if (context.getAttribute(METAINF_FRAGMENTS) == null)
             context.setAttribute(METAINF_FRAGMENTS, new HashMap<Resource, Resource>());
-       
+
+        _scans.clear();
+        File cacheDir = getScanCacheDir(context);
+        _scanCache = cacheDir == null ? null : new MetaInfScanCache(cacheDir);
+
         scanJars(context, context.getMetaData().getContainerResources(), useContainerCache);
         scanJars(context, context.getMetaData().getWebInfJars(), false);
     }
@@ -133,16 +184,189 @@ public class MetaInfConfiguration extends AbstractConfiguration
         }
         
         //Scan jars for META-INF information
-        if (jars != null)
+        if (jars == null || jars.isEmpty())
+            return;
+
+        long start = System.nanoTime();
+        final ConcurrentHashMap<Resource, Resource> resourceCache = metaInfResourceCache;
+        final ConcurrentHashMap<Resource, Resource> fragmentCache = metaInfFragmentCache;
+        final ConcurrentHashMap<Resource, Collection<URL>> tldCache = metaInfTldCache;
+        ThreadPool threadPool = context.getServer().getThreadPool();
+        boolean parallel = threadPool != null && (!(threadPool instanceof LifeCycle) || ((LifeCycle)threadPool).isRunning());
+        if (jars.size() == 1 || !parallel || !isUseMultiThreading(context))
         {
             for (Resource r : jars)
+                scanJar(context, r, resourceCache, fragmentCache, tldCache);
+        }
+        else
+        {
+            final Semaphore task_limit = new Semaphore(Runtime.getRuntime().availableProcessors());
+            final CountDownLatch latch = new CountDownLatch(jars.size());
+            final MultiException me = new MultiException();
+
+            for (final Resource r : jars)
             {
-                
-               scanForResources(context, r, metaInfResourceCache);
-               scanForFragment(context, r, metaInfFragmentCache);
-               scanForTlds(context, r, metaInfTldCache);
+                Runnable task = new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            scanJar(context, r, resourceCache, fragmentCache, tldCache);
+                        }
+                        catch (Exception e)
+                        {
+                            me.add(e);
+                        }
+                        finally
+                        {
+                            task_limit.release();
+                            latch.countDown();
+                        }
+                    }
+                };
+
+                task_limit.acquire();
+                try
+                {
+                    threadPool.execute(task);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    LOG.ignore(e);
+                    task.run();
+                }
             }
+
+            latch.await();
+            me.ifExceptionThrow();
         }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Scanned META-INF of {} jars in {}ms for {} ({})",jars.size(),TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-start),context,_scanCache);
+    }
+
+    /**
+     * Scan the META-INF of a single jar, using the {@link MetaInfScanCache} if one is configured.
+     * 
+     * @param context the context for the scan
+     * @param jar the jar resource to scan
+     * @param resourceCache the resource cache, or null
+     * @param fragmentCache the fragment cache, or null
+     * @param tldCache the tld cache, or null
+     * @throws Exception if unable to scan the jar
+     */
+    protected void scanJar(WebAppContext context, Resource jar, 
+                           ConcurrentHashMap<Resource, Resource> resourceCache,
+                           ConcurrentHashMap<Resource, Resource> fragmentCache,
+                           ConcurrentHashMap<Resource, Collection<URL>> tldCache)
+    throws Exception
+    {
+        long start = System.nanoTime();
+        String source = "scanned";
+
+        MetaInfScanCache scanCache = _scanCache;
+        File file = (scanCache == null || jar.isDirectory()) ? null : jar.getFile();
+        String key = null;
+        if (file != null && !(resourceCache != null && resourceCache.containsKey(jar) && fragmentCache.containsKey(jar) && tldCache.containsKey(jar)))
+        {
+            key = MetaInfScanCache.getKey(file);
+            if (key != null)
+            {
+                // Use caches for this jar, so that the index can seed them and the scan can fill them
+                if (resourceCache == null)
+                {
+                    resourceCache = new ConcurrentHashMap<>();
+                    fragmentCache = new ConcurrentHashMap<>();
+                    tldCache = new ConcurrentHashMap<>();
+                }
+
+                MetaInfScanCache.JarIndex index = scanCache.get(key);
+                if (index != null)
+                {
+                    URI uri = jar.getURI();
+                    resourceCache.putIfAbsent(jar, index.hasResources() ? Resource.newResource("jar:"+uri+"!/META-INF/resources") : EmptyResource.INSTANCE);
+                    fragmentCache.putIfAbsent(jar, index.hasFragment() ? Resource.newResource("jar:"+uri+"!/META-INF/web-fragment.xml") : EmptyResource.INSTANCE);
+                    Collection<URL> tlds = new HashSet<URL>();
+                    for (String tld : index.getTlds())
+                        tlds.add(new URL("jar:"+uri+"!/"+tld));
+                    tldCache.putIfAbsent(jar, tlds);
+                    source = "indexed";
+                    key = null;
+                }
+            }
+        }
+        else if (resourceCache != null && resourceCache.containsKey(jar))
+        {
+            source = "cached";
+        }
+
+        scanForResources(context, jar, resourceCache);
+        scanForFragment(context, jar, fragmentCache);
+        scanForTlds(context, jar, tldCache);
+
+        if (key != null)
+        {
+            // index the newly scanned jar
+            String prefix = "jar:"+jar.getURI()+"!/";
+            List<String> tlds = new ArrayList<>();
+            for (URL tld : tldCache.get(jar))
+            {
+                String url = tld.toString();
+                if (url.startsWith(prefix))
+                    tlds.add(url.substring(prefix.length()));
+            }
+            scanCache.put(key, new MetaInfScanCache.JarIndex(resourceCache.get(jar) != EmptyResource.INSTANCE, fragmentCache.get(jar) != EmptyResource.INSTANCE, tlds));
+        }
+
+        _scans.add(new JarScan(jar, source, System.nanoTime() - start));
+    }
+
+    /**
+     * Check if the jars should be scanned using multiple threads.
+     * 
+     * @param context the context of the jar scan
+     * @return true if scanning multithreaded
+     * @see #MULTI_THREADED
+     */
+    protected boolean isUseMultiThreading(WebAppContext context)
+    {
+        //try context attribute to see if we should use multithreading
+        Object o = context.getAttribute(MULTI_THREADED);
+        if (o instanceof Boolean)
+            return ((Boolean)o).booleanValue();
+        //try server attribute to see if we should use multithreading
+        o = context.getServer().getAttribute(MULTI_THREADED);
+        if (o instanceof Boolean)
+            return ((Boolean)o).booleanValue();
+        //try system property to see if we should use multithreading
+        return Boolean.valueOf(System.getProperty(MULTI_THREADED, Boolean.toString(DEFAULT_MULTI_THREADED)));
+    }
+
+    /**
+     * Get the directory of the {@link MetaInfScanCache}, if one is configured.
+     * 
+     * @param context the context of the jar scan
+     * @return the directory or null
+     * @see #SCAN_CACHE_DIR
+     */
+    protected File getScanCacheDir(WebAppContext context)
+    {
+        return getScanCacheDir(context,SCAN_CACHE_DIR);
+    }
+
+    @Override
+    public String dump()
+    {
+        return ContainerLifeCycle.dump(this);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        ContainerLifeCycle.dumpObject(out,this);
+        ContainerLifeCycle.dump(out,indent,_scans);
     }
     
     /**
@@ -214,7 +438,10 @@ public class MetaInfConfiguration extends AbstractConfiguration
         }
         if (LOG.isDebugEnabled()) LOG.debug(resourcesDir+" added to context");
 
-        dirs.add(resourcesDir);
+        synchronized (dirs)
+        {
+            dirs.add(resourcesDir);
+        }
     }
     
     /**
@@ -280,7 +507,10 @@ public class MetaInfConfiguration extends AbstractConfiguration
             fragments = new HashMap<Resource, Resource>();
             context.setAttribute(METAINF_FRAGMENTS, fragments);
         }
-        fragments.put(jar, webFrag);   
+        synchronized (fragments)
+        {
+            fragments.put(jar, webFrag);
+        }
         if (LOG.isDebugEnabled()) LOG.debug(webFrag+" added to context");
     }
     
@@ -344,7 +574,10 @@ public class MetaInfConfiguration extends AbstractConfiguration
             metaInfTlds = new HashSet<URL>();
             context.setAttribute(METAINF_TLDS, metaInfTlds);
         }
-        metaInfTlds.addAll(tlds);  
+        synchronized (metaInfTlds)
+        {
+            metaInfTlds.addAll(tlds);
+        }
         if (LOG.isDebugEnabled()) LOG.debug("tlds added to context");
     }
     
@@ -0,0 +1,278 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.webapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.TypeUtil;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * MetaInfScanCache
+ * <p>
+ * A persistent index of the META-INF content of jars found by the {@link MetaInfConfiguration}:
+ * whether a jar has a META-INF/resources directory and a META-INF/web-fragment.xml, and the
+ * names of its META-INF tld files.
+ * <p>
+ * The index of each jar is stored in its own file in the cache directory, named after
+ * a SHA-256 hash of the central directory of the jar.  The central directory lists the
+ * name, size and CRC of every entry, so the key identifies the content of a jar rather than
+ * its location: the same jar in another webapp, or in a redeployed webapp that has been
+ * extracted to a new directory, shares the index, while a modified jar gets a new one.
+ * Computing the key only reads the end of the jar file.
+ */
+public class MetaInfScanCache
+{
+    private static final Logger LOG = Log.getLogger(MetaInfScanCache.class);
+
+    private static final int MAGIC = 0x4a4d4931; // JMI1
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+
+    private final File _dir;
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+
+
+    /**
+     * JarIndex
+     * 
+     * The META-INF content of a jar.
+     */
+    public static class JarIndex
+    {
+        private final boolean _resources;
+        private final boolean _fragment;
+        private final List<String> _tlds;
+
+        /**
+         * @param resources true if the jar has a META-INF/resources directory
+         * @param fragment true if the jar has a META-INF/web-fragment.xml
+         * @param tlds the names of the tld entries of the jar
+         */
+        public JarIndex(boolean resources, boolean fragment, List<String> tlds)
+        {
+            _resources = resources;
+            _fragment = fragment;
+            _tlds = Collections.unmodifiableList(new ArrayList<>(tlds));
+        }
+
+        public boolean hasResources()
+        {
+            return _resources;
+        }
+
+        public boolean hasFragment()
+        {
+            return _fragment;
+        }
+
+        public List<String> getTlds()
+        {
+            return _tlds;
+        }
+    }
+
+
+    /**
+     * @param dir the directory in which the index files are kept
+     */
+    public MetaInfScanCache(File dir)
+    {
+        _dir = dir;
+    }
+
+    public File getDirectory()
+    {
+        return _dir;
+    }
+
+    public long getHits()
+    {
+        return _hits.get();
+    }
+
+    public long getMisses()
+    {
+        return _misses.get();
+    }
+
+    /**
+     * Compute the content key of a jar.
+     * 
+     * @param jar the jar file
+     * @return the hex SHA-256 hash of the central directory of the jar, or null if
+     * the jar does not have a central directory that can be located.
+     * @throws IOException if the jar cannot be read
+     */
+    public static String getKey(File jar) throws IOException
+    {
+        try (RandomAccessFile file = new RandomAccessFile(jar,"r"))
+        {
+            long length = file.length();
+            int tail = (int)Math.min(length,END_OF_CENTRAL_DIRECTORY_LENGTH + 0xffff);
+            if (tail < END_OF_CENTRAL_DIRECTORY_LENGTH)
+                return null;
+            byte[] buffer = new byte[tail];
+            file.seek(length - tail);
+            file.readFully(buffer);
+
+            // Look backwards for the end of central directory record, which may be followed by a comment
+            for (int i = tail - END_OF_CENTRAL_DIRECTORY_LENGTH; i >= 0; i--)
+            {
+                if (getInt(buffer,i) != END_OF_CENTRAL_DIRECTORY)
+                    continue;
+
+                long size = getInt(buffer,i + 12) & 0xffffffffL;
+                long offset = getInt(buffer,i + 16) & 0xffffffffL;
+                // zip64 archives are not indexed
+                if (size == 0xffffffffL || offset == 0xffffffffL || offset + size > length)
+                    return null;
+
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                byte[] chunk = new byte[8192];
+                file.seek(offset);
+                long remaining = size;
+                while (remaining > 0)
+                {
+                    int len = (int)Math.min(chunk.length,remaining);
+                    file.readFully(chunk,0,len);
+                    digest.update(chunk,0,len);
+                    remaining -= len;
+                }
+                return TypeUtil.toHexString(digest.digest());
+            }
+            return null;
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int getInt(byte[] buffer, int offset)
+    {
+        return (buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8 | (buffer[offset + 2] & 0xff) << 16 | (buffer[offset + 3] & 0xff) << 24;
+    }
+
+    private File getIndexFile(String key)
+    {
+        return new File(_dir,key + ".idx");
+    }
+
+    /**
+     * @param key the content key of a jar
+     * @return the index of the jar, or null if it is not in the cache
+     */
+    public JarIndex get(String key)
+    {
+        File file = getIndexFile(key);
+        if (!file.exists())
+        {
+            _misses.incrementAndGet();
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Bad magic");
+            boolean resources = in.readBoolean();
+            boolean fragment = in.readBoolean();
+            int count = in.readInt();
+            List<String> tlds = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                tlds.add(in.readUTF());
+            _hits.incrementAndGet();
+            return new JarIndex(resources,fragment,tlds);
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Bad META-INF index {}: {}",file,e.toString());
+            LOG.debug(e);
+            _misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * @param key the content key of a jar
+     * @param index the index of the jar
+     */
+    public void put(String key, JarIndex index)
+    {
+        if (!_dir.exists() && !_dir.mkdirs() && !_dir.exists())
+        {
+            LOG.warn("Unable to create META-INF index directory {}",_dir);
+            return;
+        }
+
+        File file = getIndexFile(key);
+        File tmp = new File(_dir,key + "." + Thread.currentThread().getId() + ".tmp");
+        try
+        {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+            {
+                out.writeInt(MAGIC);
+                out.writeBoolean(index.hasResources());
+                out.writeBoolean(index.hasFragment());
+                out.writeInt(index.getTlds().size());
+                for (String tld : index.getTlds())
+                    out.writeUTF(tld);
+            }
+            if (!tmp.renameTo(file))
+            {
+                // another context may have indexed the same jar
+                if (!file.exists())
+                    LOG.warn("Unable to write META-INF index {}",file);
+            }
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Unable to write META-INF index {}: {}",file,e.toString());
+            LOG.debug(e);
+        }
+        finally
+        {
+            if (tmp.exists())
+                tmp.delete();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,hits=%d,misses=%d}",getClass().getSimpleName(),hashCode(),_dir,getHits(),getMisses());
+    }
+}
@@ -589,12 +589,7 @@ public class WebAppClassLoader extends URLClassLoader
                 if (LOG.isDebugEnabled())
                     LOG.debug("foundClass({}) url={} cl={}",name,url,this);
                 
-                for (ClassFileTransformer transformer : _transformers)
-                {
-                    byte[] tmp = transformer.transform(this,name,null,null,bytes);
-                    if (tmp != null)
-                        bytes = tmp;
-                }
+                bytes = transform(name,bytes);
                 
                 clazz=defineClass(name,bytes,0,bytes.length);
             }
@@ -626,6 +621,25 @@ public class WebAppClassLoader extends URLClassLoader
     }
     
     
+    /* ------------------------------------------------------------ */
+    /**
+     * Apply the registered transformers to the bytes of a class.
+     * @param name the name of the class
+     * @param bytes the bytes of the class
+     * @return the transformed bytes
+     * @throws IllegalClassFormatException if a transformer rejects the class
+     */
+    protected byte[] transform(String name, byte[] bytes) throws IllegalClassFormatException
+    {
+        for (ClassFileTransformer transformer : _transformers)
+        {
+            byte[] tmp = transformer.transform(this,name,null,null,bytes);
+            if (tmp != null)
+                bytes = tmp;
+        }
+        return bytes;
+    }
+    
     @Override
     public void close() throws IOException
     {
@@ -18,10 +18,15 @@
 
 package org.eclipse.jetty.webapp;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -106,4 +111,62 @@ public class ClasspathPatternTest
         
         assertFalse(pattern.match("org.example.Nested$Minus$Else"));
     }
+
+    @Test
+    public void testModifiedAfterMatch()
+    {
+        assertFalse(pattern.match("org.other.Thing"));
+        pattern.add("org.other.");
+        assertTrue(pattern.match("org.other.Thing"));
+        pattern.add(0,"-org.other.Thing");
+        assertFalse(pattern.match("org.other.Thing"));
+        assertTrue(pattern.match("org/other/Other"));
+        pattern.remove("-org.other.Thing");
+        assertTrue(pattern.match("org.other.Thing"));
+        pattern.set(0,"-org.package.");
+        assertFalse(pattern.match("org.package.Something"));
+    }
+
+    @Test
+    public void testMatchesSequentialMatching()
+    {
+        String[] patterns = {"org.","org.package.","-org.package.","-org.a.B","org.a.B$C","org.a.","org.a.B","-org.a.B$C$D","org.b.C","-org.b.","org.b.","-"};
+        String[] names = {"org.a.B","org.a.B$C","org.a.B$C$D","org.a.B$CD","org.a.BC","org.a.b","org/a/B$C","org.package.X","org.packageX","org.b.C","org.b.C$D","org.b.CD","org.b.D","org","org.","com.Foo","$Foo",""};
+        Random random = new Random();
+        for (int run = 0; run < 200; run++)
+        {
+            List<String> list = new ArrayList<>(Arrays.asList(patterns));
+            Collections.shuffle(list,random);
+            list = list.subList(0,random.nextInt(list.size()));
+            ClasspathPattern compiled = new ClasspathPattern(list.toArray(new String[list.size()]));
+            for (String name : names)
+                assertEquals(list + " " + name,sequentialMatch(list,name),compiled.match(name));
+        }
+    }
+
+    /**
+     * The reference first match wins implementation, comparing the name with each entry in turn.
+     */
+    private static boolean sequentialMatch(List<String> patterns, String name)
+    {
+        name = name.replace('/','.');
+        for (String pattern : patterns)
+        {
+            boolean inclusive = !pattern.startsWith("-");
+            String entry = inclusive ? pattern : pattern.substring(1).trim();
+            if (pattern.endsWith("."))
+            {
+                if (name.startsWith(entry))
+                    return inclusive;
+            }
+            else
+            {
+                if (name.equals(entry))
+                    return inclusive;
+                if (name.length() > entry.length() && '$' == name.charAt(entry.length()) && name.startsWith(entry))
+                    return inclusive;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,92 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.webapp;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Runs the {@link WebAppClassLoaderTest}s against an {@link IndexedWebAppClassLoader}.
+ */
+public class IndexedWebAppClassLoaderTest extends WebAppClassLoaderTest
+{
+    @Override
+    protected WebAppClassLoader newClassLoader(WebAppContext context) throws Exception
+    {
+        return new IndexedWebAppClassLoader(context);
+    }
+
+    @Test
+    public void testIndex() throws Exception
+    {
+        IndexedWebAppClassLoader loader = (IndexedWebAppClassLoader)_loader;
+        assertTrue(loader.isIndexed());
+        assertThat(loader.getIndexedPackages(), greaterThan(0));
+
+        Class<?> clazz = loader.loadClass("org.acme.webapp.ClassInJarA");
+        assertEquals(loader, clazz.getClassLoader());
+        assertNotNull(clazz.getPackage());
+        assertTrue(clazz.getProtectionDomain().getCodeSource().getLocation().toString().endsWith("WEB-INF/lib/acme.jar"));
+
+        URL url = loader.findResource("org/acme/other/ClassInClassesC.class");
+        assertNotNull(url);
+        assertEquals("file", url.getProtocol());
+        assertNull(loader.findResource("org/acme/other/Missing.class"));
+        assertNull(loader.findResource("com/example/Missing.class"));
+
+        // acme.jar does not contain com/example/ so is not searched
+        assertThat(loader.getJarsSkipped(), greaterThan(0L));
+        assertThat(loader.getClassLookups(), greaterThan(0L));
+
+        loader.close();
+        assertFalse(loader.isIndexed());
+    }
+
+    @Test
+    public void testDirectoryResources() throws Exception
+    {
+        IndexedWebAppClassLoader loader = (IndexedWebAppClassLoader)_loader;
+        WebAppClassLoader plain = new WebAppClassLoader(_context);
+        plain.addJars(_context.getBaseResource().addPath("WEB-INF/lib"));
+        plain.addClassPath(_context.getBaseResource().addPath("WEB-INF/classes"));
+
+        // acme.jar only has a directory entry for org/eclipse/jetty/
+        for (String name : new String[]{"org/eclipse/jetty/", "org/eclipse/jetty", "org/eclipse/", "org/acme/", "org/acme", "org/acme/webapp/"})
+        {
+            List<URL> expected = Collections.list(plain.findResources(name));
+            assertThat(name, expected.size(), greaterThan(0));
+            assertEquals(name, expected.toString(), Collections.list(loader.findResources(name)).toString());
+            assertEquals(name, plain.findResource(name), loader.findResource(name));
+        }
+        assertTrue(loader.isIndexed());
+        plain.close();
+    }
+}
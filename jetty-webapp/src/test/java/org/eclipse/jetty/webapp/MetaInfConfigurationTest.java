@@ -0,0 +1,150 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.webapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.toolchain.test.FS;
+import org.eclipse.jetty.toolchain.test.TestingDir;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class MetaInfConfigurationTest
+{
+    @Rule
+    public TestingDir testdir = new TestingDir();
+
+    private static File newJar(File dir, String name, String... entries) throws IOException
+    {
+        File jar = new File(dir,name);
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar)))
+        {
+            out.putNextEntry(new JarEntry("org/example/" + name + ".class"));
+            out.write(name.getBytes(StandardCharsets.UTF_8));
+            for (String entry : entries)
+            {
+                out.putNextEntry(new JarEntry(entry));
+                if (!entry.endsWith("/"))
+                    out.write(entry.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return jar;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MetaInfConfiguration scan(File lib, File cacheDir) throws Exception
+    {
+        Server server = new Server();
+        WebAppContext context = new WebAppContext();
+        context.setServer(server);
+        context.setAttribute(MetaInfConfiguration.SCAN_CACHE_DIR,cacheDir);
+        for (String jar : new String[] {"resources.jar","fragment.jar","plain.jar"})
+            context.getMetaData().addWebInfJar(Resource.newResource(new File(lib,jar)));
+
+        MetaInfConfiguration configuration = new MetaInfConfiguration();
+        QueuedThreadPool threadPool = (QueuedThreadPool)server.getThreadPool();
+        threadPool.start();
+        try
+        {
+            configuration.preConfigure(context);
+        }
+        finally
+        {
+            threadPool.stop();
+        }
+
+        Set<Resource> resources = (Set<Resource>)context.getAttribute(MetaInfConfiguration.METAINF_RESOURCES);
+        assertEquals(1,resources.size());
+        assertTrue(resources.iterator().next().toString().contains("resources.jar!/META-INF/resources"));
+
+        Map<Resource, Resource> fragments = (Map<Resource, Resource>)context.getAttribute(MetaInfConfiguration.METAINF_FRAGMENTS);
+        assertEquals(1,fragments.size());
+        Resource fragment = fragments.get(Resource.newResource(new File(lib,"fragment.jar")));
+        assertNotNull(fragment);
+        assertEquals("META-INF/web-fragment.xml",IO.toString(fragment.getInputStream()));
+
+        Collection<URL> tlds = (Collection<URL>)context.getAttribute(MetaInfConfiguration.METAINF_TLDS);
+        assertEquals(1,tlds.size());
+        assertEquals("META-INF/tags/foo.tld",IO.toString(tlds.iterator().next().openStream()));
+
+        return configuration;
+    }
+
+    @Test
+    public void testScanCache() throws Exception
+    {
+        File dir = testdir.getEmptyDir();
+        File lib = new File(dir,"lib");
+        FS.ensureDirExists(lib);
+        File cacheDir = new File(dir,"cache");
+
+        newJar(lib,"resources.jar","META-INF/","META-INF/resources/","META-INF/resources/index.html");
+        newJar(lib,"fragment.jar","META-INF/","META-INF/web-fragment.xml","META-INF/tags/foo.tld");
+        newJar(lib,"plain.jar");
+
+        String key = MetaInfScanCache.getKey(new File(lib,"fragment.jar"));
+        assertNotNull(key);
+        assertNull(new MetaInfScanCache(cacheDir).get(key));
+
+        MetaInfConfiguration configuration = scan(lib,cacheDir);
+        assertTrue(configuration.dump(),configuration.dump().contains("fragment.jar scanned in"));
+        String[] indexes = cacheDir.list();
+        assertNotNull(indexes);
+        assertEquals(3,indexes.length);
+
+        MetaInfScanCache.JarIndex index = new MetaInfScanCache(cacheDir).get(key);
+        assertNotNull(index);
+        assertTrue(index.hasFragment());
+
+        // The same jars in another location use the index
+        File lib2 = new File(dir,"lib2");
+        FS.ensureDirExists(lib2);
+        for (String jar : lib.list())
+            IO.copy(new File(lib,jar),new File(lib2,jar));
+        assertEquals(key,MetaInfScanCache.getKey(new File(lib2,"fragment.jar")));
+
+        configuration = scan(lib2,cacheDir);
+        assertTrue(configuration.dump(),configuration.dump().contains("fragment.jar indexed in"));
+        assertEquals(3,cacheDir.list().length);
+
+        // A changed jar is scanned again
+        newJar(lib2,"plain.jar","META-INF/");
+        configuration = scan(lib2,cacheDir);
+        assertTrue(configuration.dump(),configuration.dump().contains("plain.jar scanned in"));
+        assertEquals(4,cacheDir.list().length);
+    }
+}
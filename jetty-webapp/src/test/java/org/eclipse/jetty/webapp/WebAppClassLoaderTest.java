@@ -46,9 +46,9 @@ public class WebAppClassLoaderTest
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
 
-    private Path testWebappDir;
-    private WebAppContext _context;
-    private WebAppClassLoader _loader;
+    protected Path testWebappDir;
+    protected WebAppContext _context;
+    protected WebAppClassLoader _loader;
 
     @Before
     public void init() throws Exception
@@ -62,12 +62,17 @@ public class WebAppClassLoaderTest
         _context.setBaseResource(webapp);
         _context.setContextPath("/test");
 
-        _loader = new WebAppClassLoader(_context);
+        _loader = newClassLoader(_context);
         _loader.addJars(webapp.addPath("WEB-INF/lib"));
         _loader.addClassPath(webapp.addPath("WEB-INF/classes"));
         _loader.setName("test");
     }
     
+    protected WebAppClassLoader newClassLoader(WebAppContext context) throws Exception
+    {
+        return new WebAppClassLoader(context);
+    }
+    
     public void assertCanLoadClass(String clazz) throws ClassNotFoundException
     {
         assertThat("Can Load Class ["+clazz+"]", _loader.loadClass(clazz), notNullValue());
@@ -18,6 +18,8 @@
 
 package org.eclipse.jetty.xml;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
@@ -29,9 +31,13 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.nio.file.Files;
 import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -45,6 +51,8 @@ import java.util.Properties;
 import java.util.Queue;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jetty.util.ArrayQueue;
@@ -114,6 +122,8 @@ public class XmlConfiguration
         return parser;
     }
 
+    private static final ConcurrentMap<String, ParsedConfiguration> __parsed = new ConcurrentHashMap<>();
+
     private final Map<String, Object> _idMap = new HashMap<>();
     private final Map<String, String> _propertyMap = new HashMap<>();
     private final URL _url;
@@ -129,11 +139,68 @@ public class XmlConfiguration
      */
     public XmlConfiguration(URL configuration) throws SAXException, IOException
     {
+        _url=configuration;
+        ParsedConfiguration parsed = parse(configuration);
+        setConfig(parsed._root);
+        _dtd=parsed._dtd;
+    }
+
+    /**
+     * Parse a configuration URL.
+     * <p>
+     * The parsed configurations of files are cached, so that the same file is only
+     * parsed again if its content has changed. The content is compared by digest
+     * rather than by modification time, which may not change for quick successive writes.
+     */
+    private static ParsedConfiguration parse(URL configuration) throws SAXException, IOException
+    {
+        File file = null;
+        if ("file".equalsIgnoreCase(configuration.getProtocol()))
+        {
+            try
+            {
+                file = new File(configuration.toURI());
+            }
+            catch (URISyntaxException | IllegalArgumentException e)
+            {
+                LOG.ignore(e);
+            }
+        }
+
+        String key = configuration.toString();
+        if (file == null || !file.isFile())
+        {
+            synchronized (__parser)
+            {
+                return new ParsedConfiguration(__parser.parse(key),__parser.getDTD(),null);
+            }
+        }
+
+        byte[] content = Files.readAllBytes(file.toPath());
+        byte[] digest = digest(content);
+        ParsedConfiguration parsed = __parsed.get(key);
+        if (parsed != null && MessageDigest.isEqual(parsed._digest,digest))
+            return parsed;
+
+        InputSource source = new InputSource(new ByteArrayInputStream(content));
+        source.setSystemId(key);
         synchronized (__parser)
         {
-            _url=configuration;
-            setConfig(__parser.parse(configuration.toString()));
-            _dtd=__parser.getDTD();
+            parsed = new ParsedConfiguration(__parser.parse(source),__parser.getDTD(),digest);
+        }
+        __parsed.put(key,parsed);
+        return parsed;
+    }
+
+    private static byte[] digest(byte[] content) throws IOException
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IOException(e);
         }
     }
 
@@ -271,6 +338,23 @@ public class XmlConfiguration
     }
     
 
+    /**
+     * A parsed configuration and the digest of the file content it was parsed from.
+     */
+    private static class ParsedConfiguration
+    {
+        private final XmlParser.Node _root;
+        private final String _dtd;
+        private final byte[] _digest;
+
+        private ParsedConfiguration(XmlParser.Node root, String dtd, byte[] digest)
+        {
+            _root = root;
+            _dtd = dtd;
+            _digest = digest;
+        }
+    }
+
     private static class JettyXmlConfiguration implements ConfigurationProcessor
     {
         
@@ -344,7 +428,7 @@ public class XmlConfiguration
                     if (namedArgMap.size() > 0)
                         obj = TypeUtil.construct(oClass, arguments.toArray(), namedArgMap);
                     else
-                        obj = TypeUtil.construct(oClass, arguments.toArray());
+                        obj = XmlMemberCache.of(oClass).construct(arguments.toArray());
                 }
                 catch (NoSuchMethodException x)
                 {
@@ -481,14 +565,19 @@ public class XmlConfiguration
             if (LOG.isDebugEnabled())
                 LOG.debug("XML " + (obj != null?obj.toString():oClass.getName()) + "." + name + "(" + value + ")");
 
+            XmlMemberCache members = XmlMemberCache.of(oClass);
+
             // Try for trivial match
             try
             {
-                Method set = oClass.getMethod(name,vClass);
-                set.invoke(obj,arg);
-                return;
+                Method set = members.getMethod(name,vClass);
+                if (set != null)
+                {
+                    set.invoke(obj,arg);
+                    return;
+                }
             }
-            catch (IllegalArgumentException | IllegalAccessException | NoSuchMethodException e)
+            catch (IllegalArgumentException | IllegalAccessException e)
             {
                 LOG.ignore(e);
             }
@@ -496,34 +585,33 @@ public class XmlConfiguration
             // Try for native match
             try
             {
-                Field type = vClass[0].getField("TYPE");
-                vClass[0] = (Class<?>)type.get(null);
-                Method set = oClass.getMethod(name,vClass);
-                set.invoke(obj,arg);
-                return;
+                Field type = XmlMemberCache.of(vClass[0]).getField("TYPE");
+                if (type != null)
+                {
+                    vClass[0] = (Class<?>)type.get(null);
+                    Method set = members.getMethod(name,vClass);
+                    if (set != null)
+                    {
+                        set.invoke(obj,arg);
+                        return;
+                    }
+                }
             }
-            catch (NoSuchFieldException | IllegalArgumentException | IllegalAccessException | NoSuchMethodException e)
+            catch (IllegalArgumentException | IllegalAccessException e)
             {
                 LOG.ignore(e);
             }
 
             // Try a field
-            try
+            Field field = members.getField(attr);
+            if (field != null && Modifier.isPublic(field.getModifiers()))
             {
-                Field field = oClass.getField(attr);
-                if (Modifier.isPublic(field.getModifiers()))
-                {
-                    field.set(obj,value);
-                    return;
-                }
-            }
-            catch (NoSuchFieldException e)
-            {
-                LOG.ignore(e);
+                field.set(obj,value);
+                return;
             }
 
             // Search for a match by trying all the set methods
-            Method[] sets = oClass.getMethods();
+            Method[] sets = members.getMethods();
             Method set = null;
             for (int s = 0; sets != null && s < sets.length; s++)
             {
@@ -663,27 +751,25 @@ public class XmlConfiguration
             if (LOG.isDebugEnabled())
                 LOG.debug("XML get " + name);
 
-            try
+            XmlMemberCache members = XmlMemberCache.of(oClass);
+
+            // try calling a getXxx method.
+            String getter = "get" + name.substring(0,1).toUpperCase(Locale.ENGLISH) + name.substring(1);
+            Method method = members.getMethod(getter);
+            if (method != null)
             {
-                // try calling a getXxx method.
-                Method method = oClass.getMethod("get" + name.substring(0,1).toUpperCase(Locale.ENGLISH) + name.substring(1),(java.lang.Class[])null);
                 obj = method.invoke(obj,(java.lang.Object[])null);
                 if (id!=null)
                     _configuration.getIdMap().put(id,obj);
                 configure(obj,node,0);
             }
-            catch (NoSuchMethodException nsme)
+            else
             {
-                try
-                {
-                    Field field = oClass.getField(name);
-                    obj = field.get(obj);
-                    configure(obj,node,0);
-                }
-                catch (NoSuchFieldException nsfe)
-                {
-                    throw nsme;
-                }
+                Field field = members.getField(name);
+                if (field == null)
+                    throw new NoSuchMethodException(oClass.getName() + "." + getter + "()");
+                obj = field.get(obj);
+                configure(obj,node,0);
             }
             return obj;
         }
@@ -723,7 +809,7 @@ public class XmlConfiguration
 
             try
             {
-                Object nobj= TypeUtil.call(oClass,name,obj,args.toArray(new Object[args.size()]));
+                Object nobj= XmlMemberCache.of(oClass).call(name,obj,args.toArray(new Object[args.size()]));
                 if (id != null)
                     _configuration.getIdMap().put(id,nobj);
                 configure(nobj,node,aoeNode.getNext());
@@ -784,7 +870,7 @@ public class XmlConfiguration
                 else
                 {
                     LOG.debug("using normal mapping");
-                    nobj = TypeUtil.construct(oClass, arguments.toArray());
+                    nobj = XmlMemberCache.of(oClass).construct(arguments.toArray());
                 }
             }
             catch (NoSuchMethodException e)
@@ -0,0 +1,339 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.xml;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.jetty.util.ArrayUtil;
+import org.eclipse.jetty.util.TypeUtil;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * Per class cache of the reflective members used by {@link XmlConfiguration}.
+ * <p>
+ * The cache is shared by all XmlConfiguration instances and holds the public methods
+ * and constructors of a class, the results of method and field lookups by name
+ * (including failed lookups, which are otherwise expensive exceptions) and the
+ * methods and constructors that were found to accept a given list of argument types.
+ * The cache is held in a {@link ClassValue}, so it does not prevent classes (for
+ * example those of an undeployed webapp) from being unloaded.
+ * <p>
+ * The resolution of {@link #call(String, Object, Object[])} and {@link #construct(Object[])}
+ * is the same as {@link TypeUtil#call(Class, String, Object, Object[])} and
+ * {@link TypeUtil#construct(Class, Object[])}: the first member with a matching name and
+ * number of parameters that accepts the arguments is used.
+ */
+class XmlMemberCache
+{
+    private static final Logger LOG = Log.getLogger(XmlMemberCache.class);
+    private static final Object NONE = new Object();
+    private static final ClassValue<XmlMemberCache> __cache = new ClassValue<XmlMemberCache>()
+    {
+        @Override
+        protected XmlMemberCache computeValue(Class<?> type)
+        {
+            return new XmlMemberCache(type);
+        }
+    };
+
+    /**
+     * @param type the class
+     * @return the member cache of the class
+     */
+    static XmlMemberCache of(Class<?> type)
+    {
+        return __cache.get(type);
+    }
+
+    private final Class<?> _type;
+    private final ConcurrentMap<Signature, Object> _lookups = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Signature, Object> _resolved = new ConcurrentHashMap<>();
+    private volatile Method[] _methods;
+    private volatile Constructor<?>[] _constructors;
+
+    private XmlMemberCache(Class<?> type)
+    {
+        _type = type;
+    }
+
+    /**
+     * @return the public methods of the class. The array must not be modified.
+     */
+    Method[] getMethods()
+    {
+        Method[] methods = _methods;
+        if (methods == null)
+            _methods = methods = _type.getMethods();
+        return methods;
+    }
+
+    /**
+     * @return the public constructors of the class. The array must not be modified.
+     */
+    Constructor<?>[] getConstructors()
+    {
+        Constructor<?>[] constructors = _constructors;
+        if (constructors == null)
+            _constructors = constructors = _type.getConstructors();
+        return constructors;
+    }
+
+    /**
+     * @param name the method name
+     * @param parameterTypes the method parameter types
+     * @return the public method, as per {@link Class#getMethod(String, Class...)}, or null if there is none
+     */
+    Method getMethod(String name, Class<?>... parameterTypes)
+    {
+        Signature signature = new Signature(name,false,parameterTypes);
+        Object method = _lookups.get(signature);
+        if (method == null)
+        {
+            try
+            {
+                method = _type.getMethod(name,parameterTypes);
+            }
+            catch (NoSuchMethodException e)
+            {
+                method = NONE;
+            }
+            // the caller may reuse the parameter types array
+            _lookups.put(new Signature(name,false,parameterTypes.clone()),method);
+        }
+        return method == NONE ? null : (Method)method;
+    }
+
+    /**
+     * @param name the field name
+     * @return the public field, as per {@link Class#getField(String)}, or null if there is none
+     */
+    Field getField(String name)
+    {
+        Signature signature = new Signature(name,true,null);
+        Object field = _lookups.get(signature);
+        if (field == null)
+        {
+            try
+            {
+                field = _type.getField(name);
+            }
+            catch (NoSuchFieldException e)
+            {
+                field = NONE;
+            }
+            _lookups.put(signature,field);
+        }
+        return field == NONE ? null : (Field)field;
+    }
+
+    /**
+     * Call a method of the class, as per {@link TypeUtil#call(Class, String, Object, Object[])}.
+     * @param methodName the method name
+     * @param obj the object to call the method on, or null for a static method
+     * @param arg the arguments
+     * @return the result of the call
+     * @throws InvocationTargetException if the method throws
+     * @throws NoSuchMethodException if no method accepts the arguments
+     */
+    Object call(String methodName, Object obj, Object[] arg) throws InvocationTargetException, NoSuchMethodException
+    {
+        Signature signature = new Signature(methodName,obj == null,arg);
+        Method resolved = (Method)_resolved.get(signature);
+        if (resolved != null)
+        {
+            try
+            {
+                return resolved.invoke(obj,resolved.getParameterTypes().length == arg.length?arg:withOptions(arg));
+            }
+            catch (IllegalAccessException | IllegalArgumentException e)
+            {
+                LOG.ignore(e);
+            }
+        }
+
+        for (Method method : getMethods())
+        {
+            if (!isCandidate(method,methodName,obj,arg.length))
+                continue;
+
+            try
+            {
+                Object result = method.invoke(obj,arg);
+                _resolved.put(signature,method);
+                return result;
+            }
+            catch (IllegalAccessException | IllegalArgumentException e)
+            {
+                LOG.ignore(e);
+            }
+        }
+
+        // Lets look for a method with optional arguments
+        Object[] args_with_opts = null;
+        for (Method method : getMethods())
+        {
+            if (!isCandidate(method,methodName,obj,arg.length + 1))
+                continue;
+            if (!method.getParameterTypes()[arg.length].isArray())
+                continue;
+
+            if (args_with_opts == null)
+                args_with_opts = withOptions(arg);
+            try
+            {
+                Object result = method.invoke(obj,args_with_opts);
+                _resolved.put(signature,method);
+                return result;
+            }
+            catch (IllegalAccessException | IllegalArgumentException e)
+            {
+                LOG.ignore(e);
+            }
+        }
+
+        throw new NoSuchMethodException(methodName);
+    }
+
+    /**
+     * Construct an instance of the class, as per {@link TypeUtil#construct(Class, Object[])}.
+     * @param arguments the constructor arguments
+     * @return the new instance
+     * @throws InvocationTargetException if the constructor throws
+     * @throws NoSuchMethodException if no constructor accepts the arguments
+     */
+    Object construct(Object[] arguments) throws InvocationTargetException, NoSuchMethodException
+    {
+        Signature signature = new Signature("<init>",false,arguments);
+        Constructor<?> resolved = (Constructor<?>)_resolved.get(signature);
+        if (resolved != null)
+        {
+            try
+            {
+                return resolved.newInstance(arguments);
+            }
+            catch (InstantiationException | IllegalAccessException | IllegalArgumentException e)
+            {
+                LOG.ignore(e);
+            }
+        }
+
+        int length = arguments == null?0:arguments.length;
+        for (Constructor<?> constructor : getConstructors())
+        {
+            if (constructor.getParameterTypes().length != length)
+                continue;
+
+            try
+            {
+                Object result = constructor.newInstance(arguments);
+                _resolved.put(signature,constructor);
+                return result;
+            }
+            catch (InstantiationException | IllegalAccessException | IllegalArgumentException e)
+            {
+                LOG.ignore(e);
+            }
+        }
+        throw new NoSuchMethodException("<init>");
+    }
+
+    private boolean isCandidate(Method method, String methodName, Object obj, int parameters)
+    {
+        if (!method.getName().equals(methodName))
+            return false;
+        if (method.getParameterTypes().length != parameters)
+            return false;
+        if (Modifier.isStatic(method.getModifiers()) != (obj == null))
+            return false;
+        // static calls only consider the methods declared by the class itself
+        if ((obj == null) && method.getDeclaringClass() != _type)
+            return false;
+        return true;
+    }
+
+    private static Object[] withOptions(Object[] arg)
+    {
+        return ArrayUtil.addToArray(arg,new Object[]{},Object.class);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,lookups=%d,resolved=%d}",getClass().getSimpleName(),hashCode(),_type.getName(),_lookups.size(),_resolved.size());
+    }
+
+    /**
+     * The name, kind and argument types of a member lookup or invocation.
+     */
+    private static class Signature
+    {
+        private final String _name;
+        private final boolean _static;
+        private final Class<?>[] _types;
+        private final int _hash;
+
+        private Signature(String name, boolean isStatic, Class<?>[] types)
+        {
+            _name = name;
+            _static = isStatic;
+            _types = types;
+            _hash = name.hashCode() * 31 + Arrays.hashCode(types) + (isStatic?1:0);
+        }
+
+        private Signature(String name, boolean isStatic, Object[] args)
+        {
+            this(name,isStatic,typesOf(args));
+        }
+
+        private static Class<?>[] typesOf(Object[] args)
+        {
+            if (args == null)
+                return null;
+            Class<?>[] types = new Class<?>[args.length];
+            for (int i = 0; i < args.length; i++)
+                types[i] = args[i] == null?null:args[i].getClass();
+            return types;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return _hash;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+                return true;
+            if (!(o instanceof Signature))
+                return false;
+            Signature s = (Signature)o;
+            return _hash == s._hash && _static == s._static && _name.equals(s._name) && Arrays.equals(_types,s._types);
+        }
+    }
+}
@@ -482,7 +482,7 @@ public class XmlParser
         private String _name;
         private String _value;
 
-        Attribute(String n, String v)
+        public Attribute(String n, String v)
         {
             _name = n;
             _value = v;
@@ -532,6 +532,22 @@ public class XmlParser
             }
         }
 
+        /* ------------------------------------------------------------ */
+        /**
+         * Create a node that has not been obtained by parsing, for example
+         * when restoring a previously parsed document.
+         * @param parent the parent node or null
+         * @param tag the element tag
+         * @param attrs the element attributes or null
+         * @return the new node
+         */
+        public static Node newNode(Node parent, String tag, Attribute[] attrs)
+        {
+            Node node = new Node(parent, tag, null);
+            node._attrs = attrs;
+            return node;
+        }
+
         /* ------------------------------------------------------------ */
         public Node getParent()
         {
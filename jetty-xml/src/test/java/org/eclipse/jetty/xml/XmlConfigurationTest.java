@@ -19,8 +19,10 @@
 package org.eclipse.jetty.xml;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -901,4 +903,81 @@ public class XmlConfigurationTest
         DefaultTestConfiguration config = (DefaultTestConfiguration)xmlConfiguration.configure();
         assertEquals(value, config.getFirst());
     }
+
+    @Test
+    public void testMemberCache() throws Exception
+    {
+        XmlMemberCache members = XmlMemberCache.of(TestConfiguration.class);
+        Assert.assertSame(members,XmlMemberCache.of(TestConfiguration.class));
+        Assert.assertNull(members.getMethod("noSuchMethod"));
+        Assert.assertNull(members.getField("noSuchField"));
+        Assert.assertNotNull(members.getField("ID"));
+
+        for (int i = 0; i < 2; i++)
+        {
+            TestConfiguration tc = new TestConfiguration();
+            members.call("call",tc,new Object[0]);
+            assertEquals("Yes",tc.get("Called"));
+
+            tc.setNested(new TestConfiguration());
+            Assert.assertSame(tc.getNested(),members.call("call",tc,new Object[]{Boolean.TRUE}));
+            assertEquals(Boolean.TRUE,tc.getNested().get("Arg"));
+
+            int[] ia = {1,2};
+            members.call("call",tc,new Object[]{ia});
+            Assert.assertSame(ia,tc.ia);
+            Object[] oa = {"a"};
+            members.call("call",tc,new Object[]{oa});
+            Assert.assertSame(oa,tc.oa);
+
+            TestConfiguration.called = false;
+            members.call("callStatic",null,new Object[0]);
+            assertTrue(TestConfiguration.called);
+
+            TestConfiguration named = (TestConfiguration)members.construct(new Object[]{"name"});
+            assertEquals("name",named.name);
+            Assert.assertNotNull(members.construct(null));
+
+            try
+            {
+                members.call("call",tc,new Object[]{"not","matching","args"});
+                Assert.fail();
+            }
+            catch (NoSuchMethodException e)
+            {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testParsedConfigurationCache() throws Exception
+    {
+        File file = File.createTempFile("configure",".xml");
+        file.deleteOnExit();
+        try
+        {
+            String xml = "<Configure class=\"org.eclipse.jetty.xml.TestConfiguration\"><Set name=\"testString\">%s</Set></Configure>";
+            Files.write(file.toPath(),String.format(xml,"one").getBytes(StandardCharsets.UTF_8));
+            XmlConfiguration configuration = new XmlConfiguration(file.toURI().toURL());
+            assertEquals("one",((TestConfiguration)configuration.configure()).getTestString());
+            configuration = new XmlConfiguration(file.toURI().toURL());
+            assertEquals("one",((TestConfiguration)configuration.configure()).getTestString());
+
+            // same length and modification time, different content
+            long lastModified = file.lastModified();
+            Files.write(file.toPath(),String.format(xml,"two").getBytes(StandardCharsets.UTF_8));
+            file.setLastModified(lastModified);
+            configuration = new XmlConfiguration(file.toURI().toURL());
+            assertEquals("two",((TestConfiguration)configuration.configure()).getTestString());
+
+            Files.write(file.toPath(),String.format(xml,"other").getBytes(StandardCharsets.UTF_8));
+            configuration = new XmlConfiguration(file.toURI().toURL());
+            assertEquals("other",((TestConfiguration)configuration.configure()).getTestString());
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
 }
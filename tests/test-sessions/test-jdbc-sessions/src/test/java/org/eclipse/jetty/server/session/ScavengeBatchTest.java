@@ -0,0 +1,160 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * ScavengeBatchTest
+ *
+ * Checks that old expired sessions that no context can load are
+ * claimed and deleted in batches, that sessions claimed by another
+ * node are left alone, and that the scavenging statistics are updated.
+ */
+public class ScavengeBatchTest
+{
+    public static int INACTIVE = 10; //sec
+    public static int SCAVENGE = 1; //sec
+    public static int SESSIONS = 7;
+
+    @Test
+    public void testScavengeInBatches() throws Exception
+    {
+        scavenge(false);
+    }
+
+    @Test
+    public void testScavengeSharedExpiryInBatches() throws Exception
+    {
+        //every page boundary falls between sessions with the same expiry
+        scavenge(true);
+    }
+
+    @Test
+    public void testClaimedSessionNotScavenged() throws Exception
+    {
+        JdbcTestServer server = new JdbcTestServer(0,INACTIVE,SCAVENGE);
+        ServletContextHandler context = server.addContext("/mod");
+        JDBCSessionIdManager idManager = (JDBCSessionIdManager)context.getSessionHandler().getSessionManager().getSessionIdManager();
+        idManager.setScavengeBatchSize(2);
+        server.start();
+        try
+        {
+            long expired = System.currentTimeMillis() - 3600000L;
+            insert(idManager, SESSIONS, expired, false);
+
+            //another node is scavenging the first orphan
+            try (Connection connection = DriverManager.getConnection(JdbcTestServer.DEFAULT_CONNECTION_URL);
+                 PreparedStatement statement = connection.prepareStatement("update "+idManager._sessionTableSchema.getTableName()+
+                                                                           " set "+idManager._sessionTableSchema.getClaimedByColumn()+" = ?, "+
+                                                                           idManager._sessionTableSchema.getClaimedTimeColumn()+" = ?"+
+                                                                           " where "+idManager._sessionTableSchema.getRowIdColumn()+" = ?"))
+            {
+                statement.setString(1, "otherNode-claim");
+                statement.setLong(2, System.currentTimeMillis() + 3600000L);
+                statement.setString(3, "_gone_0.0.0.0_orphan0");
+                assertEquals(1, statement.executeUpdate());
+            }
+
+            long end = System.currentTimeMillis() + SCAVENGE * 10000L;
+            while (idManager.getScavengedSessions() < SESSIONS - 1 && System.currentTimeMillis() < end)
+                Thread.sleep(100);
+
+            assertEquals(SESSIONS - 1, idManager.getScavengedSessions());
+            assertTrue(server.existsInSessionTable("orphan0", false));
+            for (int i = 1; i < SESSIONS; i++)
+                assertFalse(server.existsInSessionTable("orphan"+i, false));
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    private void scavenge (boolean sharedExpiry) throws Exception
+    {
+        JdbcTestServer server = new JdbcTestServer(0,INACTIVE,SCAVENGE);
+        ServletContextHandler context = server.addContext("/mod");
+        JDBCSessionIdManager idManager = (JDBCSessionIdManager)context.getSessionHandler().getSessionManager().getSessionIdManager();
+        idManager.setScavengeBatchSize(2);
+        server.start();
+        try
+        {
+            //sessions of a context that does not exist any more, that expired long ago on another node
+            long expired = System.currentTimeMillis() - 3600000L;
+            insert(idManager, SESSIONS, expired, sharedExpiry);
+            for (int i = 0; i < SESSIONS; i++)
+                assertTrue(server.existsInSessionTable("orphan"+i, false));
+
+            //wait for the scavenger to get to the old expired sessions
+            long end = System.currentTimeMillis() + SCAVENGE * 10000L;
+            while (idManager.getScavengedSessions() < SESSIONS && System.currentTimeMillis() < end)
+                Thread.sleep(100);
+
+            assertEquals(SESSIONS, idManager.getScavengedSessions());
+            for (int i = 0; i < SESSIONS; i++)
+                assertFalse(server.existsInSessionTable("orphan"+i, false));
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    private void insert (JDBCSessionIdManager idManager, int sessions, long expired, boolean sharedExpiry) throws Exception
+    {
+        try (Connection connection = DriverManager.getConnection(JdbcTestServer.DEFAULT_CONNECTION_URL);
+             PreparedStatement statement = connection.prepareStatement(idManager._insertSession))
+        {
+            for (int i = 0; i < sessions; i++)
+            {
+                statement.setString(1, "_gone_0.0.0.0_orphan"+i);
+                statement.setString(2, "orphan"+i);
+                statement.setString(3, "_gone");
+                statement.setString(4, "0.0.0.0");
+                statement.setString(5, "otherNode");
+                statement.setLong(6, expired);
+                statement.setLong(7, expired);
+                statement.setLong(8, expired);
+                statement.setLong(9, expired);
+                statement.setLong(10, expired);
+                statement.setLong(11, sharedExpiry ? expired : expired + i);
+                statement.setLong(12, INACTIVE);
+                statement.setBytes(13, new byte[0]);
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        JdbcTestServer.shutdown(null);
+    }
+}
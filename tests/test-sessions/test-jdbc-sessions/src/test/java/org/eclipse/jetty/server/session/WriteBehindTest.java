@@ -0,0 +1,155 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * WriteBehindTest
+ *
+ * Checks that with write-behind enabled, session changes are queued and
+ * coalesced rather than written by the request, and that the queue is
+ * flushed when the session manager stops.
+ */
+public class WriteBehindTest
+{
+    public static int INACTIVE = 90; //sec
+    public static int SCAVENGE = 100; //sec
+
+    @Test
+    public void testWriteBehind() throws Exception
+    {
+        AbstractTestServer server1 = new JdbcTestServer(0,INACTIVE,SCAVENGE);
+        ServletContextHandler ctx1 = server1.addContext("/mod");
+        TestWriteBehindServlet servlet1 = new TestWriteBehindServlet();
+        ctx1.addServlet(new ServletHolder(servlet1), "/test");
+        JDBCSessionManager manager = (JDBCSessionManager)ctx1.getSessionHandler().getSessionManager();
+        manager.setSaveInterval(1000); //access times never need saving during the test
+        manager.setWriteBehindInterval(60000); //the test drives the flushes
+        server1.start();
+        int port1=server1.getPort();
+
+        String sessionCookie;
+        HttpClient client = new HttpClient();
+        client.start();
+        try
+        {
+            try
+            {
+                ContentResponse response = client.GET("http://localhost:" + port1 + "/mod/test?action=create");
+                assertEquals(HttpServletResponse.SC_OK,response.getStatus());
+                sessionCookie = response.getHeaders().get("Set-Cookie");
+                assertNotNull(sessionCookie);
+                sessionCookie = sessionCookie.replaceFirst("(\\W)(P|p)ath=", "$1\\$Path=");
+                long lastSaved = ((JDBCSessionManager.Session)servlet1._session).getLastSaved();
+
+                //changing an attribute only queues the session
+                response = client.newRequest("http://localhost:" + port1 + "/mod/test?action=set&value=one").header("Cookie", sessionCookie).send();
+                assertEquals(HttpServletResponse.SC_OK,response.getStatus());
+                assertEquals(1, manager.getWriteBehindSize());
+                assertEquals(lastSaved, ((JDBCSessionManager.Session)servlet1._session).getLastSaved());
+
+                //further changes are coalesced
+                response = client.newRequest("http://localhost:" + port1 + "/mod/test?action=set&value=two").header("Cookie", sessionCookie).send();
+                assertEquals(HttpServletResponse.SC_OK,response.getStatus());
+                assertEquals(1, manager.getWriteBehindSize());
+
+                manager.flushWriteBehind();
+                assertEquals(0, manager.getWriteBehindSize());
+                assertNotEquals(lastSaved, ((JDBCSessionManager.Session)servlet1._session).getLastSaved());
+
+                //queue a last change, that must be written on stop
+                response = client.newRequest("http://localhost:" + port1 + "/mod/test?action=set&value=three").header("Cookie", sessionCookie).send();
+                assertEquals(HttpServletResponse.SC_OK,response.getStatus());
+                assertEquals(1, manager.getWriteBehindSize());
+            }
+            finally
+            {
+                server1.stop();
+            }
+
+            AbstractTestServer server2 = new JdbcTestServer(0,INACTIVE,SCAVENGE);
+            ServletContextHandler ctx2 = server2.addContext("/mod");
+            ctx2.addServlet(new ServletHolder(new TestWriteBehindServlet()), "/test");
+            server2.start();
+            try
+            {
+                ContentResponse response = client.newRequest("http://localhost:" + server2.getPort() + "/mod/test?action=check&value=three").header("Cookie", sessionCookie).send();
+                assertEquals(HttpServletResponse.SC_OK,response.getStatus());
+            }
+            finally
+            {
+                server2.stop();
+            }
+        }
+        finally
+        {
+            client.stop();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        JdbcTestServer.shutdown(null);
+    }
+
+    public static class TestWriteBehindServlet extends HttpServlet
+    {
+        public HttpSession _session;
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException
+        {
+            String action = request.getParameter("action");
+
+            if ("create".equals(action))
+            {
+                _session = request.getSession(true);
+                return;
+            }
+
+            HttpSession session = request.getSession(false);
+            if (session == null)
+                throw new ServletException("Session does not exist");
+
+            if ("set".equals(action))
+                session.setAttribute("value", request.getParameter("value"));
+            else if ("check".equals(action))
+                assertEquals(request.getParameter("value"), session.getAttribute("value"));
+        }
+    }
+}